@@ -22,11 +22,17 @@ import java.awt.image.RenderedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -36,7 +42,12 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
@@ -44,8 +55,11 @@ import javax.imageio.ImageReader;
 import javax.imageio.spi.ImageReaderSpi;
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.geotoolkit.client.AbstractRequest;
 import org.geotoolkit.client.Request;
 import org.geotoolkit.client.Client;
+import org.geotoolkit.nio.IOUtilities;
+import org.geotoolkit.security.ClientSecurity;
 import org.geotoolkit.security.DefaultClientSecurity;
 import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.storage.coverage.*;
@@ -74,16 +88,69 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
      */
     public static final String PROPERTY_NIO = "nio_query";
 
+    /**
+     * Integer property giving the number of decoded tiles kept in memory.
+     * default value is 30.
+     */
+    public static final String PROPERTY_CACHE_MEMORY_TILES = "cache_memory_tiles";
+
+    /**
+     * Path, File or String property giving the directory where encoded tiles
+     * are cached between sessions. default value is null, tiles are only
+     * cached in memory.
+     */
+    public static final String PROPERTY_CACHE_DIRECTORY = "cache_directory";
+
+    /**
+     * Long property giving the maximum size in bytes of the tile cache directory.
+     * default value is 512Mb.
+     */
+    public static final String PROPERTY_CACHE_MAX_SIZE = "cache_max_size";
+
+    /**
+     * Long property giving the time in milliseconds after which a tile is
+     * removed from the cache directory. It is also the validity of tiles sent
+     * by servers without Cache-Control or Expires headers.
+     * default value is 7 days.
+     */
+    public static final String PROPERTY_CACHE_MAX_AGE = "cache_max_age";
+
+    private static final int DEFAULT_MEMORY_TILES = 30;
+    private static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+    private static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Threads used to download tiles with standard IO, shared by all pyramids.
+     */
+    private static final ExecutorService FETCH_POOL;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors() * 2;
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(nbThread, nbThread, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger inc = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "Tile fetch " + inc.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        FETCH_POOL = pool;
+    }
+
     protected static final Logger LOGGER = Logging.getLogger("org.geotoolkit.client.map");
 
     //NIO netty bootstrap.
     private static ClientBootstrap BOOTSTRAP;
     static synchronized ClientBootstrap getBootstrap(){
         if(BOOTSTRAP == null){
+            //netty uses a single boss thread and a bounded number of workers
             BOOTSTRAP = new ClientBootstrap(
                 new NioClientSocketChannelFactory(
                 Executors.newCachedThreadPool(),
-                Executors.newCachedThreadPool()));
+                Executors.newCachedThreadPool(),
+                Runtime.getRuntime().availableProcessors() * 2));
             BOOTSTRAP.setOption("keepAlive", true);
             BOOTSTRAP.setOption("tcpNoDelay", true);
             BOOTSTRAP.setOption("reuseAddress", true);
@@ -102,17 +169,57 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
     protected final boolean useURLQueries;
     protected final boolean cacheImages;
 
+    /**
+     * Cache of encoded tiles, created on first use since client properties
+     * may be set after the pyramid set creation.
+     */
+    private TileDiskCache diskCache;
+    private boolean diskCacheSearched;
+
     public CachedPyramidSet(Client server, boolean useURLQueries, boolean cacheImages) {
         this.server = server;
         this.useURLQueries = useURLQueries;
         this.cacheImages = cacheImages;
         if (cacheImages) {
-            tileCache = new Cache<String, RenderedImage>(30, 30, false);
+            final Object nb = (server == null) ? null : server.getUserProperty(PROPERTY_CACHE_MEMORY_TILES);
+            final int memoryTiles = (nb instanceof Number) ? ((Number) nb).intValue() : DEFAULT_MEMORY_TILES;
+            tileCache = new Cache<String, RenderedImage>(memoryTiles, memoryTiles, false);
         } else {
             tileCache = null;
         }
     }
 
+    /**
+     * Returns the cache of encoded tiles configured by {@link #PROPERTY_CACHE_DIRECTORY}.
+     *
+     * @return disk cache, or null if not configured
+     */
+    private synchronized TileDiskCache getDiskCache() {
+        if (!diskCacheSearched && server != null) {
+            diskCacheSearched = true;
+            Object dir = server.getUserProperty(PROPERTY_CACHE_DIRECTORY);
+            if (dir instanceof File) dir = ((File) dir).toPath();
+            else if (dir instanceof String) dir = Paths.get((String) dir);
+            if (dir instanceof Path) {
+                final Object maxSize = server.getUserProperty(PROPERTY_CACHE_MAX_SIZE);
+                final Object maxAge = server.getUserProperty(PROPERTY_CACHE_MAX_AGE);
+                try {
+                    diskCache = TileDiskCache.forDirectory((Path) dir,
+                            (maxSize instanceof Number) ? ((Number) maxSize).longValue() : DEFAULT_MAX_SIZE,
+                            (maxAge instanceof Number) ? ((Number) maxAge).longValue() : DEFAULT_MAX_AGE);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Tile cache directory can not be used : "+ex.getMessage(), ex);
+                }
+            }
+        }
+        return diskCache;
+    }
+
+    private long getMaxAge() {
+        final Object maxAge = (server == null) ? null : server.getUserProperty(PROPERTY_CACHE_MAX_AGE);
+        return (maxAge instanceof Number) ? ((Number) maxAge).longValue() : DEFAULT_MAX_AGE;
+    }
+
     protected Client getServer() {
         return server;
     }
@@ -156,7 +263,16 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
             Cache.Handler<RenderedImage> handler = tileCache.lock(tileId);
             try {
                 value = handler.peek();
-                if (value == null) {
+                if (value == null && getDiskCache() != null) {
+                    final Request request = getTileRequest(mosaic, col, row, hints);
+                    try {
+                        final byte[] data = readTile(request.getURL(), server.getClientSecurity(),
+                                server.getTimeOutValue(), getDiskCache(), getMaxAge());
+                        value = ImageIO.read(new ByteArrayInputStream(data));
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.INFO, ex.getMessage());
+                    }
+                } else if (value == null) {
                     final Request request = getTileRequest(mosaic, col, row, hints);
                     InputStream stream = null;
                     ImageInputStream iis = null;
@@ -190,6 +306,92 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
         return value;
     }
 
+    /**
+     * Returns the encoded tile at the given URL. The tile is read from the disk
+     * cache if it is fresh, else it is downloaded and stored in the cache.
+     * A cached tile with an entity tag is revalidated with an If-None-Match
+     * query, it is also returned if the server can not be reached.
+     *
+     * @param url tile URL, also used as cache key
+     * @param security client security
+     * @param timeout connection timeout in milliseconds
+     * @param cache disk cache
+     * @param maxAge validity of tiles without caching headers in milliseconds
+     * @return encoded tile
+     */
+    static byte[] readTile(final URL url, final ClientSecurity security, final int timeout,
+            final TileDiskCache cache, final long maxAge) throws IOException {
+        final String key = url.toString();
+        final TileDiskCache.Entry cached = cache.get(key);
+        if (cached != null && cached.isFresh()) {
+            return cached.data;
+        }
+
+        final URLConnection cnx;
+        final long now;
+        try {
+            cnx = security.secure(url.openConnection());
+            cnx.setConnectTimeout(timeout);
+            cnx.setReadTimeout(timeout * 2);
+            if (cached != null && cached.etag != null) {
+                cnx.setRequestProperty("If-None-Match", cached.etag);
+            }
+            now = System.currentTimeMillis();
+            if (cached != null && cnx instanceof HttpURLConnection
+                    && ((HttpURLConnection) cnx).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                final String etag = cnx.getHeaderField("ETag");
+                cache.put(key, new TileDiskCache.Entry(cached.data, (etag != null) ? etag : cached.etag,
+                        now, expiration(cnx.getHeaderField("Cache-Control"), cnx.getExpiration(), now, maxAge)));
+                return cached.data;
+            }
+        } catch (IOException ex) {
+            if (cached != null) {
+                LOGGER.log(Level.FINE, "Tile can not be revalidated, using cached tile : "+ex.getMessage());
+                return cached.data;
+            }
+            throw ex;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = AbstractRequest.openRichException(cnx, security, timeout)) {
+            IOUtilities.copy(in, out);
+        }
+        final byte[] data = out.toByteArray();
+        final String cacheControl = cnx.getHeaderField("Cache-Control");
+        if (cacheControl == null || !cacheControl.toLowerCase().contains("no-store")) {
+            cache.put(key, new TileDiskCache.Entry(data, cnx.getHeaderField("ETag"), now,
+                    expiration(cacheControl, cnx.getExpiration(), now, maxAge)));
+        }
+        return data;
+    }
+
+    /**
+     * Returns the date until which a tile can be used without revalidation,
+     * from Cache-Control max-age or no-cache directives, or Expires header.
+     *
+     * @param cacheControl Cache-Control header value, may be null
+     * @param expires Expires header date, 0 if none
+     * @param now date of the query
+     * @param maxAge validity of tiles without caching headers
+     */
+    static long expiration(final String cacheControl, final long expires, final long now, final long maxAge) {
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase().split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-cache")) {
+                    return now;
+                } else if (directive.startsWith("max-age=")) {
+                    try {
+                        return now + Long.parseLong(directive.substring(8).trim()) * 1000;
+                    } catch (NumberFormatException ex) {
+                        LOGGER.log(Level.FINE, "Invalid Cache-Control : {0}", cacheControl);
+                    }
+                }
+            }
+        }
+        return (expires > 0) ? expires : now + maxAge;
+    }
+
     public BlockingQueue<Object> getTiles(GridMosaic mosaic, Collection<? extends Point> locations, Map hints) throws DataStoreException {
 
         if (!cacheImages || !useURLQueries) {
@@ -213,6 +415,12 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
             return queryUnoptimizedIO(mosaic, locations, hints);
         }
 
+        if (getDiskCache() != null) {
+            //tiles are read by getTile, concurrent requests of a tile are coalesced
+            //and stale cached tiles are revalidated
+            return queryUnoptimizedIO(mosaic, locations, hints);
+        }
+
         final URL url = server.getURL();
         final String protocol = url.getProtocol();
 
@@ -229,7 +437,14 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
         for (Point p : locations) {
             //check the cache if we have the image already
             final String tid = toId(mosaic, p.x, p.y, hints);
-            final RenderedImage image = tileCache.get(tid);
+            RenderedImage image = tileCache.get(tid);
+            final URL tileURL;
+            try {
+                tileURL = getTileRequest(mosaic, p.x, p.y, hints).getURL();
+            } catch (MalformedURLException ex) {
+                Logging.getLogger("org.geotoolkit.client.map").log(Level.SEVERE, null, ex);
+                continue;
+            }
 
             if (queue.isCancelled()) {
                 queue.offer(GridMosaic.END_OF_QUEUE); //end sentinel
@@ -243,15 +458,10 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
                 queue.offer(pack.getTile());
             } else {
                 //we will have to download this image
-                String str;
-                try {
-                    str = getTileRequest(mosaic, p.x, p.y, hints).getURL().toString();
-                    str = str.replaceFirst("http://", "");
-                    str = str.substring(str.indexOf('/'));
-                    downloadList.add(new ImagePack(str, mosaic, p, hints));
-                } catch (MalformedURLException ex) {
-                    Logging.getLogger("org.geotoolkit.client.map").log(Level.SEVERE, null, ex);
-                }
+                String str = tileURL.toString();
+                str = str.replaceFirst("http://", "");
+                str = str.substring(str.indexOf('/'));
+                downloadList.add(new ImagePack(str, mosaic, p, hints));
             }
         }
 
@@ -334,13 +544,16 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
     private void queryUsingIO(final CancellableQueue queue,
             final List<ImagePack> downloadList){
 
-        final int processors = Runtime.getRuntime().availableProcessors();
-        final ExecutorService es = Executors.newFixedThreadPool(processors*2);
+        final List<Future<?>> futures = new ArrayList<>(downloadList.size());
 
         queue.addPropertyChangeListener(new PropertyChangeListener() {
                     @Override
                     public void propertyChange(PropertyChangeEvent evt) {
-                        es.shutdownNow();
+                        synchronized (futures) {
+                            for (Future<?> future : futures) {
+                                future.cancel(true);
+                            }
+                        }
                     }
                 });
 
@@ -356,37 +569,40 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
                     } catch (InterruptedException ex) {
                         LOGGER.log(Level.INFO, ex.getMessage(), ex);
                     }
-                    es.shutdown();
                 }
             }
         };
 
-        for(final ImagePack pack : downloadList){
-            es.submit(new Runnable() {
-                @Override
-                public void run() {
-                    try{
-                        final TileReference tr;
-                        try {
-                            tr = pack.readNow();
-                        } catch (Exception ex) {
-                            LOGGER.log(Level.WARNING, ex.getMessage(),ex);
-                            return;
-                        }
-
-                        boolean added = false;
-                        while(!added && !queue.isCancelled()){
+        synchronized (futures) {
+            for(final ImagePack pack : downloadList){
+                futures.add(FETCH_POOL.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try{
+                            if (queue.isCancelled()) return;
+                            final TileReference tr;
                             try {
-                                added = queue.offer(tr,200, TimeUnit.MILLISECONDS);
-                            } catch (InterruptedException ex) {
-                                LOGGER.log(Level.FINE, ex.getMessage());
+                                tr = pack.readNow();
+                            } catch (Exception ex) {
+                                LOGGER.log(Level.WARNING, ex.getMessage(),ex);
+                                return;
                             }
+
+                            boolean added = false;
+                            while(!added && !queue.isCancelled()){
+                                try {
+                                    added = queue.offer(tr,200, TimeUnit.MILLISECONDS);
+                                } catch (InterruptedException ex) {
+                                    LOGGER.log(Level.FINE, ex.getMessage());
+                                    return;
+                                }
+                            }
+                        }finally{
+                            latch.countDown();
                         }
-                    }finally{
-                        latch.countDown();
                     }
-                }
-            });
+                }));
+            }
         }
 
     }
@@ -484,7 +700,9 @@ public abstract class CachedPyramidSet extends DefaultPyramidSet {
         public TileReference getTile() {
             if(img == null){
                 try {
-                    img = ImageIO.read(new ByteArrayInputStream(buffer.array()));
+                    final byte[] data = new byte[buffer.readableBytes()];
+                    buffer.getBytes(buffer.readerIndex(), data);
+                    img = ImageIO.read(new ByteArrayInputStream(data));
                     if(tileCache != null){
                         final String tid = toId(mosaic, pt.x, pt.y, null);
                         //store it in the cache
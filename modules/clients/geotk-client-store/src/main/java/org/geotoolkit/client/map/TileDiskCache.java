@@ -0,0 +1,264 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.client.map;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import org.apache.sis.util.collection.WeakValueHashMap;
+
+/**
+ * Cache of encoded tiles in a directory.
+ * Each tile is stored in a file named by the hash of its key, in a sub-directory
+ * named by the first byte of the hash. Files start with a header giving the date
+ * the tile was fetched, the date it expires and the HTTP entity tag of the tile.
+ * <p>
+ * File modification time is updated on each read. When the total size exceeds
+ * the limit, the least recently used files are removed, files fetched for
+ * longer than the maximum age are removed whatever their use.
+ * </p>
+ * Instances are shared by all pyramid sets using the same directory, and released
+ * when none of them remains.
+ *
+ * @module
+ */
+final class TileDiskCache {
+
+    /** "GTC1" */
+    private static final int MAGIC = 0x47544331;
+    private static final String SUFFIX = ".tile";
+
+    /**
+     * After an eviction the total size is at most this ratio of the limit,
+     * to avoid scanning the directory on each new tile.
+     */
+    private static final double EVICTION_RATIO = 0.9;
+
+    private static final Map<Path,TileDiskCache> CACHES = new WeakValueHashMap<>(TileDiskCache.class);
+
+    /**
+     * An encoded tile with its HTTP caching information.
+     */
+    static final class Entry {
+        final byte[] data;
+        final String etag;
+        final long fetched;
+        final long expires;
+
+        Entry(final byte[] data, final String etag, final long fetched, final long expires) {
+            this.data = data;
+            this.etag = etag;
+            this.fetched = fetched;
+            this.expires = expires;
+        }
+
+        /**
+         * @return true if the tile can be used without asking the server.
+         */
+        boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+    }
+
+    private final Path directory;
+    private final long maxSize;
+    private final long maxAge;
+
+    /**
+     * Approximate size of all files, -1 until the directory is scanned.
+     */
+    private long size = -1;
+
+    private TileDiskCache(final Path directory, final long maxSize, final long maxAge) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns the cache stored in the given directory. Size and age limits are
+     * the ones given the first time the directory is requested.
+     *
+     * @param directory cache directory, created if it does not exist
+     * @param maxSize maximum total size of tiles in bytes
+     * @param maxAge maximum time a tile is kept in milliseconds
+     */
+    static TileDiskCache forDirectory(Path directory, final long maxSize, final long maxAge) throws IOException {
+        directory = directory.toAbsolutePath().normalize();
+        synchronized (CACHES) {
+            TileDiskCache cache = CACHES.get(directory);
+            if (cache == null) {
+                Files.createDirectories(directory);
+                cache = new TileDiskCache(directory, maxSize, maxAge);
+                CACHES.put(directory, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Returns the cached tile for the given key, fresh or not.
+     *
+     * @return cached tile, or null if absent or older than the maximum age
+     */
+    Entry get(final String key) throws IOException {
+        final Path file = toPath(key);
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+        final Entry entry;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            final long fetched = in.readLong();
+            final long expires = in.readLong();
+            final String etag = in.readBoolean() ? in.readUTF() : null;
+            final byte[] data = new byte[in.available()];
+            in.readFully(data);
+            entry = new Entry(data, etag, fetched, expires);
+        } catch (IOException ex) {
+            //truncated file
+            CachedPyramidSet.LOGGER.log(Level.FINE, ex.getMessage(), ex);
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.fetched > maxAge) {
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            //removed in the mean time
+            CachedPyramidSet.LOGGER.log(Level.FINE, ex.getMessage(), ex);
+        }
+        return entry;
+    }
+
+    /**
+     * Store a tile. The file is written aside and moved in place so concurrent
+     * readers never see a partial tile.
+     */
+    void put(final String key, final Entry entry) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(entry.data.length + 64);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(MAGIC);
+            out.writeLong(entry.fetched);
+            out.writeLong(entry.expires);
+            out.writeBoolean(entry.etag != null);
+            if (entry.etag != null) out.writeUTF(entry.etag);
+            out.write(entry.data);
+        }
+        final Path file = toPath(key);
+        final Path parent = file.getParent();
+        Files.createDirectories(parent);
+        final Path tmp = Files.createTempFile(parent, null, ".tmp");
+        long previous = 0;
+        try {
+            Files.write(tmp, buffer.toByteArray());
+            if (Files.exists(file)) previous = Files.size(file);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        synchronized (this) {
+            if (size < 0) {
+                evict();
+            } else {
+                size += buffer.size() - previous;
+                if (size > maxSize) evict();
+            }
+        }
+    }
+
+    /**
+     * Delete files older than the maximum age, then the least recently used
+     * files until the total size is below the limit.
+     */
+    synchronized void evict() throws IOException {
+        final long now = System.currentTimeMillis();
+        final List<Path> files = new ArrayList<>();
+        final List<long[]> infos = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(directory)) {
+            for (Path dir : dirs) {
+                if (!Files.isDirectory(dir)) continue;
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+                    for (Path file : stream) {
+                        final long modified = Files.getLastModifiedTime(file).toMillis();
+                        final long length = Files.size(file);
+                        //fetch date is not read from each file, a tile not used
+                        //for longer than the maximum age is older than it.
+                        if (now - modified > maxAge) {
+                            Files.deleteIfExists(file);
+                            continue;
+                        }
+                        files.add(file);
+                        infos.add(new long[]{modified, length, files.size() - 1});
+                        total += length;
+                    }
+                }
+            }
+        }
+        if (total > maxSize) {
+            infos.sort((long[] a, long[] b) -> Long.compare(a[0], b[0]));
+            final long target = (long) (maxSize * EVICTION_RATIO);
+            for (long[] info : infos) {
+                if (total <= target) break;
+                Files.deleteIfExists(files.get((int) info[2]));
+                total -= info[1];
+            }
+        }
+        size = total;
+    }
+
+    /**
+     * Returns the file of the given tile key.
+     */
+    private Path toPath(final String key) {
+        final byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            //SHA-1 is required on all java platforms
+            throw new IllegalStateException(ex);
+        }
+        final StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return directory.resolve(sb.substring(0, 2)).resolve(sb.append(SUFFIX).toString());
+    }
+}
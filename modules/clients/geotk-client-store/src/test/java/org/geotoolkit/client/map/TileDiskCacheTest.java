@@ -0,0 +1,146 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.client.map;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geotoolkit.nio.IOUtilities;
+import org.geotoolkit.security.DefaultClientSecurity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test tiles disk cache and HTTP revalidation.
+ */
+public class TileDiskCacheTest extends org.geotoolkit.test.TestBase {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tiles");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        IOUtilities.deleteRecursively(directory);
+    }
+
+    @Test
+    public void putGetTest() throws IOException {
+        final TileDiskCache cache = TileDiskCache.forDirectory(directory, 1024*1024, DAY);
+        assertSame(cache, TileDiskCache.forDirectory(directory, 1024*1024, DAY));
+        assertNull(cache.get("http://host/tile/0/0/0"));
+
+        final long now = System.currentTimeMillis();
+        cache.put("http://host/tile/0/0/0", new TileDiskCache.Entry(new byte[]{1,2,3}, "\"abc\"", now, now + DAY));
+        final TileDiskCache.Entry entry = cache.get("http://host/tile/0/0/0");
+        assertNotNull(entry);
+        assertArrayEquals(new byte[]{1,2,3}, entry.data);
+        assertEquals("\"abc\"", entry.etag);
+        assertEquals(now, entry.fetched);
+        assertTrue(entry.isFresh());
+        assertNull(cache.get("http://host/tile/0/0/1"));
+    }
+
+    /**
+     * Caches are not retained once no pyramid set uses them.
+     */
+    @Test
+    public void releaseTest() throws Exception {
+        final WeakReference<TileDiskCache> ref = new WeakReference<>(TileDiskCache.forDirectory(directory, 1024*1024, DAY));
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(ref.get());
+    }
+
+    @Test
+    public void evictionTest() throws IOException {
+        final TileDiskCache cache = TileDiskCache.forDirectory(directory, 10000, DAY);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 20; i++) {
+            cache.put("tile" + i, new TileDiskCache.Entry(new byte[1000], null, now, now + DAY));
+        }
+        int count = 0;
+        for (int i = 0; i < 20; i++) {
+            if (cache.get("tile" + i) != null) count++;
+        }
+        assertTrue(count > 0);
+        assertTrue(count < 10);
+    }
+
+    @Test
+    public void expirationTest() {
+        assertEquals(1000, CachedPyramidSet.expiration("no-cache", 0, 1000, DAY));
+        assertEquals(61000, CachedPyramidSet.expiration("public, max-age=60", 0, 1000, DAY));
+        assertEquals(5000, CachedPyramidSet.expiration(null, 5000, 1000, DAY));
+        assertEquals(1000 + DAY, CachedPyramidSet.expiration(null, 0, 1000, DAY));
+    }
+
+    /**
+     * Tiles expire immediately, the second read must send the entity tag and
+     * reuse the cached tile on a 304 response.
+     */
+    @Test
+    public void revalidationTest() throws IOException {
+        final AtomicInteger full = new AtomicInteger();
+        final AtomicInteger notModified = new AtomicInteger();
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/tile", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=0");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                full.incrementAndGet();
+                exchange.sendResponseHeaders(200, 4);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(new byte[]{5,6,7,8});
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try {
+            final URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/tile");
+            final TileDiskCache cache = TileDiskCache.forDirectory(directory, 1024*1024, DAY);
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(new byte[]{5,6,7,8},
+                        CachedPyramidSet.readTile(url, DefaultClientSecurity.NO_SECURITY, 5000, cache, DAY));
+            }
+            assertEquals(1, full.get());
+            assertEquals(2, notModified.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.container;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of ARGB images used as layer buffers.
+ * Canvas size rarely changes between two renderings, buffers released by a
+ * rendering are given back to the next one instead of allocating new images.
+ * The pool keeps at most a given amount of bytes, buffers released above
+ * this limit are left to the garbage collector.
+ *
+ * @module
+ */
+final class LayerBufferPool {
+
+    private final long maxBytes;
+    /** Buffers by size, most recently used size last. */
+    private final Map<Long,Deque<BufferedImage>> buffers = new LinkedHashMap<>(4, 0.75f, true);
+    private long pooledBytes;
+
+    /**
+     * @param maxBytes maximum size of the pooled buffers in bytes
+     */
+    LayerBufferPool(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Size of the given buffer in memory.
+     */
+    static long bytes(final BufferedImage buffer) {
+        return 4L * buffer.getWidth() * buffer.getHeight();
+    }
+
+    private static Long key(final int width, final int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns a fully transparent buffer of the given size.
+     */
+    BufferedImage acquire(final int width, final int height) {
+        BufferedImage buffer = null;
+        synchronized (this) {
+            final Deque<BufferedImage> candidates = buffers.get(key(width, height));
+            if (candidates != null) {
+                buffer = candidates.pollLast();
+                if (buffer != null) {
+                    pooledBytes -= bytes(buffer);
+                }
+            }
+        }
+        if (buffer == null) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        //clear with a graphics rather than the raster array, the image
+        //stays eligible for hardware acceleration
+        final Graphics2D g = buffer.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return buffer;
+    }
+
+    /**
+     * Give back a buffer obtained by {@link #acquire(int, int) }.
+     * Buffers of other sizes are dropped first if the pool is full.
+     */
+    synchronized void release(final BufferedImage buffer) {
+        final long size = bytes(buffer);
+        if (size > maxBytes) return;
+        final Long key = key(buffer.getWidth(), buffer.getHeight());
+        final Iterator<Map.Entry<Long,Deque<BufferedImage>>> ite = buffers.entrySet().iterator();
+        while (pooledBytes + size > maxBytes && ite.hasNext()) {
+            final Map.Entry<Long,Deque<BufferedImage>> entry = ite.next();
+            if (entry.getKey().equals(key)) continue;
+            for (BufferedImage img : entry.getValue()) {
+                pooledBytes -= bytes(img);
+            }
+            ite.remove();
+        }
+        if (pooledBytes + size > maxBytes) return;
+        Deque<BufferedImage> candidates = buffers.get(key);
+        if (candidates == null) {
+            candidates = new ArrayDeque<>();
+            buffers.put(key, candidates);
+        }
+        candidates.addLast(buffer);
+        pooledBytes += size;
+    }
+
+    /**
+     * @return size of the pooled buffers in bytes
+     */
+    synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * Drop all pooled buffers.
+     */
+    synchronized void clear() {
+        buffers.clear();
+        pooledBytes = 0;
+    }
+}
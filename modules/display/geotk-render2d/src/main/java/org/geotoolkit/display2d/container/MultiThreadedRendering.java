@@ -16,15 +16,28 @@
  */
 package org.geotoolkit.display2d.container;
 
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.sis.util.ArgumentChecks;
+import org.apache.sis.util.logging.Logging;
+import org.geotoolkit.display.canvas.control.CanvasMonitor;
 import org.geotoolkit.display2d.canvas.RenderingContext2D;
 import org.geotoolkit.display2d.primitive.GraphicJ2D;
 import org.geotoolkit.map.MapItem;
@@ -34,18 +47,99 @@ import org.geotoolkit.map.MapItem;
  * Multithread rendering process used by GraphicContextJ2D.
  * this class handle several threads and buffer to speed up
  * rendering when distant layers exist in the mapcontext.
+ * <p>
+ * Each rendering uses at most {@link #getParallelism() } threads, the calling
+ * thread included. The calling thread composites layers in order as soon as
+ * all the layers below are drawn, when the next layer is not started yet it is
+ * painted directly on the canvas without buffer. Buffers are taken from a pool
+ * shared by all renderings and given back once composited. Workers do not start
+ * a layer while as many buffers as workers are waiting to be composited, so a
+ * rendering never holds more than {@code parallelism - 1} layer buffers.
+ * </p>
  *
  * @author Johann Sorel (Geomatys)
  * @module
  */
 public class MultiThreadedRendering{
 
-    private static final ExecutorService executor = Executors.newFixedThreadPool(20);
+    private static final Logger LOGGER = Logging.getLogger("org.geotoolkit.display2d.container");
+
+    /**
+     * Threads shared by all renderings, one per processor, created on demand and
+     * released when idle. When all threads are busy the workers of a rendering wait
+     * in the queue, the calling thread paints the layers they have not started.
+     */
+    private static final ExecutorService EXECUTOR;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThread, nbThread, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Layer rendering " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    /**
+     * Layer buffers kept between renderings, 128Mb is enough for about ten
+     * buffers of a full HD canvas.
+     */
+    private static final LayerBufferPool BUFFERS = new LayerBufferPool(128L * 1024 * 1024);
+
+    /**
+     * Time and memory used to render one layer.
+     */
+    public static final class LayerStatistics {
+
+        private final MapItem layer;
+        private final long renderingTime;
+        private final long bufferBytes;
+
+        private LayerStatistics(final MapItem layer, final long renderingTime, final long bufferBytes) {
+            this.layer = layer;
+            this.renderingTime = renderingTime;
+            this.bufferBytes = bufferBytes;
+        }
+
+        /**
+         * @return rendered layer
+         */
+        public MapItem getLayer() {
+            return layer;
+        }
+
+        /**
+         * @return time spent painting the layer, in nanoseconds
+         */
+        public long getRenderingTime() {
+            return renderingTime;
+        }
+
+        /**
+         * @return size of the buffer the layer was painted on, in bytes,
+         *         0 if the layer was painted directly on the canvas
+         */
+        public long getBufferBytes() {
+            return bufferBytes;
+        }
+
+        @Override
+        public String toString() {
+            return layer.getName() + " : " + renderingTime / 1000000 + "ms, " + bufferBytes + " bytes";
+        }
+    }
 
     private final MapItem context;
     private final Map<MapItem, GraphicJ2D> layerGraphics;
     private final RenderingContext2D renderingContext;
-    private final SortedMap<Integer, BufferedImage> buffers = new TreeMap<>();
+    private final List<LayerStatistics> statistics = new ArrayList<>();
+    private int parallelism = Runtime.getRuntime().availableProcessors();
 
 
     public MultiThreadedRendering(final MapItem context,
@@ -57,341 +151,193 @@ public class MultiThreadedRendering{
     }
 
     /**
-     * Clear the buffer cache.
+     * Set the maximum number of threads used by a rendering, the calling thread
+     * included. A value of 1 paints all layers in the calling thread.
+     * Default value is the number of processors.
+     *
+     * @param parallelism maximum number of threads, strictly positive
      */
-    public void dispose() {
-        buffers.clear();
+    public void setParallelism(final int parallelism) {
+        ArgumentChecks.ensureStrictlyPositive("parallelism", parallelism);
+        this.parallelism = parallelism;
     }
 
     /**
-     * Pack the buffers, merge the different buffer when possible.
-     * @return true if there is no more buffer to pack. false
-     * if some buffers are not ready yet.
+     * @return maximum number of threads used by a rendering
      */
-    private boolean pack() {
-
-        synchronized(buffers){
-            final Set<Integer> keySet = buffers.keySet();
-            final Integer[] keys = keySet.toArray(new Integer[keySet.size()]);
-
-            boolean valid = true;
-
-            //we go throw the buffer and merge (with the renderingContext or between them)
-            //when possible to reduce used memory as much as possible
-            BufferedImage buffer = null;
-            BufferedImage previousBuffer = null;
-            Integer index = null;
-            Integer previousIndex = null;
-            for(int i=keys.length-1 ; i>=0 ; i--){
-                index = keys[i];
-                buffer = buffers.get(index);
-
-                if(buffer == null){
-                    //a buffer is not ready
-                    valid = false;
-                }else{
-                    if(previousBuffer != null){
-                        //check if the buffer has a valid ARGB type
-                        buffer = validateBuffer(buffer);
-                        buffers.put(index, buffer);
-                        //we merge with previous buffer to reduce memory use
-                        buffer.getGraphics().drawImage(previousBuffer, 0, 0, null);
-                        //remove previous buffer from cache
-                        buffers.remove(previousIndex);
-                    }
-
-                    if(i==0){
-                        renderingContext.switchToDisplayCRS();
-                        renderingContext.getGraphics().drawImage(buffer, 0,0,null);
-                        //remove buffer from cache
-                        buffers.remove(index);
-                    }
-                }
-
-                previousIndex = index;
-                previousBuffer = buffer;
-            }
-            return valid;
-        }
+    public int getParallelism() {
+        return parallelism;
     }
 
     /**
-     * Wake the dispatching thread.
+     * Statistics of the last rendering, in layer order.
+     * Layers not painted because the rendering was stopped or failed are absent.
+     *
+     * @return unmodifiable list, never null
      */
-    private synchronized void wake() {
-        notifyAll();
+    public List<LayerStatistics> getStatistics() {
+        return Collections.unmodifiableList(statistics);
     }
 
     /**
-     * Make sleep the dispatch thread.
+     * Clear the statistics of the last rendering.
      */
-    private synchronized void block() {
-        try {
-            wait();
-        } catch (InterruptedException ex) {
-            ex.printStackTrace();
-        }
-    }
-
-    /**
-     * Build a temporary bufferImage of the canvas size.
-     */
-    private BufferedImage buildBuffer(){
-        final Rectangle rect = renderingContext.getCanvasDisplayBounds();
-        return new BufferedImage( rect.width, rect.height, BufferedImage.TYPE_INT_ARGB );
+    public void dispose() {
+        statistics.clear();
     }
 
-    /**
-     * Check the type of the buffer,
-     * @return if the type is correct the original buffer is returned otherwise
-     * a new buffer is created and the content of the old buffer is painted on the
-     * new one.
-     */
-    private BufferedImage validateBuffer(final BufferedImage buffer){
+    public void render(){
+        statistics.clear();
 
-        if(buffer.getType() != BufferedImage.TYPE_INT_ARGB){
-            final BufferedImage newBuffer = buildBuffer();
-            newBuffer.getGraphics().drawImage(buffer, 0, 0, null);
-            return newBuffer;
+        final List<MapItem> layers = new ArrayList<>();
+        final List<GraphicJ2D> graphics = new ArrayList<>();
+        for (final MapItem child : context.items()) {
+            //we ignore invisible layers
+            if (!child.isVisible()) continue;
+            final GraphicJ2D gra = layerGraphics.get(child);
+            if (gra == null) {
+                LOGGER.log(Level.WARNING, "No graphic object affected to layer : {0}", child.getName());
+                continue;
+            }
+            layers.add(child);
+            graphics.add(gra);
         }
 
-        return buffer;
-    }
-
-    public void render(){
-        final List<MapItem> layers = context.items();
-
         final int size = layers.size();
-        if(size == 0){
-            return;
-        }else if(size == 1){
+        final int nbWorker = Math.min(parallelism, size) - 1;
+        final CanvasMonitor monitor = renderingContext.getMonitor();
+
+        if (nbWorker <= 0) {
             //bypass threading
-            final MapItem child = layers.get(0);
-            if (!child.isVisible()) {
-                return;
+            for (int i = 0; i < size; i++) {
+                if (monitor.stopRequested()) break;
+                paintDirect(layers.get(i), graphics.get(i));
             }
-            final GraphicJ2D gra = layerGraphics.get(child);
-            gra.paint(renderingContext);
             return;
         }
 
-        for (final MapItem child : layers) {
-
-            //we ignore invisible layers
-            if (!child.isVisible()) {
-                continue;
-            }
+        //contexts are created before any painting, creation reads the state
+        //of the canvas context which is not thread safe
+        final Rectangle rect = renderingContext.getCanvasDisplayBounds();
+        final RenderingHints hints = (RenderingHints) renderingContext.getGraphics().getRenderingHints().clone();
+        final RenderingContext2D[] contexts = new RenderingContext2D[size];
+        final Graphics2D template = (Graphics2D) renderingContext.getGraphics().create();
+        for (int i = 0; i < size; i++) {
+            contexts[i] = renderingContext.create(template);
+        }
+        template.dispose();
 
-            final int zOrder = layers.indexOf(child);
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<BufferedImage>[] results = new CompletableFuture[size];
+        final long[] times = new long[size];
+        for (int i = 0; i < size; i++) {
+            results[i] = new CompletableFuture<>();
+        }
 
-            synchronized(buffers){
-                buffers.put(zOrder, null);
+        //layers are claimed in order, by the workers or by the calling thread.
+        //a worker takes a permit before claiming a layer, the permit is given
+        //back once the layer buffer is composited or if no buffer is produced.
+        final AtomicInteger next = new AtomicInteger();
+        final Semaphore inFlight = new Semaphore(nbWorker);
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    inFlight.acquireUninterruptibly();
+                    final int i = next.getAndIncrement();
+                    if (i >= size) {
+                        inFlight.release();
+                        return;
+                    }
+                    if (monitor.stopRequested()) {
+                        inFlight.release();
+                        results[i].complete(null);
+                        continue;
+                    }
+                    final BufferedImage buffer = BUFFERS.acquire(rect.width, rect.height);
+                    final Graphics2D g = buffer.createGraphics();
+                    g.setRenderingHints(hints);
+                    final long start = System.nanoTime();
+                    try {
+                        contexts[i].initGraphic(g);
+                        graphics.get(i).paint(contexts[i]);
+                        times[i] = System.nanoTime() - start;
+                        results[i].complete(buffer);
+                    } catch (Throwable ex) {
+                        BUFFERS.release(buffer);
+                        inFlight.release();
+                        results[i].completeExceptionally(ex);
+                    } finally {
+                        g.dispose();
+                    }
+                }
             }
+        };
+        for (int i = 0; i < nbWorker; i++) {
+            EXECUTOR.execute(worker);
+        }
 
-            final Runnable call = new Runnable() {
-                @Override
-                public void run() {
-                    final BufferedImage img = buildBuffer();
-                    final RenderingContext2D tc = renderingContext.create(img.createGraphics());
-                    final GraphicJ2D gra = layerGraphics.get(child);
-
-                    gra.paint(tc);
-
-                    synchronized(buffers){
-                        buffers.put(zOrder, img);
-                    }
+        int i = 0;
+        try {
+            for (; i < size; i++) {
+                if (monitor.stopRequested()) break;
 
-                    //we wake the dispatch thread that may be waiting for it
-                    wake();
+                if (next.compareAndSet(i, i + 1)) {
+                    //no worker started this layer, all layers below are composited
+                    paintDirect(layers.get(i), graphics.get(i));
+                    continue;
                 }
-            };
-
-            executor.execute(call);
-        }
 
+                final BufferedImage buffer;
+                try {
+                    buffer = results[i].get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    monitor.exceptionOccured((cause instanceof Exception) ? (Exception) cause : ex, Level.WARNING);
+                    continue;
+                }
+                if (buffer == null) continue;
 
-        //we now wait for every rendering to finish
-        synchronized(this){
-            while (!pack()) {
-                block();
+                renderingContext.switchToDisplayCRS();
+                renderingContext.getGraphics().drawImage(buffer, 0, 0, null);
+                addStatistics(layers.get(i), times[i], LayerBufferPool.bytes(buffer));
+                BUFFERS.release(buffer);
+                inFlight.release();
+            }
+        } finally {
+            //stop the workers, wake those waiting for a permit,
+            //and recycle the buffers of layers still painting
+            next.set(size);
+            inFlight.release(nbWorker);
+            for (; i < size; i++) {
+                results[i].thenAccept((BufferedImage buffer) -> {
+                    if (buffer != null) BUFFERS.release(buffer);
+                });
             }
         }
-
     }
 
+    /**
+     * Paint a layer on the canvas context.
+     */
+    private void paintDirect(final MapItem layer, final GraphicJ2D gra) {
+        final long start = System.nanoTime();
+        try {
+            gra.paint(renderingContext);
+        } catch (RuntimeException ex) {
+            renderingContext.getMonitor().exceptionOccured(ex, Level.WARNING);
+            return;
+        }
+        addStatistics(layer, System.nanoTime() - start, 0);
+    }
 
-//    /**
-//     * {@inheritDoc }
-//     */
-//    public void render() {
-//
-//        final List<MapLayer> layers = context.layers();
-//
-//        final Rectangle rect = renderingContext.getCanvasDisplayBounds();
-//        final int width = rect.width;
-//        final int height = rect.height;
-//
-//        //first pass to start threads for dynamic layers
-//        for (final MapLayer layer : layers) {
-//
-//            //we ignore invisible layers
-//            if (!layer.isVisible()) {
-//                continue;
-//            }
-//
-//            if (layer instanceof DynamicMapLayer) {
-//                final StatelessDynamicLayerJ2D gra = (StatelessDynamicLayerJ2D) layerGraphics.get(layer);
-//                final int zOrder = layers.indexOf(layer);
-//                buffers.put(zOrder, null);
-//
-//                //start a separate thread that handle the distant serveur
-//                new Thread() {
-//
-//                    @Override
-//                    public void run() {
-//                        BufferedImage img = null;
-//                        Object obj = null;
-//                        try {
-//                            obj = gra.query(renderingContext);
-//                        } catch (PortrayalException ex) {
-//                            img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-//                            Logging.getLogger("org.geotoolkit.display2d.container").log(Level.WARNING, null, ex);
-//                        }
-//
-//                        if(obj instanceof BufferedImage){
-//                            img = (BufferedImage) obj;
-//                        }else if(obj instanceof Image){
-//                            final BufferedImage buffer = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
-//                            final Graphics2D g2 = buffer.createGraphics();
-//                            g2.drawImage((Image)obj, 0,0,null);
-//                            g2.dispose();
-//                            img = buffer;
-//                        }else if(obj instanceof RenderedImage){
-//                            final BufferedImage buffer = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
-//                            final Graphics2D g2 = buffer.createGraphics();
-//                            g2.drawRenderedImage( (RenderedImage)obj, new AffineTransform());
-//                            g2.dispose();
-//                            img = buffer;
-//                        }else if(obj instanceof RenderableImage){
-//                            final BufferedImage buffer = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
-//                            final Graphics2D g2 = buffer.createGraphics();
-//                            g2.drawRenderableImage( (RenderableImage)obj, new AffineTransform());
-//                            g2.dispose();
-//                            img = buffer;
-//                        }else if(obj instanceof URL){
-//                            BufferedImage buffer = null;
-//                            try {
-//                                buffer = ImageIO.read((URL) obj);
-//                            } catch (IOException ex) {
-//                                Logging.getLogger("org.geotoolkit.display2d.container").log(Level.WARNING, null, ex);
-//                            }
-//                            img = buffer;
-//                        }else{
-//                            final BufferedImage buffer = new BufferedImage(width,height,BufferedImage.TYPE_INT_ARGB);
-//                            //TODO DRAW a message to show that we couldn't paint this layer
-//                            img = buffer;
-//                        }
-//
-//                        synchronized(buffers){
-//                            buffers.put(zOrder, img);
-//                        }
-//
-//                        //we wake the dispatch thread that may be waiting for it
-//                        wake();
-//                    }
-//                }.start();
-//            }
-//        }
-//
-//        //flag used to know if the previous layer is done
-//        boolean previousIsNotReady = false;
-//        RenderingContext2D validContext = null;
-//
-//        for (final MapLayer layer : layers) {
-//
-//            //we ignore invisible layers
-//            if (!layer.isVisible()) {
-//                continue;
-//            }
-//
-//            if (layer instanceof DynamicMapLayer) {
-//                // A dynamic layer
-//                final int zOrder = layers.indexOf(layer);
-//
-//                //see if the distant layer has finished rendering
-//                final Image layerImage = buffers.get(new Integer(zOrder));
-//                if (layerImage != null) {
-//                    //the distant layer has finished rendering
-//                    //we can directly paint the result image
-//
-//                    if (previousIsNotReady) {
-//                        //if the previous laye was distant and not ready we have to create a temp buffer.
-//                        final BufferedImage buffer = buildBuffer();
-//                        //append the buffer in the buffers set
-//                        buffers.put(layers.indexOf(layer), buffer);
-//
-//                        if(validContext != null && validContext != renderingContext){
-//                            //the context is not the main rendering context, we dispose it
-////                            validContext.gdisposeGraphics();
-////                            validContext.setGraphics(null, null);
-//                        }
-//
-//                        //create a new rendering context using the bufferedimage
-//                        validContext = renderingContext.create(buffer.createGraphics());
-//                    } else {
-//                        //we use the last valid rendering context or the default one.
-//                        if (validContext == null) {
-//                            validContext = renderingContext;
-//                        }
-//                    }
-//
-//                    validContext.switchToDisplayCRS();
-//                    validContext.getGraphics().drawImage(layerImage, 0, 0, null);
-//
-//                    previousIsNotReady = false;
-//                } else {
-//                    //Distant layer is not ready, we will have to wait
-//                    previousIsNotReady = true;
-//                }
-//
-//            } else {
-//                // A normal feature layer
-//                final GraphicJ2D gra = layerGraphics.get(layer);
-//
-//                if (previousIsNotReady) {
-//                    //if the previous laye was distant and not ready we have to create a temp buffer.
-//                    final BufferedImage buffer = buildBuffer();
-//                    //append the buffer in the buffers set
-//                    buffers.put(layers.indexOf(layer), buffer);
-//
-//                    if(validContext != null && validContext != renderingContext){
-//                        //the context is not the main rendering context, we dispose it
-////                        validContext.disposeGraphics();
-////                        validContext.setGraphics(null, null);
-//                    }
-//
-//                    //create a new rendering context using the bufferedimage
-//                    validContext = renderingContext.create(buffer.createGraphics());
-//                } else {
-//                    //we use the last valid rendering context or the default one.
-//                    if (validContext == null) {
-//                        validContext = renderingContext;
-//                    }
-//                }
-//
-//                gra.paint(validContext);
-//                previousIsNotReady = false;
-//            }
-//
-//        }
-//
-//        //we now wait for every rendering to finish
-//        synchronized(this){
-//            while (!pack()) {
-//                block();
-//            }
-//        }
-//
-//    }
+    private void addStatistics(final MapItem layer, final long time, final long bytes) {
+        final LayerStatistics stat = new LayerStatistics(layer, time, bytes);
+        statistics.add(stat);
+        LOGGER.log(Level.FINE, "Layer rendered {0}", stat);
+    }
 
 }
@@ -0,0 +1,196 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.style.labeling.candidate;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Uniform grid of the labels placed on a canvas.
+ * Each label is registered in the cells covered by its display bounds,
+ * a collision test only compares the labels of the cells covered by the
+ * tested candidate instead of all placed labels.
+ * Point labels are compared with their rotated rectangle, linear labels
+ * with the bounds of their line.
+ *
+ * @module
+ */
+public class LabelIndex {
+
+    private static final int MIN_CELL_SIZE = 32;
+    /** Number of cells along the largest canvas side. */
+    private static final int NB_CELL = 32;
+
+    private final int minX;
+    private final int minY;
+    private final int cellSize;
+    private final int nbX;
+    private final int nbY;
+
+    /** Label identifiers in each cell, length of each cell in cellLength. */
+    private final int[][] cells;
+    private final int[] cellLength;
+
+    private Candidate[] labels = new Candidate[64];
+    /** minX, minY, maxX, maxY of each label. */
+    private double[] envelopes = new double[64 * 4];
+    /** Last query each label was tested in, avoid testing twice labels in several cells. */
+    private int[] stamps = new int[64];
+    private int count;
+    private int query;
+
+    /**
+     * @param bounds canvas display bounds
+     */
+    public LabelIndex(final Rectangle bounds) {
+        minX = bounds.x;
+        minY = bounds.y;
+        cellSize = Math.max(MIN_CELL_SIZE, (Math.max(bounds.width, bounds.height) + NB_CELL - 1) / NB_CELL);
+        nbX = Math.max(1, (bounds.width + cellSize - 1) / cellSize);
+        nbY = Math.max(1, (bounds.height + cellSize - 1) / cellSize);
+        cells = new int[nbX * nbY][];
+        cellLength = new int[nbX * nbY];
+    }
+
+    /**
+     * @return number of labels in the index
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Test if the candidate intersects a label of the index.
+     */
+    public boolean intersects(final PointCandidate candidate) {
+        final double[] env = getDisplayBounds(candidate, new double[4]);
+        if (++query == 0) {
+            //counter overflow, reset stamps
+            Arrays.fill(stamps, 0);
+            query = 1;
+        }
+        final int cx0 = cellX(env[0]), cx1 = cellX(env[2]);
+        final int cy0 = cellY(env[1]), cy1 = cellY(env[3]);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                final int cell = cy * nbX + cx;
+                final int[] ids = cells[cell];
+                for (int i = 0, n = cellLength[cell]; i < n; i++) {
+                    final int id = ids[i];
+                    if (stamps[id] == query) continue;
+                    stamps[id] = query;
+                    final int e = id * 4;
+                    if (envelopes[e] >= env[2] || envelopes[e + 2] <= env[0]
+                     || envelopes[e + 1] >= env[3] || envelopes[e + 3] <= env[1]) {
+                        continue;
+                    }
+                    final Candidate label = labels[id];
+                    if (!(label instanceof PointCandidate)
+                            || LabelingUtilities.intersects(candidate, (PointCandidate) label)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a label in the index.
+     */
+    public void add(final PointCandidate candidate) {
+        add(candidate, getDisplayBounds(candidate, new double[4]));
+    }
+
+    /**
+     * Add a linear label in the index, point labels intersecting the bounds of its line will collide.
+     */
+    public void add(final LinearCandidate candidate) {
+        final Rectangle2D bounds = candidate.getShape().getBounds2D();
+        add(candidate, new double[]{bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY()});
+    }
+
+    private void add(final Candidate candidate, final double[] env) {
+        if (count == labels.length) {
+            labels = Arrays.copyOf(labels, count * 2);
+            envelopes = Arrays.copyOf(envelopes, count * 2 * 4);
+            stamps = Arrays.copyOf(stamps, count * 2);
+        }
+        final int id = count++;
+        labels[id] = candidate;
+        System.arraycopy(env, 0, envelopes, id * 4, 4);
+
+        final int cx0 = cellX(env[0]), cx1 = cellX(env[2]);
+        final int cy0 = cellY(env[1]), cy1 = cellY(env[3]);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                final int cell = cy * nbX + cx;
+                int[] ids = cells[cell];
+                if (ids == null) {
+                    ids = cells[cell] = new int[8];
+                } else if (cellLength[cell] == ids.length) {
+                    ids = cells[cell] = Arrays.copyOf(ids, ids.length * 2);
+                }
+                ids[cellLength[cell]++] = id;
+            }
+        }
+    }
+
+    /**
+     * Remove all labels.
+     */
+    public void clear() {
+        Arrays.fill(cells, null);
+        Arrays.fill(cellLength, 0);
+        Arrays.fill(labels, 0, count, null);
+        count = 0;
+    }
+
+    private int cellX(final double x) {
+        return Math.max(0, Math.min(nbX - 1, (int) Math.floor((x - minX) / cellSize)));
+    }
+
+    private int cellY(final double y) {
+        return Math.max(0, Math.min(nbY - 1, (int) Math.floor((y - minY) / cellSize)));
+    }
+
+    /**
+     * Compute the display bounds of a label, rotation and correction included.
+     *
+     * @param candidate label
+     * @param env array of length 4 where to store minX, minY, maxX, maxY
+     * @return env
+     */
+    public static double[] getDisplayBounds(final PointCandidate candidate, final double[] env) {
+        //same transform as LabelingUtilities.intersects
+        final AffineTransform trs = new AffineTransform();
+        trs.translate(candidate.x + candidate.correctionX, candidate.y + candidate.correctionY);
+        trs.rotate(Math.toRadians(candidate.getDescriptor().getRotation()));
+        trs.translate(0, -candidate.upper);
+        final int height = candidate.upper + candidate.lower;
+        final double[] pts = {0, 0, candidate.width, 0, 0, height, candidate.width, height};
+        trs.transform(pts, 0, pts, 0, 4);
+        env[0] = Math.min(Math.min(pts[0], pts[2]), Math.min(pts[4], pts[6]));
+        env[1] = Math.min(Math.min(pts[1], pts[3]), Math.min(pts[5], pts[7]));
+        env[2] = Math.max(Math.max(pts[0], pts[2]), Math.max(pts[4], pts[6]));
+        env[3] = Math.max(Math.max(pts[1], pts[3]), Math.max(pts[5], pts[7]));
+        return env;
+    }
+
+}
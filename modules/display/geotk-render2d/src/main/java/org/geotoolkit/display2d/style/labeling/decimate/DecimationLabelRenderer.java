@@ -17,11 +17,16 @@
 package org.geotoolkit.display2d.style.labeling.decimate;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.display2d.canvas.RenderingContext2D;
 import org.geotoolkit.display2d.style.labeling.DefaultLabelRenderer;
 import org.geotoolkit.display2d.style.labeling.LabelDescriptor;
@@ -29,25 +34,84 @@ import org.geotoolkit.display2d.style.labeling.LabelLayer;
 import org.geotoolkit.display2d.style.labeling.LinearLabelDescriptor;
 import org.geotoolkit.display2d.style.labeling.PointLabelDescriptor;
 import org.geotoolkit.display2d.style.labeling.candidate.Candidate;
-import org.geotoolkit.display2d.style.labeling.candidate.LabelingUtilities;
+import org.geotoolkit.display2d.style.labeling.candidate.LabelIndex;
 import org.geotoolkit.display2d.style.labeling.candidate.LinearCandidate;
 import org.geotoolkit.display2d.style.labeling.candidate.PointCandidate;
 
 /**
  * Label renderer that apply a simple decimation on labels to remove all
- * overlaping labels and labels partly visible on the map edges.
+ * overlaping labels and labels outside of the map.
+ * <p>
+ * Candidates are placed by decreasing {@link Candidate#getPriority() priority},
+ * candidates of same priority in the order of their layers, then in the order
+ * they were added. Linear labels are always placed, point labels overlapping a
+ * placed label are removed. Placed labels are kept in a {@link LabelIndex} so
+ * each collision test only looks at nearby labels.
+ * </p>
  *
  * @author Johann Sorel (Geomatys)
  * @module
  */
 public class DecimationLabelRenderer extends DefaultLabelRenderer{
 
-    private final SortedSet<Candidate> candidates = new TreeSet<Candidate>(LabelingUtilities.XY_COMPARATOR);
+    private static final Logger LOGGER = Logging.getLogger("org.geotoolkit.display2d.style.labeling.decimate");
+
+    /**
+     * Result of the label placement of the last frame.
+     */
+    public static final class Statistics {
+
+        private final int placed;
+        private final int rejected;
+        private final int clipped;
+        private final long time;
+
+        private Statistics(final int placed, final int rejected, final int clipped, final long time) {
+            this.placed = placed;
+            this.rejected = rejected;
+            this.clipped = clipped;
+            this.time = time;
+        }
+
+        /**
+         * @return number of labels painted
+         */
+        public int getPlaced() {
+            return placed;
+        }
+
+        /**
+         * @return number of candidates removed because they overlap a placed label
+         */
+        public int getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return number of candidates removed because they are outside the canvas
+         */
+        public int getClipped() {
+            return clipped;
+        }
+
+        /**
+         * @return time spent placing and painting the labels, in nanoseconds
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return "placed " + placed + ", rejected " + rejected + ", clipped " + clipped + ", " + time / 1000000 + "ms";
+        }
+    }
 
     private final List<LabelLayer> layers = new ArrayList<LabelLayer>();
 
     private PointLabelCandidateRenderer pointRenderer;
     private LinearLabelCandidateRenderer LinearRenderer;
+    private Statistics statistics;
 
     public DecimationLabelRenderer() {
     }
@@ -79,64 +143,118 @@ public class DecimationLabelRenderer extends DefaultLabelRenderer{
      * {@inheritDoc }
      */
     @Override
-    public void append(final LabelLayer layer) {
+    public synchronized void append(final LabelLayer layer) {
         layers.add(layer);
     }
 
+    /**
+     * Statistics of the last call to {@link #portrayLabels() }.
+     *
+     * @return statistics, null if labels were never portrayed
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * {@inheritDoc }
      */
     @Override
-    public void portrayLabels(){
+    public synchronized void portrayLabels(){
+        final long start = System.nanoTime();
         final Graphics2D g2 = context.getGraphics();
         //enable antialiasing for labels
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        //paint the remaining candidates
-        for(Candidate candidate : candidates){
-            if(candidate instanceof PointCandidate){
+        //candidates in the order of the layers provided
+        List<Candidate> candidates = new ArrayList<>();
+        for (LabelLayer layer : layers) {
+            if (layer instanceof DecimateLabelLayer) {
+                final List<Candidate> cs = ((DecimateLabelLayer) layer).candidates;
+                synchronized (cs) {
+                    candidates.addAll(cs);
+                }
+            }
+        }
+        layers.clear();
+
+        final int nbCandidate = candidates.size();
+        candidates = optimize(candidates);
+        final int clipped = nbCandidate - candidates.size();
+
+        //place the candidates, points overlapping a placed label are rejected
+        final LabelIndex index = new LabelIndex(context.getCanvasDisplayBounds());
+        int placed = 0;
+        for (Candidate candidate : candidates) {
+            if (candidate instanceof PointCandidate) {
+                final PointCandidate pc = (PointCandidate) candidate;
+                if (index.intersects(pc)) continue;
+                index.add(pc);
                 pointRenderer.render(candidate);
-            }else if(candidate instanceof LinearCandidate){
+                placed++;
+            } else if (candidate instanceof LinearCandidate) {
+                index.add((LinearCandidate) candidate);
                 LinearRenderer.render(candidate);
+                placed++;
             }
         }
 
-        layers.clear();
+        statistics = new Statistics(placed, candidates.size() - placed, clipped, System.nanoTime() - start);
+        LOGGER.log(Level.FINE, "Labels {0}", statistics);
     }
 
-    private List<Candidate> optimize(List<Candidate> candidates){
-        candidates = LabelingUtilities.clipOutofBounds(context,candidates);
-        candidates = LabelingUtilities.sortByXY(candidates);
-        return candidates;
+    /**
+     * Remove point candidates entirely outside the canvas and sort candidates by decreasing
+     * priority, the sort is stable so candidates of same priority keep their order.
+     * Labels partly visible on the canvas edges are kept.
+     */
+    private List<Candidate> optimize(final List<Candidate> candidates){
+        final Rectangle bounds = context.getCanvasDisplayBounds();
+        final List<Candidate> visible = new ArrayList<>(candidates.size());
+        final double[] env = new double[4];
+        for (Candidate candidate : candidates) {
+            if (candidate instanceof PointCandidate) {
+                LabelIndex.getDisplayBounds((PointCandidate) candidate, env);
+                if (env[2] < bounds.getMinX() || env[0] > bounds.getMaxX()
+                 || env[3] < bounds.getMinY() || env[1] > bounds.getMaxY()) {
+                    continue;
+                }
+            }
+            visible.add(candidate);
+        }
+        Collections.sort(visible, PRIORITY_COMPARATOR);
+        return visible;
     }
 
+    private static final Comparator<Candidate> PRIORITY_COMPARATOR = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate c1, Candidate c2) {
+            return Integer.compare(c2.getPriority(), c1.getPriority());
+        }
+    };
+
     private class DecimateLabelLayer implements LabelLayer{
 
+        /**
+         * Candidates of the labels, the overlaps are resolved once all layers are painted.
+         */
+        private final List<Candidate> candidates = new ArrayList<>();
+
         private final List<LabelDescriptor> labels = new ArrayList<LabelDescriptor>(){
 
             @Override
             public boolean add(LabelDescriptor label) {
+                final Candidate[] cs;
                 if(label instanceof PointLabelDescriptor){
-                    final Candidate[] pcs = pointRenderer.generateCandidat((PointLabelDescriptor) label);
-                    if(pcs == null) return true;
-                    for(Candidate c : pcs){
-                        final PointCandidate pc = (PointCandidate) c;
-                        pc.setPriority(1);
-                        synchronized(candidates){
-                            if(!LabelingUtilities.intersects(pc,candidates)){
-                                candidates.add(pc);
-                            }else{
-                            }
-                        }
-                    }
+                    cs = pointRenderer.generateCandidat((PointLabelDescriptor) label);
                 }else if(label instanceof LinearLabelDescriptor){
-                    final Candidate[] lcs = LinearRenderer.generateCandidat((LinearLabelDescriptor) label);
-                    for(Candidate c : lcs){
-                        final LinearCandidate lc = (LinearCandidate) c;
-                        lc.setPriority(1);
-                        synchronized(candidates){
-                            candidates.add(lc);
-                        }
+                    cs = LinearRenderer.generateCandidat((LinearLabelDescriptor) label);
+                }else{
+                    cs = null;
+                }
+                if(cs != null){
+                    synchronized(candidates){
+                        candidates.addAll(Arrays.asList(cs));
                     }
                 }
                 return true;
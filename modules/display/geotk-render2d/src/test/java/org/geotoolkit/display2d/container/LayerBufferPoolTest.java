@@ -0,0 +1,71 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.container;
+
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test layer buffer recycling.
+ *
+ * @module
+ */
+public class LayerBufferPoolTest {
+
+    /**
+     * Released buffers are reused and cleared.
+     */
+    @Test
+    public void recycleTest() {
+        final LayerBufferPool pool = new LayerBufferPool(1024 * 1024);
+        final BufferedImage buffer = pool.acquire(10, 20);
+        assertEquals(BufferedImage.TYPE_INT_ARGB, buffer.getType());
+        buffer.setRGB(5, 5, 0xFFFF0000);
+        pool.release(buffer);
+        assertEquals(800, pool.getPooledBytes());
+
+        final BufferedImage reused = pool.acquire(10, 20);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.getRGB(5, 5));
+        assertEquals(0, pool.getPooledBytes());
+
+        //different size
+        assertNotSame(buffer, pool.acquire(20, 10));
+    }
+
+    /**
+     * Pool size is bounded, buffers of other sizes are dropped first.
+     */
+    @Test
+    public void limitTest() {
+        final LayerBufferPool pool = new LayerBufferPool(1000);
+        final BufferedImage small = pool.acquire(10, 10);
+        final BufferedImage big1 = pool.acquire(10, 20);
+        final BufferedImage big2 = pool.acquire(10, 20);
+        pool.release(small);
+        pool.release(big1);
+        //small buffer dropped to make room
+        assertEquals(800, pool.getPooledBytes());
+        pool.release(big2);
+        //pool full, buffer dropped
+        assertEquals(800, pool.getPooledBytes());
+        assertSame(big1, pool.acquire(10, 20));
+        assertNotSame(small, pool.acquire(10, 10));
+    }
+
+}
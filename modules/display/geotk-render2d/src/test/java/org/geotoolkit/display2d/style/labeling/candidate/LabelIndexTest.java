@@ -0,0 +1,95 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.display2d.style.labeling.candidate;
+
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.geotoolkit.display2d.style.labeling.DefaultPointLabelDescriptor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the label collision index gives the same result as a scan of all labels.
+ *
+ * @module
+ */
+public class LabelIndexTest {
+
+    private static PointCandidate candidate(final float x, final float y, final int width, final float rotation) {
+        final DefaultPointLabelDescriptor desc = new DefaultPointLabelDescriptor(
+                "label", null, null, 0, null, 0, 0, 0, 0, rotation, null, null);
+        return new PointCandidate(desc, width, 10, 3, x, y);
+    }
+
+    @Test
+    public void overlapTest() {
+        final LabelIndex index = new LabelIndex(new Rectangle(0, 0, 256, 256));
+        index.add(candidate(10, 20, 50, 0));
+        assertTrue(index.intersects(candidate(40, 25, 50, 0)));
+        assertFalse(index.intersects(candidate(70, 25, 50, 0)));
+        assertFalse(index.intersects(candidate(10, 60, 50, 0)));
+        //rotated label crossing the first one
+        assertTrue(index.intersects(candidate(30, 0, 60, 90)));
+        assertEquals(1, index.size());
+        index.clear();
+        assertEquals(0, index.size());
+        assertFalse(index.intersects(candidate(40, 25, 50, 0)));
+    }
+
+    /**
+     * Point labels collide with the bounds of linear labels.
+     */
+    @Test
+    public void linearTest() {
+        final LabelIndex index = new LabelIndex(new Rectangle(0, 0, 256, 256));
+        index.add(new LinearCandidate(null, new Line2D.Double(100, 100, 200, 100)));
+        assertTrue(index.intersects(candidate(150, 105, 20, 0)));
+        assertTrue(index.intersects(candidate(80, 105, 30, 0)));
+        assertFalse(index.intersects(candidate(150, 130, 20, 0)));
+        assertFalse(index.intersects(candidate(40, 105, 30, 0)));
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Greedy placement with the index and with a linear scan must keep the same labels.
+     */
+    @Test
+    public void randomPlacementTest() {
+        final Random random = new Random(42);
+        final Rectangle bounds = new Rectangle(0, 0, 1024, 768);
+        final LabelIndex index = new LabelIndex(bounds);
+        final List<PointCandidate> placed = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            final PointCandidate c = candidate(
+                    random.nextFloat() * bounds.width,
+                    random.nextFloat() * bounds.height,
+                    10 + random.nextInt(80),
+                    random.nextBoolean() ? 0 : random.nextFloat() * 360);
+            final boolean expected = LabelingUtilities.intersects(c, placed);
+            assertEquals(expected, index.intersects(c));
+            if (!expected) {
+                placed.add(c);
+                index.add(c);
+            }
+        }
+        assertEquals(placed.size(), index.size());
+    }
+
+}
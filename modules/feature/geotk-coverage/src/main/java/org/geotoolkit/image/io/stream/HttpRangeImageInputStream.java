@@ -0,0 +1,342 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+import org.apache.sis.util.logging.Logging;
+
+
+/**
+ * An {@linkplain ImageInputStream Image Input Stream} reading a remote file with HTTP {@code Range} requests.
+ * <p>
+ * Data are kept in a cache of fixed size blocks, the least recently used blocks are discarded.
+ * A read needing several missing blocks fetches all of them in a single request. The first
+ * request, made by {@link #open(URL, Proxy) }, reads ahead the beginning of the file where
+ * image headers (TIFF directories) are usually written.
+ * </p>
+ *
+ * @module
+ */
+public class HttpRangeImageInputStream extends ImageInputStreamImpl {
+    /**
+     * Size of cached blocks, in bytes.
+     */
+    static final int BLOCK_SIZE = 16384;
+
+    /**
+     * Number of bytes read by the first request.
+     */
+    static final int HEADER_SIZE = 4 * BLOCK_SIZE;
+
+    /**
+     * Maximum number of blocks kept in cache.
+     */
+    private static final int MAX_BLOCKS = 1024;
+
+    /**
+     * Maximum number of bytes asked by one request.
+     */
+    private static final int MAX_REQUEST = 8 * 1024 * 1024;
+
+    /**
+     * Maximum number of retries when a connection failed.
+     */
+    private static final int RETRY = 3;
+
+    /**
+     * The remote file.
+     */
+    public final URL url;
+
+    /**
+     * The proxy.
+     */
+    private final Proxy proxy;
+
+    /**
+     * Remote file length.
+     */
+    private final long length;
+
+    /**
+     * Cached blocks by block index, in access order.
+     */
+    private final Map<Long,byte[]> blocks = new LinkedHashMap<Long,byte[]>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long,byte[]> eldest) {
+            return size() > MAX_BLOCKS;
+        }
+    };
+
+    /**
+     * Number of requests sent to the server, used for statistics.
+     */
+    private int requestCount;
+
+    /**
+     * Creates a stream on a remote file whose first bytes have already been read.
+     *
+     * @param url    The remote file.
+     * @param proxy  The proxy to use.
+     * @param length The remote file length.
+     * @param head   The first bytes of the file, may be shorter than the file.
+     */
+    private HttpRangeImageInputStream(final URL url, final Proxy proxy, final long length, final byte[] head) {
+        this.url    = url;
+        this.proxy  = proxy;
+        this.length = length;
+        cache(0, head, head.length);
+        requestCount = 1;
+    }
+
+    /**
+     * Creates a stream reading the given URL with range requests. The beginning of the file is
+     * read by this method.
+     *
+     * @param  url   The remote file.
+     * @param  proxy The proxy to use.
+     * @return The stream, or {@code null} if the server does not support range requests.
+     * @throws IOException If the connection failed.
+     */
+    public static HttpRangeImageInputStream open(final URL url, final Proxy proxy) throws IOException {
+        final HttpURLConnection connection = connect(url, proxy, 0, HEADER_SIZE - 1);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                return null;
+            }
+            final long[] range = contentRange(connection);
+            if (range == null || range[0] != 0 || range[2] < 0) {
+                return null;
+            }
+            final byte[] head = new byte[(int) (range[1] + 1)];
+            readFully(connection, head);
+            return new HttpRangeImageInputStream(url, proxy, range[2], head);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Sends a request for the bytes from {@code first} to {@code last} inclusive.
+     */
+    private static HttpURLConnection connect(final URL url, final Proxy proxy, final long first, final long last)
+            throws IOException
+    {
+        int retry = RETRY;
+        while (true) {
+            final HttpURLConnection connection = (HttpURLConnection)
+                    (Proxy.NO_PROXY.equals(proxy) ? url.openConnection() : url.openConnection(proxy));
+            connection.setRequestProperty("Range", "bytes=" + first + '-' + last);
+            try {
+                connection.getResponseCode();
+                return connection;
+            } catch (SocketException exception) {
+                connection.disconnect();
+                if (--retry < 0) {
+                    throw exception;
+                }
+                Logging.recoverableException(null, HttpRangeImageInputStream.class, "connect", exception);
+            }
+        }
+    }
+
+    /**
+     * Parses the {@code Content-Range} header, formatted as {@code "bytes first-last/length"}.
+     *
+     * @return The first and last bytes and the file length, which is -1 if unknown,
+     *         or {@code null} if the header is missing or malformed.
+     */
+    static long[] contentRange(final HttpURLConnection connection) {
+        final String header = connection.getHeaderField("Content-Range");
+        if (header == null || !header.startsWith("bytes ")) {
+            return null;
+        }
+        final int dash  = header.indexOf('-');
+        final int slash = header.indexOf('/');
+        if (dash < 0 || slash < dash) {
+            return null;
+        }
+        try {
+            final String total = header.substring(slash + 1).trim();
+            return new long[] {
+                Long.parseLong(header.substring(6, dash).trim()),
+                Long.parseLong(header.substring(dash + 1, slash).trim()),
+                "*".equals(total) ? -1 : Long.parseLong(total)
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void readFully(final HttpURLConnection connection, final byte[] data) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            int n = 0;
+            while (n < data.length) {
+                final int r = in.read(data, n, data.length - n);
+                if (r < 0) {
+                    throw new EOFException("Response from " + connection.getURL() + " is shorter than its range.");
+                }
+                n += r;
+            }
+        }
+    }
+
+    /**
+     * Stores the given bytes in the cache, {@code data} starts at the beginning of block {@code firstBlock}.
+     * The last block is stored only if complete or at the end of file.
+     */
+    private void cache(final long firstBlock, final byte[] data, final int dataLength) {
+        for (int off = 0; off < dataLength; off += BLOCK_SIZE) {
+            final int len = Math.min(BLOCK_SIZE, dataLength - off);
+            final long index = firstBlock + off / BLOCK_SIZE;
+            if (len == BLOCK_SIZE || index * BLOCK_SIZE + len == length) {
+                final byte[] block = new byte[len];
+                System.arraycopy(data, off, block, 0, len);
+                blocks.put(index, block);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests sent to the server since this stream has been opened.
+     *
+     * @return Number of HTTP requests.
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the remote file length.
+     */
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns {@code true} since blocks are cached in memory.
+     */
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+
+    /**
+     * Returns {@code true} since blocks are cached in memory.
+     */
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+
+    /**
+     * Reads one byte.
+     */
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xFF);
+    }
+
+    /**
+     * Reads up to {@code len} bytes. Missing blocks needed by this read are fetched in one request,
+     * cached blocks at the end of the read are not asked again.
+     */
+    @Override
+    public int read(final byte[] b, final int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= length) {
+            return -1;
+        }
+        len = (int) Math.min(len, length - streamPos);
+        final long end = streamPos + len;
+        int n = 0;
+        while (n < len) {
+            final long position = streamPos + n;
+            final long index = position / BLOCK_SIZE;
+            final int inBlock = (int) (position - index * BLOCK_SIZE);
+            final byte[] block = blocks.get(index);
+            if (block != null) {
+                final int count = Math.min(block.length - inBlock, len - n);
+                System.arraycopy(block, inBlock, b, off + n, count);
+                n += count;
+                continue;
+            }
+            //-- fetch missing blocks up to the last one not in cache --//
+            long last = Math.min((end - 1) / BLOCK_SIZE, index + MAX_REQUEST / BLOCK_SIZE - 1);
+            while (last > index && blocks.containsKey(last)) last--;
+            final long first = index * BLOCK_SIZE;
+            final byte[] data = fetch(first, Math.min((last + 1) * BLOCK_SIZE, length) - 1);
+            cache(index, data, data.length);
+            final int count = (int) Math.min(data.length - inBlock, len - n);
+            System.arraycopy(data, inBlock, b, off + n, count);
+            n += count;
+        }
+        streamPos += n;
+        return n;
+    }
+
+    /**
+     * Sends a request for the bytes from {@code first} to {@code last} inclusive.
+     */
+    private byte[] fetch(final long first, final long last) throws IOException {
+        requestCount++;
+        final HttpURLConnection connection = connect(url, proxy, first, last);
+        try {
+            final int code = connection.getResponseCode();
+            final long[] range = contentRange(connection);
+            if (code != HttpURLConnection.HTTP_PARTIAL || range == null || range[0] != first || range[1] != last) {
+                throw new IIOException("Unexpected response " + code + " to range request " + first + '-' + last
+                        + " on " + url);
+            }
+            final byte[] data = new byte[(int) (last - first + 1)];
+            readFully(connection, data);
+            return data;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Discards cached blocks.
+     */
+    @Override
+    public void close() throws IOException {
+        super.close();
+        blocks.clear();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Locale;
+import javax.imageio.spi.ImageInputStreamSpi;
+import javax.imageio.spi.ServiceRegistry;
+import javax.imageio.stream.ImageInputStream;
+
+
+/**
+ * A service provider for creating {@link HttpRangeImageInputStream}s from {@code http} and
+ * {@code https} {@link URL}s. Other URLs, and servers which do not support range requests,
+ * are handled as by {@link UrlInputSpi}, which downloads the whole file in a cache.
+ * <p>
+ * This provider is ordered before the other providers of {@link URL} inputs at registration.
+ * </p>
+ *
+ * @module
+ */
+public class HttpRangeInputSpi extends UrlInputSpi {
+    /**
+     * The proxy.
+     */
+    private final Proxy proxy;
+
+    /**
+     * Creates a new instance with no proxy.
+     */
+    public HttpRangeInputSpi() {
+        this(Proxy.NO_PROXY);
+    }
+
+    /**
+     * Creates a new instance with the specified proxy.
+     *
+     * @param proxy The proxy to use.
+     */
+    public HttpRangeInputSpi(final Proxy proxy) {
+        super(proxy);
+        this.proxy = proxy;
+    }
+
+    /**
+     * Returns a brief, human-readable description of this service
+     * provider and its associated implementation.
+     */
+    @Override
+    public String getDescription(final Locale locale) {
+        return "Stream from a HTTP URL using range requests."; // TODO: localize
+    }
+
+    /**
+     * Orders this provider before the other providers of {@link URL} inputs.
+     */
+    @Override
+    public void onRegistration(final ServiceRegistry registry, final Class<?> category) {
+        super.onRegistration(registry, category);
+        final Iterator<?> it = registry.getServiceProviders(category, false);
+        while (it.hasNext()) {
+            final Object other = it.next();
+            if (other != this && other instanceof ImageInputStreamSpi
+                    && ((ImageInputStreamSpi) other).getInputClass() == URL.class) {
+                registry.setOrdering((Class) category, this, other);
+            }
+        }
+    }
+
+    /**
+     * Constructs an input stream for an URL, reading remote file by ranges when possible.
+     *
+     * @throws IOException If the stream can not be created.
+     */
+    @Override
+    public ImageInputStream createInputStreamInstance(final Object input,
+            final boolean useCache, final File cacheDir) throws IOException
+    {
+        final URL url = (URL) input;
+        final String protocol = url.getProtocol();
+        if ("http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol)) {
+            final ImageInputStream stream = HttpRangeImageInputStream.open(url, proxy);
+            if (stream != null) {
+                return stream;
+            }
+        }
+        return super.createInputStreamInstance(input, useCache, cacheDir);
+    }
+}
@@ -19,7 +19,9 @@
 /**
  * Services provider for {@linkplain javax.imageio.stream.ImageInputStream image input streams}.
  * This package adds a service provider for creating input stream from URL. The default service
- * provider assumes no {@linkplain java.net.Proxy proxy}.
+ * provider assumes no {@linkplain java.net.Proxy proxy}. Files on HTTP servers supporting range
+ * requests are read by blocks with {@link org.geotoolkit.image.io.stream.HttpRangeImageInputStream}
+ * instead of being downloaded entirely.
  *
  * @author Martin Desruisseaux (IRD)
  * @version 3.00
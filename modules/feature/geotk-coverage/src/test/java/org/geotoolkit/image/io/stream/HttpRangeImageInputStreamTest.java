@@ -0,0 +1,139 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test reading a file from an embedded HTTP server with range requests.
+ *
+ * @module
+ */
+public class HttpRangeImageInputStreamTest extends org.geotoolkit.test.TestBase {
+
+    private static final int LENGTH = 300000;
+
+    private final byte[] file = new byte[LENGTH];
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(file);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/range", exchange -> send(exchange, true));
+        server.createContext("/full", exchange -> send(exchange, false));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void send(final HttpExchange exchange, final boolean supportRange) throws IOException {
+        requests.incrementAndGet();
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        int first = 0;
+        int last = LENGTH - 1;
+        if (supportRange && range != null) {
+            final String[] bounds = range.substring("bytes=".length()).split("-");
+            first = Integer.parseInt(bounds[0]);
+            last  = Math.min(Integer.parseInt(bounds[1]), LENGTH - 1);
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + first + '-' + last + '/' + LENGTH);
+            exchange.sendResponseHeaders(206, last - first + 1);
+        } else {
+            exchange.sendResponseHeaders(200, LENGTH);
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(file, first, last - first + 1);
+        }
+        exchange.close();
+    }
+
+    private URL url(final String context) throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + context);
+    }
+
+    private void assertRead(final ImageInputStream stream, final int position, final int length) throws IOException {
+        final byte[] data = new byte[length];
+        stream.seek(position);
+        stream.readFully(data);
+        assertArrayEquals(Arrays.copyOfRange(file, position, position + length), data);
+    }
+
+    /**
+     * Header is read by the first request, other reads only ask missing blocks.
+     */
+    @Test
+    public void rangeTest() throws IOException {
+        try (ImageInputStream stream = new HttpRangeInputSpi().createInputStreamInstance(url("/range"), true, null)) {
+            assertTrue(stream instanceof HttpRangeImageInputStream);
+            final HttpRangeImageInputStream range = (HttpRangeImageInputStream) stream;
+            assertEquals(LENGTH, stream.length());
+            assertEquals(1, requests.get());
+
+            //-- in header --//
+            assertRead(stream, 0, 100);
+            assertRead(stream, 1000, HttpRangeImageInputStream.HEADER_SIZE - 1000);
+            assertEquals(1, range.getRequestCount());
+
+            //-- several blocks in one request, then cached --//
+            assertRead(stream, 100000, 3 * HttpRangeImageInputStream.BLOCK_SIZE);
+            assertEquals(2, range.getRequestCount());
+            assertRead(stream, 100500, 20000);
+            assertEquals(2, range.getRequestCount());
+
+            //-- last partial block --//
+            assertRead(stream, LENGTH - 10, 10);
+            assertEquals(3, range.getRequestCount());
+            assertEquals(-1, stream.read());
+            assertEquals(3, requests.get());
+
+            //-- read crossing cached and missing blocks --//
+            assertRead(stream, 90000, 60000);
+            assertEquals(4, range.getRequestCount());
+        }
+    }
+
+    /**
+     * A server ignoring ranges is read entirely, as by {@link UrlInputSpi}.
+     */
+    @Test
+    public void noRangeTest() throws IOException {
+        try (ImageInputStream stream = new HttpRangeInputSpi().createInputStreamInstance(url("/full"), true, null)) {
+            assertFalse(stream instanceof HttpRangeImageInputStream);
+            assertRead(stream, 200000, 1000);
+            assertRead(stream, 10, 1000);
+        }
+    }
+}
@@ -18,6 +18,8 @@ package org.geotoolkit.index.tree;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.Classes;
 import org.opengis.geometry.Envelope;
@@ -78,6 +80,12 @@ public abstract class AbstractTree<E> implements Tree<E> {
      */
     private Node root;
 
+    /**
+     * Searches share read lock and may run in parallel,
+     * insertions, removals and flush are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
     /**
      * Tree fundation implementation.
      *
@@ -102,17 +110,20 @@ public abstract class AbstractTree<E> implements Tree<E> {
      * {@inheritDoc}
      */
     @Override
-    public synchronized int[] searchID(final Envelope regionSearch) throws StoreIndexException {
+    public int[] searchID(final Envelope regionSearch) throws StoreIndexException {
         ArgumentChecks.ensureNonNull("Envelope regionSearch", regionSearch);
-        final Node root = getRoot();
-         final double[] regSearch = TreeUtilities.getCoords(regionSearch);
-        if (root != null && !root.isEmpty()) {
-            try {
+        final double[] regSearch = TreeUtilities.getCoords(regionSearch);
+        lock.readLock().lock();
+        try {
+            final Node root = getRoot();
+            if (root != null && !root.isEmpty()) {
                 return treeAccess.search(root.getNodeId(), regSearch);
-            } catch (IOException ex) {
-                throw new StoreIndexException(this.getClass().getName()+" impossible to find stored elements at "
-                        +Arrays.toString(regSearch)+" region search area.", ex);
             }
+        } catch (IOException ex) {
+            throw new StoreIndexException(this.getClass().getName()+" impossible to find stored elements at "
+                    +Arrays.toString(regSearch)+" region search area.", ex);
+        } finally {
+            lock.readLock().unlock();
         }
         return new int[0];
     }
@@ -127,11 +138,33 @@ public abstract class AbstractTree<E> implements Tree<E> {
         return new TreeIntegerIdentifierIterator(treeAccess, regSearch);
     }
 
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public TreeIdentifierIterator searchNearest(final double[] point, final int k, final double maxDistance) throws StoreIndexException {
+        ArgumentChecks.ensureNonNull("point", point);
+        ArgumentChecks.ensureDimensionMatches("point", crs.getCoordinateSystem().getDimension(), point);
+        ArgumentChecks.ensureStrictlyPositive("k", k);
+        ArgumentChecks.ensurePositive("maxDistance", maxDistance);
+        for (double d : point)
+            if (Double.isNaN(d))
+                throw new IllegalArgumentException("point coordinates contain at least one NAN value");
+        // results are collected during creation, nodes are not read after the lock is released.
+        lock.readLock().lock();
+        try {
+            return new TreeNearestIdentifierIterator(treeAccess, getRoot(), point.clone(), k, maxDistance);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized int insert(final E object) throws IllegalArgumentException , StoreIndexException{
+    public int insert(final E object) throws IllegalArgumentException , StoreIndexException{
+        lock.writeLock().lock();
         try {
             ArgumentChecks.ensureNonNull("insert : object", object);
             final Envelope env = treeEltMap.getEnvelope(object);
@@ -147,6 +180,8 @@ public abstract class AbstractTree<E> implements Tree<E> {
             return treeIdentifier - 1;
         } catch (IOException ex) {
             throw new StoreIndexException(ex);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -154,6 +189,7 @@ public abstract class AbstractTree<E> implements Tree<E> {
      * {@inheritDoc}
      */
     public void insert(final int identifier, final double... coordinates) throws IllegalArgumentException, StoreIndexException {
+        lock.writeLock().lock();
         try {
             eltCompteur++;
             Node root = getRoot();
@@ -170,6 +206,8 @@ public abstract class AbstractTree<E> implements Tree<E> {
             }
         } catch (IOException ex) {
             throw new StoreIndexException(this.getClass().getName()+"Tree.insert(), impossible to add element.", ex);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -426,7 +464,8 @@ public abstract class AbstractTree<E> implements Tree<E> {
      * {@inheritDoc }.
      */
     @Override
-    public synchronized boolean remove(final E object) throws StoreIndexException {
+    public boolean remove(final E object) throws StoreIndexException {
+        lock.writeLock().lock();
         try {
             ArgumentChecks.ensureNonNull("Object to remove", object);
             final Envelope env = treeEltMap.getEnvelope(object);
@@ -436,10 +475,14 @@ public abstract class AbstractTree<E> implements Tree<E> {
 
         } catch (IOException ex) {
             throw new StoreIndexException(ex);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     public boolean remove(final int entry, Envelope entryEnvelope) throws StoreIndexException {
+        lock.writeLock().lock();
+        try {
             ArgumentChecks.ensureNonNull("Envelope for the entry to remove", entryEnvelope);
             if (!Utilities.equalsIgnoreMetadata(crs, entryEnvelope.getCoordinateReferenceSystem()))
                 throw new IllegalArgumentException("During insertion element should have same CoordinateReferenceSystem as Tree.");
@@ -448,6 +491,9 @@ public abstract class AbstractTree<E> implements Tree<E> {
                 if (Double.isNaN(d))
                     throw new IllegalArgumentException("coordinates contain at least one NAN value");
             return remove(entry, coordinates);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -567,8 +613,13 @@ public abstract class AbstractTree<E> implements Tree<E> {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void clear() throws StoreIndexException {
-        setRoot(null);
+    public void clear() throws StoreIndexException {
+        lock.writeLock().lock();
+        try {
+            setRoot(null);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -599,17 +650,23 @@ public abstract class AbstractTree<E> implements Tree<E> {
      */
     @Override
     public void close() throws IOException {
-        treeAccess.setTreeIdentifier(treeIdentifier);
-        treeAccess.setEltNumber(eltCompteur);
-        treeAccess.close();
-        treeEltMap.close();
+        lock.writeLock().lock();
+        try {
+            treeAccess.setTreeIdentifier(treeIdentifier);
+            treeAccess.setEltNumber(eltCompteur);
+            treeAccess.close();
+            treeEltMap.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
      * {@inheritDoc }.
      */
     @Override
-    public synchronized void flush() throws StoreIndexException {
+    public void flush() throws StoreIndexException {
+        lock.writeLock().lock();
         try {
             treeAccess.setTreeIdentifier(treeIdentifier);
             treeAccess.setEltNumber(eltCompteur);
@@ -617,6 +674,8 @@ public abstract class AbstractTree<E> implements Tree<E> {
             treeEltMap.flush();
         } catch (IOException ex) {
             throw new StoreIndexException("FileBasicRTree : close(). Impossible to close TreeAccessFile.", ex);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -632,6 +691,13 @@ public abstract class AbstractTree<E> implements Tree<E> {
         return treeAccess;
     }
 
+    /**
+     * Return lock which protects tree structure, write lock should be held during all tree modification.
+     */
+    protected ReadWriteLock getLock() {
+        return lock;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,343 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import org.apache.sis.util.ArgumentChecks;
+import org.geotoolkit.index.tree.hilbert.HilbertRTree;
+import static org.geotoolkit.internal.tree.TreeUtilities.*;
+
+/**
+ * Build a {@link Tree} from a large set of boundaries in one pass, with the Sort-Tile-Recursive
+ * (STR) packing algorithm.<br/><br/>
+ *
+ * Entries are buffered in primitive tables until the buffer is full. Each buffer is sorted
+ * slice by slice on every axis, then cut into leaves filled up to {@link Tree#getMaxElements()}.
+ * Leaves are written in the tree as soon as they are packed, only their identifier and boundary
+ * are kept, in primitive tables : besides the buffer, memory is bounded by
+ * {@code (4 + 16 * dimension) * entries / maxElements} bytes. Upper levels are built bottom-up
+ * from these boundaries with the same algorithm, nodes being read back from the tree when
+ * they are attached to their parent. Root is created first, as tree readers expect it at first
+ * node identifier. Leaves and their data are created one after the other, which means that
+ * a {@link org.geotoolkit.internal.tree.TreeAccessFile} is written sequentially.<br/><br/>
+ *
+ * Each buffer is packed on its own : leaves of different buffers may overlap, which makes
+ * searches slower than with a single STR packing of all entries. The buffer size should be
+ * large enough to hold all entries when the query performance matters more than the memory.<br/><br/>
+ *
+ * Note : {@link HilbertRTree} leaves own an additional cell level which can not be packed,
+ * entries are then inserted one by one, in STR order, which still limits node splitting.
+ */
+final class BulkLoader {
+
+    /**
+     * Default number of entries sorted together in memory.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final AbstractTree tree;
+
+    private final int maxElements;
+
+    /**
+     * Maximum number of entries sorted together.
+     */
+    private final int bufferSize;
+
+    /**
+     * Tree space dimension, known from first entry.
+     */
+    private int dim;
+
+    /**
+     * Buffered entries, boundaries are stored in {@link #coords} with a {@code 2 * dim} stride.
+     */
+    private int[] identifiers;
+    private double[] coords;
+    private int count;
+
+    /**
+     * Tree root, created before any other node to keep first node identifier,
+     * or {@code null} if leaves are not packed.
+     */
+    private final Node root;
+
+    /**
+     * Identifiers and boundaries of the leaves built from all previous buffers.
+     */
+    private final NodeList leaves = new NodeList();
+
+    /**
+     * Number of stored elements.
+     */
+    private int eltNumber;
+
+    BulkLoader(final Tree tree, final int bufferSize) throws StoreIndexException {
+        ArgumentChecks.ensureNonNull("bulkLoad : tree", tree);
+        ArgumentChecks.ensureStrictlyPositive("bulkLoad : bufferSize", bufferSize);
+        if (!(tree instanceof AbstractTree)) {
+            throw new IllegalArgumentException("bulkLoad : tree should be an AbstractTree instance.");
+        }
+        if (tree.getElementsNumber() != 0) {
+            throw new IllegalArgumentException("bulkLoad : tree should be empty.");
+        }
+        this.tree        = (AbstractTree) tree;
+        this.maxElements = tree.getMaxElements();
+        this.bufferSize  = bufferSize;
+        if (tree instanceof HilbertRTree) {
+            root = null;
+        } else {
+            if (tree.getRoot() != null) tree.setRoot(null);
+            root = this.tree.createNode(null, IS_LEAF, 0, 0, 0);
+        }
+    }
+
+    /**
+     * Return the lock which should be held during bulk loading of given tree.
+     */
+    static Lock writeLock(final Tree tree) {
+        if (!(tree instanceof AbstractTree)) {
+            throw new IllegalArgumentException("bulkLoad : tree should be an AbstractTree instance.");
+        }
+        return ((AbstractTree) tree).getLock().writeLock();
+    }
+
+    /**
+     * Return the identifier which will be given to the next added entry.
+     */
+    int nextIdentifier() {
+        return tree.treeIdentifier;
+    }
+
+    /**
+     * Add an entry in the tree, buffer is packed when it is full.
+     *
+     * @param boundary entry boundary, as returned by {@link org.geotoolkit.internal.tree.TreeUtilities#getCoords(org.opengis.geometry.Envelope)}.
+     * @return tree identifier given to the entry.
+     */
+    int add(final double[] boundary) throws StoreIndexException {
+        ArgumentChecks.ensureNonNull("bulkLoad : boundary", boundary);
+        for (double d : boundary)
+            if (Double.isNaN(d))
+                throw new IllegalArgumentException("coordinates contain at least one NAN value");
+        if (identifiers == null) {
+            dim = boundary.length >> 1;
+            final int capacity = Math.min(bufferSize, 1024);
+            identifiers = new int[capacity];
+            coords      = new double[capacity * 2 * dim];
+        } else if (boundary.length != dim << 1) {
+            throw new IllegalArgumentException("bulkLoad : all boundaries should have same dimension.");
+        }
+        if (count == identifiers.length) {
+            final int capacity = Math.min(bufferSize, count << 1);
+            identifiers = Arrays.copyOf(identifiers, capacity);
+            coords      = Arrays.copyOf(coords, capacity * 2 * dim);
+        }
+        final int identifier = tree.treeIdentifier++;
+        identifiers[count] = identifier;
+        System.arraycopy(boundary, 0, coords, count * 2 * dim, 2 * dim);
+        if (++count == bufferSize) {
+            packBuffer();
+        }
+        return identifier;
+    }
+
+    /**
+     * Pack remaining entries, build upper levels and set tree root.
+     */
+    void finish() throws StoreIndexException {
+        if (count != 0) packBuffer();
+        if (root == null) return;
+        if (leaves.size == 0) {
+            tree.setRoot(null);
+            return;
+        }
+        try {
+            NodeList level = leaves;
+            while (level.size > maxElements) {
+                level = packLevel(level);
+            }
+            final Node[] nodes = new Node[level.size];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = tree.getTreeAccess().readNode(level.ids[i]);
+            }
+            if (nodes.length == 1) {
+                // only one leaf, root become the leaf.
+                root.addChildren(nodes[0].getChildren());
+                tree.getTreeAccess().removeNode(nodes[0]);
+            } else {
+                root.setProperties((byte) 0);
+                root.addChildren(nodes);
+            }
+            tree.setRoot(root);
+            tree.setElementsNumber(tree.getElementsNumber() + eltNumber);
+        } catch (IOException ex) {
+            throw new StoreIndexException("bulkLoad : impossible to write tree nodes.", ex);
+        }
+        leaves.clear();
+    }
+
+    /**
+     * Sort current buffer in STR order then create its leaves,
+     * or insert its entries one by one for trees which leaves can not be packed.
+     */
+    private void packBuffer() throws StoreIndexException {
+        final int[] order = new int[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        strSort(order, coords, 0, count, 0);
+        final int stride = 2 * dim;
+        try {
+            if (tree instanceof HilbertRTree) {
+                for (int i : order) {
+                    tree.insert(identifiers[i], Arrays.copyOfRange(coords, i * stride, (i + 1) * stride));
+                }
+            } else {
+                for (int from = 0; from < count; from += maxElements) {
+                    final int to = Math.min(count, from + maxElements);
+                    final Node leaf = tree.createNode(null, IS_LEAF, 0, 0, 0);
+                    final Node[] data = new Node[to - from];
+                    for (int j = from; j < to; j++) {
+                        final int i = order[j];
+                        data[j - from] = tree.createNode(Arrays.copyOfRange(coords, i * stride, (i + 1) * stride),
+                                IS_DATA, leaf.getNodeId(), 0, -identifiers[i]);
+                    }
+                    leaf.addChildren(data);
+                    leaves.add(leaf.getNodeId(), leaf.getBoundary());
+                }
+                eltNumber += count;
+            }
+        } catch (IOException ex) {
+            throw new StoreIndexException("bulkLoad : impossible to write tree nodes.", ex);
+        }
+        count = 0;
+    }
+
+    /**
+     * Create a new tree level from the given nodes, grouped in STR order.
+     */
+    private NodeList packLevel(final NodeList children) throws IOException {
+        final int size = children.size;
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        strSort(order, children.bounds, 0, size, 0);
+        final NodeList parents = new NodeList();
+        for (int from = 0; from < size; from += maxElements) {
+            final int to = Math.min(size, from + maxElements);
+            final Node parent = tree.createNode(null, (byte) 0, 0, 0, 0);
+            final Node[] group = new Node[to - from];
+            for (int j = from; j < to; j++) {
+                group[j - from] = tree.getTreeAccess().readNode(children.ids[order[j]]);
+            }
+            parent.addChildren(group);
+            parents.add(parent.getNodeId(), parent.getBoundary());
+        }
+        return parents;
+    }
+
+    /**
+     * Identifiers and boundaries of nodes written in the tree,
+     * boundaries are stored with a {@code 2 * dim} stride.
+     */
+    private final class NodeList {
+        private int[] ids = new int[16];
+        private double[] bounds = new double[0];
+        private int size;
+
+        void add(final int id, final double[] boundary) {
+            final int stride = 2 * dim;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+            if (bounds.length < ids.length * stride) {
+                bounds = Arrays.copyOf(bounds, ids.length * stride);
+            }
+            ids[size] = id;
+            System.arraycopy(boundary, 0, bounds, size * stride, stride);
+            size++;
+        }
+
+        void clear() {
+            ids = new int[16];
+            bounds = new double[0];
+            size = 0;
+        }
+    }
+
+    /**
+     * Sort-Tile-Recursive ordering of {@code order[from, to)}.<br/>
+     * Entries are sorted by center on given axis, then cut into slabs which are
+     * recursively sorted on next axis. Consecutive runs of {@link #maxElements}
+     * entries of the resulting order define packed nodes.
+     */
+    private void strSort(final int[] order, final double[] bounds, final int from, final int to, final int axis) {
+        sort(order, bounds, from, to - 1, axis);
+        if (axis == dim - 1) return;
+        final int nodeCount  = (to - from + maxElements - 1) / maxElements;
+        final int slabNumber = (int) Math.ceil(Math.pow(nodeCount, 1.0 / (dim - axis)));
+        final int slabSize   = maxElements * ((nodeCount + slabNumber - 1) / slabNumber);
+        for (int s = from; s < to; s += slabSize) {
+            strSort(order, bounds, s, Math.min(to, s + slabSize), axis + 1);
+        }
+    }
+
+    /**
+     * Sum of lower and upper boundary on given axis, which sort as the entry center.
+     */
+    private double center(final double[] bounds, final int entry, final int axis) {
+        final int offset = entry * 2 * dim + axis;
+        return bounds[offset] + bounds[offset + dim];
+    }
+
+    /**
+     * Quick sort of {@code order[lo, hi]} indexes by center on given axis.
+     */
+    private void sort(final int[] order, final double[] bounds, int lo, int hi, final int axis) {
+        while (hi - lo > 16) {
+            final double pivot = center(bounds, order[(lo + hi) >>> 1], axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (center(bounds, order[i], axis) < pivot) i++;
+                while (center(bounds, order[j], axis) > pivot) j--;
+                if (i <= j) {
+                    final int tmp = order[i];
+                    order[i++] = order[j];
+                    order[j--] = tmp;
+                }
+            }
+            // recurse on smallest part to bound stack depth.
+            if (j - lo < hi - i) {
+                sort(order, bounds, lo, j, axis);
+                lo = i;
+            } else {
+                sort(order, bounds, i, hi, axis);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            final int cur = order[i];
+            final double c = center(bounds, cur, axis);
+            int j = i - 1;
+            while (j >= lo && center(bounds, order[j], axis) > c) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = cur;
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.List;
 import org.apache.sis.util.ArgumentChecks;
 
 /**
@@ -235,6 +237,28 @@ public abstract class ChannelTreeElementMapper<E> implements TreeElementMapper<E
         return readObject();
     }
 
+    /**
+     * {@inheritDoc }.
+     * Objects are read in file order, each buffer is read at most once.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized List<E> getObjectsFromTreeIdentifiers(final int[] treeIdentifiers) throws IOException {
+        final int n = treeIdentifiers.length;
+        //-- sort positions by identifier, identifier in high bits, position in low bits
+        final long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) treeIdentifiers[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        final Object[] objects = new Object[n];
+        for (long key : order) {
+            adjustBuffer((int) (key >> 32));
+            objects[(int) key] = readObject();
+        }
+        return (List<E>) Arrays.asList(objects);
+    }
+
     /**
      * Put all attributes like just after constructor.
      */
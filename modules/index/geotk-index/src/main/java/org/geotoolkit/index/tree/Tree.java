@@ -54,6 +54,26 @@ public interface Tree<E> extends Closeable {
      */
     TreeIdentifierIterator search(final Envelope regionSearch) throws StoreIndexException;
 
+    /**
+     * Find the {@code k} nearest stored datas from {@code point} and return an appropriate {@code Iterator}
+     * to travel their tree identifiers, in increasing distance order.<br/><br/>
+     *
+     * Distance is the euclidean distance, in tree CRS units, between point and data boundary.
+     * It is zero when point is within data boundary.
+     *
+     * @param point coordinates of searched point, in tree CRS.
+     * @param k maximum number of returned tree identifiers.
+     * @param maxDistance maximum distance between point and returned data,
+     *        may be {@link Double#POSITIVE_INFINITY} for no limit.
+     * @return Iterator on each tree identifier, nearest first.
+     * @throws StoreIndexException if problem during reading first result.
+     * @throws UnsupportedOperationException if this tree does not support nearest search,
+     *         which is the default implementation.
+     */
+    default TreeIdentifierIterator searchNearest(final double[] point, final int k, final double maxDistance) throws StoreIndexException {
+        throw new UnsupportedOperationException("Nearest search is not supported by " + getClass().getSimpleName());
+    }
+
     /**
      * Insert an Object into Rtree.
      *
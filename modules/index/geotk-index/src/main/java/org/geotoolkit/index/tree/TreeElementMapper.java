@@ -17,6 +17,8 @@
 package org.geotoolkit.index.tree;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import org.opengis.geometry.Envelope;
 
@@ -61,6 +63,22 @@ public interface TreeElementMapper<E> {
      */
     public E getObjectFromTreeIdentifier(int treeIdentifier) throws IOException;
 
+    /**
+     * <p>Return objects from their tree identifiers, in the same order.<br/>
+     * Default implementation calls {@link #getObjectFromTreeIdentifier(int)} for each
+     * identifier, implementations should read all objects at once when possible.</p>
+     *
+     * @param treeIdentifiers
+     * @return objects from their tree identifiers, null for identifiers without object.
+     */
+    public default List<E> getObjectsFromTreeIdentifiers(final int[] treeIdentifiers) throws IOException {
+        final List<E> objects = new ArrayList<>(treeIdentifiers.length);
+        for (int treeIdentifier : treeIdentifiers) {
+            objects.add(getObjectFromTreeIdentifier(treeIdentifier));
+        }
+        return objects;
+    }
+
     /**
      * Return the full map of object.
      * This method should be used carrefully with a large number of object.
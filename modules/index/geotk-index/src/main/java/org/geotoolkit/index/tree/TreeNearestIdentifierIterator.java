@@ -0,0 +1,226 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.apache.sis.util.ArraysExt;
+import org.apache.sis.util.collection.BackingStoreException;
+import org.geotoolkit.internal.tree.TreeAccess;
+
+/**
+ * An Iterator which travel tree identifiers in increasing distance order from a point.<br/><br/>
+ *
+ * Travel is a best-first search : Nodes are stored in a priority queue, sorted by the minimum
+ * distance between point and their boundary, and only Nodes which may contain the next nearest
+ * data are read from {@link TreeAccess}. All results are found when the iterator is created,
+ * so the tree only needs to be locked during creation and later writes do not disturb the
+ * iteration.
+ *
+ * @see Tree#searchNearest(double[], int, double)
+ */
+final class TreeNearestIdentifierIterator implements TreeIdentifierIterator {
+
+    /**
+     * A Node or a data waiting in queue, with its distance from searched point.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final double distance;
+        final Node node;
+
+        Entry(final double distance, final Node node) {
+            this.distance = distance;
+            this.node     = node;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            return Double.compare(distance, other.distance);
+        }
+    }
+
+    /**
+     * {@link TreeAccess} which contain all saved {@link Tree} {@link Node}.
+     */
+    private final TreeAccess tAF;
+
+    /**
+     * Searched point coordinates.
+     */
+    private final double[] point;
+
+    /**
+     * Maximum distance between point and returned data.
+     */
+    private final double maxDistance;
+
+    /**
+     * Nodes and data to explore, nearest first.
+     */
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+    /**
+     * Tree identifiers and distances of the results, nearest first.
+     */
+    private int[] identifiers = new int[16];
+    private double[] distances = new double[16];
+    private int count;
+
+    /**
+     * Index of next result to return.
+     */
+    private int position;
+
+    /**
+     * Create an Iterator on the {@code k} nearest data from {@code point}.
+     *
+     * @param tAF TreeAccess which contain all saved Node.
+     * @param root tree root Node, may be {@code null} if tree is empty.
+     * @param point searched point coordinates.
+     * @param k maximum result number.
+     * @param maxDistance maximum distance between point and a result.
+     * @throws StoreIndexException if problem during data reading.
+     */
+    TreeNearestIdentifierIterator(final TreeAccess tAF, final Node root, final double[] point,
+            final int k, final double maxDistance) throws StoreIndexException {
+        this.tAF         = tAF;
+        this.point       = point;
+        this.maxDistance = maxDistance;
+        if (root != null && !root.isEmpty()) {
+            offer(root);
+        }
+        try {
+            while (count < k && findNext());
+        } catch (IOException ex) {
+            throw new StoreIndexException("problem during nearest data search file reading.", ex);
+        }
+        queue.clear();
+    }
+
+    /**
+     * Return the minimum distance between searched point and given boundary.
+     * The distance is zero if point is inside boundary.
+     */
+    private double distance(final double[] boundary) {
+        final int dim = point.length;
+        double sum = 0;
+        for (int i = 0; i < dim; i++) {
+            final double p = point[i];
+            final double d;
+            if (p < boundary[i]) {
+                d = boundary[i] - p;
+            } else if (p > boundary[i + dim]) {
+                d = p - boundary[i + dim];
+            } else {
+                continue;
+            }
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Add Node in queue if it is not empty and may contain data at less than {@link #maxDistance}.
+     */
+    private void offer(final Node node) {
+        final double[] boundary = node.getBoundary();
+        // Hilbert leaf cells may have no boundary.
+        if (boundary == null || ArraysExt.hasNaN(boundary)) return;
+        final double distance = distance(boundary);
+        if (distance <= maxDistance) {
+            queue.add(new Entry(distance, node));
+        }
+    }
+
+    /**
+     * Explore queue until nearest data is on top, and add it to the results.
+     *
+     * @return {@code false} if there is no more data.
+     */
+    private boolean findNext() throws IOException {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            final Node node = entry.node;
+            if (node.isData()) {
+                if (count == identifiers.length) {
+                    identifiers = Arrays.copyOf(identifiers, count << 1);
+                    distances   = Arrays.copyOf(distances, count << 1);
+                }
+                identifiers[count] = -node.getChildId();
+                distances[count++] = entry.distance;
+                return true;
+            }
+            int sibl = node.getChildId();
+            while (sibl > 0) {
+                final Node child = tAF.readNode(sibl);
+                offer(child);
+                sibl = child.getSiblingId();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return distance between searched point and boundary of the data which will be returned by next call to {@link #nextInt()}.
+     *
+     * @return distance of next result.
+     * @throws NoSuchElementException if there is no more result.
+     */
+    double nextDistance() {
+        if (position >= count) throw new NoSuchElementException();
+        return distances[position];
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public int nextInt() throws IOException {
+        if (position >= count) throw new NoSuchElementException();
+        return identifiers[position++];
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean hasNext() {
+        return position < count;
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public Integer next() {
+        try {
+            return nextInt();
+        } catch (IOException ex) {
+            throw new BackingStoreException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+}
@@ -18,6 +18,9 @@ package org.geotoolkit.index.tree;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 import org.apache.sis.geometry.GeneralEnvelope;
 import org.apache.sis.util.ArgumentChecks;
 import org.geotoolkit.filter.SpatialFilterType;
@@ -33,6 +36,11 @@ import org.apache.sis.util.Utilities;
  */
 public final class TreeX {
 
+    /**
+     * Number of tree identifiers resolved at once by the {@link TreeElementMapper}.
+     */
+    private static final int BATCH_SIZE = 1024;
+
     private TreeX() {
     }
 
@@ -54,119 +62,133 @@ public final class TreeX {
         if (!Utilities.equalsIgnoreMetadata(regionSearch.getCoordinateReferenceSystem(), tree.getCrs()))
             throw new IllegalArgumentException("TreeX search : the 2 CRS within tree and region search should be equals.");
         final TreeElementMapper tEM = tree.getTreeElementMapper();
-        TreeIdentifierIterator iterSearch = tree.search(regionSearch);
-        int tabResultLength = 100;
-        int[] tabResult = new int[tabResultLength];
-        int currentPosition = 0;
         try {
+            final int[] candidates;
             switch (logicFilter) {
                 case INTERSECTS : case BBOX : {
                     return tree.searchID(regionSearch);
                 }
-                case CONTAINS : {
-                    while (iterSearch.hasNext()) {
-                        final int currentTreeID = iterSearch.nextInt();
-                         final Envelope env = tEM.getEnvelope(tEM.getObjectFromTreeIdentifier(currentTreeID));
-                        if (contains(getCoords(env), getCoords(regionSearch), true)) {
-                            if (currentPosition == tabResultLength) {
-                                tabResultLength = tabResultLength << 1;
-                                final int[] tabTemp = tabResult;
-                                tabResult = new int[tabResultLength];
-                                System.arraycopy(tabTemp, 0, tabResult, 0, currentPosition);
-                            }
-                            tabResult[currentPosition++] = currentTreeID;
-                        }
-                    }
-                } break;
                 case DISJOINT : {
                     final GeneralEnvelope treeExtends = new GeneralEnvelope(tree.getCrs());
                     treeExtends.setEnvelope(tree.getExtent());
-                    final TreeIdentifierIterator allIter = tree.search(treeExtends);
-
-                    while (allIter.hasNext()) {
-                        final int currentTreeID = allIter.nextInt();
-                         final Envelope env = tEM.getEnvelope(tEM.getObjectFromTreeIdentifier(currentTreeID));
-                        if (!intersects(getCoords(env), getCoords(regionSearch), true)) {
-                            if (currentPosition == tabResultLength) {
-                                tabResultLength = tabResultLength << 1;
-                                final int[] tabTemp = tabResult;
-                                tabResult = new int[tabResultLength];
-                                System.arraycopy(tabTemp, 0, tabResult, 0, currentPosition);
-                            }
-                            tabResult[currentPosition++] = currentTreeID;
-                        }
-                    }
-                } break;
-                case WITHIN : {
-
-                    while (iterSearch.hasNext()) {
-                        final int currentTreeID = iterSearch.nextInt();
-                         final Envelope env = tEM.getEnvelope(tEM.getObjectFromTreeIdentifier(currentTreeID));
-                        if (contains(getCoords(regionSearch), getCoords(env), true)) {
-                            if (currentPosition == tabResultLength) {
-                                tabResultLength = tabResultLength << 1;
-                                final int[] tabTemp = tabResult;
-                                tabResult = new int[tabResultLength];
-                                System.arraycopy(tabTemp, 0, tabResult, 0, currentPosition);
-                            }
-                            tabResult[currentPosition++] = currentTreeID;
-                        }
-                    }
-                } break;
-                case TOUCHES : {
-                    while (iterSearch.hasNext()) {
-                        final int currentTreeID = iterSearch.nextInt();
-                         final Envelope env = tEM.getEnvelope(tEM.getObjectFromTreeIdentifier(currentTreeID));
-                        if (touches(getCoords(regionSearch), getCoords(env))) {
-                            if (currentPosition == tabResultLength) {
-                                tabResultLength = tabResultLength << 1;
-                                final int[] tabTemp = tabResult;
-                                tabResult = new int[tabResultLength];
-                                System.arraycopy(tabTemp, 0, tabResult, 0, currentPosition);
-                            }
-                            tabResult[currentPosition++] = currentTreeID;
-                        }
-                    }
+                    candidates = tree.searchID(treeExtends);
                 } break;
-                case EQUALS : {
-                    while (iterSearch.hasNext()) {
-                        final int currentTreeID = iterSearch.nextInt();
-                         final Envelope env = tEM.getEnvelope(tEM.getObjectFromTreeIdentifier(currentTreeID));
-                        if (arrayEquals(getCoords(env), getCoords(regionSearch), 1E-9)) {
-                            if (currentPosition == tabResultLength) {
-                                tabResultLength = tabResultLength << 1;
-                                final int[] tabTemp = tabResult;
-                                tabResult = new int[tabResultLength];
-                                System.arraycopy(tabTemp, 0, tabResult, 0, currentPosition);
-                            }
-                            tabResult[currentPosition++] = currentTreeID;
-                        }
-                    }
+                case CONTAINS : case WITHIN : case TOUCHES : case EQUALS : case OVERLAPS : {
+                    candidates = tree.searchID(regionSearch);
                 } break;
-                case OVERLAPS : {
+                default : throw new IllegalStateException("not implemented yet");
+            }
 
-                    while (iterSearch.hasNext()) {
-                        final int currentTreeID = iterSearch.nextInt();
-                         final Envelope envelop = tEM.getEnvelope(tEM.getObjectFromTreeIdentifier(currentTreeID));
-                         final double[] env = getCoords(envelop);
-                        if (intersects(getCoords(regionSearch), env, false)
-                        && !contains(env, getCoords(regionSearch), true)
-                        && !contains(getCoords(regionSearch), env, true)) {
-                            if (currentPosition == tabResultLength) {
-                                tabResultLength = tabResultLength << 1;
-                                final int[] tabTemp = tabResult;
-                                tabResult = new int[tabResultLength];
-                                System.arraycopy(tabTemp, 0, tabResult, 0, currentPosition);
-                            }
-                            tabResult[currentPosition++] = currentTreeID;
-                        }
+            //-- candidates objects are read by batch from tree element mapper
+            final double[] region = getCoords(regionSearch);
+            final int[] tabResult = new int[candidates.length];
+            int currentPosition = 0;
+            for (int start = 0; start < candidates.length; start += BATCH_SIZE) {
+                final int[] batch = Arrays.copyOfRange(candidates, start, Math.min(candidates.length, start + BATCH_SIZE));
+                final List objects = tEM.getObjectsFromTreeIdentifiers(batch);
+                for (int i = 0; i < batch.length; i++) {
+                    final Object object = objects.get(i);
+                    if (object == null) continue;
+                    final double[] env = getCoords(tEM.getEnvelope(object));
+                    if (matches(logicFilter, env, region)) {
+                        tabResult[currentPosition++] = batch[i];
                     }
-                } break;
-                default : throw new IllegalStateException("not implemented yet");
+                }
             }
             return Arrays.copyOf(tabResult, currentPosition);
         } catch (IOException ex) {
             throw new StoreIndexException(ex);
         }
     }
+
+    /**
+     * Test a data boundary against the search region.
+     *
+     * @param logicFilter logic operation.
+     * @param env data boundary.
+     * @param region area of search.
+     * @return true if the data match the logic operation.
+     */
+    private static boolean matches(final SpatialFilterType logicFilter, final double[] env, final double[] region) {
+        switch (logicFilter) {
+            case CONTAINS : return contains(env, region, true);
+            case DISJOINT : return !intersects(env, region, true);
+            case WITHIN   : return contains(region, env, true);
+            case TOUCHES  : return touches(region, env);
+            case EQUALS   : return arrayEquals(env, region, 1E-9);
+            case OVERLAPS : return intersects(region, env, false)
+                                && !contains(env, region, true)
+                                && !contains(region, env, true);
+            default : throw new IllegalStateException("not implemented yet");
+        }
+    }
+
+    /**
+     * Fill an empty tree from given boundaries, in one pass.<br/><br/>
+     *
+     * Boundaries are packed bottom-up with the Sort-Tile-Recursive algorithm, which is much faster
+     * than successive {@link Tree#insert(java.lang.Object) insertions} and produces fuller nodes.
+     * Tree identifiers are given consecutively, in iteration order, from the returned value.
+     *
+     * @param tree empty tree to fill.
+     * @param boundaries data boundaries, in the form returned by {@link org.geotoolkit.internal.tree.TreeUtilities#getCoords(org.opengis.geometry.Envelope)}.
+     * @return tree identifier of the first boundary, next boundaries are identified by following integers.
+     * @throws StoreIndexException if problem during tree writing.
+     * @throws IllegalArgumentException if tree is not empty or if a boundary contains NaN value.
+     */
+    public static int bulkLoad(final Tree tree, final Iterator<double[]> boundaries) throws StoreIndexException {
+        ArgumentChecks.ensureNonNull("TreeX bulkLoad : tree", tree);
+        ArgumentChecks.ensureNonNull("TreeX bulkLoad : boundaries", boundaries);
+        final Lock lock = BulkLoader.writeLock(tree);
+        lock.lock();
+        try {
+            final BulkLoader loader = new BulkLoader(tree, BulkLoader.DEFAULT_BUFFER_SIZE);
+            final int first = loader.nextIdentifier();
+            while (boundaries.hasNext()) {
+                loader.add(boundaries.next());
+            }
+            loader.finish();
+            return first;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fill an empty tree from given objects, in one pass.<br/><br/>
+     *
+     * Same as {@link #bulkLoad(org.geotoolkit.index.tree.Tree, java.util.Iterator)} where boundaries
+     * are given by tree {@link TreeElementMapper}, which also records attributed tree identifiers.
+     *
+     * @param tree empty tree to fill.
+     * @param elements objects to store.
+     * @throws StoreIndexException if problem during tree writing.
+     * @throws IllegalArgumentException if tree is not empty or if an object is not in tree CRS.
+     */
+    public static <E> void bulkLoadElements(final Tree<E> tree, final Iterator<? extends E> elements) throws StoreIndexException {
+        ArgumentChecks.ensureNonNull("TreeX bulkLoad : tree", tree);
+        ArgumentChecks.ensureNonNull("TreeX bulkLoad : elements", elements);
+        final Lock lock = BulkLoader.writeLock(tree);
+        lock.lock();
+        try {
+            final BulkLoader loader = new BulkLoader(tree, BulkLoader.DEFAULT_BUFFER_SIZE);
+            final TreeElementMapper<E> tEM = tree.getTreeElementMapper();
+            try {
+                while (elements.hasNext()) {
+                    final E object = elements.next();
+                    ArgumentChecks.ensureNonNull("bulkLoad : object", object);
+                    final Envelope env = tEM.getEnvelope(object);
+                    if (!Utilities.equalsIgnoreMetadata(tree.getCrs(), env.getCoordinateReferenceSystem()))
+                        throw new IllegalArgumentException("During insertion element should have same CoordinateReferenceSystem as Tree.");
+                    tEM.setTreeIdentifier(object, loader.nextIdentifier());
+                    loader.add(getCoords(env));
+                }
+            } catch (IOException ex) {
+                throw new StoreIndexException(ex);
+            }
+            loader.finish();
+        } finally {
+            lock.unlock();
+        }
+    }
 }
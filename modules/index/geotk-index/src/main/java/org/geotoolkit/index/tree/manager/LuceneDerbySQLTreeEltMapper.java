@@ -26,12 +26,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
 
+import org.apache.sis.util.collection.Cache;
 import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.index.tree.TreeElementMapper;
 import org.geotoolkit.internal.sql.DefaultDataSource;
@@ -59,6 +62,16 @@ public class LuceneDerbySQLTreeEltMapper implements TreeElementMapper<NamedEnvel
 
     protected static final Logger LOGGER = Logging.getLogger("org.geotoolkit.index.tree.manager");
 
+    /**
+     * Maximum number of identifiers read by one query.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Recently read envelopes, by tree identifier.
+     */
+    private final Cache<Integer,NamedEnvelope> cache = new Cache<>(1000, 10000, false);
+
     static {
         try {
             Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
@@ -175,6 +188,7 @@ public class LuceneDerbySQLTreeEltMapper implements TreeElementMapper<NamedEnvel
 
     @Override
     public void setTreeIdentifier(final NamedEnvelope env, final int treeIdentifier) throws IOException {
+        cache.remove(treeIdentifier);
         try {
             if (env != null) {
                 final PreparedStatement existStmt = conRO.prepareStatement("SELECT \"id\" FROM \"treemap\".\"records\" WHERE \"id\"=?");
@@ -234,21 +248,17 @@ public class LuceneDerbySQLTreeEltMapper implements TreeElementMapper<NamedEnvel
 
     @Override
     public NamedEnvelope getObjectFromTreeIdentifier(final int treeIdentifier) throws IOException {
-        NamedEnvelope result = null;
+        NamedEnvelope result = cache.get(treeIdentifier);
+        if (result != null) {
+            return result;
+        }
         try {
             final PreparedStatement stmt = conRO.prepareStatement("SELECT * FROM \"treemap\".\"records\" WHERE \"id\"=?");
             stmt.setInt(1, treeIdentifier);
             final ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                final String identifier = rs.getString("identifier");
-                final int nbEnv         = rs.getInt("nbenv");
-                final double minx       = rs.getDouble("minx");
-                final double maxx       = rs.getDouble("maxx");
-                final double miny       = rs.getDouble("miny");
-                final double maxy       = rs.getDouble("maxy");
-                result = new NamedEnvelope(crs, identifier, nbEnv);
-                result.setRange(0, minx, maxx);
-                result.setRange(1, miny, maxy);
+                result = readEnvelope(rs);
+                cache.put(treeIdentifier, result);
             }
             rs.close();
             stmt.close();
@@ -258,6 +268,67 @@ public class LuceneDerbySQLTreeEltMapper implements TreeElementMapper<NamedEnvel
         return result;
     }
 
+    /**
+     * {@inheritDoc }
+     * Envelopes not in cache are read by batches of {@link #BATCH_SIZE} identifiers.
+     */
+    @Override
+    public List<NamedEnvelope> getObjectsFromTreeIdentifiers(final int[] treeIdentifiers) throws IOException {
+        final Map<Integer, NamedEnvelope> found = new HashMap<>();
+        final int[] missing = new int[treeIdentifiers.length];
+        int nbMissing = 0;
+        for (int treeIdentifier : treeIdentifiers) {
+            final NamedEnvelope env = cache.get(treeIdentifier);
+            if (env != null) {
+                found.put(treeIdentifier, env);
+            } else {
+                missing[nbMissing++] = treeIdentifier;
+            }
+        }
+        try {
+            for (int start = 0; start < nbMissing; start += BATCH_SIZE) {
+                final int end = Math.min(nbMissing, start + BATCH_SIZE);
+                // parameter count rounded to a power of two, Derby compiles a few statements only
+                final int count = end - start;
+                final int size  = Math.min(BATCH_SIZE, Math.max(16, Integer.highestOneBit(count - 1) << 1));
+                final StringBuilder sql = new StringBuilder("SELECT * FROM \"treemap\".\"records\" WHERE \"id\" IN (?");
+                for (int i = 1; i < size; i++) {
+                    sql.append(",?");
+                }
+                sql.append(')');
+                try (PreparedStatement stmt = conRO.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < size; i++) {
+                        stmt.setInt(i + 1, missing[Math.min(start + i, end - 1)]);
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            final int treeId        = rs.getInt("id");
+                            final NamedEnvelope env = readEnvelope(rs);
+                            found.put(treeId, env);
+                            cache.put(treeId, env);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Error while getting envelopes", ex);
+        }
+        final List<NamedEnvelope> result = new ArrayList<>(treeIdentifiers.length);
+        for (int treeIdentifier : treeIdentifiers) {
+            result.add(found.get(treeIdentifier));
+        }
+        return result;
+    }
+
+    private NamedEnvelope readEnvelope(final ResultSet rs) throws SQLException {
+        final String identifier = rs.getString("identifier");
+        final int nbEnv         = rs.getInt("nbenv");
+        final NamedEnvelope env = new NamedEnvelope(crs, identifier, nbEnv);
+        env.setRange(0, rs.getDouble("minx"), rs.getDouble("maxx"));
+        env.setRange(1, rs.getDouble("miny"), rs.getDouble("maxy"));
+        return env;
+    }
+
     @Override
     public Map<Integer, NamedEnvelope> getFullMap() throws IOException {
         Map<Integer, NamedEnvelope> result = new HashMap<>();
@@ -288,6 +359,7 @@ public class LuceneDerbySQLTreeEltMapper implements TreeElementMapper<NamedEnvel
 
     @Override
     public void clear() throws IOException {
+        cache.clear();
         try {
             final PreparedStatement stmt = conT.prepareStatement("DELETE FROM \"treemap\".\"records\"");
             stmt.executeUpdate();
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import org.apache.commons.io.IOUtils;
+import org.apache.sis.util.collection.Cache;
 import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.index.tree.TreeElementMapper;
 import org.geotoolkit.index.tree.manager.NamedEnvelope;
@@ -40,7 +41,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -67,6 +70,16 @@ public class LucenePostgresSQLTreeEltMapper implements TreeElementMapper<NamedEn
 
     protected static final Logger LOGGER = Logging.getLogger("org.geotoolkit.index.tree.manager.postgres");
 
+    /**
+     * Maximum number of identifiers read by one query.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Recently read envelopes, by tree identifier.
+     */
+    private final Cache<Integer,NamedEnvelope> cache = new Cache<>(1000, 10000, false);
+
     public LucenePostgresSQLTreeEltMapper(final CoordinateReferenceSystem crs, final DataSource source, Path directory) throws SQLException {
         try {
             final String absolutePath = directory.getFileName().toString();
@@ -213,6 +226,7 @@ public class LucenePostgresSQLTreeEltMapper implements TreeElementMapper<NamedEn
 
     @Override
     public void setTreeIdentifier(final NamedEnvelope env, final int treeIdentifier) throws IOException {
+        cache.remove(treeIdentifier);
         try {
             if (env != null) {
                 final boolean exist;
@@ -266,21 +280,17 @@ public class LucenePostgresSQLTreeEltMapper implements TreeElementMapper<NamedEn
 
     @Override
     public NamedEnvelope getObjectFromTreeIdentifier(final int treeIdentifier) throws IOException {
-        NamedEnvelope result = null;
+        NamedEnvelope result = cache.get(treeIdentifier);
+        if (result != null) {
+            return result;
+        }
 
         try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM \"" + schemaName + "\".\"records\" WHERE \"id\"=?")) {
             stmt.setInt(1, treeIdentifier);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    final String identifier = rs.getString("identifier");
-                    final int nbEnv = rs.getInt("nbenv");
-                    final double minx = rs.getDouble("minx");
-                    final double maxx = rs.getDouble("maxx");
-                    final double miny = rs.getDouble("miny");
-                    final double maxy = rs.getDouble("maxy");
-                    result = new NamedEnvelope(crs, identifier, nbEnv);
-                    result.setRange(0, minx, maxx);
-                    result.setRange(1, miny, maxy);
+                    result = readEnvelope(rs);
+                    cache.put(treeIdentifier, result);
                 }
             }
         } catch (SQLException ex) {
@@ -289,6 +299,61 @@ public class LucenePostgresSQLTreeEltMapper implements TreeElementMapper<NamedEn
         return result;
     }
 
+    /**
+     * {@inheritDoc }
+     * Envelopes not in cache are read by batches of {@link #BATCH_SIZE} identifiers.
+     */
+    @Override
+    public List<NamedEnvelope> getObjectsFromTreeIdentifiers(final int[] treeIdentifiers) throws IOException {
+        final Map<Integer, NamedEnvelope> found = new HashMap<>();
+        final int[] missing = new int[treeIdentifiers.length];
+        int nbMissing = 0;
+        for (int treeIdentifier : treeIdentifiers) {
+            final NamedEnvelope env = cache.get(treeIdentifier);
+            if (env != null) {
+                found.put(treeIdentifier, env);
+            } else {
+                missing[nbMissing++] = treeIdentifier;
+            }
+        }
+        try {
+            for (int start = 0; start < nbMissing; start += BATCH_SIZE) {
+                final int end = Math.min(nbMissing, start + BATCH_SIZE);
+                final Integer[] ids = new Integer[end - start];
+                for (int i = start; i < end; i++) {
+                    ids[i - start] = missing[i];
+                }
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM \"" + schemaName + "\".\"records\" WHERE \"id\" = ANY(?)")) {
+                    stmt.setArray(1, conn.createArrayOf("int4", ids));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            final int treeId        = rs.getInt("id");
+                            final NamedEnvelope env = readEnvelope(rs);
+                            found.put(treeId, env);
+                            cache.put(treeId, env);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IOException("Error while getting envelopes", ex);
+        }
+        final List<NamedEnvelope> result = new ArrayList<>(treeIdentifiers.length);
+        for (int treeIdentifier : treeIdentifiers) {
+            result.add(found.get(treeIdentifier));
+        }
+        return result;
+    }
+
+    private NamedEnvelope readEnvelope(final ResultSet rs) throws SQLException {
+        final String identifier = rs.getString("identifier");
+        final int nbEnv         = rs.getInt("nbenv");
+        final NamedEnvelope env = new NamedEnvelope(crs, identifier, nbEnv);
+        env.setRange(0, rs.getDouble("minx"), rs.getDouble("maxx"));
+        env.setRange(1, rs.getDouble("miny"), rs.getDouble("maxy"));
+        return env;
+    }
+
     @Override
     public Map<Integer, NamedEnvelope> getFullMap() throws IOException {
         Map<Integer, NamedEnvelope> result = new HashMap<>();
@@ -315,6 +380,7 @@ public class LucenePostgresSQLTreeEltMapper implements TreeElementMapper<NamedEn
 
     @Override
     public void clear() throws IOException {
+        cache.clear();
         try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM \"" + schemaName + "\".\"records\"")) {
             stmt.executeUpdate();
 //            conn.commit();
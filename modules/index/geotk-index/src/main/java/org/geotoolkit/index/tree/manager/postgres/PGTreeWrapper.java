@@ -68,6 +68,12 @@ public class PGTreeWrapper implements Tree {
         return rTree.search(regionSearch);
     }
 
+    @Override
+    public TreeIdentifierIterator searchNearest(double[] point, int k, double maxDistance) throws StoreIndexException {
+        updateTree();
+        return rTree.searchNearest(point, k, maxDistance);
+    }
+
     @Override
     public int insert(Object object) throws StoreIndexException {
         return rTree.insert(object);
@@ -22,8 +22,10 @@ import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
+import org.apache.sis.util.ArraysExt;
 import org.apache.sis.referencing.CRS;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.util.FactoryException;
@@ -365,6 +367,95 @@ public abstract strictfp class ChannelTreeAccess extends TreeAccess {
         byteBuffer.position(rwIndex);
     }
 
+    /**
+     * {@inheritDoc }
+     * <br>
+     * When tree is stored in a {@link FileChannel} and there is no pending written data within
+     * internal buffer, search reads nodes with positional reads in its own buffer, without any
+     * synchronization. Many searches may then run in parallel, caller is responsible to not
+     * modify tree during search (see {@link org.geotoolkit.index.tree.AbstractTree#searchID(org.opengis.geometry.Envelope)}).
+     */
+    @Override
+    public int[] search(final int nodeID, final double[] regionSearch) throws IOException {
+        if (!(inOutChannel instanceof FileChannel) || writeBufferLimit != 0) {
+            return super.search(nodeID, regionSearch);
+        }
+        final PositionalSearch search = new PositionalSearch((FileChannel) inOutChannel, regionSearch);
+        search.search(nodeID);
+        return Arrays.copyOf(search.result, search.resultLength);
+    }
+
+    /**
+     * Search which reads nodes from file with positional reads, in its own buffer.<br/>
+     * Only beginning of node records is read, which is common to all {@link Node} implementations.
+     */
+    private final class PositionalSearch {
+        private final FileChannel channel;
+        private final double[] regionSearch;
+        private final double[] boundary;
+        private final ByteBuffer buffer;
+
+        /**
+         * File position of {@link #buffer} content, or -1 if nothing has been read yet.
+         */
+        private long bufferPosition = -1;
+
+        int[] result = new int[100];
+        int resultLength;
+
+        PositionalSearch(final FileChannel channel, final double[] regionSearch) {
+            this.channel      = channel;
+            this.regionSearch = regionSearch;
+            this.boundary     = new double[boundLength];
+            this.buffer       = ByteBuffer.allocate(bufferLength);
+        }
+
+        /**
+         * Move buffer to the given node, reading a new window from file if needed.
+         */
+        private void seek(final int nodeID) throws IOException {
+            final long index = beginPosition + (nodeID - 1L) * nodeSize;
+            if (bufferPosition < 0 || index < bufferPosition || index + nodeSize > bufferPosition + buffer.limit()) {
+                bufferPosition = (index - beginPosition) / bufferLength * bufferLength + beginPosition;
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, bufferPosition + buffer.position()) < 0) break;
+                }
+                buffer.flip();
+                if (index + nodeSize > bufferPosition + buffer.limit()) {
+                    throw new IOException("Node "+nodeID+" is out of tree file.");
+                }
+            }
+            buffer.position((int) (index - bufferPosition));
+        }
+
+        void search(final int nodeID) throws IOException {
+            seek(nodeID);
+            for (int i = 0; i < boundLength; i++) {
+                boundary[i] = buffer.getDouble();
+            }
+            buffer.position(buffer.position() + 5);// step properties (1 byte) and step parent ID (int  : 4 byte)
+            final int sibling = buffer.getInt();
+            final int child   = buffer.getInt();
+            final boolean intersects = !ArraysExt.hasNaN(boundary) && intersects(boundary, regionSearch, true);
+            if (sibling != 0) {
+                search(sibling);
+            }
+            if (intersects) {
+                if (child > 0) {
+                    search(child);
+                } else {
+                    if (child == 0)
+                        throw new IllegalStateException("child index should never be 0.");
+                    if (resultLength == result.length) {
+                        result = Arrays.copyOf(result, resultLength << 1);
+                    }
+                    result[resultLength++] = -child;
+                }
+            }
+        }
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -403,7 +494,7 @@ public abstract strictfp class ChannelTreeAccess extends TreeAccess {
      * {@inheritDoc }
      */
     @Override
-    public Node readNode(int indexNode) throws IOException {
+    public synchronized Node readNode(int indexNode) throws IOException {
         adjustBuffer(indexNode);
         final double[] boundary = new double[boundLength];
         for (int i = 0; i < boundLength; i++) {
@@ -423,7 +514,7 @@ public abstract strictfp class ChannelTreeAccess extends TreeAccess {
      * {@inheritDoc }
      */
     @Override
-    public void writeNode(Node candidate) throws IOException {
+    public synchronized void writeNode(Node candidate) throws IOException {
         final int indexNode    = candidate.getNodeId();
         adjustBuffer(indexNode);
         writeBufferLimit = Math.max(writeBufferLimit, byteBuffer.limit());
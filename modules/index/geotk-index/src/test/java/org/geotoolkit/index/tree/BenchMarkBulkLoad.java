@@ -0,0 +1,107 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.sis.geometry.GeneralEnvelope;
+import org.geotoolkit.index.tree.star.FileStarRTree;
+import org.geotoolkit.referencing.crs.PredefinedCRS;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Compare construction and search time of a {@link FileStarRTree} filled by
+ * successive insertions or by {@link TreeX#bulkLoad(org.geotoolkit.index.tree.Tree, java.util.Iterator) bulk loading}.
+ */
+public class BenchMarkBulkLoad {
+
+    private static final CoordinateReferenceSystem CRS = PredefinedCRS.CARTESIAN_2D;
+    private static final int NB_ELEMENTS = 500000;
+    private static final int NB_SEARCH   = 2000;
+    private static final int MAX_ELEMENTS = 20;
+
+    private static List<double[]> createBoundaries() {
+        final Random rand = new Random(42);
+        final List<double[]> boundaries = new ArrayList<>(NB_ELEMENTS);
+        for (int i = 0; i < NB_ELEMENTS; i++) {
+            final double x = rand.nextDouble() * 100000;
+            final double y = rand.nextDouble() * 100000;
+            boundaries.add(new double[]{x, y, x + rand.nextDouble() * 50, y + rand.nextDouble() * 50});
+        }
+        return boundaries;
+    }
+
+    /**
+     * @return search time in milliseconds, and found element number to avoid dead code elimination.
+     */
+    private static long[] search(final Tree tree) throws StoreIndexException {
+        final Random rand = new Random(7);
+        final GeneralEnvelope area = new GeneralEnvelope(CRS);
+        long found = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < NB_SEARCH; i++) {
+            final double x = rand.nextDouble() * 99000;
+            final double y = rand.nextDouble() * 99000;
+            area.setEnvelope(x, y, x + 1000, y + 1000);
+            found += tree.searchID(area).length;
+        }
+        return new long[]{(System.nanoTime() - start) / 1000000, found};
+    }
+
+    @Test
+    @Ignore
+    public void benchmark() throws Exception {
+        final List<double[]> boundaries = createBoundaries();
+        final Path dir = Files.createTempDirectory("bulkBench");
+
+        final Path incrementalPath = dir.resolve("incremental.tree");
+        final Tree incremental = new FileStarRTree(incrementalPath, MAX_ELEMENTS, CRS, new TreeElementMapperTest(CRS));
+        long start = System.nanoTime();
+        int id = 1;
+        for (double[] bound : boundaries) {
+            ((AbstractTree) incremental).insert(id++, bound);
+        }
+        incremental.flush();
+        final long incrementalBuild = (System.nanoTime() - start) / 1000000;
+        final long[] incrementalSearch = search(incremental);
+
+        final Path bulkPath = dir.resolve("bulk.tree");
+        final Tree bulk = new FileStarRTree(bulkPath, MAX_ELEMENTS, CRS, new TreeElementMapperTest(CRS));
+        start = System.nanoTime();
+        TreeX.bulkLoad(bulk, boundaries.iterator());
+        bulk.flush();
+        final long bulkBuild = (System.nanoTime() - start) / 1000000;
+        final long[] bulkSearch = search(bulk);
+
+        System.out.println(NB_ELEMENTS + " elements, " + NB_SEARCH + " searches.");
+        System.out.println("incremental : build " + incrementalBuild + " ms, search " + incrementalSearch[0]
+                + " ms (" + incrementalSearch[1] + " results), file " + Files.size(incrementalPath) + " bytes");
+        System.out.println("bulk load   : build " + bulkBuild + " ms, search " + bulkSearch[0]
+                + " ms (" + bulkSearch[1] + " results), file " + Files.size(bulkPath) + " bytes");
+
+        incremental.close();
+        bulk.close();
+        Files.delete(incrementalPath);
+        Files.delete(bulkPath);
+        Files.delete(dir);
+    }
+}
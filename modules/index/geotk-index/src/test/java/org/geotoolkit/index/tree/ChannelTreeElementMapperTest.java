@@ -0,0 +1,125 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.geotoolkit.referencing.crs.PredefinedCRS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ChannelTreeElementMapper#getObjectsFromTreeIdentifiers(int[])}.
+ * Objects are 32 bytes long in a 4096 bytes buffer, so 128 objects by buffer.
+ *
+ * @module
+ */
+public class ChannelTreeElementMapperTest extends TreeTest {
+
+    /**
+     * Number of stored objects, tree identifiers go from 1 to this value.
+     */
+    private static final int COUNT = 1100;
+
+    private FileTreeElementMapperTest mapper;
+
+    public ChannelTreeElementMapperTest() throws IOException {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mapper = new FileTreeElementMapperTest(PredefinedCRS.CARTESIAN_2D, new File(tempDir, "mapper.bin"));
+        for (int i = 1; i <= COUNT; i++) {
+            mapper.setTreeIdentifier(object(i, 0), i);
+        }
+    }
+
+    @After
+    public void closeMapper() throws IOException {
+        mapper.close();
+    }
+
+    /**
+     * Stored object for the given tree identifier, the shift moves it to tell updates apart.
+     */
+    private static double[] object(final int treeIdentifier, final double shift) {
+        final double x = treeIdentifier + shift;
+        final double y = -treeIdentifier;
+        return new double[] {x, y, x + 1, y + 1};
+    }
+
+    /**
+     * Check the results are in the order of the requested identifiers,
+     * and equal to the objects read one by one.
+     */
+    private void assertResults(final int[] treeIdentifiers, final List<double[]> results) throws IOException {
+        assertEquals(treeIdentifiers.length, results.size());
+        for (int i = 0; i < treeIdentifiers.length; i++) {
+            assertArrayEquals(object(treeIdentifiers[i], 0), results.get(i), 0.0);
+            assertArrayEquals(mapper.getObjectFromTreeIdentifier(treeIdentifiers[i]), results.get(i), 0.0);
+        }
+    }
+
+    /**
+     * Results follow the requested order over several buffers, duplicated identifiers are repeated.
+     */
+    @Test
+    public void testOrder() throws IOException {
+        final int[] ids = {COUNT, 1, 129, 128, 1, 700, COUNT, 2, 256, 257};
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+    }
+
+    /**
+     * A request of more than 1024 identifiers in reverse order.
+     */
+    @Test
+    public void testManyIdentifiers() throws IOException {
+        final int[] ids = new int[1025];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = COUNT - i;
+        }
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+    }
+
+    /**
+     * Objects written after a batch read, or after clear, are read back.
+     */
+    @Test
+    public void testUpdate() throws IOException {
+        final int[] ids = {3, 200, 1};
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+
+        mapper.setTreeIdentifier(object(200, 0.5), 200);
+        List<double[]> results = mapper.getObjectsFromTreeIdentifiers(ids);
+        assertArrayEquals(object(3,   0),   results.get(0), 0.0);
+        assertArrayEquals(object(200, 0.5), results.get(1), 0.0);
+        assertArrayEquals(object(1,   0),   results.get(2), 0.0);
+
+        mapper.clear();
+        for (int i = 1; i <= 200; i++) {
+            mapper.setTreeIdentifier(object(i, 0.25), i);
+        }
+        results = mapper.getObjectsFromTreeIdentifiers(ids);
+        for (int i = 0; i < ids.length; i++) {
+            assertArrayEquals(object(ids[i], 0.25), results.get(i), 0.0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.sis.geometry.GeneralEnvelope;
+import org.geotoolkit.index.tree.hilbert.FileHilbertRTree;
+import org.geotoolkit.index.tree.star.FileStarRTree;
+import org.geotoolkit.referencing.crs.PredefinedCRS;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.junit.Assert.*;
+
+/**
+ * Check that searches on file trees give same results when they run in parallel.
+ */
+public class ConcurrentSearchTest extends TreeTest {
+
+    private static final CoordinateReferenceSystem CRS = PredefinedCRS.CARTESIAN_2D;
+    private static final int NB_THREADS = 8;
+    private static final int NB_SEARCH  = 200;
+
+    public ConcurrentSearchTest() throws IOException {
+    }
+
+    private static GeneralEnvelope[] createSearchAreas() {
+        final Random rand = new Random(3);
+        final GeneralEnvelope[] areas = new GeneralEnvelope[NB_SEARCH];
+        for (int i = 0; i < NB_SEARCH; i++) {
+            final double x = rand.nextDouble() * 900;
+            final double y = rand.nextDouble() * 900;
+            areas[i] = new GeneralEnvelope(CRS);
+            areas[i].setEnvelope(x, y, x + 100, y + 100);
+        }
+        return areas;
+    }
+
+    private static void fill(final Tree tree) throws StoreIndexException {
+        final Random rand = new Random(11);
+        for (int i = 1; i <= 3000; i++) {
+            final double x = rand.nextDouble() * 1000;
+            final double y = rand.nextDouble() * 1000;
+            ((AbstractTree) tree).insert(i, x, y, x + 5, y + 5);
+        }
+        tree.flush();
+    }
+
+    /**
+     * Run all searches from many threads and compare with sequential results.
+     */
+    private static void checkConcurrentSearch(final Tree tree) throws Exception {
+        final GeneralEnvelope[] areas = createSearchAreas();
+        final int[][] expected = new int[NB_SEARCH][];
+        for (int i = 0; i < NB_SEARCH; i++) {
+            expected[i] = tree.searchID(areas[i]);
+            Arrays.sort(expected[i]);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(NB_THREADS);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < NB_THREADS; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int n = 0; n < NB_SEARCH; n++) {
+                            final int i = (n + offset * 17) % NB_SEARCH;
+                            final int[] result = tree.searchID(areas[i]);
+                            Arrays.sort(result);
+                            if (!Arrays.equals(expected[i], result)) return false;
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> f : futures) {
+                assertTrue(f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void starTest() throws Exception {
+        final File treeFile = File.createTempFile("concurrentStar", "test", tempDir);
+        final Tree tree = new FileStarRTree(treeFile.toPath(), 5, CRS, new TreeElementMapperTest(CRS));
+        fill(tree);
+        checkConcurrentSearch(tree);
+        tree.close();
+
+        final Tree reopened = new FileStarRTree(treeFile.toPath(), new TreeElementMapperTest(CRS));
+        checkConcurrentSearch(reopened);
+        reopened.close();
+    }
+
+    @Test
+    public void hilbertTest() throws Exception {
+        final File treeFile = File.createTempFile("concurrentHilbert", "test", tempDir);
+        final Tree tree = new FileHilbertRTree(treeFile.toPath(), 4, 2, CRS, new TreeElementMapperTest(CRS));
+        fill(tree);
+        checkConcurrentSearch(tree);
+        tree.close();
+    }
+}
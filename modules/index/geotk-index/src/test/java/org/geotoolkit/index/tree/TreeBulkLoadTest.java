@@ -0,0 +1,197 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.sis.geometry.GeneralEnvelope;
+import org.geotoolkit.index.tree.basic.MemoryBasicRTree;
+import org.geotoolkit.index.tree.basic.SplitCase;
+import org.geotoolkit.index.tree.hilbert.MemoryHilbertRTree;
+import org.geotoolkit.index.tree.star.FileStarRTree;
+import org.geotoolkit.referencing.crs.PredefinedCRS;
+import org.junit.Test;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.junit.Assert.*;
+import static org.geotoolkit.internal.tree.TreeUtilities.*;
+
+/**
+ * Test {@link TreeX#bulkLoad(org.geotoolkit.index.tree.Tree, java.util.Iterator)} methods.
+ */
+public class TreeBulkLoadTest extends TreeTest {
+
+    private static final CoordinateReferenceSystem CRS_2D = PredefinedCRS.CARTESIAN_2D;
+    private static final CoordinateReferenceSystem CRS_3D = PredefinedCRS.CARTESIAN_3D;
+
+    public TreeBulkLoadTest() throws IOException {
+    }
+
+    /**
+     * Create random boundaries in a 1000 side space.
+     */
+    private static List<double[]> createBoundaries(final int number, final int dim) {
+        final Random rand = new Random(42);
+        final List<double[]> boundaries = new ArrayList<>(number);
+        for (int i = 0; i < number; i++) {
+            final double[] bound = new double[dim << 1];
+            for (int d = 0; d < dim; d++) {
+                bound[d]       = rand.nextDouble() * 1000;
+                bound[d + dim] = bound[d] + rand.nextDouble() * 20;
+            }
+            boundaries.add(bound);
+        }
+        return boundaries;
+    }
+
+    /**
+     * Check that each search on tree returns exactly boundaries which intersect search area.
+     */
+    private static void checkSearch(final Tree tree, final List<double[]> boundaries, final int firstId,
+            final CoordinateReferenceSystem crs) throws StoreIndexException, IOException {
+        final int dim = crs.getCoordinateSystem().getDimension();
+        assertEquals(boundaries.size(), tree.getElementsNumber());
+        assertTrue(tree.getRoot().checkInternal());
+        final Random rand = new Random(7);
+        final GeneralEnvelope area = new GeneralEnvelope(crs);
+        for (int s = 0; s < 20; s++) {
+            final double[] search = new double[dim << 1];
+            for (int d = 0; d < dim; d++) {
+                search[d]       = rand.nextDouble() * 900;
+                search[d + dim] = search[d] + 100;
+            }
+            area.setEnvelope(search);
+            final List<Integer> expected = new ArrayList<>();
+            for (int i = 0, n = boundaries.size(); i < n; i++) {
+                if (intersects(search, boundaries.get(i), true)) expected.add(firstId + i);
+            }
+            final int[] result = tree.searchID(area);
+            Arrays.sort(result);
+            assertEquals(expected.size(), result.length);
+            for (int i = 0; i < result.length; i++) {
+                assertEquals(expected.get(i).intValue(), result[i]);
+            }
+        }
+    }
+
+    /**
+     * Bulk load and search within a file {@link org.geotoolkit.index.tree.star.StarRTree}.
+     */
+    @Test
+    public void fileStarTest() throws StoreIndexException, IOException {
+        final File treeFile = File.createTempFile("bulkStar", "test", tempDir);
+        final Tree tree = new FileStarRTree(treeFile.toPath(), 5, CRS_3D, new TreeElementMapperTest(CRS_3D));
+        final List<double[]> boundaries = createBoundaries(5000, 3);
+        final int firstId = TreeX.bulkLoad(tree, boundaries.iterator());
+        checkSearch(tree, boundaries, firstId, CRS_3D);
+
+        // tree should stay usable with incremental update.
+        final double[] added = new double[]{-50, -50, -50, -40, -40, -40};
+        ((AbstractTree) tree).insert(firstId + boundaries.size(), added);
+        final GeneralEnvelope area = new GeneralEnvelope(CRS_3D);
+        area.setEnvelope(-60, -60, -60, -30, -30, -30);
+        assertArrayEquals(new int[]{firstId + boundaries.size()}, tree.searchID(area));
+        tree.close();
+
+        // root should be found again when tree file is re-opened.
+        final Tree reopened = new FileStarRTree(treeFile.toPath(), new TreeElementMapperTest(CRS_3D));
+        assertEquals(boundaries.size() + 1, reopened.getElementsNumber());
+        assertArrayEquals(new int[]{firstId + boundaries.size()}, reopened.searchID(area));
+        final TreeIdentifierIterator iter = reopened.search(area);
+        assertTrue(iter.hasNext());
+        assertEquals(firstId + boundaries.size(), iter.nextInt());
+        assertFalse(iter.hasNext());
+        reopened.close();
+    }
+
+    /**
+     * Bulk load less elements than node capacity, root should be a leaf.
+     */
+    @Test
+    public void singleLeafTest() throws StoreIndexException, IOException {
+        final Tree tree = new MemoryBasicRTree(4, CRS_2D, SplitCase.LINEAR, new TreeElementMapperTest(CRS_2D));
+        final List<double[]> boundaries = createBoundaries(3, 2);
+        final int firstId = TreeX.bulkLoad(tree, boundaries.iterator());
+        assertTrue(tree.getRoot().isLeaf());
+        assertEquals(1, tree.getRoot().getNodeId());
+        checkSearch(tree, boundaries, firstId, CRS_2D);
+    }
+
+    /**
+     * Bulk load with a buffer smaller than data number,
+     * which packs leaves from several sorted buffers.
+     */
+    @Test
+    public void smallBufferTest() throws StoreIndexException, IOException {
+        final Tree tree = new MemoryBasicRTree(4, CRS_2D, SplitCase.QUADRATIC, new TreeElementMapperTest(CRS_2D));
+        final List<double[]> boundaries = createBoundaries(3001, 2);
+        final BulkLoader loader = new BulkLoader(tree, 500);
+        final int firstId = loader.nextIdentifier();
+        for (double[] bound : boundaries) loader.add(bound);
+        loader.finish();
+        checkSearch(tree, boundaries, firstId, CRS_2D);
+    }
+
+    /**
+     * Hilbert trees are filled by insertion in STR order.
+     */
+    @Test
+    public void hilbertTest() throws StoreIndexException, IOException {
+        final Tree tree = new MemoryHilbertRTree(4, 2, CRS_2D, new TreeElementMapperTest(CRS_2D));
+        final List<double[]> boundaries = createBoundaries(2000, 2);
+        final int firstId = TreeX.bulkLoad(tree, boundaries.iterator());
+        checkSearch(tree, boundaries, firstId, CRS_2D);
+    }
+
+    /**
+     * Bulk load from objects, tree identifiers should be recorded by {@link TreeElementMapper}.
+     */
+    @Test
+    public void elementsTest() throws StoreIndexException, IOException {
+        final TreeXElementMapperTest mapper = new TreeXElementMapperTest();
+        final Tree<Envelope> tree = new MemoryBasicRTree<>(4, CRS_2D, SplitCase.LINEAR, mapper);
+        final List<double[]> boundaries = createBoundaries(500, 2);
+        final List<Envelope> envelopes = new ArrayList<>();
+        for (double[] bound : boundaries) {
+            final GeneralEnvelope env = new GeneralEnvelope(CRS_2D);
+            env.setEnvelope(bound);
+            envelopes.add(env);
+        }
+        TreeX.bulkLoadElements(tree, envelopes.iterator());
+        assertEquals(envelopes.size(), tree.getElementsNumber());
+        final int firstId = mapper.getTreeIdentifier(envelopes.get(0));
+        for (int i = 0; i < envelopes.size(); i++) {
+            assertEquals(firstId + i, mapper.getTreeIdentifier(envelopes.get(i)));
+        }
+        checkSearch(tree, boundaries, firstId, CRS_2D);
+    }
+
+    /**
+     * Bulk load is only allowed on empty trees.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void notEmptyTest() throws StoreIndexException, IOException {
+        final Tree tree = new MemoryBasicRTree(4, CRS_2D, SplitCase.LINEAR, new TreeElementMapperTest(CRS_2D));
+        ((AbstractTree) tree).insert(1, 0, 0, 1, 1);
+        TreeX.bulkLoad(tree, createBoundaries(10, 2).iterator());
+    }
+}
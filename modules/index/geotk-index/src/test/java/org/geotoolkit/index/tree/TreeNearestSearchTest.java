@@ -0,0 +1,151 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.geotoolkit.index.tree.basic.FileBasicRTree;
+import org.geotoolkit.index.tree.basic.MemoryBasicRTree;
+import org.geotoolkit.index.tree.basic.SplitCase;
+import org.geotoolkit.index.tree.hilbert.FileHilbertRTree;
+import org.geotoolkit.index.tree.hilbert.MemoryHilbertRTree;
+import org.geotoolkit.index.tree.star.FileStarRTree;
+import org.geotoolkit.index.tree.star.MemoryStarRTree;
+import org.geotoolkit.referencing.crs.PredefinedCRS;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link Tree#searchNearest(double[], int, double)} on all tree implementations.
+ */
+public class TreeNearestSearchTest extends TreeTest {
+
+    private static final CoordinateReferenceSystem CRS = PredefinedCRS.CARTESIAN_2D;
+    private static final int NB_ELEMENTS = 2000;
+    private static final double EPSILON = 1E-9;
+
+    private final double[][] boundaries;
+
+    public TreeNearestSearchTest() throws IOException {
+        final Random rand = new Random(5);
+        boundaries = new double[NB_ELEMENTS][];
+        for (int i = 0; i < NB_ELEMENTS; i++) {
+            final double x = rand.nextDouble() * 1000;
+            final double y = rand.nextDouble() * 1000;
+            boundaries[i] = new double[]{x, y, x + rand.nextDouble() * 10, y + rand.nextDouble() * 10};
+        }
+    }
+
+    private static double distance(final double[] point, final double[] boundary) {
+        final double dx = Math.max(0, Math.max(boundary[0] - point[0], point[0] - boundary[2]));
+        final double dy = Math.max(0, Math.max(boundary[1] - point[1], point[1] - boundary[3]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Compare search results with distances computed from all elements.
+     */
+    private void check(final Tree tree) throws StoreIndexException, IOException {
+        for (int i = 0; i < NB_ELEMENTS; i++) {
+            ((AbstractTree) tree).insert(i + 1, boundaries[i]);
+        }
+        final Random rand = new Random(9);
+        for (int s = 0; s < 30; s++) {
+            final double[] point = new double[]{rand.nextDouble() * 1000, rand.nextDouble() * 1000};
+            final double[] expected = new double[NB_ELEMENTS];
+            for (int i = 0; i < NB_ELEMENTS; i++) {
+                expected[i] = distance(point, boundaries[i]);
+            }
+            Arrays.sort(expected);
+
+            // k nearest.
+            final int k = 15;
+            TreeIdentifierIterator iter = tree.searchNearest(point, k, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < k; i++) {
+                assertTrue(iter.hasNext());
+                final int id = iter.nextInt();
+                assertEquals(expected[i], distance(point, boundaries[id - 1]), EPSILON);
+            }
+            assertFalse(iter.hasNext());
+
+            // all elements within a maximum distance.
+            final double maxDistance = 30;
+            int expectedNumber = 0;
+            while (expectedNumber < NB_ELEMENTS && expected[expectedNumber] <= maxDistance) expectedNumber++;
+            iter = tree.searchNearest(point, Integer.MAX_VALUE, maxDistance);
+            double previous = 0;
+            int number = 0;
+            while (iter.hasNext()) {
+                final double d = distance(point, boundaries[iter.nextInt() - 1]);
+                assertTrue(d >= previous - EPSILON);
+                assertTrue(d <= maxDistance);
+                previous = d;
+                number++;
+            }
+            assertEquals(expectedNumber, number);
+        }
+    }
+
+    @Test
+    public void emptyTreeTest() throws StoreIndexException, IOException {
+        final Tree tree = new MemoryStarRTree(4, CRS, new TreeElementMapperTest(CRS));
+        assertFalse(tree.searchNearest(new double[]{0, 0}, 5, Double.POSITIVE_INFINITY).hasNext());
+    }
+
+    @Test
+    public void memoryBasicTest() throws StoreIndexException, IOException {
+        check(new MemoryBasicRTree(4, CRS, SplitCase.QUADRATIC, new TreeElementMapperTest(CRS)));
+    }
+
+    @Test
+    public void memoryStarTest() throws StoreIndexException, IOException {
+        check(new MemoryStarRTree(4, CRS, new TreeElementMapperTest(CRS)));
+    }
+
+    @Test
+    public void memoryHilbertTest() throws StoreIndexException, IOException {
+        check(new MemoryHilbertRTree(4, 2, CRS, new TreeElementMapperTest(CRS)));
+    }
+
+    @Test
+    public void fileBasicTest() throws StoreIndexException, IOException {
+        final File treeFile = File.createTempFile("nearestBasic", "test", tempDir);
+        final Tree tree = new FileBasicRTree(treeFile.toPath(), 4, CRS, SplitCase.LINEAR, new TreeElementMapperTest(CRS));
+        check(tree);
+        tree.close();
+    }
+
+    @Test
+    public void fileStarTest() throws StoreIndexException, IOException {
+        final File treeFile = File.createTempFile("nearestStar", "test", tempDir);
+        final Tree tree = new FileStarRTree(treeFile.toPath(), 4, CRS, new TreeElementMapperTest(CRS));
+        check(tree);
+        tree.close();
+    }
+
+    @Test
+    public void fileHilbertTest() throws StoreIndexException, IOException {
+        final File treeFile = File.createTempFile("nearestHilbert", "test", tempDir);
+        final Tree tree = new FileHilbertRTree(treeFile.toPath(), 4, 2, CRS, new TreeElementMapperTest(CRS));
+        check(tree);
+        tree.close();
+    }
+}
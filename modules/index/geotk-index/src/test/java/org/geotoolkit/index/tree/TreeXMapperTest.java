@@ -0,0 +1,188 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import org.apache.sis.geometry.GeneralEnvelope;
+import org.geotoolkit.filter.SpatialFilterType;
+import org.geotoolkit.index.tree.manager.AbstractRtreeManager;
+import org.geotoolkit.index.tree.manager.LuceneDerbySQLTreeEltMapper;
+import org.geotoolkit.index.tree.manager.LuceneFileTreeEltMapper;
+import org.geotoolkit.index.tree.manager.NamedEnvelope;
+import org.geotoolkit.index.tree.star.FileStarRTree;
+import org.junit.Test;
+import org.opengis.geometry.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.geotoolkit.internal.tree.TreeUtilities.*;
+import static org.junit.Assert.*;
+
+/**
+ * Compare {@link TreeX#search(Tree, Envelope, SpatialFilterType)} with a search
+ * reading each candidate one by one, on trees whose data are stored by the
+ * Derby and file mappers.
+ *
+ * @module
+ */
+public class TreeXMapperTest extends TreeTest {
+
+    private static final CoordinateReferenceSystem CRS = AbstractRtreeManager.DEFAULT_CRS;
+
+    /**
+     * Logic operations implemented by {@link TreeX}.
+     */
+    private static final SpatialFilterType[] FILTERS = {
+        SpatialFilterType.INTERSECTS, SpatialFilterType.BBOX,   SpatialFilterType.CONTAINS,
+        SpatialFilterType.DISJOINT,   SpatialFilterType.WITHIN, SpatialFilterType.TOUCHES,
+        SpatialFilterType.EQUALS,     SpatialFilterType.OVERLAPS
+    };
+
+    public TreeXMapperTest() throws IOException {
+    }
+
+    @Test
+    public void derbyMapperTest() throws Exception {
+        final Path directory = tempDir.toPath().resolve("derby");
+        @SuppressWarnings("unchecked")
+        final TreeElementMapper<NamedEnvelope> mapper = LuceneDerbySQLTreeEltMapper.createTreeEltMapperWithDB(directory);
+        try {
+            searchTest(mapper);
+        } finally {
+            try {
+                DriverManager.getConnection("jdbc:derby:" + directory.toAbsolutePath().toString() + "/treemap-db;shutdown=true");
+            } catch (SQLException ex) {
+                // expected, Derby always reports a shutdown with an exception
+            }
+        }
+    }
+
+    @Test
+    public void fileMapperTest() throws Exception {
+        searchTest(new LuceneFileTreeEltMapper(CRS, new File(tempDir, "mapper.bin")));
+    }
+
+    /**
+     * Fill a tree with a grid of envelopes, then compare the search results of each
+     * logic operation against some regions. The tree holds more than 1024 envelopes,
+     * so the disjoint search reads its candidates in several batches.
+     */
+    private void searchTest(final TreeElementMapper<NamedEnvelope> mapper) throws Exception {
+        final Tree<NamedEnvelope> tree = new FileStarRTree<>(new File(tempDir, "tree.bin").toPath(), 4, CRS, mapper);
+        try {
+            int n = 0;
+            for (int i = 0; i <= 34; i++) {
+                for (int j = 0; j <= 16; j++) {
+                    final double x = -170 + 10 * i;
+                    final double y = -80  + 10 * j;
+                    tree.insert(envelope(n++, x, y, 4));
+                    tree.insert(envelope(n++, x + 5, y + 5, 3));
+                }
+            }
+            for (int i = 0; i <= 10; i++) {
+                for (int j = 0; j <= 4; j++) {
+                    tree.insert(envelope(n++, -150 + 30 * i, -60 + 30 * j, 12));
+                }
+            }
+            assertTrue(n > 1024);
+
+            final GeneralEnvelope extent = new GeneralEnvelope(CRS);
+            extent.setEnvelope(tree.getExtent());
+            final Envelope[] regions = {
+                envelope(-1,   0,    0,  4),
+                envelope(-1,   0,    0,  3),
+                envelope(-1,   0,    0, 20),
+                envelope(-1,  17,    0, 13),
+                envelope(-1, -140,   0, 40),
+                extent
+            };
+            final Map<SpatialFilterType,Integer> counts = new EnumMap<>(SpatialFilterType.class);
+            for (Envelope region : regions) {
+                for (SpatialFilterType filter : FILTERS) {
+                    final int[] expected = searchOneByOne(tree, region, filter);
+                    final int[] result   = TreeX.search(tree, region, filter);
+                    Arrays.sort(expected);
+                    Arrays.sort(result);
+                    assertArrayEquals(filter + " " + region, expected, result);
+                    counts.merge(filter, result.length, Integer::sum);
+                }
+            }
+            for (SpatialFilterType filter : FILTERS) {
+                assertTrue(filter.name(), counts.get(filter) > 0);
+            }
+        } finally {
+            tree.close();
+        }
+    }
+
+    private static NamedEnvelope envelope(final int id, final double x, final double y, final double halfSize) {
+        final NamedEnvelope env = new NamedEnvelope(CRS, "env" + id);
+        env.setRange(0, x - halfSize, x + halfSize);
+        env.setRange(1, y - halfSize, y + halfSize);
+        return env;
+    }
+
+    /**
+     * Search reading each candidate with {@link TreeElementMapper#getObjectFromTreeIdentifier(int)},
+     * as {@link TreeX} did before batch reading.
+     */
+    private static int[] searchOneByOne(final Tree tree, final Envelope regionSearch, final SpatialFilterType filter) throws Exception {
+        final TreeElementMapper tEM = tree.getTreeElementMapper();
+        final TreeIdentifierIterator iterSearch;
+        if (filter == SpatialFilterType.DISJOINT) {
+            final GeneralEnvelope treeExtends = new GeneralEnvelope(tree.getCrs());
+            treeExtends.setEnvelope(tree.getExtent());
+            iterSearch = tree.search(treeExtends);
+        } else {
+            iterSearch = tree.search(regionSearch);
+        }
+        final double[] region = getCoords(regionSearch);
+        int[] tabResult = new int[100];
+        int currentPosition = 0;
+        while (iterSearch.hasNext()) {
+            final int currentTreeID = iterSearch.nextInt();
+            final double[] env = getCoords(tEM.getEnvelope(tEM.getObjectFromTreeIdentifier(currentTreeID)));
+            final boolean match;
+            switch (filter) {
+                case INTERSECTS :
+                case BBOX     : match = true; break;
+                case CONTAINS : match = contains(env, region, true); break;
+                case DISJOINT : match = !intersects(env, region, true); break;
+                case WITHIN   : match = contains(region, env, true); break;
+                case TOUCHES  : match = touches(region, env); break;
+                case EQUALS   : match = arrayEquals(env, region, 1E-9); break;
+                case OVERLAPS : match = intersects(region, env, false)
+                                     && !contains(env, region, true)
+                                     && !contains(region, env, true); break;
+                default : throw new IllegalStateException(filter.name());
+            }
+            if (match) {
+                if (currentPosition == tabResult.length) {
+                    tabResult = Arrays.copyOf(tabResult, currentPosition << 1);
+                }
+                tabResult[currentPosition++] = currentTreeID;
+            }
+        }
+        return Arrays.copyOf(tabResult, currentPosition);
+    }
+}
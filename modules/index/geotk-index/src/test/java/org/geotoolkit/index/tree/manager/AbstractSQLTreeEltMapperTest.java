@@ -0,0 +1,197 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.manager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.geotoolkit.index.tree.TreeElementMapper;
+import org.geotoolkit.nio.IOUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests batch reading of the SQL {@link TreeElementMapper} implementations.
+ * Subclasses provide the database.
+ *
+ * @module
+ */
+public abstract class AbstractSQLTreeEltMapperTest extends org.geotoolkit.test.TestBase {
+
+    /**
+     * Number of envelopes stored before each test, tree identifiers go from 1 to this value.
+     */
+    protected static final int COUNT = 1100;
+
+    private Path directory;
+
+    protected TreeElementMapper<NamedEnvelope> mapper;
+
+    /**
+     * Create a mapper over the database of the given directory.
+     * The database is created if it does not exist yet.
+     */
+    protected abstract TreeElementMapper<NamedEnvelope> createMapper(Path directory) throws Exception;
+
+    /**
+     * Release the database of the given directory, after the mapper has been closed.
+     */
+    protected abstract void dispose(Path directory) throws Exception;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("treemap");
+        mapper = createMapper(directory);
+        for (int i = 1; i <= COUNT; i++) {
+            mapper.setTreeIdentifier(envelope(i, 0), i);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (mapper != null) {
+                mapper.close();
+                dispose(directory);
+            }
+        } finally {
+            IOUtilities.deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Close the mapper and open a new one on the same database, with an empty cache.
+     */
+    private void reopen() throws Exception {
+        mapper.close();
+        mapper = createMapper(directory);
+    }
+
+    /**
+     * Stored envelope for the given tree identifier, the shift moves it to tell updates apart.
+     */
+    private static NamedEnvelope envelope(final int treeIdentifier, final double shift) {
+        final NamedEnvelope env = new NamedEnvelope(AbstractRtreeManager.DEFAULT_CRS, "env" + treeIdentifier, treeIdentifier % 3);
+        final double x = (treeIdentifier % 360) - 180 + shift;
+        final double y = (treeIdentifier / 360) - 80;
+        env.setRange(0, x, x + 0.5);
+        env.setRange(1, y, y + 0.5);
+        return env;
+    }
+
+    private static void assertEnvelope(final NamedEnvelope expected, final NamedEnvelope result) {
+        assertNotNull(expected.getId(), result);
+        assertEquals(expected.getId(),    result.getId());
+        assertEquals(expected.getNbEnv(), result.getNbEnv());
+        for (int d = 0; d < 2; d++) {
+            assertEquals(expected.getMinimum(d), result.getMinimum(d), 0.0);
+            assertEquals(expected.getMaximum(d), result.getMaximum(d), 0.0);
+        }
+    }
+
+    /**
+     * Check the results are in the order of the requested identifiers,
+     * with a null element for identifiers without envelope.
+     */
+    private static void assertResults(final int[] treeIdentifiers, final List<NamedEnvelope> results) {
+        assertEquals(treeIdentifiers.length, results.size());
+        for (int i = 0; i < treeIdentifiers.length; i++) {
+            final int treeIdentifier = treeIdentifiers[i];
+            if (treeIdentifier >= 1 && treeIdentifier <= COUNT) {
+                assertEnvelope(envelope(treeIdentifier, 0), results.get(i));
+            } else {
+                assertNull(results.get(i));
+            }
+        }
+    }
+
+    /**
+     * Results follow the requested order, duplicated identifiers are repeated
+     * and unknown identifiers give null.
+     */
+    @Test
+    public void testOrder() throws Exception {
+        final int[] ids = {7, 3, 7, COUNT + 10, 1, 3, -1, COUNT, 0};
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+
+        //-- same request, now partly from cache
+        reopen();
+        mapper.getObjectFromTreeIdentifier(3);
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+    }
+
+    /**
+     * Requests around the batch sizes, each one on a new mapper so every envelope is read from database.
+     */
+    @Test
+    public void testBatchBoundaries() throws Exception {
+        for (int size : new int[] {1, 15, 16, 17, 999, 1000, 1001, 1023, 1024, 1025, COUNT}) {
+            reopen();
+            final int[] ids = new int[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = COUNT - i;
+            }
+            assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+        }
+
+        //-- a batch filled with the repeated last identifier, which does not exist
+        reopen();
+        final int[] ids = new int[1025];
+        for (int i = 0; i < 1024; i++) {
+            ids[i] = i + 1;
+        }
+        ids[1024] = COUNT + 1;
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+
+        //-- 17 identifiers are sent as 32 parameters, the last one repeated
+        reopen();
+        final int[] small = {5, 9, 2, 14, 6, 11, 1, 8, 3, 15, 13, 4, 10, 7, 12, 16, 17};
+        final List<NamedEnvelope> results = mapper.getObjectsFromTreeIdentifiers(small);
+        assertResults(small, results);
+        assertSame(results.get(16), mapper.getObjectFromTreeIdentifier(17));
+    }
+
+    /**
+     * Cached envelopes are dropped when their identifier is set again or when the mapper is cleared.
+     */
+    @Test
+    public void testCacheInvalidation() throws Exception {
+        final int[] ids = {1, 2, 3};
+        assertResults(ids, mapper.getObjectsFromTreeIdentifiers(ids));
+
+        final NamedEnvelope moved = envelope(1, 0.25);
+        mapper.setTreeIdentifier(moved, 1);
+        mapper.setTreeIdentifier(null, 2);
+        List<NamedEnvelope> results = mapper.getObjectsFromTreeIdentifiers(ids);
+        assertEnvelope(moved, results.get(0));
+        assertNull(results.get(1));
+        assertEnvelope(envelope(3, 0), results.get(2));
+        assertEnvelope(moved, mapper.getObjectFromTreeIdentifier(1));
+        assertNull(mapper.getObjectFromTreeIdentifier(2));
+
+        mapper.clear();
+        results = mapper.getObjectsFromTreeIdentifiers(ids);
+        for (NamedEnvelope env : results) {
+            assertNull(env);
+        }
+        assertNull(mapper.getObjectFromTreeIdentifier(3));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.index.tree.manager;
+
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import org.geotoolkit.index.tree.TreeElementMapper;
+
+/**
+ * Tests {@link LuceneDerbySQLTreeEltMapper} on an embedded Derby database.
+ *
+ * @module
+ */
+public class LuceneDerbySQLTreeEltMapperTest extends AbstractSQLTreeEltMapperTest {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected TreeElementMapper<NamedEnvelope> createMapper(final Path directory) throws Exception {
+        return LuceneDerbySQLTreeEltMapper.createTreeEltMapperWithDB(directory);
+    }
+
+    @Override
+    protected void dispose(final Path directory) throws Exception {
+        try {
+            DriverManager.getConnection("jdbc:derby:" + directory.toAbsolutePath().toString() + "/treemap-db;shutdown=true");
+        } catch (SQLException ex) {
+            // expected, Derby always reports a shutdown with an exception
+        }
+    }
+}
@@ -22,13 +22,20 @@ import java.util.logging.Logger;
 import java.util.*;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DocsEnum;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BitDocIdSet;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 
 import org.geotoolkit.factory.FactoryFinder;
@@ -124,13 +131,8 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
                         final int[] resultID = tree.searchID(bound);
                         Arrays.sort(resultID);
                         treeMatching.clear();
-                        TreeElementMapper<NamedEnvelope> tem = tree.getTreeElementMapper();
-                        for (int id : resultID) {
-                            final NamedEnvelope env = tem.getObjectFromTreeIdentifier(id);
-                            if (env != null) {
-                                treeMatching.add(env.getId());
-                            }
-                        }
+                        final TreeElementMapper<NamedEnvelope> tem = tree.getTreeElementMapper();
+                        addIdentifiers(tem, resultID, treeMatching);
                         treeSearch = true;
                     } catch (FactoryException ex) {
                         throw new IOException(ex);
@@ -160,12 +162,7 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
                             Arrays.sort(resultID);
                             final TreeElementMapper<NamedEnvelope> tem = tree.getTreeElementMapper();
                             treeMatching.clear();
-                            for (int id : resultID) {
-                                final NamedEnvelope env = tem.getObjectFromTreeIdentifier(id);
-                                if (env != null) {
-                                    treeMatching.add(env.getId());
-                                }
-                            }
+                            addIdentifiers(tem, resultID, treeMatching);
                             treeSearch   = true;
                             envelopeOnly = false;
                         } else {
@@ -173,12 +170,7 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
                             Arrays.sort(resultID);
                             final TreeElementMapper<NamedEnvelope> tem = tree.getTreeElementMapper();
                             treeMatching.clear();
-                            for (int id : resultID) {
-                                final NamedEnvelope env = tem.getObjectFromTreeIdentifier(id);
-                                if (env != null) {
-                                    treeMatching.add(env.getId());
-                                }
-                            }
+                            addIdentifiers(tem, resultID, treeMatching);
                             treeSearch = true;
                         }
                     } catch (StoreIndexException ex) {
@@ -199,32 +191,116 @@ public class LuceneOGCFilter extends org.apache.lucene.search.Filter implements
             LOGGER.finer("Null R-tree in spatial search");
         }
 
+        /*
+         * Tree results are mapped to documents through the identifier terms,
+         * only the candidates geometries are read.
+         */
         final LeafReader reader = ctx.reader();
-        final BitDocIdSet set = new BitDocIdSet(new FixedBitSet(reader.maxDoc()));
+        final FixedBitSet bits  = new FixedBitSet(reader.maxDoc());
+        final boolean refine    = !envelopeOnly || distanceFilter;
+        if (treeSearch && !reverse) {
+            setIdentifierDocs(reader, b, treeMatching, bits);
+            if (refine) {
+                refine(reader, bits);
+            }
+        } else if (treeSearch) {
+            // documents outside of the tree results match, the others are checked
+            setMetaDocs(reader, bits);
+            final FixedBitSet candidates = new FixedBitSet(reader.maxDoc());
+            setIdentifierDocs(reader, b, treeMatching, candidates);
+            candidates.and(bits);
+            bits.andNot(candidates);
+            refine(reader, candidates);
+            bits.or(candidates);
+        } else {
+            setMetaDocs(reader, bits);
+            if (refine) {
+                refine(reader, bits);
+            }
+        }
+        return new BitDocIdSet(bits);
+    }
+
+    /**
+     * Add the identifiers of the tree elements to the given set.
+     */
+    private static void addIdentifiers(final TreeElementMapper<NamedEnvelope> tem, final int[] resultID,
+            final Set<String> treeMatching) throws IOException {
+        for (NamedEnvelope env : tem.getObjectsFromTreeIdentifiers(resultID)) {
+            if (env != null) {
+                treeMatching.add(env.getId());
+            }
+        }
+    }
+
+    /**
+     * Set the bits of the documents having one of the given identifiers.
+     * Identifiers are looked up in term order, each lookup starts near the previous one.
+     */
+    private static void setIdentifierDocs(final LeafReader reader, final Bits acceptDocs,
+            final Set<String> identifiers, final FixedBitSet bits) throws IOException {
+        final Terms terms = reader.terms(IDENTIFIER_FIELD_NAME);
+        if (terms == null || identifiers.isEmpty()) {
+            return;
+        }
+        final BytesRef[] ids = new BytesRef[identifiers.size()];
+        int i = 0;
+        for (String id : identifiers) {
+            ids[i++] = new BytesRef(id);
+        }
+        Arrays.sort(ids);
+
+        final TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postings = null;
+        for (BytesRef id : ids) {
+            if (!termsEnum.seekExact(id)) continue;
+            postings = termsEnum.postings(acceptDocs, postings, PostingsEnum.NONE);
+            for (int docId = postings.nextDoc(); docId != DocIdSetIterator.NO_MORE_DOCS; docId = postings.nextDoc()) {
+                bits.set(docId);
+            }
+        }
+    }
+
+    /**
+     * Set the bits of all metadata documents.
+     */
+    private static void setMetaDocs(final LeafReader reader, final FixedBitSet bits) throws IOException {
         final DocsEnum termDocs = reader.termDocsEnum(META_FIELD);
-        int n = termDocs.nextDoc();
-        while (n != DocsEnum.NO_MORE_DOCS){
-            final int docId     = termDocs.docID();
-            final Document doc  = reader.document(docId, ID_FIELDS);
-            final String id     = doc.get(IDENTIFIER_FIELD_NAME);
-            final boolean match = treeMatching.contains(id);
-            if (treeSearch && reverse && !match) {
-                set.bits().set(docId);
+        if (termDocs == null) {
+            return;
+        }
+        for (int docId = termDocs.nextDoc(); docId != DocsEnum.NO_MORE_DOCS; docId = termDocs.nextDoc()) {
+            bits.set(docId);
+        }
+    }
 
-            } else if (!treeSearch || match) {
-                if (envelopeOnly && !distanceFilter) {
-                    set.bits().set(docId);
-                } else {
-                    final Document geoDoc = reader.document(docId, GEOMETRY_FIELDS);
-                    if (filter.evaluate(geoDoc)) {
-                        set.bits().set(docId);
-                    }
+    /**
+     * Clear the bits of the documents whose geometry does not match the filter.
+     * Geometries are read from the doc values column, or from the stored fields
+     * for documents indexed without it.
+     */
+    private void refine(final LeafReader reader, final FixedBitSet bits) throws IOException {
+        final BinaryDocValues geometries = reader.getBinaryDocValues(GEOMETRY_FIELD_NAME);
+        final int length = bits.length();
+        int docId = (length == 0) ? DocIdSetIterator.NO_MORE_DOCS : bits.nextSetBit(0);
+        while (docId != DocIdSetIterator.NO_MORE_DOCS) {
+            Document geoDoc = null;
+            if (geometries != null) {
+                final BytesRef wkb = geometries.get(docId);
+                if (wkb.length > 0) {
+                    // binding reads the WKB from the start of the array
+                    geoDoc = new Document();
+                    geoDoc.add(new StoredField(GEOMETRY_FIELD_NAME, BytesRef.deepCopyOf(wkb)));
                 }
             }
-            n = termDocs.nextDoc();
+            if (geoDoc == null) {
+                geoDoc = reader.document(docId, GEOMETRY_FIELDS);
+            }
+            if (!filter.evaluate(geoDoc)) {
+                bits.clear(docId);
+            }
+            docId = (docId + 1 < length) ? bits.nextSetBit(docId + 1) : DocIdSetIterator.NO_MORE_DOCS;
         }
-
-        return set;
     }
 
     public static LuceneOGCFilter wrap(final Filter filter){
@@ -31,14 +31,17 @@ import java.util.logging.Logger;
 
 // Apache Lucene dependencies
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.sis.util.ArgumentChecks;
 import org.geotoolkit.geometry.jts.JTS;
 
@@ -499,10 +502,24 @@ public abstract class AbstractIndexer<E> extends IndexLucene {
         } catch (TransformException | FactoryException | MismatchedReferenceSystemException | StoreIndexException | IOException ex) {
             LOGGER.log(Level.WARNING, "Unable to insert envelope in R-Tree.", ex);
         }
-        doc.add(new StoredField(LuceneOGCFilter.GEOMETRY_FIELD_NAME,WKBUtils.toWKBwithSRID(geom)));
+        final byte[] wkb = WKBUtils.toWKBwithSRID(geom);
+        doc.add(new StoredField(LuceneOGCFilter.GEOMETRY_FIELD_NAME, wkb));
+        // column read by the spatial filter, only one value is allowed by document
+        if (!hasGeometryColumn(doc)) {
+            doc.add(new BinaryDocValuesField(LuceneOGCFilter.GEOMETRY_FIELD_NAME, new BytesRef(wkb)));
+        }
         return namedBound;
     }
 
+    private static boolean hasGeometryColumn(final Document doc) {
+        for (IndexableField field : doc.getFields(LuceneOGCFilter.GEOMETRY_FIELD_NAME)) {
+            if (field instanceof BinaryDocValuesField) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Free the resources.
      */
@@ -0,0 +1,281 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.lucene;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.sis.referencing.CRS;
+import org.apache.sis.referencing.CommonCRS;
+import org.geotoolkit.filter.DefaultFilterFactory2;
+import org.geotoolkit.geometry.jts.JTS;
+import org.geotoolkit.index.IndexingException;
+import org.geotoolkit.index.tree.manager.postgres.LucenePostgresSQLTreeEltMapper;
+import org.geotoolkit.index.tree.manager.postgres.PGDataSource;
+import org.geotoolkit.io.wkb.WKBUtils;
+import org.geotoolkit.lucene.DocumentIndexer.DocumentEnvelope;
+import org.geotoolkit.lucene.filter.LuceneOGCFilter;
+import org.geotoolkit.lucene.filter.SpatialQuery;
+import org.geotoolkit.lucene.index.LuceneIndexSearcher;
+import org.geotoolkit.nio.IOUtilities;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static org.geotoolkit.lucene.filter.LuceneOGCFilter.GEOMETRY_PROPERTY;
+import static org.geotoolkit.lucene.filter.LuceneOGCFilter.wrap;
+import static org.junit.Assert.*;
+
+/**
+ * Compare the spatial filters results on an index built with {@code AbstractIndexer.addGeometry},
+ * where geometries are read from the doc values column, and on an index where they are only
+ * stored fields.
+ *
+ * @module
+ */
+public class LuceneDocValuesTest extends org.geotoolkit.test.TestBase {
+
+    private static final GeometryFactory GF = new GeometryFactory();
+    private static final FilterFactory2 FF = new DefaultFilterFactory2();
+
+    private static final Path directory = Paths.get("luceneDocValuesTest");
+    private static final Path storedDirectory = directory.resolve("stored");
+    private static final Path docValuesDirectory = directory.resolve("docValues");
+
+    private static LuceneIndexSearcher storedSearcher;
+    private static LuceneIndexSearcher docValuesSearcher;
+
+    /**
+     * Index the geometries with {@code addGeometry}.
+     */
+    private static final class GeometryIndexer extends DocumentIndexer {
+
+        private final Map<String,Geometry> geometries;
+
+        GeometryIndexer(final Path directory, final List<DocumentEnvelope> docs, final Map<String,Geometry> geometries) {
+            super(directory, docs, new StandardAnalyzer());
+            this.geometries = geometries;
+        }
+
+        @Override
+        protected Document createDocument(final DocumentEnvelope object, final int docId) throws IndexingException {
+            final Document doc = object.doc;
+            addGeometry(doc, geometries.get(doc.get("id")), getTreeCrs());
+            return doc;
+        }
+    }
+
+    @BeforeClass
+    public static void setUpMethod() throws Exception {
+        if (Files.isDirectory(directory)) {
+            IOUtilities.deleteRecursively(directory);
+        }
+        Files.createDirectories(storedDirectory);
+        Files.createDirectories(docValuesDirectory);
+
+        final Map<String,Geometry> geometries = fillTestData();
+        final CoordinateReferenceSystem treeCrs = CRS.forCode("CRS:84");
+
+        // geometries as stored fields only, envelopes inserted in the tree by the test indexer
+        final List<DocumentEnvelope> storedDocs = new ArrayList<>();
+        for (Map.Entry<String,Geometry> entry : geometries.entrySet()) {
+            final Document doc = createDocument(entry.getKey(), storedDocs.size());
+            doc.add(new StoredField(LuceneOGCFilter.GEOMETRY_FIELD_NAME, WKBUtils.toWKBwithSRID(entry.getValue())));
+            storedDocs.add(new DocumentEnvelope(doc, LuceneUtils.getNamedEnvelope(entry.getKey(), entry.getValue(), treeCrs)));
+        }
+        DocumentIndexer indexer = new DocumentIndexer(storedDirectory, storedDocs, new StandardAnalyzer());
+        indexer.createIndex();
+        indexer.destroy();
+
+        final List<DocumentEnvelope> docValuesDocs = new ArrayList<>();
+        for (String id : geometries.keySet()) {
+            docValuesDocs.add(new DocumentEnvelope(createDocument(id, docValuesDocs.size()), null));
+        }
+        indexer = new GeometryIndexer(docValuesDirectory, docValuesDocs, geometries);
+        indexer.createIndex();
+        indexer.destroy();
+
+        storedSearcher    = new LuceneIndexSearcher(storedDirectory,    null, new StandardAnalyzer(), false);
+        docValuesSearcher = new LuceneIndexSearcher(docValuesDirectory, null, new StandardAnalyzer(), false);
+    }
+
+    @AfterClass
+    public static void tearDownMethod() throws Exception {
+        if (PGDataSource.isSetPGDataSource()) {
+            for (Path dir : new Path[]{storedDirectory, docValuesDirectory}) {
+                LucenePostgresSQLTreeEltMapper.resetDB(indexDirectory(dir));
+            }
+        }
+        storedSearcher.destroy();
+        docValuesSearcher.destroy();
+        IOUtilities.deleteRecursively(directory);
+    }
+
+    private static Document createDocument(final String id, final int docId) {
+        final Document doc = new Document();
+        doc.add(new StringField("id", id, Field.Store.YES));
+        doc.add(new StringField("docid", docId + "", Field.Store.YES));
+        doc.add(new StringField("metafile", "doc", Field.Store.YES));
+        return doc;
+    }
+
+    private static Path indexDirectory(final Path configDirectory) throws Exception {
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(configDirectory)) {
+            final Iterator<Path> iterator = directoryStream.iterator();
+            return iterator.next();
+        }
+    }
+
+    /**
+     * Return true if documents of the index have the geometry doc values column.
+     */
+    private static boolean hasGeometryColumn(final Path configDirectory) throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(LuceneUtils.getAppropriateDirectory(indexDirectory(configDirectory)))) {
+            for (LeafReaderContext ctx : reader.leaves()) {
+                if (ctx.reader().getBinaryDocValues(LuceneOGCFilter.GEOMETRY_FIELD_NAME) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Search with the given filter in both indexes, check the results are the same.
+     *
+     * @return results of the doc values index.
+     */
+    private static Set<String> search(final Filter filter) throws Exception {
+        final Set<String> stored    = storedSearcher.doSearch(new SpatialQuery(wrap(filter)));
+        final Set<String> docValues = docValuesSearcher.doSearch(new SpatialQuery(wrap(filter)));
+        assertFalse("no result for " + filter, docValues.isEmpty());
+        assertEquals(filter.toString(), stored, docValues);
+        return docValues;
+    }
+
+    @Test
+    public void geometryColumnTest() throws Exception {
+        assertTrue(hasGeometryColumn(docValuesDirectory));
+        assertFalse(hasGeometryColumn(storedDirectory));
+    }
+
+    @Test
+    public void BBOXTest() throws Exception {
+        Set<String> results = search(FF.bbox(GEOMETRY_PROPERTY, -20, -20, 20, 20, "CRS:84"));
+        assertEquals("was:" + results, 10, results.size());
+
+        results = search(FF.bbox(GEOMETRY_PROPERTY,
+                -2226389.8158654715, -2258423.6490963786,
+                2226389.8158654715, 2258423.6490963805,
+                "EPSG:3395"));
+        assertEquals("was:" + results, 10, results.size());
+
+        search(FF.bbox(GEOMETRY_PROPERTY, 25, 5, 60, 25, "CRS:84"));
+    }
+
+    /**
+     * Documents outside of the tree results match directly, the tree results are checked.
+     */
+    @Test
+    public void disjointTest() throws Exception {
+        Set<String> results = search(FF.disjoint(GEOMETRY_PROPERTY, FF.literal(point(-25, 5))));
+        assertEquals("was:" + results, 14, results.size());
+        assertFalse(results.contains("box 4"));
+
+        final Geometry box = LuceneUtils.getPolygon(-20, 20, -20, 20, CommonCRS.defaultGeographic());
+        results = search(FF.disjoint(GEOMETRY_PROPERTY, FF.literal(box)));
+        assertFalse(results.contains("point 1"));
+        assertTrue(results.contains("point 4"));
+    }
+
+    @Test
+    public void dwithinTest() throws Exception {
+        Set<String> results = search(FF.dwithin(GEOMETRY_PROPERTY, FF.literal(point(20, 0)), 0.00001, "m"));
+        assertEquals("was:" + results, 2, results.size());
+        assertTrue(results.contains("line 1"));
+        assertTrue(results.contains("line 1 projected"));
+
+        final Geometry line = GF.createLineString(new Coordinate[]{new Coordinate(20, 0), new Coordinate(15, 0)});
+        JTS.setCRS(line, CommonCRS.defaultGeographic());
+        search(FF.dwithin(GEOMETRY_PROPERTY, FF.literal(line), 0.001, "m"));
+
+        search(FF.dwithin(GEOMETRY_PROPERTY, FF.literal(point(-10, 5)), 1000000, "m"));
+    }
+
+    /**
+     * Same geometries as {@link LuceneSearcherTest}.
+     */
+    private static Map<String,Geometry> fillTestData() throws Exception {
+        final Map<String,Geometry> geometries = new LinkedHashMap<>();
+        final CoordinateReferenceSystem geographic = CommonCRS.defaultGeographic();
+        final CoordinateReferenceSystem CRS3395 = CRS.forCode("EPSG:3395");
+
+        geometries.put("point 1",           point(-10, 10));
+        geometries.put("point 1 projected", point(-1111475.102852225, 1113194.9079327357, CRS3395));
+        geometries.put("point 2",           point(-10, 0));
+        geometries.put("point 3",           point(0, 0));
+        geometries.put("point 4",           point(40, 20));
+        geometries.put("point 5",           point(-40, 30));
+        geometries.put("box 1",             LuceneUtils.getPolygon(-40, -25, -50, -40, geographic));
+        geometries.put("box 2",             LuceneUtils.getPolygon(5, 10, 10, 15, geographic));
+        geometries.put("box 2 projected",   LuceneUtils.getPolygon(556597.4539663679, 1113194.9079327357, 1111475.1028522244, 1678147.5163917788, CRS3395));
+        geometries.put("box 3",             LuceneUtils.getPolygon(30, 50, 0, 15, geographic));
+        geometries.put("box 4",             LuceneUtils.getPolygon(-30, -15, 0, 10, geographic));
+        geometries.put("box 5",             LuceneUtils.getPolygon(44.792, 51.126, -6.171, -2.28, geographic));
+        geometries.put("line 1",            line(0, 0, 25, 0, geographic));
+        geometries.put("line 1 projected",  line(0, 0, 2857692.6111605316, 0, CRS3395));
+        geometries.put("line 2",            line(0, 0, 0, -15, geographic));
+        return geometries;
+    }
+
+    private static Geometry point(final double x, final double y) {
+        return point(x, y, CommonCRS.defaultGeographic());
+    }
+
+    private static Geometry point(final double x, final double y, final CoordinateReferenceSystem crs) {
+        final Geometry geom = GF.createPoint(new Coordinate(x, y));
+        JTS.setCRS(geom, crs);
+        return geom;
+    }
+
+    private static Geometry line(final double x1, final double y1, final double x2, final double y2,
+            final CoordinateReferenceSystem crs) {
+        final Geometry geom = GF.createLineString(new Coordinate[]{new Coordinate(x1, y1), new Coordinate(x2, y2)});
+        JTS.setCRS(geom, crs);
+        return geom;
+    }
+}
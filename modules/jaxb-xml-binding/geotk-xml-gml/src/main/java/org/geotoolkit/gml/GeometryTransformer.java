@@ -588,7 +588,19 @@ public class GeometryTransformer implements Supplier<Geometry> {
     }
 
     protected CoordinateReferenceSystem findCRS(final String srsName) {
-        final boolean longitudeFirst = isLongitudeFirst();
+        return findCRS(srsName, isLongitudeFirst());
+    }
+
+    /**
+     * Decode the coordinate reference system of the given GML srsName. Decoded
+     * systems are cached, so this method can be called for each geometry read.
+     *
+     * @param srsName The GML srsName attribute value.
+     * @param longitudeFirst True to force {@link AxesConvention#RIGHT_HANDED} convention.
+     * @return The referencing system, never null.
+     * @throws UnconvertibleObjectException If the srsName cannot be decoded.
+     */
+    public static CoordinateReferenceSystem findCRS(final String srsName, final boolean longitudeFirst) {
         try {
             return CRS_CACHE.getOrCreate(new AbstractMap.SimpleImmutableEntry<>(srsName, longitudeFirst), () -> GeometryTransformer.loadCRS(srsName, longitudeFirst));
         } catch (Exception ex) {
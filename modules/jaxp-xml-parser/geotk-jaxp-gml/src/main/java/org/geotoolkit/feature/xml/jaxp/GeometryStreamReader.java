@@ -0,0 +1,565 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.feature.xml.jaxp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.geotoolkit.geometry.jts.SRIDGenerator;
+import org.geotoolkit.gml.GeometryTransformer;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+/**
+ * Decode GML 2, 3.1.1 and 3.2.1 geometries directly from a StAX stream to JTS.
+ * <p>
+ * Coordinates are parsed from the posList, pos, coordinates and coord elements
+ * into packed coordinate sequences, without building the GML binding objects.
+ * Points, curves, rings, polygons and their collections are decoded, any other
+ * element (curves with arcs, surfaces with patches, envelopes...) is given to
+ * the {@link Fallback}, also when nested in a supported geometry.
+ * </p>
+ * Like JAXB unmarshalling, reading a geometry leaves the stream on the event
+ * following the end of the geometry element.
+ * Instances are not thread safe, parsing buffers are reused between geometries.
+ *
+ * @module
+ */
+final class GeometryStreamReader {
+
+    private static final String GML_311 = "http://www.opengis.net/gml";
+    private static final String GML_321 = "http://www.opengis.net/gml/3.2";
+
+    private static final GeometryFactory GF = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+    /**
+     * Powers of ten exactly representable as doubles.
+     */
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i-1] * 10;
+        }
+    }
+
+    /**
+     * Digits in a decimal value which can always be stored in a long and
+     * converted to a double without rounding.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * Reads geometries this class does not decode.
+     */
+    interface Fallback {
+        /**
+         * Read the geometry starting at the current element.
+         * The stream must be left on the event following the element end.
+         */
+        Geometry read(XMLStreamReader reader, boolean longitudeFirst) throws XMLStreamException;
+    }
+
+    private final Fallback fallback;
+    private XMLStreamReader reader;
+    private boolean longitudeFirst;
+
+    /**
+     * Text of the current coordinates element.
+     */
+    private char[] text = new char[256];
+    private int textLength;
+
+    /**
+     * Ordinates of the current curve or point and their dimension, 0 if unknown.
+     */
+    private double[] ordinates = new double[64];
+    private int nbOrdinates;
+    private int dimension;
+
+    /**
+     * Last decoded referencing system, geometries of a document usually share it.
+     */
+    private String lastSrsName;
+    private boolean lastLongitudeFirst;
+    private CoordinateReferenceSystem lastCRS;
+    private int lastSRID;
+
+    GeometryStreamReader(final Fallback fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Read the geometry starting at the current element.
+     *
+     * @param reader stream positioned on a geometry start element
+     * @param longitudeFirst true to force longitude first axis order on referencing systems
+     */
+    Geometry read(final XMLStreamReader reader, final boolean longitudeFirst) throws XMLStreamException {
+        this.reader = reader;
+        this.longitudeFirst = longitudeFirst;
+        try {
+            return readGeometry(null, 0);
+        } finally {
+            this.reader = null;
+        }
+    }
+
+    private Geometry readGeometry(String srsName, int srsDimension) throws XMLStreamException {
+        final String ns = reader.getNamespaceURI();
+        if (!GML_311.equals(ns) && !GML_321.equals(ns)) {
+            return fallback.read(reader, longitudeFirst);
+        }
+        final String srs = reader.getAttributeValue(null, "srsName");
+        if (srs != null) srsName = srs;
+        srsDimension = readDimension(srsDimension);
+
+        final Geometry geom;
+        switch (reader.getLocalName()) {
+            case "Point" :
+                geom = GF.createPoint(readCoordinates(srsDimension));
+                break;
+            case "LineString" :
+                geom = GF.createLineString(readCoordinates(srsDimension));
+                break;
+            case "LinearRing" :
+                geom = readRing(srsDimension);
+                break;
+            case "Polygon" :
+                geom = readPolygon(srsName, srsDimension);
+                break;
+            case "MultiPoint" : {
+                final List<Geometry> members = readMembers(srsName, srsDimension);
+                final Point[] points = new Point[members.size()];
+                for (int i = 0; i < points.length; i++) {
+                    points[i] = cast(members.get(i), Point.class);
+                }
+                geom = GF.createMultiPoint(points);
+                break;
+            }
+            case "MultiLineString" :
+            case "MultiCurve" : {
+                final List<LineString> lines = new ArrayList<>();
+                for (Geometry member : readMembers(srsName, srsDimension)) {
+                    if (member instanceof MultiLineString) {
+                        //curves read by the fallback
+                        for (int i = 0, n = member.getNumGeometries(); i < n; i++) {
+                            lines.add((LineString) member.getGeometryN(i));
+                        }
+                    } else {
+                        lines.add(cast(member, LineString.class));
+                    }
+                }
+                geom = GF.createMultiLineString(lines.toArray(new LineString[lines.size()]));
+                break;
+            }
+            case "MultiPolygon" :
+            case "MultiSurface" : {
+                final List<Polygon> polygons = new ArrayList<>();
+                for (Geometry member : readMembers(srsName, srsDimension)) {
+                    if (member instanceof MultiPolygon) {
+                        //surfaces read by the fallback
+                        for (int i = 0, n = member.getNumGeometries(); i < n; i++) {
+                            polygons.add((Polygon) member.getGeometryN(i));
+                        }
+                    } else {
+                        polygons.add(cast(member, Polygon.class));
+                    }
+                }
+                geom = GF.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()]));
+                break;
+            }
+            case "MultiGeometry" : {
+                final List<Geometry> members = readMembers(srsName, srsDimension);
+                geom = GF.createGeometryCollection(members.toArray(new Geometry[members.size()]));
+                break;
+            }
+            default :
+                return fallback.read(reader, longitudeFirst);
+        }
+        applyCRS(geom, srsName);
+        return geom;
+    }
+
+    /**
+     * Read a polygon in GML 2 (outerBoundaryIs, innerBoundaryIs) or
+     * GML 3 (exterior, interior) encoding.
+     */
+    private Polygon readPolygon(final String srsName, final int srsDimension) throws XMLStreamException {
+        LinearRing exterior = null;
+        final List<LinearRing> interiors = new ArrayList<>();
+        int event = reader.next();
+        while (true) {
+            if (event == START_ELEMENT) {
+                final String name = reader.getLocalName();
+                final boolean isExterior = "exterior".equals(name) || "outerBoundaryIs".equals(name);
+                if (isExterior || "interior".equals(name) || "innerBoundaryIs".equals(name)) {
+                    event = reader.next();
+                    while (event != END_ELEMENT) {
+                        if (event == START_ELEMENT) {
+                            final LinearRing ring = cast(readGeometry(srsName, srsDimension), LinearRing.class);
+                            if (isExterior) {
+                                exterior = ring;
+                            } else {
+                                interiors.add(ring);
+                            }
+                            event = reader.getEventType();
+                        } else {
+                            event = reader.next();
+                        }
+                    }
+                    event = reader.next();
+                } else {
+                    event = skipElement();
+                }
+            } else if (event == END_ELEMENT) {
+                break;
+            } else {
+                event = reader.next();
+            }
+        }
+        reader.next();
+        if (exterior == null) {
+            return GF.createPolygon((LinearRing) null, null);
+        }
+        return GF.createPolygon(exterior, interiors.toArray(new LinearRing[interiors.size()]));
+    }
+
+    /**
+     * Read the geometries in member elements (pointMember, curveMembers,
+     * geometryMember...) of a collection.
+     */
+    private List<Geometry> readMembers(final String srsName, final int srsDimension) throws XMLStreamException {
+        final List<Geometry> members = new ArrayList<>();
+        int event = reader.next();
+        while (true) {
+            if (event == START_ELEMENT) {
+                final String name = reader.getLocalName();
+                if (name.endsWith("Member") || name.endsWith("Members")) {
+                    event = reader.next();
+                    while (event != END_ELEMENT) {
+                        if (event == START_ELEMENT) {
+                            members.add(readGeometry(srsName, srsDimension));
+                            event = reader.getEventType();
+                        } else {
+                            event = reader.next();
+                        }
+                    }
+                    event = reader.next();
+                } else {
+                    event = skipElement();
+                }
+            } else if (event == END_ELEMENT) {
+                break;
+            } else {
+                event = reader.next();
+            }
+        }
+        reader.next();
+        return members;
+    }
+
+    private LinearRing readRing(final int srsDimension) throws XMLStreamException {
+        return GF.createLinearRing(readCoordinates(srsDimension));
+    }
+
+    /**
+     * Read the coordinates of a point, curve or ring from its pos, posList,
+     * coordinates or coord elements.
+     */
+    private CoordinateSequence readCoordinates(final int srsDimension) throws XMLStreamException {
+        nbOrdinates = 0;
+        dimension = 0;
+        int event = reader.next();
+        while (true) {
+            if (event == START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "posList" : {
+                        final int dim = readDimension(srsDimension);
+                        readText();
+                        parseValues(' ', ' ', '.');
+                        setDimension(dim > 0 ? dim : 2, nbOrdinates);
+                        break;
+                    }
+                    case "pos" : {
+                        final int start = nbOrdinates;
+                        readText();
+                        parseValues(' ', ' ', '.');
+                        setDimension(nbOrdinates - start, nbOrdinates - start);
+                        break;
+                    }
+                    case "coordinates" : {
+                        final String decimal = reader.getAttributeValue(null, "decimal");
+                        final String cs = reader.getAttributeValue(null, "cs");
+                        final String ts = reader.getAttributeValue(null, "ts");
+                        final int start = nbOrdinates;
+                        readText();
+                        final int tupleDim = parseValues(
+                                (cs == null || cs.isEmpty()) ? ',' : cs.charAt(0),
+                                (ts == null || ts.isEmpty()) ? ' ' : ts.charAt(0),
+                                (decimal == null || decimal.isEmpty()) ? '.' : decimal.charAt(0));
+                        setDimension(tupleDim > 0 ? tupleDim : (srsDimension > 0 ? srsDimension : 2), nbOrdinates - start);
+                        break;
+                    }
+                    case "coord" :
+                        readCoord();
+                        break;
+                    default :
+                        skipElement();
+                        break;
+                }
+                event = reader.getEventType();
+            } else if (event == END_ELEMENT) {
+                break;
+            } else {
+                event = reader.next();
+            }
+        }
+        reader.next();
+
+        if (dimension == 0) {
+            return PackedCoordinateSequenceFactory.DOUBLE_FACTORY.create(0, 2);
+        }
+        return PackedCoordinateSequenceFactory.DOUBLE_FACTORY.create(Arrays.copyOf(ordinates, nbOrdinates), dimension);
+    }
+
+    /**
+     * Read a GML 2 coord element : X, Y and optional Z elements.
+     */
+    private void readCoord() throws XMLStreamException {
+        final int start = nbOrdinates;
+        int event = reader.next();
+        while (true) {
+            if (event == START_ELEMENT) {
+                readText();
+                parseValues(' ', ' ', '.');
+                event = reader.getEventType();
+            } else if (event == END_ELEMENT) {
+                break;
+            } else {
+                event = reader.next();
+            }
+        }
+        reader.next();
+        setDimension(nbOrdinates - start, nbOrdinates - start);
+    }
+
+    /**
+     * Check the dimension of the ordinates just read matches the previous ones.
+     *
+     * @param dim dimension of the ordinates
+     * @param count number of ordinates just read
+     */
+    private void setDimension(final int dim, final int count) throws XMLStreamException {
+        if (count == 0) return;
+        if (dim < 2 || dim > 3) {
+            throw new XMLStreamException("Only 2D and 3D positions accepted, but received dimension: " + dim, reader.getLocation());
+        }
+        if (count % dim != 0) {
+            throw new XMLStreamException("Number of ordinates " + count + " is not a multiple of dimension " + dim, reader.getLocation());
+        }
+        if (dimension == 0) {
+            dimension = dim;
+        } else if (dimension != dim) {
+            throw new XMLStreamException("Positions of different dimensions in a geometry", reader.getLocation());
+        }
+    }
+
+    /**
+     * Returns the srsDimension attribute of the current element, or the given
+     * inherited value if absent.
+     */
+    private int readDimension(final int inherited) throws XMLStreamException {
+        final String dim = reader.getAttributeValue(null, "srsDimension");
+        if (dim == null) return inherited;
+        try {
+            return Integer.parseInt(dim.trim());
+        } catch (NumberFormatException ex) {
+            throw new XMLStreamException("Invalid srsDimension : " + dim, reader.getLocation(), ex);
+        }
+    }
+
+    /**
+     * Copy the text of the current element in the {@link #text} buffer.
+     */
+    private void readText() throws XMLStreamException {
+        textLength = 0;
+        int event = reader.next();
+        while (event != END_ELEMENT) {
+            if (event == CHARACTERS || event == CDATA || event == SPACE) {
+                final int length = reader.getTextLength();
+                if (textLength + length > text.length) {
+                    text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+                }
+                reader.getTextCharacters(reader.getTextStart(), text, textLength, length);
+                textLength += length;
+            } else if (event == START_ELEMENT) {
+                throw new XMLStreamException("Unexpected element " + reader.getName() + " in coordinates", reader.getLocation());
+            }
+            event = reader.next();
+        }
+        reader.next();
+    }
+
+    /**
+     * Parse the numbers in the text buffer and append them to the ordinates.
+     * Numbers are separated by white spaces or the coordinate separator,
+     * tuples by the tuple separator.
+     *
+     * @return number of ordinates in each tuple, 0 if the text is not split in tuples
+     */
+    private int parseValues(final char cs, final char ts, final char decimal) throws XMLStreamException {
+        final boolean tsIsSpace = Character.isWhitespace(ts);
+        final boolean tuples = cs != ts && !Character.isWhitespace(cs);
+        int tupleDim = 0;
+        int inTuple = 0;
+        int i = 0;
+        while (i < textLength) {
+            final char c = text[i];
+            if (tuples && c == ts && !tsIsSpace) {
+                tupleDim = endTuple(tupleDim, inTuple);
+                inTuple = 0;
+                i++;
+            } else if (Character.isWhitespace(c)) {
+                //a space between tuples, not around a coordinate separator
+                int j = i;
+                while (j < textLength && Character.isWhitespace(text[j])) j++;
+                if (tuples && tsIsSpace && inTuple > 0 && j < textLength && text[j] != cs && text[i-1] != cs) {
+                    tupleDim = endTuple(tupleDim, inTuple);
+                    inTuple = 0;
+                }
+                i = j;
+            } else if (c == cs) {
+                i++;
+            } else {
+                int j = i + 1;
+                while (j < textLength) {
+                    final char e = text[j];
+                    if (e == cs || e == ts || Character.isWhitespace(e)) break;
+                    j++;
+                }
+                if (nbOrdinates == ordinates.length) {
+                    ordinates = Arrays.copyOf(ordinates, nbOrdinates * 2);
+                }
+                ordinates[nbOrdinates++] = parseDouble(text, i, j, decimal);
+                inTuple++;
+                i = j;
+            }
+        }
+        if (tuples) {
+            tupleDim = endTuple(tupleDim, inTuple);
+        }
+        return tupleDim;
+    }
+
+    private int endTuple(final int tupleDim, final int inTuple) throws XMLStreamException {
+        if (inTuple == 0) return tupleDim;
+        if (tupleDim != 0 && tupleDim != inTuple) {
+            throw new XMLStreamException("Tuples of different dimensions in coordinates", reader.getLocation());
+        }
+        return inTuple;
+    }
+
+    /**
+     * Parse a decimal number. Plain numbers with few digits are computed with a
+     * single division, which gives the same result as {@link Double#parseDouble(String)},
+     * other ones are delegated to it.
+     */
+    private double parseDouble(final char[] chars, final int start, final int end, final char decimal) throws XMLStreamException {
+        int i = start;
+        final boolean negative = chars[i] == '-';
+        if (negative || chars[i] == '+') i++;
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (; i < end; i++) {
+            final char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction >= 0) fraction++;
+            } else if (c == decimal && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= MAX_EXACT_DIGITS) {
+            double value = mantissa;
+            if (fraction > 0) value /= POW10[fraction];
+            return negative ? -value : value;
+        }
+        String str = new String(chars, start, end - start);
+        if (decimal != '.') str = str.replace(decimal, '.');
+        try {
+            return Double.parseDouble(str);
+        } catch (NumberFormatException ex) {
+            throw new XMLStreamException("Invalid coordinate : " + str, reader.getLocation(), ex);
+        }
+    }
+
+    /**
+     * Skip the current element and its content.
+     *
+     * @return the event following the element end
+     */
+    private int skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == START_ELEMENT) depth++;
+            else if (event == END_ELEMENT) depth--;
+        }
+        return reader.next();
+    }
+
+    private <T extends Geometry> T cast(final Geometry geom, final Class<T> type) throws XMLStreamException {
+        if (!type.isInstance(geom)) {
+            throw new XMLStreamException("Expected a " + type.getSimpleName() + " but was " + geom.getGeometryType(), reader.getLocation());
+        }
+        return type.cast(geom);
+    }
+
+    /**
+     * Same as {@link org.geotoolkit.geometry.jts.JTS#setCRS(Geometry, CoordinateReferenceSystem)}
+     * on a new geometry, with the last referencing system kept to avoid lookups.
+     */
+    private void applyCRS(final Geometry geom, final String srsName) {
+        if (srsName == null) return;
+        if (!srsName.equals(lastSrsName) || longitudeFirst != lastLongitudeFirst) {
+            lastCRS = GeometryTransformer.findCRS(srsName, longitudeFirst);
+            lastSRID = SRIDGenerator.toSRID(lastCRS, SRIDGenerator.Version.V1);
+            lastSrsName = srsName;
+            lastLongitudeFirst = longitudeFirst;
+        }
+        geom.setUserData(lastCRS);
+        geom.setSRID(lastSRID);
+    }
+}
@@ -100,6 +100,13 @@ public class JAXPStreamFeatureReader extends StaxStreamReader implements XmlFeat
     protected static final Logger LOGGER = Logging.getLogger("org.geotoolkit.feature.xml.jaxp");
     private Unmarshaller unmarshaller;
     public static final String LONGITUDE_FIRST = "longitudeFirst";
+    /**
+     * Property to disable the direct decoding of GML geometries (Boolean, true by default).
+     * When disabled, all geometries are unmarshalled with JAXB then converted to JTS.
+     * Geometries are always unmarshalled when the binding package is JTSWrapper.
+     */
+    public static final String DIRECT_GEOMETRY_DECODING = "directGeometryDecoding";
+    private GeometryStreamReader geometryReader;
 
     /**
      * GML namespace for this class.
@@ -571,51 +578,20 @@ public class JAXPStreamFeatureReader extends StaxStreamReader implements XmlFeat
                 }
                 event = reader.next();
             }
-            try {
-                final boolean longitudeFirst;
-                if (getProperty(LONGITUDE_FIRST) != null) {
-                    longitudeFirst = (boolean) getProperty(LONGITUDE_FIRST);
-                } else {
-                    longitudeFirst = true;
-                }
-
-                final Geometry jtsGeom;
-                final Object geometry = ((JAXBElement) unmarshaller.unmarshal(reader)).getValue();
-                if (geometry instanceof JTSGeometry) {
-                    final JTSGeometry isoGeom = (JTSGeometry) geometry;
-                    if (isoGeom instanceof JTSMultiCurve) {
-                        ((JTSMultiCurve)isoGeom).applyCRSonChild();
-                    }
-                    jtsGeom = isoGeom.getJTSGeometry();
-                } else if (geometry instanceof PolygonType) {
-                    final PolygonType polygon = ((PolygonType)geometry);
-                    jtsGeom = polygon.getJTSPolygon().getJTSGeometry();
-                    if(polygon.getCoordinateReferenceSystem() != null) {
-                        JTS.setCRS(jtsGeom, polygon.getCoordinateReferenceSystem());
-                    }
-                } else if (geometry instanceof LineStringPosListType) {
-                    final JTSLineString line = ((LineStringPosListType)geometry).getJTSLineString();
-                    jtsGeom = line.getJTSGeometry();
-                    if(line.getCoordinateReferenceSystem() != null) {
-                        JTS.setCRS(jtsGeom, line.getCoordinateReferenceSystem());
-                    }
-                } else if (geometry instanceof AbstractGeometry) {
-                    try {
-                        jtsGeom = GeometrytoJTS.toJTS((AbstractGeometry) geometry, longitudeFirst);
-                    } catch (FactoryException ex) {
-                        throw new XMLStreamException("Factory Exception while transforming GML object to JTS", ex);
-                    }
-                } else {
-                    throw new IllegalArgumentException("unexpected geometry type:" + geometry);
-                }
-                value = jtsGeom;
+            final boolean longitudeFirst;
+            if (getProperty(LONGITUDE_FIRST) != null) {
+                longitudeFirst = (boolean) getProperty(LONGITUDE_FIRST);
+            } else {
+                longitudeFirst = true;
+            }
 
-            } catch (JAXBException ex) {
-                String msg = ex.getMessage();
-                if (msg == null && ex.getLinkedException() != null) {
-                    msg = ex.getLinkedException().getMessage();
+            if (useDirectGeometryDecoding()) {
+                if (geometryReader == null) {
+                    geometryReader = new GeometryStreamReader(this::unmarshalGeometry);
                 }
-                throw new IllegalArgumentException("JAXB exception while reading the feature geometry: " + msg, ex);
+                value = geometryReader.read(reader, longitudeFirst);
+            } else {
+                value = unmarshalGeometry(reader, longitudeFirst);
             }
 
         } else if (propertyType instanceof FeatureAssociationRole) {
@@ -665,6 +641,60 @@ public class JAXPStreamFeatureReader extends StaxStreamReader implements XmlFeat
         return value;
     }
 
+    /**
+     * Unmarshall the geometry at the current element with JAXB and convert it to JTS.
+     * The stream is left on the event following the geometry end.
+     */
+    private Geometry unmarshalGeometry(final XMLStreamReader reader, final boolean longitudeFirst) throws XMLStreamException {
+        try {
+            final Geometry jtsGeom;
+            final Object geometry = ((JAXBElement) unmarshaller.unmarshal(reader)).getValue();
+            if (geometry instanceof JTSGeometry) {
+                final JTSGeometry isoGeom = (JTSGeometry) geometry;
+                if (isoGeom instanceof JTSMultiCurve) {
+                    ((JTSMultiCurve)isoGeom).applyCRSonChild();
+                }
+                jtsGeom = isoGeom.getJTSGeometry();
+            } else if (geometry instanceof PolygonType) {
+                final PolygonType polygon = ((PolygonType)geometry);
+                jtsGeom = polygon.getJTSPolygon().getJTSGeometry();
+                if(polygon.getCoordinateReferenceSystem() != null) {
+                    JTS.setCRS(jtsGeom, polygon.getCoordinateReferenceSystem());
+                }
+            } else if (geometry instanceof LineStringPosListType) {
+                final JTSLineString line = ((LineStringPosListType)geometry).getJTSLineString();
+                jtsGeom = line.getJTSGeometry();
+                if(line.getCoordinateReferenceSystem() != null) {
+                    JTS.setCRS(jtsGeom, line.getCoordinateReferenceSystem());
+                }
+            } else if (geometry instanceof AbstractGeometry) {
+                try {
+                    jtsGeom = GeometrytoJTS.toJTS((AbstractGeometry) geometry, longitudeFirst);
+                } catch (FactoryException ex) {
+                    throw new XMLStreamException("Factory Exception while transforming GML object to JTS", ex);
+                }
+            } else {
+                throw new IllegalArgumentException("unexpected geometry type:" + geometry);
+            }
+            return jtsGeom;
+
+        } catch (JAXBException ex) {
+            String msg = ex.getMessage();
+            if (msg == null && ex.getLinkedException() != null) {
+                msg = ex.getLinkedException().getMessage();
+            }
+            throw new IllegalArgumentException("JAXB exception while reading the feature geometry: " + msg, ex);
+        }
+    }
+
+    /**
+     * Geometries are decoded directly unless disabled or JTSWrapper bindings are requested.
+     */
+    private boolean useDirectGeometryDecoding() {
+        return !Boolean.FALSE.equals(properties.get(DIRECT_GEOMETRY_DECODING))
+            && !"JTSWrapper".equals(properties.get(BINDING_PACKAGE));
+    }
+
     public Object readValue(final String content, final AttributeType type){
         Object value = content;
         if(type.getValueClass()== byte[].class && content != null){
@@ -0,0 +1,106 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.feature.xml.jaxp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import org.apache.sis.feature.builder.FeatureTypeBuilder;
+import org.geotoolkit.data.FeatureReader;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.FeatureType;
+
+import static org.geotoolkit.feature.xml.GMLConvention.*;
+
+/**
+ * Compare the time needed to read a large GML document with geometries
+ * decoded directly or unmarshalled with JAXB.
+ */
+public class BenchMarkGeometryReading {
+
+    private static final int NB_FEATURES = 1000000;
+    private static final int NB_POINTS = 20;
+
+    private final FeatureType type;
+    private final Path file;
+
+    public BenchMarkGeometryReading() throws IOException {
+        final FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName(GML_311_NAMESPACE, "Parcel");
+        ftb.setSuperTypes(ABSTRACTFEATURETYPE_31);
+        ftb.addAttribute(String.class).setName(GML_311_NAMESPACE, "label");
+        ftb.addAttribute(Polygon.class).setName(GML_311_NAMESPACE, "geom");
+        type = ftb.build();
+
+        file = Files.createTempFile("parcels", ".gml");
+        file.toFile().deleteOnExit();
+        final Random rand = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+            writer.write("<wfs:FeatureCollection xmlns:gml=\"http://www.opengis.net/gml\" xmlns:wfs=\"http://www.opengis.net/wfs\">\n");
+            for (int i = 0; i < NB_FEATURES; i++) {
+                writer.write("<gml:featureMember><gml:Parcel gml:id=\"p" + i + "\">");
+                writer.write("<gml:label>parcel " + i + "</gml:label><gml:geom>");
+                writer.write("<gml:Polygon srsName=\"EPSG:4326\"><gml:exterior><gml:LinearRing><gml:posList>");
+                final double cx = rand.nextDouble() * 360 - 180;
+                final double cy = rand.nextDouble() * 180 - 90;
+                for (int p = 0; p < NB_POINTS; p++) {
+                    final double angle = (p % (NB_POINTS - 1)) * 2 * Math.PI / (NB_POINTS - 1);
+                    writer.write(String.format(Locale.ROOT, "%.6f %.6f ", cx + Math.cos(angle) * 0.01, cy + Math.sin(angle) * 0.01));
+                }
+                writer.write("</gml:posList></gml:LinearRing></gml:exterior></gml:Polygon>");
+                writer.write("</gml:geom></gml:Parcel></gml:featureMember>\n");
+            }
+            writer.write("</wfs:FeatureCollection>");
+        }
+    }
+
+    private void read(final boolean direct) throws Exception {
+        final JAXPStreamFeatureReader reader = new JAXPStreamFeatureReader(type);
+        reader.getProperties().put(JAXPStreamFeatureReader.DIRECT_GEOMETRY_DECODING, direct);
+        final long start = System.nanoTime();
+        int count = 0;
+        try (FeatureReader ite = reader.readAsStream(file)) {
+            while (ite.hasNext()) {
+                ite.next();
+                count++;
+            }
+        } finally {
+            reader.dispose();
+        }
+        System.out.println((direct ? "direct" : "JAXB") + " : "
+                + (System.nanoTime() - start) / 1000000 + " ms (" + count + " features)");
+    }
+
+    @Test
+    @Ignore
+    public void benchDirect() throws Exception {
+        read(true);
+    }
+
+    @Test
+    @Ignore
+    public void benchJAXB() throws Exception {
+        read(false);
+    }
+}
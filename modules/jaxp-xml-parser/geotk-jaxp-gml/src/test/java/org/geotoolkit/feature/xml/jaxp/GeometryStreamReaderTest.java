@@ -0,0 +1,190 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.feature.xml.jaxp;
+
+import java.io.StringReader;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.geotoolkit.gml.GeometrytoJTS;
+import org.geotoolkit.gml.xml.AbstractGeometry;
+import org.geotoolkit.gml.xml.GMLMarshallerPool;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+import static org.junit.Assert.*;
+
+/**
+ * Compare geometries decoded by {@link GeometryStreamReader} with the JAXB path.
+ */
+public class GeometryStreamReaderTest extends org.geotoolkit.test.TestBase {
+
+    private static final String GML = "xmlns:gml=\"http://www.opengis.net/gml\"";
+    private static final String GML32 = "xmlns:gml=\"http://www.opengis.net/gml/3.2\"";
+
+    private int fallbacks;
+
+    private Geometry unmarshal(final XMLStreamReader reader, final boolean longitudeFirst) throws XMLStreamException {
+        fallbacks++;
+        try {
+            final Unmarshaller unmarshaller = GMLMarshallerPool.getInstance().acquireUnmarshaller();
+            final Object gml = ((JAXBElement) unmarshaller.unmarshal(reader)).getValue();
+            GMLMarshallerPool.getInstance().recycle(unmarshaller);
+            return GeometrytoJTS.toJTS((AbstractGeometry) gml, longitudeFirst);
+        } catch (Exception ex) {
+            throw new XMLStreamException(ex);
+        }
+    }
+
+    private static XMLStreamReader open(final String xml) throws XMLStreamException {
+        final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+        while (reader.next() != START_ELEMENT);
+        return reader;
+    }
+
+    /**
+     * Decode with the stream reader and the JAXB path, both must give the same geometry.
+     */
+    private Geometry read(final String xml) throws XMLStreamException {
+        final XMLStreamReader stream = open(xml);
+        final Geometry direct = new GeometryStreamReader(this::unmarshal).read(stream, true);
+        assertEquals(0, fallbacks);
+        //stream must be after the geometry end
+        assertEquals(END_DOCUMENT, stream.getEventType());
+
+        final Geometry expected = unmarshal(open(xml), true);
+        assertTrue(expected.equalsExact(direct));
+        assertEquals(expected.getUserData(), direct.getUserData());
+        return direct;
+    }
+
+    @Test
+    public void pointTest() throws XMLStreamException {
+        final Geometry geom = read("<gml:Point " + GML + " srsName=\"EPSG:4326\"><gml:pos>5.5 -10.25</gml:pos></gml:Point>");
+        assertTrue(geom instanceof Point);
+        assertEquals(5.5, ((Point) geom).getX(), 0.0);
+        assertEquals(-10.25, ((Point) geom).getY(), 0.0);
+        assertNotNull(geom.getUserData());
+    }
+
+    @Test
+    public void lineStringTest() throws XMLStreamException {
+        final Geometry geom = read("<gml:LineString " + GML32 + " srsName=\"EPSG:4326\">"
+                + "<gml:posList srsDimension=\"3\">1 2 3 4.125 5 6\n 7 8 9.0</gml:posList></gml:LineString>");
+        assertTrue(geom instanceof LineString);
+        assertEquals(3, ((LineString) geom).getNumPoints());
+        assertTrue(((LineString) geom).getCoordinateSequence() instanceof PackedCoordinateSequence);
+        assertEquals(9.0, ((LineString) geom).getCoordinateN(2).z, 0.0);
+    }
+
+    @Test
+    public void gml2PolygonTest() throws XMLStreamException {
+        final Geometry geom = read("<gml:Polygon " + GML + " srsName=\"EPSG:4326\">"
+                + "<gml:outerBoundaryIs><gml:LinearRing>"
+                + "<gml:coordinates>0,0 10,0 10,10 0,10 0,0</gml:coordinates>"
+                + "</gml:LinearRing></gml:outerBoundaryIs>"
+                + "<gml:innerBoundaryIs><gml:LinearRing>"
+                + "<gml:coordinates>1.5,1.5 2,1 2,2 1.5,1.5</gml:coordinates>"
+                + "</gml:LinearRing></gml:innerBoundaryIs>"
+                + "</gml:Polygon>");
+        assertTrue(geom instanceof Polygon);
+        assertEquals(1, ((Polygon) geom).getNumInteriorRing());
+        assertEquals(1.5, ((Polygon) geom).getInteriorRingN(0).getCoordinateN(0).x, 0.0);
+    }
+
+    /**
+     * GML 2 coordinates with custom separators and spaces around them.
+     */
+    @Test
+    public void coordinatesSeparatorTest() throws XMLStreamException {
+        XMLStreamReader stream = open("<gml:LineString " + GML + ">"
+                + "<gml:coordinates decimal=\",\" cs=\";\" ts=\" \">1,5;2,25 3;4</gml:coordinates></gml:LineString>");
+        LineString line = (LineString) new GeometryStreamReader(this::unmarshal).read(stream, true);
+        assertEquals(2, line.getNumPoints());
+        assertEquals(2.25, line.getCoordinateN(0).y, 0.0);
+        assertEquals(3.0, line.getCoordinateN(1).x, 0.0);
+
+        stream = open("<gml:LineString " + GML + ">"
+                + "<gml:coordinates> 1, 2 3 ,4\n5,6 </gml:coordinates></gml:LineString>");
+        line = (LineString) new GeometryStreamReader(this::unmarshal).read(stream, true);
+        assertEquals(3, line.getNumPoints());
+        assertEquals(4.0, line.getCoordinateN(1).y, 0.0);
+        assertEquals(0, fallbacks);
+    }
+
+    @Test
+    public void multiSurfaceTest() throws XMLStreamException {
+        final Geometry geom = read("<gml:MultiSurface " + GML + " srsName=\"EPSG:4326\">"
+                + "<gml:surfaceMember><gml:Polygon><gml:exterior><gml:LinearRing>"
+                + "<gml:posList>0 0 10 0 10 10 0 0</gml:posList>"
+                + "</gml:LinearRing></gml:exterior></gml:Polygon></gml:surfaceMember>"
+                + "<gml:surfaceMember><gml:Polygon><gml:exterior><gml:LinearRing>"
+                + "<gml:pos>1 1</gml:pos><gml:pos>11 1</gml:pos><gml:pos>11 11</gml:pos><gml:pos>1 1</gml:pos>"
+                + "</gml:LinearRing></gml:exterior></gml:Polygon></gml:surfaceMember>"
+                + "</gml:MultiSurface>");
+        assertTrue(geom instanceof MultiPolygon);
+        assertEquals(2, geom.getNumGeometries());
+        //children inherit the referencing system
+        assertEquals(geom.getUserData(), geom.getGeometryN(1).getUserData());
+    }
+
+    /**
+     * Curves are not decoded directly, they must be given to the fallback.
+     */
+    @Test
+    public void fallbackTest() throws XMLStreamException {
+        final XMLStreamReader stream = open("<gml:MultiCurve " + GML + ">"
+                + "<gml:curveMember><gml:LineString><gml:posList>0 0 1 1</gml:posList></gml:LineString></gml:curveMember>"
+                + "<gml:curveMember><gml:Curve><gml:segments><gml:LineStringSegment>"
+                + "<gml:posList>2 2 3 3</gml:posList>"
+                + "</gml:LineStringSegment></gml:segments></gml:Curve></gml:curveMember>"
+                + "</gml:MultiCurve>");
+        final Geometry geom = new GeometryStreamReader(this::unmarshal).read(stream, true);
+        assertEquals(1, fallbacks);
+        assertTrue(geom instanceof MultiLineString);
+        assertEquals(2, geom.getNumGeometries());
+        assertEquals(3.0, geom.getGeometryN(1).getCoordinates()[1].x, 0.0);
+    }
+
+    /**
+     * Values with many digits or exponents must be parsed exactly like {@link Double#parseDouble(String)}.
+     */
+    @Test
+    public void numberTest() throws XMLStreamException {
+        final String[] values = {"0.1", "-123.456789012345", "1e3", "12345678901234567", "-0.0", "+7.25", "3.", ".5"};
+        final StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            sb.append(value).append(' ').append(value).append(' ');
+        }
+        final XMLStreamReader stream = open("<gml:LineString " + GML + "><gml:posList>" + sb + "</gml:posList></gml:LineString>");
+        final LineString line = (LineString) new GeometryStreamReader(this::unmarshal).read(stream, true);
+        assertEquals(0, fallbacks);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(Double.parseDouble(values[i])),
+                         Double.doubleToRawLongBits(line.getCoordinateN(i).x));
+        }
+    }
+}
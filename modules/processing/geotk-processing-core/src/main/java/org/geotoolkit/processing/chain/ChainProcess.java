@@ -16,11 +16,27 @@
  */
 package org.geotoolkit.processing.chain;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.sis.parameter.Parameters;
@@ -40,9 +56,11 @@ import org.geotoolkit.processing.chain.model.Constant;
 import org.geotoolkit.processing.chain.model.DataLink;
 import org.geotoolkit.processing.chain.model.Element;
 import org.geotoolkit.processing.chain.model.ElementCondition;
+import org.geotoolkit.processing.chain.model.FlowLink;
 import org.apache.sis.util.ObjectConverters;
 import org.apache.sis.util.UnconvertibleObjectException;
 import org.apache.sis.util.ObjectConverter;
+import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.logging.Logging;
 import org.geotoolkit.processing.ForwardProcessListener;
 import org.opengis.filter.Filter;
@@ -62,8 +80,26 @@ public class ChainProcess extends AbstractProcess {
 
     protected static final Logger LOGGER = Logging.getLogger("org.geotoolkit.processing.chain");
 
-    private Process currentProcess;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ThreadFactory THREAD_FACTORY = (Runnable r) -> {
+        final Thread thread = new Thread(r, "Chain process " + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
 
+    /**
+     * Sub processes currently running.
+     */
+    private final List<Process> runningProcesses = new CopyOnWriteArrayList<>();
+
+    /**
+     * Execution time of each element, in milliseconds.
+     */
+    private final Map<Integer, Long> executionTimes = new ConcurrentHashMap<>();
+
+    private final Object pauseLock = new Object();
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
 
     public ChainProcess(final ChainProcessDescriptor desc, final ParameterValueGroup input) {
         super(desc, input);
@@ -78,7 +114,71 @@ public class ChainProcess extends AbstractProcess {
     }
 
     /**
-     * {@inheritDoc}
+     * Returns the maximum number of elements executed at the same time.
+     * Default value is the number of available processors.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the maximum number of elements executed at the same time.
+     * A value of 1 executes elements one after the other.
+     *
+     * @param parallelism number of elements executed at the same time, at least 1
+     */
+    public void setParallelism(final int parallelism) {
+        ArgumentChecks.ensureStrictlyPositive("parallelism", parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the execution time in milliseconds of each process and condition
+     * element of the last execution, by element identifier.
+     */
+    public Map<Integer, Long> getExecutionTimes() {
+        return Collections.unmodifiableMap(new HashMap<>(executionTimes));
+    }
+
+    /**
+     * Execution state of a flow node.
+     */
+    private static final class NodeState {
+        final FlowNode node;
+        /** Nodes waiting for this one to finish, by flow or data links. */
+        final Set<NodeState> dependents = new LinkedHashSet<>();
+        /** Number of unfinished nodes this one waits for. */
+        int pending;
+        /** Number of incoming flow links. */
+        int flowIn;
+        /** Number of incoming flow links from untaken condition branches or skipped nodes. */
+        int flowDead;
+        /** Process result or condition value, set by the executing thread. */
+        ParameterValueGroup result;
+        boolean condition;
+
+        NodeState(final FlowNode node) {
+            this.node = node;
+        }
+
+        /**
+         * A node is skipped when all its execution links come from untaken
+         * condition branches, directly or through skipped nodes.
+         */
+        boolean isSkipped() {
+            return flowIn > 0 && flowDead == flowIn;
+        }
+    }
+
+    /**
+     * Execute each element as soon as the elements it depends on, by execution
+     * or data links, are finished. Independent branches are executed in parallel,
+     * up to {@link #getParallelism()} elements at the same time.
+     * <p>
+     * Conditional elements disable the execution links of the untaken branch,
+     * elements only reachable from this branch are not executed.
+     * The first failing element cancels the other running elements.
+     * </p>
      */
     @Override
     protected void execute() throws ProcessException {
@@ -87,11 +187,8 @@ public class ChainProcess extends AbstractProcess {
 
         // processing progress
         final float workLoadPart = 100 / model.getElements().size();
-        float currentProgress = 0;
-        int i = 1;
 
         final Collection<FlowNode> nodes = Flow.createFlow(model);
-        List<List<FlowNode>> ranked = Flow.sortByRank(nodes);
 
         //prepare all parameters for each process step
         final Map<Integer, ParameterValueGroup> configs = new HashMap<>();
@@ -132,116 +229,214 @@ public class ChainProcess extends AbstractProcess {
             }
         }
 
-        // Will contain all the versions of processes used
-        final StringBuilder processVersion = new StringBuilder();
-
-        //run processes in order
-        for (int j = 0; j < ranked.size(); j++) {
-            final List<FlowNode> rank = ranked.get(j);
-            currentProgress = (i - 1) * workLoadPart;
-
-            for (FlowNode node : rank) {
-                final Object obj = node.getObject();
-                if (obj == ElementProcess.BEGIN) {
-                    //copy input params in children nodes
-                    for(DataLink link : model.getInputLinks(Integer.MIN_VALUE)){
-                        List<ParameterValue> values = getValues(inputParameters, link.getSourceCode());
-                        boolean first = true;
-                        for (ParameterValue paramValue : values) {
-                            if (first) {
-                                final Object value = paramValue.getValue();
-                                setValue(value, configs.get(link.getTargetId()).parameter(link.getTargetCode()));
-                                first = false;
-                            } else {
-                                final Object value = paramValue.getValue();
-                                setValue(value, paramValue);
-                                configs.get(link.getTargetId()).values().add(paramValue);
+        //build dependencies from execution and data links
+        final Map<FlowNode, NodeState> states = new LinkedHashMap<>();
+        final Map<Integer, NodeState> byId = new HashMap<>();
+        for (FlowNode node : nodes) {
+            if (node.getObject() instanceof Element) {
+                final NodeState state = new NodeState(node);
+                states.put(node, state);
+                byId.put(((Element) node.getObject()).getId(), state);
+            }
+        }
+        for (NodeState state : states.values()) {
+            for (FlowNode child : state.node.getChildren()) {
+                final NodeState childState = states.get(child);
+                childState.flowIn++;
+                if (state.dependents.add(childState)) childState.pending++;
+            }
+        }
+        for (DataLink link : model.getDataLinks()) {
+            final NodeState source = byId.get(link.getSourceId());
+            final NodeState target = byId.get(link.getTargetId());
+            if (source != null && target != null && source != target && source.dependents.add(target)) {
+                target.pending++;
+            }
+        }
+
+        final Deque<NodeState> ready = new ArrayDeque<>();
+        for (NodeState state : states.values()) {
+            if (state.pending == 0) ready.add(state);
+        }
+
+        executionTimes.clear();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, THREAD_FACTORY);
+        final CompletionService<NodeState> completion = new ExecutorCompletionService<>(executor);
+        final Map<Future<NodeState>, NodeState> running = new HashMap<>();
+        int finished = 0;
+        int executed = 0;
+        try {
+            while (true) {
+                while (!ready.isEmpty()) {
+                    final NodeState state = ready.poll();
+                    final Object obj = state.node.getObject();
+                    if (state.isSkipped()) {
+                        for (FlowNode child : state.node.getChildren()) {
+                            states.get(child).flowDead++;
+                        }
+                        finished++;
+                        release(state, ready);
+                    } else if (obj instanceof ElementProcess || obj instanceof ElementCondition) {
+                        final float currentProgress = executed * workLoadPart;
+                        if (obj instanceof ElementProcess) {
+                            // handle process cancel
+                            if (isCanceled()) {
+                                throw new ProcessException("Process Canceled by user", this, null);
                             }
+                            waitWhilePaused(currentProgress);
+                        }
+                        final ParameterValueGroup config = configs.get(((Element) obj).getId());
+                        running.put(completion.submit(() -> run(state, config, currentProgress, workLoadPart)), state);
+                    } else {
+                        if (obj == ElementProcess.BEGIN) {
+                            //copy input params in children nodes
+                            copyResults(model, Integer.MIN_VALUE, inputParameters, configs);
                         }
+                        finished++;
+                        release(state, ready);
                     }
-                } else if (obj == ElementProcess.END) {
-                    // do nothing
+                }
+
+                if (running.isEmpty()) break;
 
-                } else if(obj instanceof ElementProcess) {
-                    // handle process cancel
+                final Future<NodeState> future = completion.take();
+                final NodeState state = running.remove(future);
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
                     if (isCanceled()) {
-                       throw new ProcessException("Process Canceled by user", this, null);
+                        throw new ProcessException("Process Canceled by user", this, ex.getCause());
                     }
-                    // handle process pause
-                    if (isPaused()) {
-                        fireProcessPaused(descriptor.getIdentifier().getCode() + " paused", currentProgress);
-                        while (isPaused()) {
-                            try {
-                                Thread.sleep(1000);
-                            } catch (InterruptedException ex) {
-                                LOGGER.log(Level.WARNING, "Interruption while process is in pause", ex);
-                            }
-                        }
-                        fireProcessResumed(descriptor.getIdentifier().getCode() + " resumed", currentProgress);
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof ProcessException) {
+                        throw (ProcessException) cause;
                     }
+                    throw new ProcessException(cause.getMessage(), this, cause);
+                }
 
-                    //execute process
-                    final ElementProcess element = (ElementProcess) obj;
-                    final ParameterValueGroup config = configs.get(element.getId());
-                    final ProcessDescriptor pdesc;
-                    try {
-                        pdesc = getProcessDescriptor(element);
-                    } catch (NoSuchIdentifierException ex) {
-                        throw new ProcessException("Sub process not found", this, ex);
-                    }
-                    currentProcess = pdesc.createProcess(config);
-                    currentProcess.addListener(new ForwardProcessListener(this, currentProgress, workLoadPart));
-                    if (currentProcess instanceof AbstractProcess) {
-                        ((AbstractProcess)currentProcess).setJobId(jobId);
+                final Object obj = state.node.getObject();
+                if (obj instanceof ElementCondition) {
+                    //disable the untaken branch
+                    final ElementCondition condition = (ElementCondition) obj;
+                    final List<FlowLink> untaken = state.condition ? condition.getFailed() : condition.getSuccess();
+                    final List<FlowNode> children = state.node.getChildren();
+                    final List<FlowLink> links = state.node.getLinks();
+                    for (int k = 0; k < children.size(); k++) {
+                        if (untaken.contains(links.get(k))) {
+                            states.get(children.get(k)).flowDead++;
+                        }
                     }
+                } else {
+                    //set result in children
+                    copyResults(model, ((Element) obj).getId(), state.result, configs);
+                    executed++;
+                }
+                finished++;
+                release(state, ready);
+            }
+        } catch (InterruptedException ex) {
+            throw new ProcessException("Interrupted while waiting for sub processes", this, ex);
+        } finally {
+            //fail fast : stop elements still running
+            for (Process process : runningProcesses) {
+                if (process instanceof AbstractProcess) {
+                    ((AbstractProcess) process).cancelProcess();
+                }
+            }
+            for (Future<NodeState> future : running.keySet()) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+        }
 
-                    final String processId = pdesc.getIdentifier().getCode();
-                    // Fill process version with values coming from the current process.
-                    if (processVersion.length() > 0) {
-                        processVersion.append(", ");
-                    }
-                    processVersion.append(processId).append(" ");
-                    if (currentProcess.getDescriptor() instanceof AbstractProcessDescriptor) {
-                        processVersion.append(((AbstractProcessDescriptor) currentProcess.getDescriptor()).getVersion());
-                    } else {
-                        processVersion.append("1.0");
-                    }
+        if (finished < states.size()) {
+            throw new ProcessException("Chain execution links contain a cycle.", this, null);
+        }
+    }
 
-                    final ParameterValueGroup result = currentProcess.call();
-                    //fireProgressing(pdesc.getIdentifier().getCode() + " completed", i * part, false);
-                    i++;
+    /**
+     * Execute a process or condition element, called in a worker thread.
+     */
+    private NodeState run(final NodeState state, final ParameterValueGroup config,
+            final float currentProgress, final float workLoadPart) throws ProcessException {
+        final long start = System.nanoTime();
+        final Element element = (Element) state.node.getObject();
+        if (element instanceof ElementCondition) {
+            state.condition = executeConditionalElement((ElementCondition) element, config);
+        } else {
+            final ProcessDescriptor pdesc;
+            try {
+                pdesc = getProcessDescriptor((ElementProcess) element);
+            } catch (NoSuchIdentifierException ex) {
+                throw new ProcessException("Sub process not found", this, ex);
+            }
+            final Process process = pdesc.createProcess(config);
+            process.addListener(new ForwardProcessListener(this, currentProgress, workLoadPart));
+            if (process instanceof AbstractProcess) {
+                ((AbstractProcess)process).setJobId(jobId);
+            }
+            runningProcesses.add(process);
+            try {
+                state.result = process.call();
+            } finally {
+                runningProcesses.remove(process);
+            }
+        }
+        final long time = (System.nanoTime() - start) / 1000000;
+        executionTimes.put(element.getId(), time);
+        LOGGER.log(Level.FINE, "Chain element {0} executed in {1} ms", new Object[]{element, time});
+        return state;
+    }
 
-                    //set result in children
-                    for (DataLink link : model.getInputLinks(element.getId())) {
-                        final List<ParameterValue> values = getValues(result, link.getSourceCode());
-                        boolean first = true;
-                        for (ParameterValue paramValue : values) {
-                            if (first) {
-                                final Object value = paramValue.getValue();
-                                setValue(value, configs.get(link.getTargetId()).parameter(link.getTargetCode()));
-                                first = false;
-                            } else {
-                                final Object value = paramValue.getValue();
-                                setValue(value, paramValue);
-                                configs.get(link.getTargetId()).values().add(paramValue);
-                            }
-                        }
-                    }
-                } else if (obj instanceof ElementCondition) {
-                    final ElementCondition condition = (ElementCondition) obj;
-                    final Boolean result = executeConditionalElement(condition, configs.get(condition.getId()));
+    /**
+     * Notify nodes waiting for the given one.
+     */
+    private static void release(final NodeState state, final Deque<NodeState> ready) {
+        for (NodeState dependent : state.dependents) {
+            if (--dependent.pending == 0) {
+                ready.add(dependent);
+            }
+        }
+    }
 
-                    final Chain updateModel = new Chain(model);
-                    if (result) {
-                        updateModel.getFlowLinks().removeAll(condition.getFailed());
-                    } else {
-                        updateModel.getFlowLinks().removeAll(condition.getSuccess());
-                    }
-                    ranked = Flow.sortByRank(Flow.createFlow(updateModel));
+    /**
+     * Copy output values of an element in the parameters of elements linked to it.
+     */
+    private void copyResults(final Chain model, final int sourceId, final ParameterValueGroup result,
+            final Map<Integer, ParameterValueGroup> configs) {
+        for (DataLink link : model.getInputLinks(sourceId)) {
+            final List<ParameterValue> values = getValues(result, link.getSourceCode());
+            boolean first = true;
+            for (ParameterValue paramValue : values) {
+                if (first) {
+                    final Object value = paramValue.getValue();
+                    setValue(value, configs.get(link.getTargetId()).parameter(link.getTargetCode()));
+                    first = false;
+                } else {
+                    final Object value = paramValue.getValue();
+                    setValue(value, paramValue);
+                    configs.get(link.getTargetId()).values().add(paramValue);
                 }
             }
         }
+    }
 
+    /**
+     * Block until the process is resumed or canceled.
+     */
+    private void waitWhilePaused(final float currentProgress) {
+        if (!isPaused()) return;
+        fireProcessPaused(descriptor.getIdentifier().getCode() + " paused", currentProgress);
+        synchronized (pauseLock) {
+            while (isPaused() && !isCanceled()) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException ex) {
+                    LOGGER.log(Level.WARNING, "Interruption while process is in pause", ex);
+                }
+            }
+        }
+        fireProcessResumed(descriptor.getIdentifier().getCode() + " resumed", currentProgress);
     }
 
     private boolean executeConditionalElement(final ElementCondition condition, final ParameterValueGroup inputs) throws ProcessException {
@@ -319,8 +514,21 @@ public class ChainProcess extends AbstractProcess {
     @Override
     public void cancelProcess() {
         super.cancelProcess();
-        if (currentProcess instanceof AbstractProcess) {
-            ((AbstractProcess)currentProcess).cancelProcess();
+        for (Process process : runningProcesses) {
+            if (process instanceof AbstractProcess) {
+                ((AbstractProcess)process).cancelProcess();
+            }
+        }
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void resumeProcess() {
+        super.resumeProcess();
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
         }
     }
 
@@ -112,6 +112,38 @@ public class ChainProcessTest extends org.geotoolkit.test.TestBase {
         return chain;
     }
 
+    private Chain createParallelChain(){
+        //produce a chain equivalent to :  ($a + 10) * ($b + 10)
+        //both additions are independent branches
+        final Chain chain = new Chain("parallelChain");
+        int id = 1;
+
+        final Parameter a = chain.addInputParameter("a", Double.class, "title", "desc",1,1,null);
+        final Parameter b = chain.addInputParameter("b", Double.class, "title", "desc",1,1,null);
+        final Parameter r = chain.addOutputParameter("r", Double.class, "title", "desc",1,1,null);
+        final Constant c = chain.addConstant(id++, Double.class, 10d);
+
+        final ElementProcess addA = chain.addProcessElement(id++, "demo", "add");
+        final ElementProcess addB = chain.addProcessElement(id++, "demo", "add");
+        final ElementProcess multi = chain.addProcessElement(id++, "demo", "multiply");
+
+        chain.addFlowLink(BEGIN.getId(), addA.getId());
+        chain.addFlowLink(BEGIN.getId(), addB.getId());
+        chain.addFlowLink(addA.getId(), multi.getId());
+        chain.addFlowLink(addB.getId(), multi.getId());
+        chain.addFlowLink(multi.getId(), END.getId());
+
+        chain.addDataLink(BEGIN.getId(), a.getCode(), addA.getId(), "first");
+        chain.addDataLink(BEGIN.getId(), b.getCode(), addB.getId(), "first");
+        chain.addDataLink(c.getId(), "", addA.getId(), "second");
+        chain.addDataLink(c.getId(), "", addB.getId(), "second");
+        chain.addDataLink(addA.getId(), "result", multi.getId(), "first");
+        chain.addDataLink(addB.getId(), "result", multi.getId(), "second");
+        chain.addDataLink(multi.getId(), "result", END.getId(), r.getCode());
+
+        return chain;
+    }
+
     @Test
     public void testSimpleChain() throws ProcessException{
 
@@ -230,4 +262,26 @@ public class ChainProcessTest extends org.geotoolkit.test.TestBase {
 
     }
 
+    @Test
+    public void testParallelChain() throws ProcessException{
+
+        final Chain chain = createParallelChain();
+        final Set<MockProcessRegistry> registries = Collections.singleton(new MockProcessRegistry());
+        final ProcessDescriptor desc = new ChainProcessDescriptor(chain, MockProcessRegistry.IDENTIFICATION, registries);
+
+        for (int parallelism : new int[]{1, 4}) {
+            final ParameterValueGroup input = desc.getInputDescriptor().createValue();
+            input.parameter("a").setValue(5d);
+            input.parameter("b").setValue(-2d);
+
+            final ChainProcess process = (ChainProcess) desc.createProcess(input);
+            process.setParallelism(parallelism);
+            final ParameterValueGroup result = process.call();
+
+            assertEquals(120d, result.parameter("r").doubleValue(),0.000001);
+            //one timing for each process element
+            assertEquals(3, process.getExecutionTimes().size());
+        }
+    }
+
 }
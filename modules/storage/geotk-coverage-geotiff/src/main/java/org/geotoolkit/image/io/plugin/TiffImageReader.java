@@ -51,8 +51,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
-import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
 import javax.imageio.IIOException;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -176,13 +174,6 @@ public class TiffImageReader extends SpatialImageReader {
         size[TYPE_URATIONAL] = size[TYPE_RATIONAL]             = (Integer.SIZE << 1) / Byte.SIZE; //rational = Integer / Integer. 2 Integer values red.
     }
 
-    /**
-     * Particularity code LZW.
-     * Only use in readFromStripLZW() method.
-     */
-    private final static short LZW_CLEAR_CODE = 256;
-    private final static short LZW_EOI_CODE   = 257;
-
     /**
      * Reading channel initialized from input, used for imageStream and reverse reading channels creation.
      */
@@ -1819,19 +1810,15 @@ public class TiffImageReader extends SpatialImageReader {
         if (compression == 32773) {
             assert stripOffsets != null : "with compression 32773 (packbits) : image should be writen in strip offset use case.";
             readFromStrip32773(raster, param, srcRegion, dstRegion);
-        } else if (compression == 5) {
-            if (stripOffsets != null) {
-                readFromStripLZW(raster, param, srcRegion, dstRegion);
-            } else {
-                assert tileOffsets != null;
-                readFromTilesLZW(raster, param, srcRegion, dstRegion);
-            }
-        } else if (compression == 8) {
+        } else if (compression == 5 || compression == 8) {
+            //-- LZW or Deflate
             if (stripOffsets != null) {
-                readFromStripDeflate(raster, param, srcRegion, dstRegion);
+                //-- a rows per strip value greater than image height means a single strip
+                final int stripHeight = (rowsPerStrip <= 0 || rowsPerStrip > imageHeight) ? imageHeight : rowsPerStrip;
+                readFromCompressedBlocks(raster, param, srcRegion, dstRegion, stripOffsets, stripByteCounts, imageWidth, stripHeight);
             } else {
                 assert tileOffsets != null;
-                readFromTilesDeflate(raster, param, srcRegion, dstRegion);
+                readFromCompressedBlocks(raster, param, srcRegion, dstRegion, tileOffsets, tileByteCounts, tileWidth, tileHeight);
             }
         } else {
             //-- by strips
@@ -2161,335 +2148,6 @@ public class TiffImageReader extends SpatialImageReader {
         }
     }
 
-    /**
-     * Process to the image reading, and stores the pixels in the given raster.<br/>
-     * Process fill raster from informations stored in stripOffset made.<br/>
-     * Method adapted to read data from LZW(tag value 5) compression.
-     *
-     * @param  raster    The raster where to store the pixel values.
-     * @param  param     Parameters used to control the reading process, or {@code null}.
-     * @param  srcRegion The region to read in source image.
-     * @param  dstRegion The region to write in the given raster.
-     * @throws IOException If an error occurred while reading the image.
-     */
-    private void readFromStripLZW(final WritableRaster raster, final ImageReadParam param,
-            final Rectangle srcRegion, final Rectangle dstRegion) throws IOException {
-        clearAbortRequest();
-        final int numBands = raster.getNumBands();
-        checkReadParamBandSettings(param, samplesPerPixel, numBands);
-        final int[]      sourceBands;
-        final int[] destinationBands;
-        final int sourceXSubsampling;
-        final int sourceYSubsampling;
-        if (param != null) {
-            sourceBands        = param.getSourceBands();
-            destinationBands   = param.getDestinationBands();
-            sourceXSubsampling = param.getSourceXSubsampling();
-            sourceYSubsampling = param.getSourceYSubsampling();
-        } else {
-            sourceBands        = null;
-            destinationBands   = null;
-            sourceXSubsampling = 1;
-            sourceYSubsampling = 1;
-        }
-        if (sourceBands != null || destinationBands != null) {
-            throw new IIOException("Source and target bands not yet supported.");
-        }
-        final DataBuffer dataBuffer    = raster.getDataBuffer();
-        final int[] bankOffsets        = dataBuffer.getOffsets();
-        final int dataType             = dataBuffer.getDataType();
-        final int targetScanlineStride = SampleModels.getScanlineStride(raster.getSampleModel());
-
-        //-- predictor study ---//
-        final Map<String, Object> predictor = (headProperties.get(Predictor));
-        final short predic    = (predictor != null) ? (short) ((long[]) predictor.get(ATT_VALUE)) [0] : 1;
-        //-- array which represent a pixel to permit horizontal differencing if exist --//
-
-        //-- fillOrder --//
-        final Map<String, Object> fillOrder = headProperties.get(FillOrder);
-        short fO = 1;
-        if (fillOrder != null) {
-            fO = (short) ((long[]) fillOrder.get(ATT_VALUE)) [0];
-        }
-
-        //-- planar configuration --//
-        final Map<String, Object> planarConfig = headProperties.get(PlanarConfiguration);
-        short pC = 1;
-        /*
-         * If samples per pixel = 1, planar configuration has no impact.
-         */
-        if (planarConfig != null && samplesPerPixel > 1) {
-            pC = ((short[]) planarConfig.get(ATT_VALUE)) [0];
-        }
-        final int pixelLength = (pC != 2) ? samplesPerPixel : 1;
-        final int planarDenum = (pC != 2) ? 1 : samplesPerPixel;
-
-        final int sourceScanlineStride = imageWidth * pixelLength;
-         final long[] prediPix = new long[pixelLength];
-
-        //-- adapt imageStream in function of fill order value --//
-        final ImageInputStream inputLZW = getImageInputStream(fO == 2);
-
-        final long bitpersampl = bitsPerSample[0];
-
-       /*
-        * Iterate over the strip to read, in sequential file access order (which is not
-        * necessarily the same than row indices order).
-        */
-       final int srcMaxy            = srcRegion.y + srcRegion.height;
-
-       /*
-        * Step on x axis in target window (dstRegion) when iterate pass to next row.
-        * This step contain sum of shift at begin row and ending destination row shift.
-        */
-       final int dstStep            = targetScanlineStride - dstRegion.width * samplesPerPixel;
-
-       //-- source sample step when iteration pass to next row --//
-       final int nextRowStep        = sourceScanlineStride * sourceYSubsampling;
-
-        for (int bank = 0; bank < bankOffsets.length; bank++) {
-            /*
-             * Get the underlying array of the image DataBuffer in which to write the data.
-             */
-            final Object targetArray;
-            switch (dataType) {
-                case DataBuffer.TYPE_BYTE   : targetArray = ((DataBufferByte)   dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_USHORT : targetArray = ((DataBufferUShort) dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_SHORT  : targetArray = ((DataBufferShort)  dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_INT    : targetArray = ((DataBufferInt)    dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_FLOAT  : targetArray = ((DataBufferFloat)  dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_DOUBLE : targetArray = ((DataBufferDouble) dataBuffer).getData(bank); break;
-                default: throw new AssertionError(dataType);
-            }
-
-            nextSample : for (int s = 0; s < samplesPerPixel; s += pixelLength) {
-
-            //-- stripoffset array index start --//
-            final int currentStripOffset = srcRegion.y / rowsPerStrip + s * stripOffsets.length / planarDenum;
-            final int maxStripOffset     = (srcMaxy + rowsPerStrip - 1) / rowsPerStrip  + s * stripOffsets.length / planarDenum;
-
-            /*
-             * Long container use to build a sample,
-             * because each sample is read byte per byte regardless their bit size.
-             */
-            long dataContainer = 0;
-            int maskCount      = 0;
-
-            //-- target start --//
-            int bankID = bankOffsets[bank] + targetScanlineStride * dstRegion.y + dstRegion.x * samplesPerPixel + s;//-- + s
-
-            //-- current source y position --//
-            int ypos = srcRegion.y;
-
-            //-- read throught only necessarry stripOffsets to fill target image --//
-            nextStrip : for (int cSO = currentStripOffset; cSO < maxStripOffset; cSO++) {
-
-               /*
-                * Test added when travel the last strip is not necessary.
-                */
-                if (ypos >= srcMaxy) continue nextSample;
-
-                //-- buffer start position from stripOffsets --//
-                long currentBuffPos        = stripOffsets[cSO];
-                inputLZW.seek(currentBuffPos);
-
-                //-- initialize LZW attributs --//
-                //-- length in bit of lzw data --//
-                int currentLZWCodeLength = 9;
-                //-- byte array map use to decompresse LZW datas --//
-                byte[][] lzwTab          = new byte[LZW_CLEAR_CODE][];
-
-                //-- current LZW array index --//
-                int idLZWTab         = 0;
-                int maxIDLZWTab      = 511; //--> (1 << currentLZWCodeLength) - 1
-                //-- precedently iteration LZW code --//
-                byte[] oldCodeLZW    = null;
-                int hdb              = 0;
-                Arrays.fill(prediPix, 0);
-                /*
-                 * With LZW compression we must read all byte to build appropriate LZW map container.
-                 * We define two positions "posRef" and "maxRowRefPos" where "posRef" represent
-                 * index of current sample which will be written in target array and "maxRowRefPos" the last exclusive written sample.
-                 *
-                 * In other word posRef represent the first available sample.
-                 */
-                int posRef       = (ypos - (cSO - s * stripOffsets.length / planarDenum) * rowsPerStrip) * sourceScanlineStride + srcRegion.x * pixelLength;
-
-                //-- in case where sourceYsubsampling greater than row per strip --//
-                if (posRef >= rowsPerStrip * sourceScanlineStride) continue nextStrip;
-
-                int nextPosRef         = posRef + nextRowStep;
-                int maxRowRefPos       = posRef + dstRegion.width * pixelLength * sourceXSubsampling;
-
-                final int maxSamplePos = (Math.min((cSO + 1) * rowsPerStrip, srcMaxy) - cSO * rowsPerStrip) * sourceScanlineStride;
-                int samplePos          = 0;
-
-                //-- bytePos must read throught all file byte per byte --//
-                int bytePos = 0;
-                int b       = 0;
-                short codeLZW;
-
-                //-- work sample by sample --//
-                while (LZW_EOI_CODE != (codeLZW = readLZWCode(inputLZW, currentLZWCodeLength))) {
-                    if ((idLZWTab + 258) == 4095)
-                        assert codeLZW == 256 : "when LZW map array reach its maximum index value the next value in file should be clear code 256.";
-
-                    if (codeLZW == LZW_CLEAR_CODE) {
-                        currentLZWCodeLength = 9;
-                        lzwTab               = new byte[LZW_CLEAR_CODE][];
-                        idLZWTab             = 0;
-                        maxIDLZWTab          = 511;
-                        oldCodeLZW           = null;
-                        continue;
-                    }
-
-                    assert (oldCodeLZW != null || (oldCodeLZW == null && codeLZW < LZW_CLEAR_CODE)) : "After a clear code, next code should be smaller than 256";
-
-                    byte[] entree;
-                    if (codeLZW >= 258) {
-                        if (lzwTab[codeLZW - 258] != null) {
-                            entree = lzwTab[codeLZW - 258];
-                        } else {
-                            // w + w[0]
-                            final int oldCLen = oldCodeLZW.length;
-                            entree            = Arrays.copyOf(oldCodeLZW, oldCLen + 1);
-                            entree[oldCLen]   = oldCodeLZW[0];
-                        }
-                    } else {
-                        entree = new byte[] { (byte) codeLZW };
-                    }
-
-                    assert entree != null;
-
-                    //-- write entree --//
-                    for (int i = 0; i < entree.length; i++) {
-                        //-- build sample in relation with bits per samples --//
-                        final long val = entree[i] & 0x000000FFL;
-                        dataContainer  = dataContainer | (val << maskCount);
-                        maskCount     += Byte.SIZE;
-
-                        //-- if a sample is built --//
-                        if (maskCount == bitpersampl) {
-                            //-- add in precedently array before insertion --//
-                            //-- if horizontal differencing add with precedently value --//
-                            prediPix[hdb] = (predic == 2) ? (prediPix[hdb] + dataContainer) : dataContainer;
-                            if (++hdb == pixelLength) hdb = 0;
-
-                            //-- re-initialize datacontainer --//
-                            dataContainer = 0;
-                            maskCount     = 0;
-
-                            //-- write sample in target array if its necessary --//
-                            if (samplePos == posRef) {
-                                switch (dataType) {
-                                    case DataBuffer.TYPE_BYTE   : ((byte[])targetArray)[bankID] = (byte) (prediPix[b]); break;
-                                    case DataBuffer.TYPE_SHORT  :
-                                    case DataBuffer.TYPE_USHORT : ((short[])targetArray)[bankID] = (short) (prediPix[b]); break;
-                                    case DataBuffer.TYPE_INT    : ((int[])targetArray)[bankID] = (int) (prediPix[b]); break;
-                                    case DataBuffer.TYPE_FLOAT  : ((float[])targetArray)[bankID] = Float.intBitsToFloat((int)(prediPix[b])); break;
-                                    case DataBuffer.TYPE_DOUBLE : ((double[])targetArray)[bankID] = Double.longBitsToDouble(prediPix[b]); break;
-                                    default: throw new AssertionError(dataType);
-                                }
-                                bankID += planarDenum;
-                                if (++b == pixelLength) {
-                                    posRef += (sourceXSubsampling - 1) * pixelLength;
-                                    b = 0;
-                                }
-                                posRef++;
-
-                                //-- this if means : pass to the next destination image row --//
-                                if (posRef == maxRowRefPos) {
-                                    assert hdb == 0 : "hdb should be zero. hdb = "+hdb;
-                                    ypos += sourceYSubsampling;
-                                    //-- begin source position writing --//
-                                    posRef      = nextPosRef;
-                                    nextPosRef += nextRowStep;
-
-                                    //-- destination shifts --//
-                                    bankID += dstStep;
-
-                                    //-- if it is unnecessary to finish to read current strip --//
-                                    if (posRef >= maxSamplePos) continue nextStrip; //-- a affiner
-
-                                    //-- ending source position writing --//
-                                    maxRowRefPos += nextRowStep;
-                                }
-                            }
-                            //-- shift by one when a sample was built --//
-                            samplePos++;
-                        }
-                        if (++bytePos == sourceScanlineStride) {
-                            //-- initialize predictor array --//
-                            Arrays.fill(prediPix, 0);
-                            bytePos = 0;
-                        }
-                    }
-
-                    if (oldCodeLZW == null) {
-                        assert idLZWTab == 0 : "With old code null : lzw tab must be equals to zero.";
-                        assert entree.length == 1;
-                        oldCodeLZW = entree;
-                        continue;
-                    }
-
-                    //-- add in LZW map array --//
-                    final int oldLen      = oldCodeLZW.length;
-                    final byte[] addedTab = Arrays.copyOf(oldCodeLZW, oldLen + 1);
-                    addedTab[oldLen]      = entree[0];
-                    lzwTab[idLZWTab++]    = addedTab;
-
-                    //-- if current map index reach the maximum value permit by bit number --//
-                    if (((idLZWTab + 258) & 0xFFFF) == maxIDLZWTab) {
-                        /*
-                         * When LZW algorithm reach its maximum index value 4095, to don't exceed 12 bits capacity
-                         * a clear code 256 is normaly written in the CURRENT bit length.
-                         * Continue to force next read in current bit length.
-                         * Moreover after this continue an assertion verify this expected comportement.
-                         */
-                        if (maxIDLZWTab == 4095) continue;
-                        currentLZWCodeLength++;
-                        final int nextLZWMapLength = 1 << currentLZWCodeLength;
-                        maxIDLZWTab                = nextLZWMapLength - 1;
-                        lzwTab                     = Arrays.copyOf(lzwTab, nextLZWMapLength);
-                    }
-                    oldCodeLZW = entree;
-                    //---------------------------------------------------------//
-                }
-                assert samplePos == maxSamplePos : "pos = "+samplePos+" Expected pos = "+maxSamplePos;
-            }
-        }
-       }
-    }
-
-    /**
-     * Process to the image reading, and stores the pixels in the given raster.<br/>
-     * Process fill raster from informations stored in stripOffset made.<br/>
-     * Method adapted to read data from Deflate(tag value 8) compression.
-     *
-     * @param  raster    The raster where to store the pixel values.
-     * @param  param     Parameters used to control the reading process, or {@code null}.
-     * @param  srcRegion The region to read in source image.
-     * @param  dstRegion The region to write in the given raster.
-     * @throws IOException If an error occurred while reading the image.
-     */
-    private void readFromStripDeflate(final WritableRaster raster, final ImageReadParam param,
-            final Rectangle srcRegion, final Rectangle dstRegion) throws IOException {
-        throw new IOException("Deflate strip tiff not supported.");
-    }
-
-    /**
-     * Read next data of {@code codeLZWLength} bits length from current {@code ImageInputStream input}.
-     *
-     * @param input ImageInputStream where to read datas.
-     * @param codeLZWLength current bits length of read data.
-     * @return data value.
-     * @throws IOException if problem during reading from input.
-     * @see #readFromStripLZW(java.awt.image.WritableRaster, javax.imageio.ImageReadParam, java.awt.Rectangle, java.awt.Rectangle)
-     */
-    private static short readLZWCode(final ImageInputStream input, final int codeLZWLength) throws IOException {
-        return ((short) (input.readBits(codeLZWLength)));
-    }
-
     /**
      * Process to the image reading, and stores the pixels in the given raster.<br/>
      * Process fill raster from informations stored in stripOffset made.<br/>
@@ -2927,16 +2585,26 @@ public class TiffImageReader extends SpatialImageReader {
     }
 
     /**
-     * Processes to the image reading, and stores the pixels in the given raster.
+     * Process to the image reading, and stores the pixels in the given raster.<br/>
+     * Process fill raster from informations stored in tileOffsets or stripOffsets,
+     * a strip is read as a tile of image width.<br/>
+     * Method adapted to read data from LZW(tag value 5) and Deflate(tag value 8) compressions.<br/>
+     * Compressed blocks intersecting source region are read in file order and
+     * decompressed in parallel by a {@link TiffTileDecoder}.
      *
-     * @param  raster    The raster where to store the pixel values.
-     * @param  param     Parameters used to control the reading process, or {@code null}.
-     * @param  srcRegion The region to read in source image.
-     * @param  dstRegion The region to write in the given raster.
+     * @param  raster      The raster where to store the pixel values.
+     * @param  param       Parameters used to control the reading process, or {@code null}.
+     * @param  srcRegion   The region to read in source image.
+     * @param  dstRegion   The region to write in the given raster.
+     * @param  offsets     Tile or strip offsets.
+     * @param  byteCounts  Tile or strip compressed lengths.
+     * @param  blockWidth  Tile width, or image width for strips.
+     * @param  blockHeight Tile height, or rows per strip.
      * @throws IOException If an error occurred while reading the image.
      */
-    private void readFromTilesLZW(final WritableRaster raster, final ImageReadParam param,
-            final Rectangle srcRegion, final Rectangle dstRegion) throws IOException
+    private void readFromCompressedBlocks(final WritableRaster raster, final ImageReadParam param,
+            final Rectangle srcRegion, final Rectangle dstRegion,
+            final long[] offsets, final long[] byteCounts, final int blockWidth, final int blockHeight) throws IOException
     {
         clearAbortRequest();
         final int numBands = raster.getNumBands();
@@ -2959,315 +2627,8 @@ public class TiffImageReader extends SpatialImageReader {
         if (sourceBands != null || destinationBands != null) {
             throw new IIOException("Source and target bands not yet supported.");
         }
-        final DataBuffer dataBuffer    = raster.getDataBuffer();
-        final int[] bankOffsets        = dataBuffer.getOffsets();
-        final int dataType             = dataBuffer.getDataType();
-        final int targetScanlineStride = SampleModels.getScanlineStride(raster.getSampleModel());
-
-        //-- planar configuration --//
-        final Map<String, Object> planarConfig = headProperties.get(PlanarConfiguration);
-        short pC = 1;
-        /*
-         * If samples per pixel = 1, planar configuration has no impact.
-         */
-        if (planarConfig != null && samplesPerPixel > 1) {
-            pC = ((short[]) planarConfig.get(ATT_VALUE)) [0];
-        }
-        final int pixelLength = (pC == 1) ? samplesPerPixel : 1;
-        final int planarDenum = (pC == 2) ? samplesPerPixel : 1;
-
-        //-- predictor study ---//
-        final Map<String, Object> predictor = (headProperties.get(Predictor));
-        final short predic    = (predictor != null) ? (short) ((long[]) predictor.get(ATT_VALUE)) [0] : 1;
-        //-- array which represent a pixel to permit horizontal differencing if exist --//
-        final long[] prediPix = new long[pixelLength];
-
-        //-- fillOrder --//
-        final Map<String, Object> fillOrder = headProperties.get(FillOrder);
-        short fO = 1;
-        if (fillOrder != null) {
-            fO = (short) ((long[]) fillOrder.get(ATT_VALUE)) [0];
-        }
-        //-- adapt imageStream in function of fill order value --//
-        final ImageInputStream rasterLZWReader = getImageInputStream(fO == 2);
-
-        //-- tile index from source area --//
-        final int minTileX = srcRegion.x / tileWidth;
-        final int minTileY = srcRegion.y / tileHeight;
-        final int maxTileX = (srcRegion.x + srcRegion.width  + tileWidth  - 1) / tileWidth;
-        final int maxTileY = (srcRegion.y + srcRegion.height + tileHeight - 1) / tileHeight;
-
-        //-- tile number from source image dimension --//
-        final int numXTile = (imageWidth + tileWidth - 1) / tileWidth;
-        final int numYTile = (imageHeight + tileHeight - 1) / tileHeight;
-
-        //-- srcRegion max coordinates --//
-        final int srcRegionMaxX = srcRegion.x + srcRegion.width;
-        final int srcRegionMaxY = srcRegion.y + srcRegion.height;
-
-        final int sourceScanTileStride = tileWidth * pixelLength;
-
-        final long bitpersampl = bitsPerSample[0];
-
-        for (int bank = 0; bank < bankOffsets.length; bank++) {
-            /*
-             * Get the underlying array of the image DataBuffer in which to write the data.
-             */
-            final Object targetArray;
-            switch (dataType) {
-                case DataBuffer.TYPE_BYTE   : targetArray = ((DataBufferByte)   dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_USHORT : targetArray = ((DataBufferUShort) dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_SHORT  : targetArray = ((DataBufferShort)  dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_INT    : targetArray = ((DataBufferInt)    dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_FLOAT  : targetArray = ((DataBufferFloat)  dataBuffer).getData(bank); break;
-                case DataBuffer.TYPE_DOUBLE : targetArray = ((DataBufferDouble) dataBuffer).getData(bank); break;
-                default: throw new AssertionError(dataType);
-            }
-
-            final int targetRegionOffset = bankOffsets[bank] + dstRegion.y * targetScanlineStride + dstRegion.x * samplesPerPixel;
-
-            for (int s = 0; s < samplesPerPixel; s += pixelLength) {
-                final int tileIndexOffset = s * numXTile * numYTile;
-                for (int ty = minTileY; ty < maxTileY; ty++) {
-
-                    final int rowTileIndexOffset = ty * numXTile;
-                    final int interMinY          = Math.max(srcRegion.y, ty * tileHeight);
-                    final int interMaxY          = Math.min(srcRegionMaxY, (ty + 1) * tileHeight);
-
-                    final int yOffset = (((interMinY - srcRegion.y) % sourceYSubsampling) == 0) ? 0 : (sourceYSubsampling - ((interMinY - srcRegion.y)) % sourceYSubsampling);
-                    if (yOffset >= tileHeight || (interMinY + yOffset) >= interMaxY) continue;
-                    final int rowSampleOffset = (interMinY + yOffset - ty * tileHeight) * sourceScanTileStride;
-                    final int targetRowOffset = ((interMinY - srcRegion.y + sourceYSubsampling - 1) / sourceYSubsampling) * targetScanlineStride;
-
-         nextTile : for (int tx = minTileX; tx < maxTileX; tx++) {
-
-                        //-- define first byte file position to read --//
-                        final int tileIndex = tileIndexOffset + rowTileIndexOffset + tx;
-                        long currentBuffPos = tileOffsets[tileIndex];
-                        rasterLZWReader.seek(currentBuffPos);
-                        assert rasterLZWReader.getBitOffset() == 0;
-
-                        //-- define intersection between srcRegion and current tile --//
-                        final int interMinX       = Math.max(srcRegion.x, tx * tileWidth);
-                        final int interMaxX       = Math.min(srcRegionMaxX, (tx + 1) * tileWidth);
-
-                        //-- source offset in x direction --//
-                        final int sourceColOffset = (interMinX - srcRegion.x) % sourceXSubsampling == 0 ? 0 : (sourceXSubsampling - ((interMinX - srcRegion.x) % sourceXSubsampling));
-                        //-- in case where subsampling is more longer than tilewidth --//
-                        if (sourceColOffset >= tileWidth || (interMinX + sourceColOffset) >= interMaxX) continue nextTile;
-                        final int maxSampleXPos = (interMaxX - tx * tileWidth) * pixelLength;
-                        //-- target begin position --//
-                        int targetOffset = targetRegionOffset + targetRowOffset + ((interMinX - srcRegion.x + sourceXSubsampling - 1) / sourceXSubsampling) * samplesPerPixel + s;
-                        int targetPos    = targetOffset;
-
-                       /*
-                        * With LZW compression we must read all byte to build appropriate LZW map container.
-                        * We define to positions "posRef" and "maxRowRefPos" where "posRef" represent
-                        * index of current sample which will be written in source array and "maxRowRefPos" the last exclusive written sample.
-                        */
-                        int posRef = rowSampleOffset + (interMinX + sourceColOffset - tx * tileWidth) * pixelLength;
-
-                        int nextPosRef         = posRef + sourceYSubsampling * sourceScanTileStride;
-                        int maxRowRefPos       = rowSampleOffset + maxSampleXPos;
-                        final int maxSamplePos = (interMaxY - ty * tileHeight - 1) * sourceScanTileStride + maxSampleXPos;
-                        int samplePos          = 0;
-
-                        //-- initialize LZW attributs --//
-                        //-- length in bit of lzw data --//
-                        int currentLZWCodeLength = 9;
-                        //-- byte array map use to decompresse LZW datas --//
-                        byte[][] lzwTab          = new byte[LZW_CLEAR_CODE][];
-
-                        //-- current LZW array index --//
-                        int idLZWTab         = 0;
-                        int maxIDLZWTab      = 511; //--> (1 << currentLZWCodeLength) - 1
-                        //-- precedently iteration LZW code --//
-                        byte[] oldCodeLZW    = null;
-                        int hdb              = 0;
-                        Arrays.fill(prediPix, 0);
-
-                        //-- bytePos must read throught all file byte per byte --//
-                        int bytePos = 0;
-                        int b       = 0;
-                        short codeLZW;
-
-                       /*
-                        * Long container use to build a sample,
-                        * because each sample is read byte per byte regardless their bit size.
-                        */
-                       long dataContainer = 0;
-                       int maskCount      = 0;
-
-                        //-- work sample by sample --//
-                        while (LZW_EOI_CODE != (codeLZW = readLZWCode(rasterLZWReader, currentLZWCodeLength))) {
-                            if ((idLZWTab + 258) == 4095)
-                                assert codeLZW == 256 : "when LZW map array reach its maximum index value the next value in file should be clear code 256.";
-
-                            if (codeLZW == LZW_CLEAR_CODE) {
-                                currentLZWCodeLength = 9;
-                                lzwTab               = new byte[LZW_CLEAR_CODE][];
-                                idLZWTab             = 0;
-                                maxIDLZWTab          = 511;
-                                oldCodeLZW           = null;
-                                continue;
-                            }
-
-                            assert (oldCodeLZW != null || (oldCodeLZW == null && codeLZW < LZW_CLEAR_CODE)) :"After a clear code, next code should be smaller than 256";
-
-                            byte[] entree;
-                            if (codeLZW >= 258) {
-                                if (lzwTab[codeLZW - 258] != null) {
-                                    entree = lzwTab[codeLZW - 258];
-                                } else {
-                                    // w + w[0]
-                                    final int oldCLen = oldCodeLZW.length;
-                                    entree            = Arrays.copyOf(oldCodeLZW, oldCLen + 1);
-                                    entree[oldCLen]   = oldCodeLZW[0];
-                                }
-                            } else {
-                                entree = new byte[] { (byte) codeLZW };
-                            }
-
-                            assert entree != null;
-
-                            //-- write entree --//
-                            for (int i = 0; i < entree.length; i++) {
-                                //-- build sample in relation with bits per samples --//
-                                final long val = entree[i] & 0x000000FFL;
-                                dataContainer  = dataContainer | (val << maskCount);
-                                maskCount     += Byte.SIZE;
-
-                                //-- if a sample is built --//
-                                if (maskCount == bitpersampl) {
-                                    //-- add in precedently array before insertion --//
-                                    //-- if horizontal differencing add with precedently value --//
-                                    prediPix[hdb] = (predic == 2) ? (prediPix[hdb] + dataContainer) : dataContainer;
-                                    if (++hdb == pixelLength) hdb = 0;
-
-                                    //-- re-initialize datacontainer --//
-                                    dataContainer = 0;
-                                    maskCount     = 0;
-
-                                    //-- write sample in target array if its necessary --//
-                                    if (samplePos == posRef) {
-                                        switch (dataType) {
-                                            case DataBuffer.TYPE_BYTE   : ((byte[])targetArray)[targetPos] = (byte) (prediPix[b]); break;
-                                            case DataBuffer.TYPE_SHORT  :
-                                            case DataBuffer.TYPE_USHORT : ((short[])targetArray)[targetPos] = (short) (prediPix[b]); break;
-                                            case DataBuffer.TYPE_INT    : ((int[])targetArray)[targetPos] =  (int) (prediPix[b]); break;
-                                            case DataBuffer.TYPE_FLOAT  : ((float[])targetArray)[targetPos] = Float.intBitsToFloat((int) (prediPix[b])); break;
-                                            case DataBuffer.TYPE_DOUBLE : ((double[])targetArray)[targetPos] = Double.longBitsToDouble(prediPix[b]); break;
-                                            default: throw new AssertionError(dataType);
-                                        }
-                                        targetPos += planarDenum;
-                                        if (++b == pixelLength) {
-                                            posRef += (sourceXSubsampling - 1) * pixelLength;
-                                            b = 0;
-                                        }
-                                        posRef++;
-                                        //-- this if means : pass to the next destination image row --//
-                                        if (posRef >= maxRowRefPos) {
-                                            assert hdb == 0 : "hdb should be zero. hdb = "+hdb;
-
-                                            //-- begin source position writing --//
-                                            posRef      = nextPosRef;
-                                            nextPosRef += sourceYSubsampling * sourceScanTileStride;
-
-                                            //-- ending source position writing --//
-                                            maxRowRefPos += sourceYSubsampling * sourceScanTileStride;
-
-                                            //-- if it is unnecessary to finish to read current tile --//
-                                            if (posRef >= maxSamplePos) {
-                                                assert maxRowRefPos >= maxSamplePos : "maxRowrefpos = "+maxRowRefPos+" maxSamplepos = "+maxSamplePos;
-                                                continue nextTile;
-                                            }
-
-                                            //-- destination shifts --//
-                                            targetOffset += targetScanlineStride;
-                                            targetPos = targetOffset;
-
-                                        }
-                                    }
-                                    //-- shift by one when a sample was built --//
-                                    samplePos++;
-                                }
-                                if (++bytePos == sourceScanTileStride) {
-                                    //-- initialize predictor array --//
-                                    Arrays.fill(prediPix, 0);
-                                    bytePos = 0;
-                                }
-                            }
-
-                            if (oldCodeLZW == null) {
-                                assert idLZWTab == 0 : "With old code null : lzw tab must be equals to zero.";
-                                assert entree.length == 1;
-                                oldCodeLZW = entree;
-                                continue;
-                            }
-
-                            //-- add in LZW map array --//
-                            final int oldLen      = oldCodeLZW.length;
-                            final byte[] addedTab = Arrays.copyOf(oldCodeLZW, oldLen + 1);
-                            addedTab[oldLen]      = entree[0];
-                            lzwTab[idLZWTab++]    = addedTab;
-
-                            //-- if current map index reach the maximum value permit by bit number --//
-                            if (((idLZWTab + 258) & 0xFFFF) == (maxIDLZWTab)) {
-                               /*
-                                * When LZW algorithm reach its maximum index value 4095, to don't exceed 12 bits capacity
-                                * a clear code 256 is normaly written in the CURRENT (12) bit length.
-                                * Continue to force next read in current bit length.
-                                * Moreover after this continue an assertion verify this expected comportement.
-                                */
-                               if (maxIDLZWTab == 4095) continue;
-                               currentLZWCodeLength++;
-                               final int nextLZWMapLength = 1 << currentLZWCodeLength;
-                               maxIDLZWTab                = nextLZWMapLength - 1;
-                               lzwTab                     = Arrays.copyOf(lzwTab, nextLZWMapLength);
-                            }
-                            oldCodeLZW = entree;
-                            //---------------------------------------------------------//
-                        }
-//                        assert samplePos == maxSamplePos : "pos = "+samplePos+" Expected pos+tx+", "+ty+")";
-                    }
-                }
-            }
-        }
-    }
+        ensureDefined(byteCounts, (stripOffsets != null) ? "stripByteCounts" : "tileByteCounts");
 
-    /**
-     * Processes to the image reading, and stores the pixels in the given raster.
-     *
-     * @param  raster    The raster where to store the pixel values.
-     * @param  param     Parameters used to control the reading process, or {@code null}.
-     * @param  srcRegion The region to read in source image.
-     * @param  dstRegion The region to write in the given raster.
-     * @throws IOException If an error occurred while reading the image.
-     */
-    private void readFromTilesDeflate(final WritableRaster raster, final ImageReadParam param,
-            final Rectangle srcRegion, final Rectangle dstRegion) throws IOException
-    {
-        clearAbortRequest();
-        final int numBands = raster.getNumBands();
-        checkReadParamBandSettings(param, samplesPerPixel, numBands);
-        final int[]      sourceBands;
-        final int[] destinationBands;
-        final int sourceXSubsampling;
-        final int sourceYSubsampling;
-        if (param != null) {
-            sourceBands        = param.getSourceBands();
-            destinationBands   = param.getDestinationBands();
-            sourceXSubsampling = param.getSourceXSubsampling();
-            sourceYSubsampling = param.getSourceYSubsampling();
-        } else {
-            sourceBands        = null;
-            destinationBands   = null;
-            sourceXSubsampling = 1;
-            sourceYSubsampling = 1;
-        }
-        if (sourceBands != null || destinationBands != null) {
-            throw new IIOException("Source and target bands not yet supported.");
-        }
         final DataBuffer dataBuffer    = raster.getDataBuffer();
         final int[] bankOffsets        = dataBuffer.getOffsets();
         final int dataType             = dataBuffer.getDataType();
@@ -3288,8 +2649,6 @@ public class TiffImageReader extends SpatialImageReader {
         //-- predictor study ---//
         final Map<String, Object> predictor = (headProperties.get(Predictor));
         final short predic    = (predictor != null) ? (short) ((long[]) predictor.get(ATT_VALUE)) [0] : 1;
-        //-- array which represent a pixel to permit horizontal differencing if exist --//
-        final long[] prediPix = new long[pixelLength];
 
         //-- fillOrder --//
         final Map<String, Object> fillOrder = headProperties.get(FillOrder);
@@ -3300,30 +2659,25 @@ public class TiffImageReader extends SpatialImageReader {
         //-- adapt imageStream in function of fill order value --//
         final ImageInputStream rasterStream = getImageInputStream(fO == 2);
 
-        //-- tile index from source area --//
-        final int minTileX = srcRegion.x / tileWidth;
-        final int minTileY = srcRegion.y / tileHeight;
-        final int maxTileX = (srcRegion.x + srcRegion.width  + tileWidth  - 1) / tileWidth;
-        final int maxTileY = (srcRegion.y + srcRegion.height + tileHeight - 1) / tileHeight;
+        //-- block index from source area --//
+        final int minTileX = srcRegion.x / blockWidth;
+        final int minTileY = srcRegion.y / blockHeight;
+        final int maxTileX = (srcRegion.x + srcRegion.width  + blockWidth  - 1) / blockWidth;
+        final int maxTileY = (srcRegion.y + srcRegion.height + blockHeight - 1) / blockHeight;
 
-        //-- tile number from source image dimension --//
-        final int numXTile = (imageWidth + tileWidth - 1) / tileWidth;
-        final int numYTile = (imageHeight + tileHeight - 1) / tileHeight;
+        //-- block number from source image dimension --//
+        final int numXTile = (imageWidth + blockWidth - 1) / blockWidth;
+        final int numYTile = (imageHeight + blockHeight - 1) / blockHeight;
 
         //-- srcRegion max coordinates --//
         final int srcRegionMaxX = srcRegion.x + srcRegion.width;
         final int srcRegionMaxY = srcRegion.y + srcRegion.height;
 
-        final long bitpersampl = bitsPerSample[0];
-
-        final int sourceScanTileStride     = tileWidth * pixelLength;
-        final int sourceScanTileByteStride = (tileWidth * (int)bitpersampl)/ Byte.SIZE;
-
-        //-- Inflate decompressor
-        final Inflater inflater              = new Inflater(false);
-        final int unCompressedTileByteLength = sourceScanTileByteStride * tileHeight;
-        final byte[] decompressedData        = new byte[unCompressedTileByteLength];
+        final int sourceScanTileStride = blockWidth * pixelLength;
 
+        final TiffTileDecoder decoder = new TiffTileDecoder(compression, dataType, (int) bitsPerSample[0],
+                pixelLength, planarDenum, predic, sourceXSubsampling, sourceYSubsampling, blockWidth, targetScanlineStride);
+        final int sourceScanTileByteStride = decoder.getScanlineByteStride();
 
         for (int bank = 0; bank < bankOffsets.length; bank++) {
             /*
@@ -3347,169 +2701,49 @@ public class TiffImageReader extends SpatialImageReader {
                 for (int ty = minTileY; ty < maxTileY; ty++) {
 
                     final int rowTileIndexOffset = ty * numXTile;
-                    final int interMinY          = Math.max(srcRegion.y, ty * tileHeight);
-                    final int interMaxY          = Math.min(srcRegionMaxY, (ty + 1) * tileHeight);
+                    final int interMinY          = Math.max(srcRegion.y, ty * blockHeight);
+                    final int interMaxY          = Math.min(srcRegionMaxY, (ty + 1) * blockHeight);
 
                     final int yOffset = (((interMinY - srcRegion.y) % sourceYSubsampling) == 0) ? 0 : (sourceYSubsampling - ((interMinY - srcRegion.y)) % sourceYSubsampling);
-                    if (yOffset >= tileHeight || (interMinY + yOffset) >= interMaxY) continue;
-                    final int rowSampleOffset = (interMinY + yOffset - ty * tileHeight) * sourceScanTileStride;
+                    if (yOffset >= blockHeight || (interMinY + yOffset) >= interMaxY) continue;
+                    final int rowSampleOffset = (interMinY + yOffset - ty * blockHeight) * sourceScanTileStride;
                     final int targetRowOffset = ((interMinY - srcRegion.y + sourceYSubsampling - 1) / sourceYSubsampling) * targetScanlineStride;
 
-         nextTile : for (int tx = minTileX; tx < maxTileX; tx++) {
+                    //-- only decompress block rows up to the last needed one --//
+                    final int decodedLength = (interMaxY - ty * blockHeight) * sourceScanTileByteStride;
+
+                    for (int tx = minTileX; tx < maxTileX; tx++) {
 
-                        //-- define first byte file position to read --//
                         final int tileIndex = tileIndexOffset + rowTileIndexOffset + tx;
-                        long currentBuffPos = tileOffsets[tileIndex];
-                        rasterStream.seek(currentBuffPos);
-                        assert rasterStream.getBitOffset() == 0;
 
-                        //-- define intersection between srcRegion and current tile --//
-                        final int interMinX       = Math.max(srcRegion.x, tx * tileWidth);
-                        final int interMaxX       = Math.min(srcRegionMaxX, (tx + 1) * tileWidth);
+                        //-- define intersection between srcRegion and current block --//
+                        final int interMinX       = Math.max(srcRegion.x, tx * blockWidth);
+                        final int interMaxX       = Math.min(srcRegionMaxX, (tx + 1) * blockWidth);
 
                         //-- source offset in x direction --//
                         final int sourceColOffset = (interMinX - srcRegion.x) % sourceXSubsampling == 0 ? 0 : (sourceXSubsampling - ((interMinX - srcRegion.x) % sourceXSubsampling));
-                        //-- in case where subsampling is more longer than tilewidth --//
-                        if (sourceColOffset >= tileWidth || (interMinX + sourceColOffset) >= interMaxX) continue nextTile;
-                        final int maxSampleXPos = (interMaxX - tx * tileWidth) * pixelLength;
+                        //-- in case where subsampling is more longer than block width --//
+                        if (sourceColOffset >= blockWidth || (interMinX + sourceColOffset) >= interMaxX) continue;
+                        final int maxSampleXPos = (interMaxX - tx * blockWidth) * pixelLength;
                         //-- target begin position --//
-                        int targetOffset = targetRegionOffset + targetRowOffset + ((interMinX - srcRegion.x + sourceXSubsampling - 1) / sourceXSubsampling) * samplesPerPixel + s;
-                        int targetPos    = targetOffset;
+                        final int targetOffset = targetRegionOffset + targetRowOffset + ((interMinX - srcRegion.x + sourceXSubsampling - 1) / sourceXSubsampling) * samplesPerPixel + s;
 
                        /*
-                        * With LZW compression we must read all byte to build appropriate LZW map container.
-                        * We define to positions "posRef" and "maxRowRefPos" where "posRef" represent
-                        * index of current sample which will be written in source array and "maxRowRefPos" the last exclusive written sample.
+                        * "posRef" represent index of the first sample which will be written in target array,
+                        * "maxRowRefPos" the last exclusive written sample of the first row
+                        * and "maxSamplePos" the last exclusive written sample of the block.
                         */
-                        int posRef = rowSampleOffset + (interMinX + sourceColOffset - tx * tileWidth) * pixelLength;
-
-                        int nextPosRef         = posRef + sourceYSubsampling * sourceScanTileStride;
-                        int maxRowRefPos       = rowSampleOffset + maxSampleXPos;
-                        final int maxSamplePos = (interMaxY - ty * tileHeight - 1) * sourceScanTileStride + maxSampleXPos;
-                        int samplePos          = 0;
-
-                        //-- current LZW array index --//
-                        //-- precedently iteration LZW code --//
-                        int hdb              = 0;
-                        Arrays.fill(prediPix, 0);
-
-                        //-- bytePos must read throught all file byte per byte --//
-                        int bytePos = 0;
-                        int b       = 0;
-
-                        /*
-                         * Long container use to build a sample,
-                         * because each sample is read byte per byte regardless their bit size.
-                         */
-                        long dataContainer = 0;
-                        int maskCount      = 0;
-
-                        //-- decode datas
-                        final byte[] data = new byte[(int)tileByteCounts[tileIndex]];
-                        rasterStream.readFully(data);
-                        inflate(inflater, data, decompressedData);
-
-                        for (int i = 0; i < unCompressedTileByteLength; i++) {
-                            //-- build sample in relation with bits per samples --//
-                            final long val = decompressedData[i] & 0x000000FFL;
-                            dataContainer  = dataContainer | (val << maskCount);
-                            maskCount     += Byte.SIZE;
-
-                            //-- if a sample is built --//
-                            if (maskCount == bitpersampl) {
-                                //-- add in precedently array before insertion --//
-                                //-- if horizontal differencing add with precedently value --//
-                                prediPix[hdb] = (predic == 2) ? (prediPix[hdb] + dataContainer) : dataContainer;
-
-                                //prediPix[hdb] = dataContainer;
-                                if (++hdb == pixelLength) hdb = 0;
+                        final int posRef       = rowSampleOffset + (interMinX + sourceColOffset - tx * blockWidth) * pixelLength;
+                        final int maxRowRefPos = rowSampleOffset + maxSampleXPos;
+                        final int maxSamplePos = (interMaxY - ty * blockHeight - 1) * sourceScanTileStride + maxSampleXPos;
 
-                                //-- re-initialize datacontainer --//
-                                dataContainer = 0;
-                                maskCount     = 0;
-
-                                //-- write sample in target array if its necessary --//
-                                if (samplePos == posRef) {
-                                    switch (dataType) {
-                                        case DataBuffer.TYPE_BYTE   : ((byte[])targetArray)[targetPos] = (byte) (prediPix[b]); break;
-                                        case DataBuffer.TYPE_SHORT  :
-                                        case DataBuffer.TYPE_USHORT : ((short[])targetArray)[targetPos] = (short) (prediPix[b]); break;
-                                        case DataBuffer.TYPE_INT    : ((int[])targetArray)[targetPos] =  (int) (prediPix[b]); break;
-                                        case DataBuffer.TYPE_FLOAT  : ((float[])targetArray)[targetPos] = Float.intBitsToFloat((int) (prediPix[b])); break;
-                                        case DataBuffer.TYPE_DOUBLE : ((double[])targetArray)[targetPos] = Double.longBitsToDouble(prediPix[b]); break;
-                                        default: throw new AssertionError(dataType);
-                                    }
-                                    targetPos += planarDenum;
-                                    if (++b == pixelLength) {
-                                        posRef += (sourceXSubsampling - 1) * pixelLength;
-                                        b = 0;
-                                    }
-                                    posRef++;
-                                    //-- this if means : pass to the next destination image row --//
-                                    if (posRef >= maxRowRefPos) {
-                                        assert hdb == 0 : "hdb should be zero. hdb = "+hdb;
-
-                                        //-- begin source position writing --//
-                                        posRef      = nextPosRef;
-                                        nextPosRef += sourceYSubsampling * sourceScanTileStride;
-
-                                        //-- ending source position writing --//
-                                        maxRowRefPos += sourceYSubsampling * sourceScanTileStride;
-
-                                        //-- if it is unnecessary to finish to read current tile --//
-                                        if (posRef >= maxSamplePos) {
-                                            assert maxRowRefPos >= maxSamplePos : "maxRowrefpos = "+maxRowRefPos+" maxSamplepos = "+maxSamplePos;
-                                            continue nextTile;
-                                        }
-
-                                        //-- destination shifts --//
-                                        targetOffset += targetScanlineStride;
-                                        targetPos = targetOffset;
-
-                                    }
-                                }
-                                //-- shift by one when a sample was built --//
-                                samplePos++;
-                            }
-                            if (++bytePos == sourceScanTileByteStride) {
-                                //-- initialize predictor array --//
-                                Arrays.fill(prediPix, 0);
-                                bytePos = 0;
-                            }
-                        }
+                        decoder.add(offsets[tileIndex], byteCounts[tileIndex], decodedLength,
+                                targetArray, targetOffset, posRef, maxRowRefPos, maxSamplePos);
                     }
                 }
             }
         }
-        inflater.end();
-    }
-
-    /**
-     * Use {@link Inflater} to uncompress data from {@code inputCompressedDatas}
-     * and store results into destination {@code unCompressedDatas} byte array.<br>
-     * Moreover if an error occur during uncompression, the {@link Inflater#end() } method is called.
-     *
-     * @param inflater object to uncompress inflate/deflate datas
-     * @param inputCompressedDatas compressed data
-     * @param unCompressedDatas destination uncompressed datas
-     * @throws IOException if problem during uncompress
-     */
-    private void inflate(final Inflater inflater, final byte[] inputCompressedDatas, final byte[] unCompressedDatas)
-            throws IOException {
-        inflater.reset();
-        inflater.setInput(inputCompressedDatas);
-        final int tilesizeByte = unCompressedDatas.length;
-        try {
-            int nb = 0;
-            while ((nb < tilesizeByte)) {
-                final int readByte = inflater.inflate(unCompressedDatas, nb, tilesizeByte - nb);
-                if (readByte <= 0) break;
-                nb += readByte;
-            }
-        } catch (DataFormatException ex) {
-            inflater.end();
-            throw new IOException(ex);
-        }
+        decoder.decode(rasterStream);
     }
 
     /**
@@ -3521,9 +2755,10 @@ public class TiffImageReader extends SpatialImageReader {
      */
     private ImageInputStream getImageInputStream(boolean reversedReading) throws IOException {
         // If we've got an uncompressed image, we are not forced to rewind our source input stream.
-        if (!reversedReading && compression != 1) {
-            if (imageStream != null) return imageStream;
-            else if (currentInput instanceof ImageInputStream) return (ImageInputStream) currentInput;
+        if (!reversedReading) {
+            //-- a given image input stream is seekable, reuse it rather than reading it through a forward only channel.
+            if (currentInput instanceof ImageInputStream) return (ImageInputStream) currentInput;
+            if (compression != 1 && imageStream != null) return imageStream;
         }
         //close previous channel if currentInput is not a stream
         if (channel != null && IOUtilities.canProcessAsPath(currentInput)) {
@@ -17,6 +17,7 @@
 package org.geotoolkit.image.io.plugin;
 
 import javax.imageio.ImageWriter;
+import org.apache.sis.util.ArgumentChecks;
 import org.geotoolkit.image.io.SpatialImageWriteParam;
 
 /**
@@ -29,12 +30,84 @@ import org.geotoolkit.image.io.SpatialImageWriteParam;
  */
 public class TiffImageWriteParam extends SpatialImageWriteParam {
 
+    /**
+     * Compute overviews until the smallest one fits in a single tile.
+     */
+    public static final int AUTO_OVERVIEWS = -1;
+
+    private boolean cloudOptimized = false;
+    private int predictor = 1;
+    private int overviewCount = AUTO_OVERVIEWS;
+
     public TiffImageWriteParam(ImageWriter writer) {
         super(writer);
         canOffsetTiles      = false;
         canWriteCompressed  = true;
         canWriteProgressive = false;
         canWriteTiles       = true;
-        compressionTypes    = new String[]{"LZW", "PackBits"};
+        compressionTypes    = new String[]{"LZW", "PackBits", "Deflate"};
+    }
+
+    /**
+     * @return true if image is written as a cloud optimized geotiff
+     * @see #setCloudOptimized(boolean)
+     */
+    public boolean isCloudOptimized() {
+        return cloudOptimized;
+    }
+
+    /**
+     * Write image as a cloud optimized geotiff : the image is tiled (256 x 256 if
+     * no tiling is defined), the file begins with the directories of the image and
+     * of its overviews, tile data follows, smallest overview first.
+     * Only Deflate compression or no compression are supported in this mode,
+     * the image must be the only one of the file and is written entirely.
+     *
+     * @param cloudOptimized true to write a cloud optimized geotiff
+     */
+    public void setCloudOptimized(boolean cloudOptimized) {
+        this.cloudOptimized = cloudOptimized;
+    }
+
+    /**
+     * @return tiff predictor used with Deflate compression in cloud optimized mode
+     * @see #setPredictor(int)
+     */
+    public int getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Set the tiff predictor used with Deflate compression in cloud optimized mode :
+     * 1 for none, 2 for horizontal differencing (integer samples),
+     * 3 for floating point predictor (floating point samples).
+     * Other writing modes only accept 1.
+     *
+     * @param predictor 1, 2 or 3
+     */
+    public void setPredictor(int predictor) {
+        ArgumentChecks.ensureBetween("predictor", 1, 3, predictor);
+        this.predictor = predictor;
+    }
+
+    /**
+     * @return number of overviews written in cloud optimized mode
+     * @see #setOverviewCount(int)
+     */
+    public int getOverviewCount() {
+        return overviewCount;
+    }
+
+    /**
+     * Set the number of overviews written in cloud optimized mode, each overview
+     * halves the size of the previous level.
+     *
+     * @param overviewCount number of overviews or {@link #AUTO_OVERVIEWS}
+     */
+    public void setOverviewCount(int overviewCount) {
+        if (overviewCount != AUTO_OVERVIEWS) {
+            ArgumentChecks.ensurePositive("overviewCount", overviewCount);
+        }
+        this.overviewCount = overviewCount;
     }
 }
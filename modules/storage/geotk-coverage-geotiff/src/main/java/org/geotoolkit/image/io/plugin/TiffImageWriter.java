@@ -51,6 +51,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.logging.Level;
+import java.util.zip.Deflater;
 
 import javax.imageio.IIOException;
 import javax.imageio.IIOImage;
@@ -120,6 +121,13 @@ public class TiffImageWriter extends SpatialImageWriter {
      */
     private final static String packbits = "PackBits";
 
+    /**
+     * String use to determinate deflate compression type.
+     *
+     * @see TiffImageWriteParam#compressionTypes
+     */
+    private final static String deflate  = "Deflate";
+
     /**
      * Size of data structures in standard TIFF files ({@code SIZE_*}) and in big TIFF files
      * ({@code SIZE_BIG_*}). In standard TIFF, the size of structures for counting the number
@@ -256,6 +264,23 @@ public class TiffImageWriter extends SpatialImageWriter {
      */
     private LZWMap lzwMap;
 
+    /**
+     * Compressor used during Deflate compression writing, reset at the end of each strip or tile.
+     */
+    private Deflater deflater;
+
+    /**
+     * Bytes waiting to be compressed by {@link #deflater}, then compressed bytes to write.
+     *
+     * @see #writeWithDeflateCompression(byte)
+     */
+    private byte[] deflateInput, deflateOutput;
+
+    /**
+     * Number of bytes waiting in {@link #deflateInput}.
+     */
+    private int deflatePos;
+
     /**
      * {@code Boolean} to define if image will write with bigTiff specification or standard tiff specification.
      */
@@ -409,7 +434,7 @@ public class TiffImageWriter extends SpatialImageWriter {
 
         assert compObj != null;
         final int comp = ((short[]) compObj.get(ATT_VALUE))[0];
-        assert comp == 1 || comp == 5 || comp == 32773 : "compression of current layer is not supported. layer index : "+layerIndex+" compression value : "+compression;
+        assert comp == 1 || comp == 5 || comp == 8 || comp == 32773 : "compression of current layer is not supported. layer index : "+layerIndex+" compression value : "+compression;
 
         compression = comp;
 
@@ -1008,6 +1033,13 @@ public class TiffImageWriter extends SpatialImageWriter {
      */
     private void write(final RenderedImage image, final Map<Integer, Map> headProperties,
                        final ImageWriteParam param, final long[] ifdPosition) throws IOException {
+        if (isCloudOptimized(param)) {
+            writeCloudOptimized(image, headProperties, param);
+            return;
+        }
+        if (param instanceof TiffImageWriteParam && ((TiffImageWriteParam) param).getPredictor() != 1) {
+            throw new IIOException("Predictor is only supported when writing a cloud optimized tiff.");
+        }
         if (channel != null) {
             //-- We authorize to write none big tiff image after big tiff already writen but not the inverse --//
             if (isBigTIFF != isBigTiff(image)) {
@@ -1061,6 +1093,190 @@ public class TiffImageWriter extends SpatialImageWriter {
         this.headProperties = null;
     }
 
+    /**
+     * Return {@code true} if image must be written by {@link #writeCloudOptimized(RenderedImage, Map, ImageWriteParam) },
+     * when cloud optimized mode is asked.
+     *
+     * @param param properties to write image or null.
+     */
+    private static boolean isCloudOptimized(final ImageWriteParam param) {
+        return param instanceof TiffImageWriteParam && ((TiffImageWriteParam) param).isCloudOptimized();
+    }
+
+    /**
+     * Write image as a cloud optimized geotiff.<br/>
+     * The directories of the image and of all its overviews are written at the beginning of the file,
+     * followed by tile offsets and byte counts tables, then tile data from the smallest overview to the
+     * full resolution image. Tiles are compressed in parallel by a {@link TiffTileEncoder}.
+     *
+     * @param image {@link RenderedImage} which will be write.
+     * @param headProperties image metadata properties.
+     * @param param properties to write image.
+     * @throws IOException if problem during writing.
+     */
+    private void writeCloudOptimized(final RenderedImage image, final Map<Integer, Map> headProperties,
+                                     final ImageWriteParam param) throws IOException {
+        if (channel != null) {
+            throw new IIOException("A cloud optimized tiff must be the only image of the file.");
+        }
+        if (param.getSourceRegion() != null || param.getSourceXSubsampling() != 1 || param.getSourceYSubsampling() != 1) {
+            throw new IIOException("Source region and subsampling are not supported when writing a cloud optimized tiff.");
+        }
+        final int predictor = ((TiffImageWriteParam) param).getPredictor();
+        int nbOverview      = ((TiffImageWriteParam) param).getOverviewCount();
+
+        //-- tile size, multiple of 16 as tiff specification asks --//
+        int tileWidth  = 256;
+        int tileHeight = 256;
+        if (param.getTilingMode() == ImageWriteParam.MODE_EXPLICIT && param.getTileWidth() > 0 && param.getTileHeight() > 0) {
+            tileWidth  = (param.getTileWidth()  + 15) / 16 * 16;
+            tileHeight = (param.getTileHeight() + 15) / 16 * 16;
+        }
+
+        isBigTIFF = isBigTiff(image);
+        if (isBigTIFF) {
+            currentSizeEntry     = SIZE_BIG_ENTRY;
+            currentSizeTagNumber = Long.SIZE / Byte.SIZE;
+            currentSizeNextIFD   = Long.SIZE / Byte.SIZE;
+        } else {
+            currentSizeEntry     = SIZE_ENTRY;
+            currentSizeTagNumber = Short.SIZE / Byte.SIZE;
+            currentSizeNextIFD   = Integer.SIZE / Byte.SIZE;
+        }
+        open(ifdPosition);
+
+        //-- image properties, data is always tiled and pixel interleaved --//
+        addImageProperties(image, headProperties, param);
+        if (compression != 1 && compression != 8) {
+            throw new IIOException("Only Deflate compression is supported when writing a cloud optimized tiff.");
+        }
+        final TiffTileEncoder encoder = new TiffTileEncoder(image, tileWidth, tileHeight,
+                compression, (compression == 8) ? predictor : 1, channel.getByteOrder());
+        for (int tag : new int[]{StripOffsets, StripByteCounts, RowsPerStrip, TileWidth, TileLength, TileOffsets, TileByteCounts}) {
+            headProperties.remove(tag);
+        }
+        addProperty(PlanarConfiguration, TYPE_USHORT, 1, new short[]{1}, headProperties);
+        if (compression == 8 && predictor != 1) {
+            addProperty(Predictor, TYPE_USHORT, 1, new short[]{(short) predictor}, headProperties);
+        }
+
+        //-- levels --//
+        if (nbOverview == TiffImageWriteParam.AUTO_OVERVIEWS) {
+            nbOverview = 0;
+            while (TiffTileEncoder.levelSize(image.getWidth(),  nbOverview) > tileWidth
+                || TiffTileEncoder.levelSize(image.getHeight(), nbOverview) > tileHeight) {
+                nbOverview++;
+            }
+        }
+        final int nbLevel = nbOverview + 1;
+        final int[] numTiles            = new int[nbLevel];
+        final long[] offsetPositions    = new long[nbLevel];
+        final long[] byteCountPositions = new long[nbLevel];
+        final boolean[] inline          = new boolean[nbLevel];
+        final int arrayElementSize      = (isBigTIFF) ? Long.SIZE / Byte.SIZE : Integer.SIZE / Byte.SIZE;
+
+        //-- write all directories at the beginning of the file --//
+        for (int level = 0; level < nbLevel; level++) {
+            final Map<Integer, Map> levelProperties = new TreeMap<>(headProperties);
+            final int width  = TiffTileEncoder.levelSize(image.getWidth(),  level);
+            final int height = TiffTileEncoder.levelSize(image.getHeight(), level);
+            if (level > 0) {
+                //-- georeferencing is only defined on full resolution image --//
+                for (int tag : new int[]{ModelPixelScaleTag, ModelTiepointTag, ModelTransformationTag,
+                        GeoKeyDirectoryTag, GeoDoubleParamsTag, GeoAsciiParamsTag}) {
+                    levelProperties.remove(tag);
+                }
+                addProperty(NewSubfileType, TYPE_UINT, 1, new int[]{1}, levelProperties);
+            }
+            if (width > 0xFFFF) addProperty(ImageWidth, TYPE_INT, 1, new int[]{width}, levelProperties);
+            else                addProperty(ImageWidth, TYPE_USHORT, 1, new short[]{(short) width}, levelProperties);
+            if (height > 0xFFFF) addProperty(ImageLength, TYPE_INT, 1, new int[]{height}, levelProperties);
+            else                 addProperty(ImageLength, TYPE_USHORT, 1, new short[]{(short) height}, levelProperties);
+
+            final int numXTile = (width  + tileWidth  - 1) / tileWidth;
+            final int numYTile = (height + tileHeight - 1) / tileHeight;
+            numTiles[level] = numXTile * numYTile;
+            addTileOffsetsProperties(tileWidth, tileHeight, numXTile, numYTile, levelProperties);
+
+            if (level > 0) {
+                //-- chain previous directory to this one, on a word boundary --//
+                long position = channel.getStreamPosition();
+                if ((position & 1) != 0) {
+                    channel.writeByte(0);
+                    position++;
+                }
+                channel.seek(ifdPosition[1]);
+                if (isBigTIFF) channel.writeLong(position);
+                else           channel.writeInt((int) position);
+                channel.seek(position);
+                ifdPosition[0] = position;
+            }
+            writeTags(levelProperties, ifdPosition);
+            offsetPositions[level]    = offsetTagPosition;
+            byteCountPositions[level] = byteCountTagPosition;
+            inline[level] = numTiles[level] * arrayElementSize <= currentSizeNextIFD;
+
+            if (level == 0) {
+                if (metaIndex == metaHeads.length) {
+                    metaHeads = Arrays.copyOf(metaHeads, metaHeads.length << 1);
+                }
+                metaHeads[metaIndex++] = levelProperties;
+            }
+        }
+
+        //-- reserve tile offsets and byte counts tables after the directories --//
+        for (int level = 0; level < nbLevel; level++) {
+            if (inline[level]) continue;
+            offsetPositions[level]    = reserveArray(offsetPositions[level],    numTiles[level] * arrayElementSize);
+            byteCountPositions[level] = reserveArray(byteCountPositions[level], numTiles[level] * arrayElementSize);
+        }
+
+        //-- tile data, smallest overview first --//
+        for (int level = nbLevel - 1; level >= 0; level--) {
+            final long[] offsets    = new long[numTiles[level]];
+            final long[] byteCounts = new long[numTiles[level]];
+            encoder.writeLevel(level, channel, offsets, byteCounts);
+
+            final long end = channel.getStreamPosition();
+            channel.seek(offsetPositions[level]);
+            writeOffsetArray(offsets);
+            channel.seek(byteCountPositions[level]);
+            writeOffsetArray(byteCounts);
+            channel.seek(end);
+        }
+        this.headProperties = null;
+    }
+
+    /**
+     * Write the position of a table of the given size in the directory entry and fill the table with zeros.
+     *
+     * @param entryPosition position of the directory entry value.
+     * @param length table length in bytes.
+     * @return position of the table.
+     */
+    private long reserveArray(final long entryPosition, final int length) throws IOException {
+        final long position = channel.getStreamPosition();
+        channel.seek(entryPosition);
+        if (isBigTIFF) channel.writeLong(position);
+        else           channel.writeInt((int) position);
+        channel.seek(position);
+        channel.write(new byte[length]);
+        return position;
+    }
+
+    /**
+     * Write tile offsets or byte counts at current position, as 64 bits values in big tiff, 32 bits otherwise.
+     */
+    private void writeOffsetArray(final long[] values) throws IOException {
+        if (isBigTIFF) {
+            channel.writeLongs(values);
+        } else {
+            for (long v : values) {
+                channel.writeInt((int) v);
+            }
+        }
+    }
+
     /**
      * Check tagsProperties {@link Map} and define if image will be written by stripOffsets or by tiles.
      *
@@ -1226,7 +1442,7 @@ public class TiffImageWriter extends SpatialImageWriter {
      * @param image source image which will be written.
      * @return {@code true} if image is a {@code BigTiff} else {@code false}.
      */
-    private boolean isBigTiff(final RenderedImage image) {
+    boolean isBigTiff(final RenderedImage image) {
         final int imgWidth     = image.getWidth();
         final int imgHeight    = image.getHeight();
         final SampleModel sm   = image.getSampleModel();
@@ -1524,6 +1740,8 @@ public class TiffImageWriter extends SpatialImageWriter {
                     compression = 5;
                 } else if (packbits.equalsIgnoreCase(comp)) {
                     compression = 32773;
+                } else if (deflate.equalsIgnoreCase(comp)) {
+                    compression = 8;
                 } else {
                     throw new IllegalStateException("the compression type : "+comp+". Is not known. Impossible to write image.");
                 }
@@ -2094,6 +2312,7 @@ public class TiffImageWriter extends SpatialImageWriter {
                          * flushed when we write LZW end of file value.
                          */
                         if (compression == 5) writeWithLZWCompression(LZW_EOI_CODE);
+                        if (compression == 8) finishDeflateCompression();
 
                         final long currentOffset = channel.getStreamPosition();
                         final long currentTileByteCount = currentOffset - tileOffsetBeg;
@@ -2233,6 +2452,7 @@ public class TiffImageWriter extends SpatialImageWriter {
                      * flushed when we write LZW end of file value.
                      */
                     if (compression == 5) writeWithLZWCompression(LZW_EOI_CODE);
+                    if (compression == 8) finishDeflateCompression();
 
                     final long currentOffset = channel.getStreamPosition();
                     final long currentTileByteCount = currentOffset - tileOffsetBeg;
@@ -2343,7 +2563,7 @@ public class TiffImageWriter extends SpatialImageWriter {
         if (compress == 1) {
             //-- no compression --//
              write(writtenSourceArray, datatype, writtenArrayOffset, arrayLength);
-        } else if (compress == 5 || compress == 32773) {
+        } else if (compress == 5 || compress == 8 || compress == 32773) {
             //-- with compression --//
             writeWithCompression(writtenSourceArray, datatype, writtenArrayOffset, arrayLength, writtenBitPerSamples);
         } else {
@@ -3023,6 +3243,7 @@ public class TiffImageWriter extends SpatialImageWriter {
                     write(destOffsetRowArray, dataType, 0, destRegion.width * pixelLength, bitPerSample, compression, sm.getNumBands(), sm.getNumDataElements(), null);//-- padding offset array, dataoffset has no impact write empty samples
 
                     if (compression == 5) writeWithLZWCompression(LZW_EOI_CODE);
+                    if (compression == 8) finishDeflateCompression();
                     lastByte32773     += currentByteCount;
                     precLastByte32773 += currentByteCount;
                     final long currentStripOffset = channel.getStreamPosition();
@@ -3119,6 +3340,7 @@ public class TiffImageWriter extends SpatialImageWriter {
                    }
 
                    if (compression == 5) writeWithLZWCompression(LZW_EOI_CODE);
+                   if (compression == 8) finishDeflateCompression();
                    lastByte32773     += currentByteCount;
                    precLastByte32773 += currentByteCount;
                    final long currentStripOffset = channel.getStreamPosition();
@@ -3214,6 +3436,8 @@ public class TiffImageWriter extends SpatialImageWriter {
                     writeWithPackBitsCompression((byte) val);
                 } else if (compression == 5) {
                     writeWithLZWCompression((byte) val);
+                } else if (compression == 8) {
+                    writeWithDeflateCompression((byte) val);
                 } else {
                     throw new IllegalStateException("no compression value should never append.");
                 }
@@ -3288,6 +3512,45 @@ public class TiffImageWriter extends SpatialImageWriter {
         }
     }
 
+    /**
+     * Give the given value to {@linkplain #deflater}, compressed bytes are written into stream {@linkplain #channel}.
+     *
+     * @param value value which will be compressed.
+     * @throws IOException
+     * @see #finishDeflateCompression()
+     */
+    private void writeWithDeflateCompression(final byte value) throws IOException {
+        if (deflater == null) {
+            deflater      = new Deflater();
+            deflateInput  = new byte[8192];
+            deflateOutput = new byte[8192];
+        }
+        deflateInput[deflatePos++] = value;
+        if (deflatePos == deflateInput.length) {
+            deflater.setInput(deflateInput, 0, deflatePos);
+            while (!deflater.needsInput()) {
+                channel.write(deflateOutput, 0, deflater.deflate(deflateOutput));
+            }
+            deflatePos = 0;
+        }
+    }
+
+    /**
+     * Write remaining compressed bytes of the current strip or tile and reset {@linkplain #deflater}.
+     *
+     * @throws IOException
+     */
+    private void finishDeflateCompression() throws IOException {
+        if (deflater == null) return;
+        deflater.setInput(deflateInput, 0, deflatePos);
+        deflater.finish();
+        while (!deflater.finished()) {
+            channel.write(deflateOutput, 0, deflater.deflate(deflateOutput));
+        }
+        deflater.reset();
+        deflatePos = 0;
+    }
+
     /**
      * Return the expected LZW code from the given key.
      *
@@ -3690,6 +3953,10 @@ public class TiffImageWriter extends SpatialImageWriter {
     public void dispose() {
         super.dispose();
         closeChannel();
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
     }
 
     /**
@@ -0,0 +1,506 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decode the LZW or Deflate compressed tiles (or strips) of a region in a target array.
+ * <p>
+ * Tiles are first registered with {@link #add }, then {@link #decode(ImageInputStream) }
+ * reads the compressed bytes in file order, adjacent byte ranges are grouped in
+ * a single read. Tiles are decompressed on a shared pool while the next ranges are read.
+ * Each tile writes distinct samples of the target array, the result does not depend
+ * on the decoding order.
+ * </p>
+ *
+ * @module
+ */
+final class TiffTileDecoder {
+
+    static final int LZW     = 5;
+    static final int DEFLATE = 8;
+
+    static final int PREDICTOR_NONE           = 1;
+    static final int PREDICTOR_HORIZONTAL     = 2;
+    static final int PREDICTOR_FLOATING_POINT = 3;
+
+    private static final int LZW_CLEAR_CODE = 256;
+    private static final int LZW_EOI_CODE   = 257;
+    private static final int LZW_FIRST_CODE = 258;
+    private static final int LZW_MAX_CODE   = 4095;
+
+    /**
+     * Two ranges are read at once if there is less than this number of bytes between them.
+     */
+    private static final int MAX_GAP = 8192;
+
+    /**
+     * Maximum length of a grouped read.
+     */
+    private static final int MAX_READ = 4 << 20;
+
+    /**
+     * Maximum number of compressed bytes waiting to be decoded.
+     */
+    private static final long MAX_PENDING = 64L << 20;
+
+    /**
+     * Pool decoding the tiles, shared by all readers.
+     */
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors();
+        EXECUTOR = new ThreadPoolExecutor(nbThread, nbThread, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "Tiff tile decoder " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Comparator<Tile> OFFSET_COMPARATOR = new Comparator<Tile>() {
+        @Override public int compare(final Tile o1, final Tile o2) {
+            return Long.compare(o1.offset, o2.offset);
+        }
+    };
+
+    private final int compression;
+    private final int dataType;
+    private final int bitsPerSample;
+    private final int pixelLength;
+    private final int planarDenum;
+    private final int predictor;
+    private final int sourceXSubsampling;
+    private final int sourceYSubsampling;
+    /** Number of samples in a tile row. */
+    private final int sourceScanTileStride;
+    /** Number of bytes in a tile row. */
+    private final int sourceScanTileByteStride;
+    private final int targetScanlineStride;
+
+    private final List<Tile> tiles = new ArrayList<>();
+
+    /**
+     * @param compression {@link #LZW} or {@link #DEFLATE}
+     * @param dataType target {@link DataBuffer} type
+     * @param bitsPerSample number of bits of a sample
+     * @param pixelLength number of samples of a pixel in a tile, 1 for planar configuration
+     * @param planarDenum step between two samples written in the target array
+     * @param predictor one of the {@code PREDICTOR_*} constants
+     * @param sourceXSubsampling subsampling in x direction
+     * @param sourceYSubsampling subsampling in y direction
+     * @param tileWidth tile (or strip) width in pixels
+     * @param targetScanlineStride target array scanline stride
+     * @throws IIOException if predictor is unknown or can not be used with the sample size
+     */
+    TiffTileDecoder(final int compression, final int dataType, final int bitsPerSample,
+            final int pixelLength, final int planarDenum, final int predictor,
+            final int sourceXSubsampling, final int sourceYSubsampling,
+            final int tileWidth, final int targetScanlineStride) throws IIOException {
+        if (compression != LZW && compression != DEFLATE) {
+            throw new IllegalArgumentException("Unsupported compression : " + compression);
+        }
+        if (predictor < PREDICTOR_NONE || predictor > PREDICTOR_FLOATING_POINT) {
+            throw new IIOException("Unsupported predictor : " + predictor);
+        }
+        if (predictor == PREDICTOR_FLOATING_POINT && bitsPerSample % Byte.SIZE != 0) {
+            throw new IIOException("Floating point predictor needs samples of whole bytes, found " + bitsPerSample + " bits per sample.");
+        }
+        this.compression              = compression;
+        this.dataType                 = dataType;
+        this.bitsPerSample            = bitsPerSample;
+        this.pixelLength              = pixelLength;
+        this.planarDenum              = planarDenum;
+        this.predictor                = predictor;
+        this.sourceXSubsampling       = sourceXSubsampling;
+        this.sourceYSubsampling       = sourceYSubsampling;
+        this.sourceScanTileStride     = tileWidth * pixelLength;
+        this.sourceScanTileByteStride = (sourceScanTileStride * bitsPerSample) / Byte.SIZE;
+        this.targetScanlineStride     = targetScanlineStride;
+    }
+
+    /**
+     * @return number of bytes of a tile row once decompressed
+     */
+    int getScanlineByteStride() {
+        return sourceScanTileByteStride;
+    }
+
+    /**
+     * Register a tile to decode.
+     *
+     * @param offset position of the compressed tile in the file
+     * @param length compressed tile length in bytes
+     * @param decodedLength number of decompressed bytes needed to reach the last written sample
+     * @param targetArray array in which samples are written
+     * @param targetOffset index of the first written sample in target array
+     * @param posRef index of the first written sample in the tile
+     * @param maxRowRefPos index after the last written sample of the first row in the tile
+     * @param maxSamplePos index after the last written sample in the tile
+     */
+    void add(final long offset, final long length, final int decodedLength, final Object targetArray,
+            final int targetOffset, final int posRef, final int maxRowRefPos, final int maxSamplePos) {
+        tiles.add(new Tile(offset, length, decodedLength, targetArray, targetOffset, posRef, maxRowRefPos, maxSamplePos));
+    }
+
+    /**
+     * Read and decode all registered tiles.
+     * Reads are done in the calling thread, in file order.
+     *
+     * @param input stream positioned anywhere, tile offsets are absolute
+     * @throws IOException if a read or a decompression failed, the first failed tile in file order is reported
+     */
+    void decode(final ImageInputStream input) throws IOException {
+        final Tile[] sorted = tiles.toArray(new Tile[tiles.size()]);
+        tiles.clear();
+        Arrays.sort(sorted, OFFSET_COMPARATOR);
+
+        final boolean parallel = sorted.length > 1 && EXECUTOR.getMaximumPoolSize() > 1;
+        final List<Future<Object>> pending = new ArrayList<>();
+        long pendingBytes = 0;
+        try {
+            int i = 0;
+            while (i < sorted.length) {
+                final long start = sorted[i].offset;
+                long end = start + sorted[i].length;
+                int j = i + 1;
+                for (; j < sorted.length; j++) {
+                    final Tile next = sorted[j];
+                    final long nextEnd = Math.max(end, next.offset + next.length);
+                    if (next.offset - end > MAX_GAP || nextEnd - start > MAX_READ) break;
+                    end = nextEnd;
+                }
+
+                final byte[] range = new byte[Math.toIntExact(end - start)];
+                input.seek(start);
+                input.readFully(range);
+
+                for (; i < j; i++) {
+                    final Tile tile = sorted[i];
+                    tile.data       = range;
+                    tile.dataOffset = (int) (tile.offset - start);
+                    if (parallel) {
+                        pending.add(EXECUTOR.submit(tile));
+                    } else {
+                        tile.call();
+                    }
+                }
+
+                pendingBytes += range.length;
+                if (pendingBytes >= MAX_PENDING) {
+                    await(pending);
+                    pendingBytes = 0;
+                }
+            }
+            await(pending);
+        } finally {
+            for (Future<Object> f : pending) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Wait for the submitted tiles in submission order and clear the list.
+     */
+    private static void await(final List<Future<Object>> pending) throws IOException {
+        try {
+            for (Future<Object> f : pending) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException)    throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error)          throw (Error) cause;
+            throw new IIOException(cause.getMessage(), cause);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Inflate compressed bytes.
+     *
+     * @return number of decompressed bytes
+     */
+    private static int inflate(final byte[] src, final int offset, final int length, final byte[] dst) throws IOException {
+        final Inflater inflater = new Inflater(false);
+        try {
+            inflater.setInput(src, offset, length);
+            int nb = 0;
+            while (nb < dst.length) {
+                final int readByte = inflater.inflate(dst, nb, dst.length - nb);
+                if (readByte <= 0) break;
+                nb += readByte;
+            }
+            return nb;
+        } catch (DataFormatException ex) {
+            throw new IIOException(ex.getMessage(), ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decode LZW compressed bytes, stop at the end of information code,
+     * at the end of the compressed bytes or when destination array is full.
+     *
+     * @return number of decompressed bytes
+     */
+    static int decodeLZW(final byte[] src, final int offset, final int length, final byte[] dst) throws IIOException {
+        final long bitEnd = (long) (offset + length) * Byte.SIZE;
+        long bitPos       = (long) offset * Byte.SIZE;
+        final byte[][] table = new byte[LZW_MAX_CODE + 1][];
+        int codeLength = 9;
+        int nextCode   = LZW_FIRST_CODE;
+        byte[] old     = null;
+        int nb = 0;
+        while (nb < dst.length && bitPos + codeLength <= bitEnd) {
+            final int code = readBits(src, bitPos, codeLength);
+            bitPos += codeLength;
+            if (code == LZW_EOI_CODE) break;
+            if (code == LZW_CLEAR_CODE) {
+                codeLength = 9;
+                nextCode   = LZW_FIRST_CODE;
+                old        = null;
+                continue;
+            }
+
+            final byte[] entry;
+            if (code < LZW_CLEAR_CODE) {
+                entry = new byte[] {(byte) code};
+            } else if (code < nextCode) {
+                entry = table[code];
+            } else if (code == nextCode && old != null) {
+                // w + w[0]
+                entry = Arrays.copyOf(old, old.length + 1);
+                entry[old.length] = old[0];
+            } else {
+                throw new IIOException("Invalid LZW code " + code);
+            }
+
+            final int n = Math.min(entry.length, dst.length - nb);
+            System.arraycopy(entry, 0, dst, nb, n);
+            nb += n;
+
+            if (old != null && nextCode <= LZW_MAX_CODE) {
+                final byte[] added = Arrays.copyOf(old, old.length + 1);
+                added[old.length]  = entry[0];
+                table[nextCode++]  = added;
+                //-- tiff LZW switches to the next code length one code early --//
+                if (nextCode == (1 << codeLength) - 1 && codeLength < 12) {
+                    codeLength++;
+                }
+            }
+            old = entry;
+        }
+        return nb;
+    }
+
+    /**
+     * Read {@code n} bits, most significant bit first. Bytes after the end of the array are zeros.
+     */
+    private static int readBits(final byte[] src, final long bitPos, final int n) {
+        final int index = (int) (bitPos >>> 3);
+        final int shift = (int) (bitPos & 7);
+        int value = (src[index] & 0xFF) << 16;
+        if (index + 1 < src.length) value |= (src[index + 1] & 0xFF) << 8;
+        if (index + 2 < src.length) value |=  src[index + 2] & 0xFF;
+        return (value >>> (24 - shift - n)) & ((1 << n) - 1);
+    }
+
+    /**
+     * Copy samples of a decompressed tile in the target array, applying the predictor and subsampling.
+     */
+    private void write(final Tile tile, final byte[] decoded, final int length) {
+        final Object targetArray = tile.targetArray;
+        final long[] prediPix    = new long[pixelLength];
+        int targetOffset         = tile.targetOffset;
+        int targetPos            = targetOffset;
+        int posRef               = tile.posRef;
+        int nextPosRef           = posRef + sourceYSubsampling * sourceScanTileStride;
+        int maxRowRefPos         = tile.maxRowRefPos;
+        final int maxSamplePos   = tile.maxSamplePos;
+        int samplePos            = 0;
+        int hdb                  = 0;
+        int bytePos              = 0;
+        int b                    = 0;
+
+        /*
+         * Long container use to build a sample,
+         * because each sample is read byte per byte regardless their bit size.
+         */
+        long dataContainer = 0;
+        int maskCount      = 0;
+
+        for (int i = 0; i < length; i++) {
+            //-- build sample in relation with bits per samples --//
+            final long val = decoded[i] & 0x000000FFL;
+            dataContainer  = dataContainer | (val << maskCount);
+            maskCount     += Byte.SIZE;
+
+            //-- if a sample is built --//
+            if (maskCount == bitsPerSample) {
+                //-- if horizontal differencing add with precedently value --//
+                prediPix[hdb] = (predictor == PREDICTOR_HORIZONTAL) ? (prediPix[hdb] + dataContainer) : dataContainer;
+                if (++hdb == pixelLength) hdb = 0;
+
+                dataContainer = 0;
+                maskCount     = 0;
+
+                //-- write sample in target array if its necessary --//
+                if (samplePos == posRef) {
+                    switch (dataType) {
+                        case DataBuffer.TYPE_BYTE   : ((byte[])targetArray)[targetPos] = (byte) (prediPix[b]); break;
+                        case DataBuffer.TYPE_SHORT  :
+                        case DataBuffer.TYPE_USHORT : ((short[])targetArray)[targetPos] = (short) (prediPix[b]); break;
+                        case DataBuffer.TYPE_INT    : ((int[])targetArray)[targetPos] =  (int) (prediPix[b]); break;
+                        case DataBuffer.TYPE_FLOAT  : ((float[])targetArray)[targetPos] = Float.intBitsToFloat((int) (prediPix[b])); break;
+                        case DataBuffer.TYPE_DOUBLE : ((double[])targetArray)[targetPos] = Double.longBitsToDouble(prediPix[b]); break;
+                        default: throw new AssertionError(dataType);
+                    }
+                    targetPos += planarDenum;
+                    if (++b == pixelLength) {
+                        posRef += (sourceXSubsampling - 1) * pixelLength;
+                        b = 0;
+                    }
+                    posRef++;
+                    //-- pass to the next destination image row --//
+                    if (posRef >= maxRowRefPos) {
+                        posRef        = nextPosRef;
+                        nextPosRef   += sourceYSubsampling * sourceScanTileStride;
+                        maxRowRefPos += sourceYSubsampling * sourceScanTileStride;
+
+                        //-- all requested samples of the tile are written --//
+                        if (posRef >= maxSamplePos) return;
+
+                        targetOffset += targetScanlineStride;
+                        targetPos     = targetOffset;
+                    }
+                }
+                samplePos++;
+            }
+            if (++bytePos == sourceScanTileByteStride) {
+                //-- initialize predictor array at each row --//
+                Arrays.fill(prediPix, 0);
+                bytePos = 0;
+            }
+        }
+    }
+
+    /**
+     * Undo the floating point predictor (tiff technical note 3) on each complete row :
+     * bytes are summed with the byte of the previous pixel, then sample bytes, stored
+     * in planes most significant byte first, are gathered in the least significant
+     * byte first order read by {@link #write(Tile, byte[], int) }.
+     */
+    private void undoFloatingPoint(final byte[] decoded, final int length) {
+        final int rowLength = sourceScanTileByteStride;
+        final int count     = sourceScanTileStride;
+        final int bytes     = bitsPerSample / Byte.SIZE;
+        final byte[] row    = new byte[rowLength];
+        for (int start = 0; start + rowLength <= length; start += rowLength) {
+            for (int i = start + pixelLength, end = start + rowLength; i < end; i++) {
+                decoded[i] += decoded[i - pixelLength];
+            }
+            System.arraycopy(decoded, start, row, 0, rowLength);
+            for (int k = 0; k < count; k++) {
+                for (int j = 0; j < bytes; j++) {
+                    decoded[start + k * bytes + j] = row[(bytes - 1 - j) * count + k];
+                }
+            }
+        }
+    }
+
+    /**
+     * A tile to decode and its position in the target array.
+     */
+    private final class Tile implements Callable<Object> {
+
+        final long offset;
+        final long length;
+        final int decodedLength;
+        final Object targetArray;
+        final int targetOffset;
+        final int posRef;
+        final int maxRowRefPos;
+        final int maxSamplePos;
+
+        /** Compressed bytes, set once read. */
+        byte[] data;
+        int dataOffset;
+
+        Tile(final long offset, final long length, final int decodedLength, final Object targetArray,
+                final int targetOffset, final int posRef, final int maxRowRefPos, final int maxSamplePos) {
+            this.offset        = offset;
+            this.length        = length;
+            this.decodedLength = decodedLength;
+            this.targetArray   = targetArray;
+            this.targetOffset  = targetOffset;
+            this.posRef        = posRef;
+            this.maxRowRefPos  = maxRowRefPos;
+            this.maxSamplePos  = maxSamplePos;
+        }
+
+        @Override
+        public Object call() throws IOException {
+            //-- floating point predictor is undone on whole rows --//
+            final byte[] decoded = new byte[(predictor == PREDICTOR_FLOATING_POINT)
+                    ? (decodedLength + sourceScanTileByteStride - 1) / sourceScanTileByteStride * sourceScanTileByteStride
+                    : decodedLength];
+            final int nb;
+            if (compression == DEFLATE) {
+                nb = inflate(data, dataOffset, (int) length, decoded);
+            } else {
+                nb = decodeLZW(data, dataOffset, (int) length, decoded);
+            }
+            data = null;
+            if (predictor == PREDICTOR_FLOATING_POINT) {
+                undoFloatingPoint(decoded, nb);
+            }
+            write(this, decoded, nb);
+            return null;
+        }
+    }
+}
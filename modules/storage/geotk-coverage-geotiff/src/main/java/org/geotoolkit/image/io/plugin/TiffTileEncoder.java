@@ -0,0 +1,330 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Encode the tiles of an image and of its overviews, uncompressed or with Deflate compression.
+ * <p>
+ * Tiles are always full size and pixel interleaved (planar configuration 1), edge tiles are
+ * filled with zeros. Overview of level {@code n} takes one source pixel over {@code 2^n}
+ * in each direction (nearest neighbour). Tiles are encoded on a shared pool and written in
+ * row major order.
+ * </p>
+ *
+ * @module
+ */
+final class TiffTileEncoder {
+
+    static final int NONE    = 1;
+    static final int DEFLATE = 8;
+
+    static final int PREDICTOR_NONE           = 1;
+    static final int PREDICTOR_HORIZONTAL     = 2;
+    static final int PREDICTOR_FLOATING_POINT = 3;
+
+    /**
+     * Pool encoding the tiles, shared by all writers.
+     */
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors();
+        EXECUTOR = new ThreadPoolExecutor(nbThread, nbThread, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "Tiff tile encoder " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final RenderedImage image;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int compression;
+    private final int predictor;
+    private final ByteOrder order;
+    private final int dataType;
+    private final int numBands;
+    private final int sampleSize;
+
+    /**
+     * @param image source image
+     * @param tileWidth written tile width
+     * @param tileHeight written tile height
+     * @param compression {@link #NONE} or {@link #DEFLATE}
+     * @param predictor one of the {@code PREDICTOR_*} constants
+     * @param order byte order of the written file
+     * @throws IIOException if image sample model or predictor is not supported
+     */
+    TiffTileEncoder(final RenderedImage image, final int tileWidth, final int tileHeight,
+            final int compression, final int predictor, final ByteOrder order) throws IIOException {
+        this.image       = image;
+        this.tileWidth   = tileWidth;
+        this.tileHeight  = tileHeight;
+        this.compression = compression;
+        this.predictor   = predictor;
+        this.order       = order;
+        this.dataType    = image.getSampleModel().getDataType();
+        this.numBands    = image.getSampleModel().getNumBands();
+        this.sampleSize  = DataBuffer.getDataTypeSize(dataType) / Byte.SIZE;
+
+        if (compression != NONE && compression != DEFLATE) {
+            throw new IIOException("Unsupported compression : " + compression);
+        }
+        for (int size : image.getSampleModel().getSampleSize()) {
+            if (size != sampleSize * Byte.SIZE) {
+                throw new IIOException("Sample size " + size + " bits is not supported, only samples filling their data type can be written.");
+            }
+        }
+        final boolean floating = (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE);
+        if (predictor == PREDICTOR_HORIZONTAL && floating) {
+            throw new IIOException("Horizontal predictor can not be used with floating point samples.");
+        }
+        if (predictor == PREDICTOR_FLOATING_POINT && !floating) {
+            throw new IIOException("Floating point predictor can only be used with floating point samples.");
+        }
+        if (predictor < PREDICTOR_NONE || predictor > PREDICTOR_FLOATING_POINT) {
+            throw new IIOException("Unknown predictor : " + predictor);
+        }
+    }
+
+    /**
+     * @return size of the image at the given overview level
+     */
+    static int levelSize(final int size, final int level) {
+        return (int) ((size + (1L << level) - 1) >> level);
+    }
+
+    /**
+     * Encode all tiles of a level and write them in row major order at the current stream position.
+     *
+     * @param level overview level, 0 for full resolution
+     * @param out destination stream
+     * @param offsets filled with the position of each tile
+     * @param byteCounts filled with the length of each tile
+     */
+    void writeLevel(final int level, final ImageOutputStream out, final long[] offsets, final long[] byteCounts) throws IOException {
+        final int width    = levelSize(image.getWidth(),  level);
+        final int height   = levelSize(image.getHeight(), level);
+        final int numXTile = (width  + tileWidth  - 1) / tileWidth;
+        final int numYTile = (height + tileHeight - 1) / tileHeight;
+        final int nbTile   = numXTile * numYTile;
+        assert offsets.length == nbTile && byteCounts.length == nbTile;
+
+        final int window = EXECUTOR.getMaximumPoolSize() * 2;
+        final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>(window);
+        int written = 0;
+        try {
+            for (int t = 0; t < nbTile; t++) {
+                final int tx = t % numXTile;
+                final int ty = t / numXTile;
+                if (window <= 2) {
+                    write(out, encode(level, tx, ty), written++, offsets, byteCounts);
+                    continue;
+                }
+                pending.add(EXECUTOR.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return encode(level, tx, ty);
+                    }
+                }));
+                if (pending.size() >= window) {
+                    write(out, get(pending.poll()), written++, offsets, byteCounts);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(out, get(pending.poll()), written++, offsets, byteCounts);
+            }
+        } finally {
+            for (Future<byte[]> f : pending) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    private static void write(final ImageOutputStream out, final byte[] data, final int index,
+            final long[] offsets, final long[] byteCounts) throws IOException {
+        offsets[index]    = out.getStreamPosition();
+        byteCounts[index] = data.length;
+        out.write(data);
+    }
+
+    private static byte[] get(final Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException)      throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error)            throw (Error) cause;
+            throw new IIOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Build the bytes of a tile, apply predictor and compression.
+     */
+    byte[] encode(final int level, final int tx, final int ty) throws IOException {
+        final int rowLength = tileWidth * numBands;
+        final ByteBuffer buffer = ByteBuffer.allocate(rowLength * tileHeight * sampleSize).order(order);
+        final byte[] planes = (predictor == PREDICTOR_FLOATING_POINT) ? new byte[rowLength * sampleSize] : null;
+
+        final int step    = 1 << level;
+        final int width   = levelSize(image.getWidth(),  level);
+        final int height  = levelSize(image.getHeight(), level);
+        final int minX    = tx * tileWidth;
+        final int minY    = ty * tileHeight;
+        final int readW   = Math.min(tileWidth,  width  - minX);
+        final int readH   = Math.min(tileHeight, height - minY);
+
+        //-- full resolution tile is read at once, overviews row by row --//
+        final Raster tile = (level == 0)
+                ? image.getData(new Rectangle(image.getMinX() + minX, image.getMinY() + minY, readW, readH))
+                : null;
+
+        final double[] doubles = new double[rowLength];
+        final int[]    ints    = new int[rowLength];
+        final boolean floating = (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE);
+
+        for (int y = 0; y < tileHeight; y++) {
+            if (floating) Arrays.fill(doubles, 0);
+            else          Arrays.fill(ints, 0);
+
+            if (y < readH) {
+                final Raster row;
+                final int rowY;
+                if (tile != null) {
+                    row  = tile;
+                    rowY = tile.getMinY() + y;
+                } else {
+                    final int srcX = minX * step;
+                    final int srcW = Math.min(tileWidth * step, image.getWidth() - srcX);
+                    rowY = image.getMinY() + (minY + y) * step;
+                    row  = image.getData(new Rectangle(image.getMinX() + srcX, rowY, srcW, 1));
+                }
+                final int rowMinX = (tile != null) ? tile.getMinX() : row.getMinX();
+                for (int x = 0; x < readW; x++) {
+                    final int sx = rowMinX + x * ((tile != null) ? 1 : step);
+                    for (int b = 0; b < numBands; b++) {
+                        if (floating) doubles[x * numBands + b] = row.getSampleDouble(sx, rowY, b);
+                        else          ints   [x * numBands + b] = row.getSample(sx, rowY, b);
+                    }
+                }
+            }
+
+            switch (predictor) {
+                case PREDICTOR_HORIZONTAL : {
+                    for (int i = rowLength - 1; i >= numBands; i--) {
+                        ints[i] -= ints[i - numBands];
+                    }
+                    putRow(buffer, ints, doubles);
+                    break;
+                }
+                case PREDICTOR_FLOATING_POINT : {
+                    floatingPointRow(doubles, planes);
+                    buffer.put(planes);
+                    break;
+                }
+                default : putRow(buffer, ints, doubles);
+            }
+        }
+
+        final byte[] raw = buffer.array();
+        return (compression == DEFLATE) ? deflate(raw) : raw;
+    }
+
+    private void putRow(final ByteBuffer buffer, final int[] ints, final double[] doubles) {
+        final int rowLength = ints.length;
+        for (int i = 0; i < rowLength; i++) {
+            switch (dataType) {
+                case DataBuffer.TYPE_BYTE   : buffer.put((byte) ints[i]); break;
+                case DataBuffer.TYPE_SHORT  :
+                case DataBuffer.TYPE_USHORT : buffer.putShort((short) ints[i]); break;
+                case DataBuffer.TYPE_INT    : buffer.putInt(ints[i]); break;
+                case DataBuffer.TYPE_FLOAT  : buffer.putFloat((float) doubles[i]); break;
+                case DataBuffer.TYPE_DOUBLE : buffer.putDouble(doubles[i]); break;
+                default: throw new AssertionError(dataType);
+            }
+        }
+    }
+
+    /**
+     * Floating point predictor (tiff technical note 3) : sample bytes are split in
+     * planes, most significant byte first, then differenced with the byte of the
+     * same plane in the previous pixel.
+     */
+    private void floatingPointRow(final double[] samples, final byte[] planes) {
+        final int count = samples.length;
+        for (int i = 0; i < count; i++) {
+            final long bits = (dataType == DataBuffer.TYPE_FLOAT)
+                    ? Float.floatToRawIntBits((float) samples[i])
+                    : Double.doubleToRawLongBits(samples[i]);
+            for (int b = 0; b < sampleSize; b++) {
+                planes[b * count + i] = (byte) (bits >>> ((sampleSize - 1 - b) * Byte.SIZE));
+            }
+        }
+        for (int i = planes.length - 1; i >= numBands; i--) {
+            planes[i] -= planes[i - numBands];
+        }
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            final byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import javax.imageio.IIOException;
+import javax.imageio.ImageWriteParam;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Write cloud optimized tiff with overviews and read every directory back with {@link TiffImageReader}.
+ *
+ * @module
+ */
+public class CloudOptimizedTiffWriterTest extends org.geotoolkit.test.TestBase {
+
+    private static final int WIDTH  = 600;
+    private static final int HEIGHT = 400;
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("cog", ".tiff");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static BufferedImage createImage() {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = image.getRaster();
+        final Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                raster.setSample(x, y, 0, (x + y + random.nextInt(8)) & 0xFF);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Write image as a cloud optimized tiff, with the given writer, compression and predictor.
+     */
+    private void write(final TiffImageWriter writer, final RenderedImage image, final String compression,
+            final int predictor) throws IOException {
+        final TiffImageWriteParam param = (TiffImageWriteParam) writer.getDefaultWriteParam();
+        param.setCloudOptimized(true);
+        param.setPredictor(predictor);
+        if (compression != null) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionType(compression);
+        }
+        writer.setOutput(file);
+        try {
+            writer.write(image, param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Read all directories, the full resolution image then overviews, reported as thumbnails,
+     * taking one pixel over {@code 2^level}.
+     * 600 x 400 pixels with 256 x 256 tiles give 2 overviews, the last one held in a single tile
+     * whose offset and byte count are stored in the directory entries.
+     */
+    private void checkLevels(final BufferedImage image) throws IOException {
+        final Raster source = image.getRaster();
+        final TiffImageReader reader = new TiffImageReader(null);
+        try {
+            reader.setInput(file);
+            assertEquals(1, reader.getNumImages(true));
+            assertEquals(2, reader.getNumThumbnails(0));
+            for (int level = 0; level < 3; level++) {
+                final Raster raster = (level == 0) ? reader.read(0).getRaster() : reader.readThumbnail(0, level - 1).getRaster();
+                final int width  = TiffTileEncoder.levelSize(WIDTH,  level);
+                final int height = TiffTileEncoder.levelSize(HEIGHT, level);
+                assertEquals("level " + level + " width",  width,  raster.getWidth());
+                assertEquals("level " + level + " height", height, raster.getHeight());
+                final int step = 1 << level;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        assertEquals("level " + level + " pixel (" + x + ", " + y + ")",
+                                source.getSample(x * step, y * step, 0), raster.getSample(x, y, 0));
+                    }
+                }
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Return the tiff version read in the file header, 42 for standard tiff, 43 for big tiff.
+     */
+    private int version() throws IOException {
+        final byte[] header = Files.readAllBytes(file.toPath());
+        return (header[0] == 'I') ? (header[2] & 0xFF) | (header[3] & 0xFF) << 8
+                                  : (header[2] & 0xFF) << 8 | (header[3] & 0xFF);
+    }
+
+    @Test
+    public void uncompressedTest() throws IOException {
+        final BufferedImage image = createImage();
+        write(new TiffImageWriter(null), image, null, 1);
+        assertEquals(42, version());
+        checkLevels(image);
+    }
+
+    @Test
+    public void deflateTest() throws IOException {
+        final BufferedImage image = createImage();
+        write(new TiffImageWriter(null), image, "Deflate", 1);
+        checkLevels(image);
+    }
+
+    @Test
+    public void horizontalPredictorTest() throws IOException {
+        final BufferedImage image = createImage();
+        write(new TiffImageWriter(null), image, "Deflate", 2);
+        checkLevels(image);
+    }
+
+    /**
+     * Directory chaining, tile tables and inline values are written on 64 bits in big tiff.
+     */
+    @Test
+    public void bigTiffTest() throws IOException {
+        final BufferedImage image = createImage();
+        final TiffImageWriter writer = new TiffImageWriter(null) {
+            @Override
+            boolean isBigTiff(final RenderedImage img) {
+                return true;
+            }
+        };
+        write(writer, image, "Deflate", 1);
+        assertEquals(43, version());
+        checkLevels(image);
+    }
+
+    /**
+     * Predictor is refused out of cloud optimized mode.
+     */
+    @Test
+    public void predictorWithoutCloudOptimizedTest() throws IOException {
+        final TiffImageWriter writer = new TiffImageWriter(null);
+        final TiffImageWriteParam param = (TiffImageWriteParam) writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionType("Deflate");
+        param.setPredictor(2);
+        writer.setOutput(file);
+        try {
+            writer.write(createImage(), param);
+            fail("Predictor accepted out of cloud optimized mode.");
+        } catch (IIOException ex) {
+            //ok
+        } finally {
+            writer.dispose();
+        }
+    }
+}
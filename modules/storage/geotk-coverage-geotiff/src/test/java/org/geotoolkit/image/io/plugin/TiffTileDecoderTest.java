@@ -0,0 +1,256 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin;
+
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test decoding of LZW and Deflate tiles by {@link TiffTileDecoder}.
+ *
+ * @module
+ */
+public class TiffTileDecoderTest extends org.geotoolkit.test.TestBase {
+
+    private static final int TILE_WIDTH  = 64;
+    private static final int TILE_HEIGHT = 32;
+    private static final int NUM_X_TILE  = 3;
+    private static final int NUM_Y_TILE  = 4;
+    private static final int WIDTH       = TILE_WIDTH  * NUM_X_TILE;
+    private static final int HEIGHT      = TILE_HEIGHT * NUM_Y_TILE;
+
+    /**
+     * Image with few distinct values, to have long LZW codes.
+     */
+    private static byte[] createImage() {
+        final Random random = new Random(42);
+        final byte[] image = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = (byte) random.nextInt(4);
+        }
+        return image;
+    }
+
+    private static byte[] tile(final byte[] image, final int tx, final int ty) {
+        final byte[] tile = new byte[TILE_WIDTH * TILE_HEIGHT];
+        for (int y = 0; y < TILE_HEIGHT; y++) {
+            System.arraycopy(image, (ty * TILE_HEIGHT + y) * WIDTH + tx * TILE_WIDTH, tile, y * TILE_WIDTH, TILE_WIDTH);
+        }
+        return tile;
+    }
+
+    private static byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Tiff LZW encoding, with code length changing one code early.
+     */
+    static byte[] lzw(final byte[] data) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Map<String,Integer> table = new HashMap<>();
+        final int[] bits = new int[2]; //-- buffer, number of bits in buffer
+        int codeLength = 9;
+        int next = 258;
+        writeCode(out, bits, 256, codeLength);
+        String w = "";
+        for (byte b : data) {
+            final String wc = w + (char) (b & 0xFF);
+            if (wc.length() == 1 || table.containsKey(wc)) {
+                w = wc;
+                continue;
+            }
+            writeCode(out, bits, code(table, w), codeLength);
+            table.put(wc, next++);
+            if (next == 4094) {
+                writeCode(out, bits, 256, codeLength);
+                table.clear();
+                next = 258;
+                codeLength = 9;
+            } else if (next > (1 << codeLength) - 1) {
+                codeLength++;
+            }
+            w = String.valueOf((char) (b & 0xFF));
+        }
+        writeCode(out, bits, code(table, w), codeLength);
+        if (++next > (1 << codeLength) - 1 && codeLength < 12) codeLength++;
+        writeCode(out, bits, 257, codeLength);
+        if (bits[1] > 0) out.write(bits[0] << (8 - bits[1]));
+        return out.toByteArray();
+    }
+
+    private static int code(final Map<String,Integer> table, final String w) {
+        return (w.length() == 1) ? w.charAt(0) : table.get(w);
+    }
+
+    private static void writeCode(final ByteArrayOutputStream out, final int[] bits, final int code, final int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            bits[0] = (bits[0] << 1) | ((code >>> i) & 1);
+            if (++bits[1] == 8) {
+                out.write(bits[0]);
+                bits[0] = 0;
+                bits[1] = 0;
+            }
+        }
+    }
+
+    /**
+     * Write compressed tiles in a file in a shuffled order, with some gaps between them.
+     *
+     * @param offsets filled with tile offsets
+     * @param lengths filled with tile lengths
+     */
+    private static byte[] createFile(final byte[] image, final int compression, final long[] offsets, final long[] lengths) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[16], 0, 16);
+        final int nbTile = NUM_X_TILE * NUM_Y_TILE;
+        for (int k = 0; k < nbTile; k++) {
+            final int index = (k * 5) % nbTile;
+            final byte[] raw = tile(image, index % NUM_X_TILE, index / NUM_X_TILE);
+            final byte[] data = (compression == TiffTileDecoder.LZW) ? lzw(raw) : deflate(raw);
+            if (k == 4) {
+                //-- far enough to not be grouped with previous tile
+                out.write(new byte[20000], 0, 20000);
+            } else if (k % 2 == 1) {
+                out.write(new byte[100], 0, 100);
+            }
+            offsets[index] = out.size();
+            lengths[index] = data.length;
+            out.write(data, 0, data.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void readFull(final int compression) throws IOException {
+        final byte[] image = createImage();
+        final long[] offsets = new long[NUM_X_TILE * NUM_Y_TILE];
+        final long[] lengths = new long[offsets.length];
+        final byte[] file = createFile(image, compression, offsets, lengths);
+
+        final byte[] target = new byte[image.length];
+        final TiffTileDecoder decoder = new TiffTileDecoder(compression, DataBuffer.TYPE_BYTE, 8, 1, 1, 1, 1, 1, TILE_WIDTH, WIDTH);
+        for (int ty = 0; ty < NUM_Y_TILE; ty++) {
+            for (int tx = 0; tx < NUM_X_TILE; tx++) {
+                final int index = ty * NUM_X_TILE + tx;
+                decoder.add(offsets[index], lengths[index], TILE_WIDTH * TILE_HEIGHT, target,
+                        ty * TILE_HEIGHT * WIDTH + tx * TILE_WIDTH, 0, TILE_WIDTH, TILE_WIDTH * TILE_HEIGHT);
+            }
+        }
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(file))) {
+            decoder.decode(input);
+        }
+        assertArrayEquals(image, target);
+    }
+
+    @Test
+    public void deflateTest() throws IOException {
+        readFull(TiffTileDecoder.DEFLATE);
+    }
+
+    @Test
+    public void lzwTest() throws IOException {
+        readFull(TiffTileDecoder.LZW);
+    }
+
+    /**
+     * LZW codes longer than 9 bits are decoded.
+     */
+    @Test
+    public void lzwCodeLengthTest() throws IOException {
+        final byte[] data = new byte[20000];
+        final Random random = new Random(7);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(16);
+        }
+        final byte[] encoded = lzw(data);
+        final byte[] decoded = new byte[data.length];
+        assertEquals(data.length, TiffTileDecoder.decodeLZW(encoded, 0, encoded.length, decoded));
+        assertArrayEquals(data, decoded);
+    }
+
+    /**
+     * Read one sample over two in each direction.
+     */
+    @Test
+    public void subsamplingTest() throws IOException {
+        final byte[] image = createImage();
+        final long[] offsets = new long[NUM_X_TILE * NUM_Y_TILE];
+        final long[] lengths = new long[offsets.length];
+        final byte[] file = createFile(image, TiffTileDecoder.DEFLATE, offsets, lengths);
+
+        final int targetWidth = WIDTH / 2;
+        final byte[] target = new byte[targetWidth * HEIGHT / 2];
+        final TiffTileDecoder decoder = new TiffTileDecoder(TiffTileDecoder.DEFLATE, DataBuffer.TYPE_BYTE, 8, 1, 1, 1, 2, 2, TILE_WIDTH, targetWidth);
+        for (int ty = 0; ty < NUM_Y_TILE; ty++) {
+            for (int tx = 0; tx < NUM_X_TILE; tx++) {
+                final int index = ty * NUM_X_TILE + tx;
+                decoder.add(offsets[index], lengths[index], TILE_WIDTH * TILE_HEIGHT, target,
+                        ty * TILE_HEIGHT / 2 * targetWidth + tx * TILE_WIDTH / 2, 0, TILE_WIDTH, TILE_WIDTH * TILE_HEIGHT);
+            }
+        }
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(file))) {
+            decoder.decode(input);
+        }
+
+        final byte[] expected = new byte[target.length];
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < targetWidth; x++) {
+                expected[y * targetWidth + x] = image[2 * y * WIDTH + 2 * x];
+            }
+        }
+        assertArrayEquals(expected, target);
+    }
+
+    /**
+     * A corrupted tile is reported.
+     */
+    @Test
+    public void corruptedTest() throws IOException {
+        final byte[] file = new byte[1000];
+        Arrays.fill(file, (byte) 0x55);
+        final byte[] target = new byte[100];
+        final TiffTileDecoder decoder = new TiffTileDecoder(TiffTileDecoder.DEFLATE, DataBuffer.TYPE_BYTE, 8, 1, 1, 1, 1, 1, 10, 10);
+        decoder.add(0, 500, 100, target, 0, 0, 10, 100);
+        decoder.add(500, 500, 100, target, 0, 0, 10, 100);
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(file))) {
+            decoder.decode(input);
+            fail("Corrupted data not detected");
+        } catch (IOException ex) {
+            //ok
+        }
+    }
+}
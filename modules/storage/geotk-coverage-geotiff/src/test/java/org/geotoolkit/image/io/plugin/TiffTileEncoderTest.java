@@ -0,0 +1,234 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.plugin;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test tiles and overviews written by {@link TiffTileEncoder}, read back with {@link TiffTileDecoder}.
+ *
+ * @module
+ */
+public class TiffTileEncoderTest extends org.geotoolkit.test.TestBase {
+
+    private static final int TILE_SIZE = 32;
+    private static final int WIDTH     = 80;
+    private static final int HEIGHT    = 48;
+
+    private static BufferedImage createImage() {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = image.getRaster();
+        final Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                raster.setSample(x, y, 0, random.nextInt(256));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Write a level and decode each tile, compare with image samples taken one pixel over {@code 2^level}.
+     */
+    private static void checkLevel(final int compression, final int predictor, final int level) throws IOException {
+        final BufferedImage image = createImage();
+        final TiffTileEncoder encoder = new TiffTileEncoder(image, TILE_SIZE, TILE_SIZE, compression, predictor, ByteOrder.BIG_ENDIAN);
+        final int width    = TiffTileEncoder.levelSize(WIDTH,  level);
+        final int height   = TiffTileEncoder.levelSize(HEIGHT, level);
+        final int numXTile = (width  + TILE_SIZE - 1) / TILE_SIZE;
+        final int numYTile = (height + TILE_SIZE - 1) / TILE_SIZE;
+        final long[] offsets    = new long[numXTile * numYTile];
+        final long[] byteCounts = new long[offsets.length];
+
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(file)) {
+            out.write(new byte[8]);
+            encoder.writeLevel(level, out, offsets, byteCounts);
+        }
+        assertEquals(8, offsets[0]);
+        for (int i = 1; i < offsets.length; i++) {
+            assertEquals("tiles in row major order", offsets[i - 1] + byteCounts[i - 1], offsets[i]);
+        }
+
+        final int tileLength = TILE_SIZE * TILE_SIZE;
+        final byte[][] tiles = new byte[offsets.length][tileLength];
+        if (compression == TiffTileEncoder.DEFLATE) {
+            final TiffTileDecoder decoder = new TiffTileDecoder(TiffTileDecoder.DEFLATE, DataBuffer.TYPE_BYTE, 8, 1, 1, predictor, 1, 1, TILE_SIZE, TILE_SIZE);
+            for (int t = 0; t < tiles.length; t++) {
+                assertTrue(byteCounts[t] < tileLength + 64);
+                decoder.add(offsets[t], byteCounts[t], tileLength, tiles[t], 0, 0, TILE_SIZE, tileLength);
+            }
+            try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(file.toByteArray()))) {
+                decoder.decode(input);
+            }
+        } else {
+            final byte[] data = file.toByteArray();
+            for (int t = 0; t < tiles.length; t++) {
+                assertEquals(tileLength, byteCounts[t]);
+                System.arraycopy(data, (int) offsets[t], tiles[t], 0, tileLength);
+            }
+        }
+
+        final int step = 1 << level;
+        for (int ty = 0; ty < numYTile; ty++) {
+            for (int tx = 0; tx < numXTile; tx++) {
+                final byte[] tile = tiles[ty * numXTile + tx];
+                for (int y = 0; y < TILE_SIZE; y++) {
+                    for (int x = 0; x < TILE_SIZE; x++) {
+                        final int px = tx * TILE_SIZE + x;
+                        final int py = ty * TILE_SIZE + y;
+                        final int expected = (px < width && py < height)
+                                ? image.getRaster().getSample(px * step, py * step, 0) : 0;
+                        assertEquals("level " + level + " pixel (" + px + ", " + py + ")",
+                                expected, tile[y * TILE_SIZE + x] & 0xFF);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void uncompressedTest() throws IOException {
+        checkLevel(TiffTileEncoder.NONE, TiffTileEncoder.PREDICTOR_NONE, 0);
+    }
+
+    @Test
+    public void deflateTest() throws IOException {
+        checkLevel(TiffTileEncoder.DEFLATE, TiffTileEncoder.PREDICTOR_NONE, 0);
+    }
+
+    @Test
+    public void horizontalPredictorTest() throws IOException {
+        checkLevel(TiffTileEncoder.DEFLATE, TiffTileEncoder.PREDICTOR_HORIZONTAL, 0);
+    }
+
+    /**
+     * Overview tiles decimate source image.
+     */
+    @Test
+    public void overviewTest() throws IOException {
+        assertEquals(40, TiffTileEncoder.levelSize(WIDTH, 1));
+        assertEquals(6,  TiffTileEncoder.levelSize(HEIGHT, 3));
+        assertEquals(3,  TiffTileEncoder.levelSize(5, 1));
+        checkLevel(TiffTileEncoder.DEFLATE, TiffTileEncoder.PREDICTOR_HORIZONTAL, 1);
+        checkLevel(TiffTileEncoder.DEFLATE, TiffTileEncoder.PREDICTOR_NONE, 2);
+    }
+
+    /**
+     * Floating point samples written with the floating point predictor are read back.
+     */
+    @Test
+    public void floatingPointPredictorTest() throws IOException {
+        for (int dataType : new int[]{DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE}) {
+            final WritableRaster raster = Raster.createWritableRaster(
+                    new PixelInterleavedSampleModel(dataType, WIDTH, HEIGHT, 1, WIDTH, new int[]{0}), null);
+            final Random random = new Random(42);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    raster.setSample(x, y, 0, 1000 + 10 * Math.sin(x / 7.0) + random.nextGaussian());
+                }
+            }
+            final BufferedImage image = new BufferedImage(new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                    false, false, Transparency.OPAQUE, dataType), raster, false, null);
+
+            final TiffTileEncoder encoder = new TiffTileEncoder(image, TILE_SIZE, TILE_SIZE, TiffTileEncoder.DEFLATE,
+                    TiffTileEncoder.PREDICTOR_FLOATING_POINT, ByteOrder.LITTLE_ENDIAN);
+            final int numXTile = (WIDTH  + TILE_SIZE - 1) / TILE_SIZE;
+            final int numYTile = (HEIGHT + TILE_SIZE - 1) / TILE_SIZE;
+            final long[] offsets    = new long[numXTile * numYTile];
+            final long[] byteCounts = new long[offsets.length];
+            final ByteArrayOutputStream file = new ByteArrayOutputStream();
+            try (ImageOutputStream out = new MemoryCacheImageOutputStream(file)) {
+                encoder.writeLevel(0, out, offsets, byteCounts);
+            }
+
+            final int bits = DataBuffer.getDataTypeSize(dataType);
+            final int tileLength = TILE_SIZE * TILE_SIZE;
+            final TiffTileDecoder decoder = new TiffTileDecoder(TiffTileDecoder.DEFLATE, dataType, bits, 1, 1,
+                    TiffTileDecoder.PREDICTOR_FLOATING_POINT, 1, 1, TILE_SIZE, TILE_SIZE);
+            final Object[] targets = new Object[offsets.length];
+            for (int t = 0; t < offsets.length; t++) {
+                targets[t] = (dataType == DataBuffer.TYPE_FLOAT) ? new float[tileLength] : new double[tileLength];
+                decoder.add(offsets[t], byteCounts[t], tileLength * bits / Byte.SIZE, targets[t], 0, 0, TILE_SIZE, tileLength);
+            }
+            try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(file.toByteArray()))) {
+                decoder.decode(input);
+            }
+            for (int t = 0; t < offsets.length; t++) {
+                final int tx = t % numXTile;
+                final int ty = t / numXTile;
+                for (int y = 0; y < TILE_SIZE; y++) {
+                    for (int x = 0; x < TILE_SIZE; x++) {
+                        final int px = tx * TILE_SIZE + x;
+                        final int py = ty * TILE_SIZE + y;
+                        final double expected = (px < WIDTH && py < HEIGHT) ? raster.getSampleDouble(px, py, 0) : 0;
+                        final double value = (dataType == DataBuffer.TYPE_FLOAT)
+                                ? ((float[]) targets[t])[y * TILE_SIZE + x]
+                                : ((double[]) targets[t])[y * TILE_SIZE + x];
+                        assertEquals("pixel (" + px + ", " + py + ")", expected, value, 0);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Unknown predictors are rejected by the decoder.
+     */
+    @Test
+    public void unknownPredictorTest() {
+        try {
+            new TiffTileDecoder(TiffTileDecoder.DEFLATE, DataBuffer.TYPE_BYTE, 8, 1, 1, 4, 1, 1, TILE_SIZE, TILE_SIZE);
+            fail("Unknown predictor accepted");
+        } catch (IIOException ex) {
+            //ok
+        }
+    }
+
+    /**
+     * Floating point predictor can not be used on integer samples.
+     */
+    @Test
+    public void predictorTypeTest() throws IOException {
+        try {
+            new TiffTileEncoder(createImage(), TILE_SIZE, TILE_SIZE, TiffTileEncoder.DEFLATE,
+                    TiffTileEncoder.PREDICTOR_FLOATING_POINT, ByteOrder.BIG_ENDIAN);
+            fail("Floating point predictor accepted on byte samples");
+        } catch (IIOException ex) {
+            //ok
+        }
+    }
+}
@@ -181,6 +181,42 @@ public abstract class Interpolation {
      */
     public abstract double[] interpolate(double x, double y);
 
+    /**
+     * Writes all pixel samples from interpolation at (x, y) sources coordinates
+     * in the given array, without allocating any object.
+     *
+     * @param x pixel x coordinate.
+     * @param y pixel y coordinate.
+     * @param dest array where interpolated samples are written, one per band.
+     * @param destOffset index of the first band sample in dest array.
+     */
+    public void interpolate(double x, double y, double[] dest, int destOffset) {
+        for (int band = 0; band < numBands; band++) {
+            dest[destOffset + band] = interpolate(x, y, band);
+        }
+    }
+
+    /**
+     * Returns an interpolation of the same kind than this one which reads samples
+     * with the given iterator, or {@code null} if this interpolation is not one of
+     * the interpolations created by {@link #create(PixelIterator, InterpolationCase, int, ResampleBorderComportement, double[]) }.
+     * {@code PixelIterator} is not thread safe, each thread needs its own copy.
+     *
+     * @param iterator iterator on the same image than this interpolation iterator.
+     * @return interpolation reading samples with the given iterator, or {@code null}.
+     */
+    Interpolation copy(PixelIterator iterator) {
+        final Class<?> type = getClass();
+        if (type == NeighborInterpolation.class) return new NeighborInterpolation(iterator, fillValue);
+        if (type == BilinearInterpolation.class) return new BilinearInterpolation(iterator, borderChoice, fillValue);
+        if (type == BiCubicInterpolation1.class) return new BiCubicInterpolation1(iterator, borderChoice, fillValue);
+        if (type == BiCubicInterpolation2.class) return new BiCubicInterpolation2(iterator, borderChoice, fillValue);
+        if (type == LanczosInterpolation.class) {
+            return new LanczosInterpolation(iterator, ((LanczosInterpolation) this).getLanczosWindow(), borderChoice, fillValue);
+        }
+        return null;
+    }
+
     /**
      * <p>Find minimum and maximum pixels values for each band.<br/>
      * Moreover double table result has length equal to 6 * band number.<br/><br/>
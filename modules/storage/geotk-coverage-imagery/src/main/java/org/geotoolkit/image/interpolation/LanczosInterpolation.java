@@ -105,6 +105,13 @@ public class LanczosInterpolation extends Interpolation {
         this(pixelIterator, lanczosWindow, ResampleBorderComportement.FILL_VALUE, null);
     }
 
+    /**
+     * Returns the number of pixels used to interpolate on each side of the interpolated point.
+     */
+    int getLanczosWindow() {
+        return lanczosWindow;
+    }
+
     /**
      * Return Lanczos kernel filter value.
      *
@@ -82,4 +82,19 @@ public class NeighborInterpolation extends Interpolation {
         }
         return result;
     }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void interpolate(double x, double y, double[] dest, int destOffset) {
+        x = Math.round(x);
+        y = Math.round(y);
+        pixelIterator.moveTo((int) Math.min(maxxId, x), (int) Math.min(maxyId, y), 0);
+        dest[destOffset] = pixelIterator.getSampleDouble();
+        for (int band = 1; band < numBands; band++) {
+            pixelIterator.next();
+            dest[destOffset + band] = pixelIterator.getSampleDouble();
+        }
+    }
 }
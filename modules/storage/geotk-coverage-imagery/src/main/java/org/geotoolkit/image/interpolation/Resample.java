@@ -20,11 +20,17 @@ import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.DataBuffer;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.awt.image.WritableRenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.apache.sis.geometry.Envelope2D;
 import org.apache.sis.geometry.GeneralEnvelope;
 import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.geometry.Envelopes;
+import org.apache.sis.util.collection.BackingStoreException;
 import org.geotoolkit.image.io.large.WritableLargeRenderedImage;
 import org.geotoolkit.image.iterator.PixelIterator;
 import org.geotoolkit.image.iterator.PixelIteratorFactory;
@@ -49,6 +55,11 @@ public class Resample {
     private static final double[] CLAMP_USHORT = new double[]{0,                 0xFFFF};
     private static final double[] CLAMP_INT    = new double[]{Integer.MIN_VALUE, Integer.MAX_VALUE};
 
+    /**
+     * Maximum number of destination rows filled by a single task in parallel mode.
+     */
+    private static final int ROWS_PER_TASK = 32;
+
     /**
      * Transform multi-dimensional point (in our case pixel coordinate) from target image
      * {@code CoordinateReferenceSystem} to source image {@code CoordinateReferenceSystem}.
@@ -698,6 +709,151 @@ public class Resample {
         fillImageByTransform();
     }
 
+    /**
+     * <p>Fill destination image from source image pixel interpolation, using all processors.<br/>
+     * The destination area is split in row bands of destination tiles, filled in parallel
+     * in the common fork-join pool with their own copies of the interpolation.
+     * Coordinates are transformed one row at a time and interpolated samples are written
+     * row by row in destination rasters, without allocation for each pixel.</p>
+     *
+     * <p>Unlike {@link #fillImage() }, source coordinates are computed with the exact
+     * transformation when it can not be approximated by an affine transform.
+     * If the interpolation is not one of the {@link InterpolationCase}, the image is filled
+     * in the current thread by {@link #fillImage() }.</p>
+     *
+     * @throws TransformException if a destination coordinate can not be transformed.
+     */
+    public void fillImageParallel() throws TransformException {
+        final RenderedImage source = interpol.pixelIterator.getRenderedImage();
+        if (source == null || interpol.copy(PixelIteratorFactory.createDefaultIterator(source)) == null) {
+            fillImage();
+            return;
+        }
+        final Rectangle area = destIterator.getBoundary(true);
+        if (area.isEmpty()) return;
+
+        AffineTransform affine = null;
+        if (destToSourceMathTransform instanceof MathTransform2D) {
+            try {
+                final Object object = new GridFactory(0.125).create((MathTransform2D) destToSourceMathTransform, destIterator.getBoundary(false));
+                if (object instanceof AffineTransform) affine = (AffineTransform) object;
+            } catch (TransformException | ArithmeticException ex) {
+                //-- use exact transformation
+            }
+        }
+
+        //-- split area on destination tiles, then in row bands.
+        final List<Rectangle> parts = new ArrayList<>();
+        final int tileWidth  = imageDest.getTileWidth();
+        final int tileHeight = imageDest.getTileHeight();
+        final int minTileX = Math.floorDiv(area.x - imageDest.getTileGridXOffset(), tileWidth);
+        final int minTileY = Math.floorDiv(area.y - imageDest.getTileGridYOffset(), tileHeight);
+        final int maxTileX = Math.floorDiv(area.x + area.width  - 1 - imageDest.getTileGridXOffset(), tileWidth);
+        final int maxTileY = Math.floorDiv(area.y + area.height - 1 - imageDest.getTileGridYOffset(), tileHeight);
+        for (int ty = minTileY; ty <= maxTileY; ty++) {
+            for (int tx = minTileX; tx <= maxTileX; tx++) {
+                final Rectangle tile = area.intersection(new Rectangle(
+                        imageDest.getTileGridXOffset() + tx * tileWidth,
+                        imageDest.getTileGridYOffset() + ty * tileHeight, tileWidth, tileHeight));
+                for (int y = tile.y, maxY = tile.y + tile.height; y < maxY; y += ROWS_PER_TASK) {
+                    parts.add(new Rectangle(tile.x, y, tile.width, Math.min(ROWS_PER_TASK, maxY - y)));
+                }
+            }
+        }
+
+        try {
+            ForkJoinPool.commonPool().invoke(new FillTask(source, affine, parts, 0, parts.size()));
+        } catch (BackingStoreException ex) {
+            throw ex.unwrapOrRethrow(TransformException.class);
+        }
+    }
+
+    /**
+     * Fill a part of destination image which is contained in a single tile.
+     *
+     * @param interpolation interpolation used only by the current thread.
+     * @param affine approximation of destination to source transformation, or {@code null}.
+     * @param part area to fill.
+     */
+    private void fillPart(final Interpolation interpolation, final AffineTransform affine, final Rectangle part)
+            throws TransformException {
+        final int width   = part.width;
+        final double[] coords = new double[width << 1];
+        final double[] pixels = new double[width * numBands];
+        final int tileX = Math.floorDiv(part.x - imageDest.getTileGridXOffset(), imageDest.getTileWidth());
+        final int tileY = Math.floorDiv(part.y - imageDest.getTileGridYOffset(), imageDest.getTileHeight());
+        final WritableRaster raster = imageDest.getWritableTile(tileX, tileY);
+        try {
+            for (int y = part.y, maxY = part.y + part.height; y < maxY; y++) {
+                for (int i = 0, x = part.x; i < coords.length; x++) {
+                    coords[i++] = x;
+                    coords[i++] = y;
+                }
+                if (affine != null) {
+                    affine.transform(coords, 0, coords, 0, width);
+                } else {
+                    destToSourceMathTransform.transform(coords, 0, coords, 0, width);
+                }
+                //-- without fill value, samples outside source image stay unchanged.
+                if (fillValue == null) raster.getPixels(part.x, y, width, 1, pixels);
+
+                for (int i = 0, p = 0; i < coords.length; i += 2, p += numBands) {
+                    final double srcX = coords[i];
+                    final double srcY = coords[i + 1];
+                    if (Double.isNaN(srcX) || Double.isNaN(srcY) || !interpolation.checkInterpolate(srcX, srcY)) {
+                        if (fillValue != null) System.arraycopy(fillValue, 0, pixels, p, numBands);
+                    } else {
+                        interpolation.interpolate(srcX, srcY, pixels, p);
+                        if (clamp != null) {
+                            for (int b = p, n = p + numBands; b < n; b++) {
+                                pixels[b] = XMath.clamp(pixels[b], clamp[0], clamp[1]);
+                            }
+                        }
+                    }
+                }
+                raster.setPixels(part.x, y, width, 1, pixels);
+            }
+        } finally {
+            imageDest.releaseWritableTile(tileX, tileY);
+        }
+    }
+
+    /**
+     * Fill a range of destination image parts, splitting the range in two sub-tasks until a single part remains.
+     */
+    private final class FillTask extends RecursiveAction {
+
+        private final RenderedImage source;
+        private final AffineTransform affine;
+        private final List<Rectangle> parts;
+        private final int lower, upper;
+
+        FillTask(final RenderedImage source, final AffineTransform affine, final List<Rectangle> parts,
+                final int lower, final int upper) {
+            this.source = source;
+            this.affine = affine;
+            this.parts  = parts;
+            this.lower  = lower;
+            this.upper  = upper;
+        }
+
+        @Override
+        protected void compute() {
+            if (upper - lower > 1) {
+                final int mid = (lower + upper) >>> 1;
+                invokeAll(new FillTask(source, affine, parts, lower, mid),
+                          new FillTask(source, affine, parts, mid, upper));
+                return;
+            }
+            final Interpolation interpolation = interpol.copy(PixelIteratorFactory.createDefaultIterator(source));
+            try {
+                fillPart(interpolation, affine, parts.get(lower));
+            } catch (TransformException ex) {
+                throw new BackingStoreException(ex);
+            }
+        }
+    }
+
     /**
      * Please use {@link #fillImageByTransform() } method.
      *
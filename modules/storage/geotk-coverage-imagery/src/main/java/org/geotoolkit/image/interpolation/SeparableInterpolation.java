@@ -143,6 +143,27 @@ abstract class SeparableInterpolation extends Interpolation {
         return result;
     }
 
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public void interpolate(double x, double y, double[] dest, int destOffset) {
+        setInterpolateMin(x, y);
+
+        interpolArea.setLocation(minX, minY);
+        pixelIterator.getArea(interpolArea, buffer);
+        int bufferID;
+        for (int b = 0; b < numBands; b++) {
+            bufferID = 0;
+            for (int dy = 0; dy < windowSide; dy++) {
+                WriteInInterpolArray(buffer[b], bufferID, rows, 0, windowSide);
+                bufferID += windowSide;
+                cols[dy] = interpolate1D(minX, x, rows);
+            }
+            dest[destOffset + b] = interpolate1D(minY, y, cols);
+        }
+    }
+
     /**
      * Fill double destination array from unknow type source array.
      *
@@ -0,0 +1,356 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.awt.image.WritableRenderedImage;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.sis.util.logging.Logging;
+import org.geotoolkit.nio.IOUtilities;
+
+/**
+ * Tiles of a single {@link RenderedImage} managed by a {@link ConcurrentTileCache}.
+ *
+ * Unlike {@link ImageTilesCache}, tiles are kept in a {@link ConcurrentHashMap}, so a cache hit
+ * never takes any lock : it only marks the tile as recently used for the CLOCK eviction of the
+ * owning cache. Disk accesses (swap in / swap out of a tile) are guarded by a fixed set of lock
+ * stripes, so two threads never load or write the same tile at the same time, while threads
+ * working on unrelated tiles do not wait for each other.
+ */
+final class ConcurrentImageTilesCache extends PhantomReference<RenderedImage> {
+
+    private static final Logger LOGGER = Logging.getLogger("org.geotoolkit.image.io.large");
+
+    private static final Path TEMPORARY_PATH = Paths.get(System.getProperty("java.io.tmpdir"));
+
+    /**
+     * Number of locks used to guard disk accesses. Must be a power of 2.
+     */
+    private static final int NB_STRIPES = 64;
+
+    /**
+     * Key of this cache in the owner map, used to remove it once the image has been garbage collected.
+     */
+    final Object key;
+
+    /**
+     * Owner cache, holding the global memory budget.
+     */
+    final ConcurrentTileCache cache;
+    private final RasterSwapFormat format;
+    private final int minTileX;
+    private final int minTileY;
+    private final int riMinX;
+    private final int riMinY;
+    private final int riTileWidth;
+    private final int riTileHeight;
+    private final int dataTypeWeight;
+    private final QuadTreeDirectory qTD;
+    private final boolean isWritableRenderedImage;
+
+    /**
+     * Tiles currently held in memory, indexed by their position relative to the image min tile.
+     */
+    private final ConcurrentHashMap<Point, CachedTile> tiles = new ConcurrentHashMap<>();
+
+    /**
+     * Locks guarding disk accesses, a tile uses the stripe given by its position.
+     */
+    private final ReentrantLock[] stripes = new ReentrantLock[NB_STRIPES];
+
+    /**
+     * A tile held in memory. The {@link #referenced} flag is the CLOCK "second chance" bit :
+     * it is raised on each access and cleared by the eviction hand.
+     * The raster is cleared once the tile is removed from memory.
+     */
+    static final class CachedTile {
+        final ConcurrentImageTilesCache owner;
+        final Point position;
+        volatile WritableRaster raster;
+        final long weight;
+        volatile boolean referenced;
+
+        CachedTile(ConcurrentImageTilesCache owner, Point position, WritableRaster raster, long weight) {
+            this.owner    = owner;
+            this.position = position;
+            this.raster   = raster;
+            this.weight   = weight;
+        }
+    }
+
+    /**
+     * @param ri image to cache tiles for.
+     * @param key key of this cache in the owner map.
+     * @param queue queue notified when the image is garbage collected.
+     * @param cache owner cache, holding the global memory budget.
+     * @throws IOException if swap is enabled and the swap directory cannot be created.
+     */
+    ConcurrentImageTilesCache(RenderedImage ri, Object key, ReferenceQueue<RenderedImage> queue,
+            ConcurrentTileCache cache) throws IOException {
+        super(ri, queue);
+        this.key   = key;
+        this.cache = cache;
+        this.isWritableRenderedImage = ri instanceof WritableRenderedImage;
+
+        if (ri instanceof WritableLargeRenderedImage && !cache.isEnableSwap()) {
+            throw new IllegalArgumentException("With WritableRenderedImage ConcurrentTileCache must swap.");
+        }
+        this.riMinX       = ri.getMinX();
+        this.riMinY       = ri.getMinY();
+        this.riTileWidth  = ri.getTileWidth();
+        this.riTileHeight = ri.getTileHeight();
+        this.minTileX     = ri.getMinTileX();
+        this.minTileY     = ri.getMinTileY();
+
+        for (int i = 0; i < NB_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+
+        if (cache.isEnableSwap()) {
+            final Path dirPath = Files.createTempDirectory(TEMPORARY_PATH, "img");
+            this.qTD    = new QuadTreeDirectory(dirPath, ri.getNumXTiles(), ri.getNumYTiles(), RasterSwapFormat.EXTENSION, true);
+            this.format = new RasterSwapFormat(ImageCacheConfiguration.isCacheSwapCompressed());
+        } else {
+            this.qTD    = null;
+            this.format = null;
+        }
+
+        switch (ri.getSampleModel().getDataType()) {
+            case DataBuffer.TYPE_BYTE      : dataTypeWeight = 1; break;
+            case DataBuffer.TYPE_SHORT     : dataTypeWeight = 2; break;
+            case DataBuffer.TYPE_USHORT    : dataTypeWeight = 2; break;
+            case DataBuffer.TYPE_INT       : dataTypeWeight = 4; break;
+            case DataBuffer.TYPE_FLOAT     : dataTypeWeight = 4; break;
+            case DataBuffer.TYPE_DOUBLE    : dataTypeWeight = 8; break;
+            case DataBuffer.TYPE_UNDEFINED : dataTypeWeight = 8; break;
+            default : throw new IllegalStateException("unknown raster data type");
+        }
+    }
+
+    private ReentrantLock getLock(final Point position) {
+        //-- Point.hashCode() is computed on double bits, its low bits are almost always zero.
+        int h = position.x * 0x9E3779B1 + position.y;
+        h ^= (h >>> 16);
+        return stripes[h & (NB_STRIPES - 1)];
+    }
+
+    /**
+     * Add or replace a tile. The caller must call {@link ConcurrentTileCache#evict()} afterward,
+     * outside of any tile lock.
+     *
+     * @param tileX mosaic index in X direction of raster will be stocked.
+     * @param tileY mosaic index in Y direction of raster will be stocked.
+     * @param raster raster will be stocked in cache.
+     * @throws IOException if the raster is bigger than the whole cache capacity.
+     */
+    void add(int tileX, int tileY, WritableRaster raster) throws IOException {
+        final Point position = new Point(tileX - minTileX, tileY - minTileY);
+        final WritableRaster checked = checkRaster(raster, position);
+        final long weight = getRasterWeight(checked);
+        if (weight > cache.getMemoryCapacity()) throw new IOException("Raster too large : " + weight
+                + " bytes, but maximum cache capacity is "+ cache.getMemoryCapacity() +" bytes");
+
+        final ReentrantLock lock = getLock(position);
+        lock.lock();
+        try {
+            install(position, checked, weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put the tile in memory and register it in the owner cache. Caller must hold the tile lock.
+     */
+    private void install(final Point position, final WritableRaster raster, final long weight) {
+        final CachedTile tile = new CachedTile(this, position, raster, weight);
+        final CachedTile old = tiles.put(position, tile);
+        cache.register(tile, old);
+    }
+
+    /**
+     * Remove tile at tileX tileY mosaic coordinates, from memory and disk.
+     *
+     * @param tileX mosaic index in X direction.
+     * @param tileY mosaic index in Y direction.
+     */
+    void remove(int tileX, int tileY) {
+        final Point position = new Point(tileX - minTileX, tileY - minTileY);
+        final ReentrantLock lock = getLock(position);
+        lock.lock();
+        try {
+            final CachedTile old = tiles.remove(position);
+            if (old != null) cache.release(old);
+
+            if (qTD != null) {
+                final Path removeFile = Paths.get(qTD.getPath(position.x, position.y));
+                try {
+                    Files.deleteIfExists(removeFile);
+                } catch (IOException e) {
+                    //delete failed try to delete it when JVM shutdown
+                    LOGGER.log(Level.FINE, "Tile delete failed : "+ e.getLocalizedMessage(), e);
+                    IOUtilities.deleteOnExit(removeFile);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return raster at tileX tileY mosaic coordinates. If the tile is in memory, no lock is taken.
+     * If the tile has been loaded from disk, the caller must call {@link ConcurrentTileCache#evict()}
+     * afterward.
+     *
+     * @param tileX mosaic index in X direction.
+     * @param tileY mosaic index in Y direction.
+     * @return Raster at tileX tileY mosaic coordinates.
+     * @throws IOException if an error occurs during reading.
+     * @throws IllegalArgumentException if raster not found in memory mode.
+     */
+    Raster getRaster(int tileX, int tileY) throws IOException, IllegalArgumentException {
+        final Point position = new Point(tileX - minTileX, tileY - minTileY);
+        CachedTile tile = tiles.get(position);
+        if (tile != null) {
+            final Raster raster = tile.raster;
+            if (raster != null) {
+                // Avoid a volatile write (and cache line invalidation) when the bit is already set.
+                if (!tile.referenced) tile.referenced = true;
+                return raster;
+            }
+            //-- tile removed concurrently.
+        }
+
+        if (qTD == null) {
+            throw new IllegalArgumentException("Tile (" + tileX + ", " + tileY + ") not found in memory.");
+        }
+
+        final ReentrantLock lock = getLock(position);
+        lock.lock();
+        try {
+            //-- another thread may have loaded the tile while we were waiting.
+            tile = tiles.get(position);
+            if (tile != null) {
+                final Raster raster = tile.raster;
+                if (raster != null) return raster;
+            }
+
+            final Path tileFile = Paths.get(qTD.getPath(position.x, position.y));
+            if (Files.exists(tileFile)) {
+                final WritableRaster raster = format.read(tileFile,
+                        new Point(riTileWidth * position.x + riMinX, riTileHeight * position.y + riMinY));
+                install(position, raster, getRasterWeight(raster));
+                return raster;
+            }
+        } finally {
+            lock.unlock();
+        }
+        throw new IOException("Tile (" + tileX + ", " + tileY + ") unknown. Cannot get raster.");
+    }
+
+    /**
+     * Try to evict given tile from memory, writing it on disk if swap is enabled.
+     *
+     * @param tile tile selected by the eviction hand.
+     * @return {@code false} if the tile is currently locked by another thread and should be
+     *         given back to the eviction hand, {@code true} otherwise.
+     * @throws IOException if the tile cannot be written on disk. The tile is then kept in memory.
+     */
+    boolean evict(final CachedTile tile) throws IOException {
+        final ReentrantLock lock = getLock(tile.position);
+        if (!lock.tryLock()) return false;
+        try {
+            if (tiles.get(tile.position) != tile) {
+                //-- tile has been replaced or removed since, nothing to do.
+                return true;
+            }
+            if (qTD != null) {
+                //-- write before removal, concurrent readers keep being served from memory.
+                writeRaster(tile);
+            }
+            if (tiles.remove(tile.position, tile)) {
+                cache.release(tile);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all tiles and the swap directory relevant to this cached image.
+     */
+    void removeTiles() throws IOException {
+        for (Map.Entry<Point, CachedTile> entry : tiles.entrySet()) {
+            if (tiles.remove(entry.getKey(), entry.getValue())) {
+                cache.release(entry.getValue());
+            }
+        }
+        if (qTD != null) {
+            qTD.cleanDirectory();
+        }
+    }
+
+    /**
+     * Define the weight of a raster.
+     */
+    private long getRasterWeight(final Raster raster) {
+        final SampleModel rsm = raster.getSampleModel();
+        final int width = (rsm instanceof ComponentSampleModel) ? ((ComponentSampleModel) rsm).getScanlineStride() : raster.getWidth()*rsm.getNumDataElements();
+        return (long) width * raster.getHeight() * dataTypeWeight;
+    }
+
+    /**
+     * Write tile on hard disk at appropriate quad tree emplacement.
+     */
+    private void writeRaster(final CachedTile tile) throws IOException {
+        final WritableRaster raster = tile.raster;
+        if (raster == null) return;     //-- removed concurrently by removeTiles().
+        final Path tileFile = Paths.get(qTD.getPath(tile.position.x, tile.position.y));
+        if (isWritableRenderedImage || !Files.exists(tileFile)) {
+            format.write(tileFile, raster);
+        }
+    }
+
+    /**
+     * Ensure raster location agrees with the tile location in the owner image.
+     */
+    private WritableRaster checkRaster(WritableRaster raster, Point position) {
+        final int mx = riTileWidth  * position.x + riMinX;
+        final int my = riTileHeight * position.y + riMinY;
+        if (raster.getMinX() != mx || raster.getMinY() != my) {
+            return Raster.createWritableRaster(raster.getSampleModel(), raster.getDataBuffer(), new Point(mx, my));
+        }
+        return raster;
+    }
+}
@@ -0,0 +1,535 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.ImagingOpException;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.media.jai.TileCache;
+
+import org.apache.sis.util.logging.Logging;
+import org.geotoolkit.image.io.large.ConcurrentImageTilesCache.CachedTile;
+
+/**
+ * A {@link TileCache} with the same swap-to-disk behavior than {@link LargeCache}, designed
+ * for heavily concurrent tile access.
+ *
+ * <ul>
+ *   <li>Images are indexed in a {@link ConcurrentHashMap} using weak identity keys, so finding
+ *       the tiles of an image never locks the image nor the cache.</li>
+ *   <li>Tiles of each image are held in a {@link ConcurrentHashMap}, a cache hit is lock-free.</li>
+ *   <li>A single memory budget is shared by all images. When it is exceeded, tiles are evicted
+ *       with a CLOCK (second chance) policy : accessed tiles have their reference bit set, the
+ *       eviction hand walks a concurrent queue of all cached tiles, clearing bits and evicting
+ *       the first tile whose bit is already cleared. Any thread exceeding the budget takes part
+ *       to the eviction, no global lock is involved.</li>
+ * </ul>
+ *
+ * The memory budget is an approximation : it can be exceeded while concurrent insertions are
+ * being evicted.
+ *
+ * @see LargeCache
+ */
+public final class ConcurrentTileCache implements TileCache {
+
+    private static final Logger LOGGER = Logging.getLogger("org.geotoolkit.image.io.large");
+
+    /**
+     * Queue of tile managers whose image has been garbage collected, shared by all caches
+     * and emptied by a single cleaner thread.
+     */
+    private static final ReferenceQueue<RenderedImage> PHANTOM_QUEUE = new ReferenceQueue<>();
+    static {
+        final Thread phantomCleaner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        final ConcurrentImageTilesCache removed = (ConcurrentImageTilesCache) PHANTOM_QUEUE.remove();
+                        removed.cache.tileManagers.remove(removed.key, removed);
+                        removed.removeTiles();
+                    } catch (InterruptedException e) {
+                        LOGGER.log(Level.WARNING, "Reference cleaner has been interrupted ! It could cause severe memory leaks.");
+                        return;
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.WARNING, "An image reference cannot be released. It's likely to cause memory leaks !");
+                    }
+                }
+            }
+        });
+        phantomCleaner.setName("ConcurrentTileCache cleaner deamon");
+        phantomCleaner.setDaemon(true);
+        phantomCleaner.start();
+    }
+
+    private volatile long memoryCapacity;
+    private final boolean enableSwap;
+
+    /**
+     * Tile manager of each cached image. Keys are {@link ImageKey} instances, lookups are done
+     * with {@link ImageLookup} which do not need to create any weak reference.
+     * Values hold a hard reference on the tile managers, needed for them to be enqueued in
+     * {@link #PHANTOM_QUEUE} once their image is garbage collected.
+     */
+    final ConcurrentHashMap<Object, ConcurrentImageTilesCache> tileManagers = new ConcurrentHashMap<>();
+
+    /**
+     * Estimated amount of memory used by all tiles in memory.
+     */
+    private final AtomicLong usedCapacity = new AtomicLong();
+
+    /**
+     * Number of released tiles above which they are unlinked from {@link #clock} without
+     * waiting for the eviction hand.
+     */
+    private static final int PURGE_THRESHOLD = 1024;
+
+    /**
+     * CLOCK ring : all tiles in memory, in insertion order. The eviction hand is the head of the queue.
+     * It may contain tiles which have been removed or replaced since. Their raster is cleared
+     * when they are released, they are discarded by the hand or unlinked by {@link #release(CachedTile)}
+     * once they are too many.
+     */
+    private final ConcurrentLinkedQueue<CachedTile> clock = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Approximate number of tiles in memory in {@link #clock}, used to bound eviction sweeps.
+     * {@link ConcurrentLinkedQueue#size()} is not a constant time operation.
+     */
+    private final AtomicInteger clockSize = new AtomicInteger();
+
+    /**
+     * Approximate number of released tiles which may still be in {@link #clock}.
+     */
+    private final AtomicInteger released = new AtomicInteger();
+
+    private static ConcurrentTileCache INSTANCE;
+
+    ConcurrentTileCache(long memoryCapacity, boolean enableSwap) {
+        this.memoryCapacity = memoryCapacity;
+        this.enableSwap = enableSwap;
+    }
+
+    /**
+     * Get the shared cache instance, configured with {@link ImageCacheConfiguration} properties.
+     *
+     * @return TileCache
+     */
+    public static synchronized ConcurrentTileCache getInstance() {
+        if (INSTANCE == null) {
+            final long memoryCapacity = ImageCacheConfiguration.getCacheMemorySize();
+            final boolean enableSwap  = ImageCacheConfiguration.isCacheSwapEnable();
+            INSTANCE = new ConcurrentTileCache(memoryCapacity, enableSwap);
+        }
+        return INSTANCE;
+    }
+
+    boolean isEnableSwap() {
+        return enableSwap;
+    }
+
+    /**
+     * Get currently used amount of memory, this is just an estimation.
+     *
+     * @return memory used in bytes.
+     */
+    public long getUsedCapacity() {
+        return usedCapacity.get();
+    }
+
+    /**
+     * Returns the number of tiles in memory known by the eviction hand.
+     */
+    int getClockSize() {
+        return clockSize.get();
+    }
+
+    /**
+     * Returns the number of images which have a tile manager in this cache.
+     */
+    int getImageCount() {
+        return tileManagers.size();
+    }
+
+    /**
+     * Return the tile manager of given image, or null if the image is not cached.
+     */
+    private ConcurrentImageTilesCache getLargeMap(final RenderedImage source) {
+        return tileManagers.get(new ImageLookup(source));
+    }
+
+    /**
+     * Return the tile manager of given image, creating it if needed.
+     */
+    private ConcurrentImageTilesCache getOrCreateLargeMap(final RenderedImage source) throws IOException {
+        ConcurrentImageTilesCache lL = getLargeMap(source);
+        if (lL == null) {
+            final ImageKey key = new ImageKey(source);
+            final ConcurrentImageTilesCache candidate = new ConcurrentImageTilesCache(source, key, PHANTOM_QUEUE, this);
+            lL = tileManagers.putIfAbsent(key, candidate);
+            if (lL == null) {
+                lL = candidate;
+            } else {
+                //-- another thread registered the image first.
+                candidate.removeTiles();
+            }
+        }
+        return lL;
+    }
+
+    /**
+     * Called by tile managers when a tile is put in memory.
+     *
+     * @param tile the new tile.
+     * @param replaced the tile previously stored at the same place, or null.
+     */
+    void register(final CachedTile tile, final CachedTile replaced) {
+        usedCapacity.addAndGet(tile.weight);
+        clock.offer(tile);
+        clockSize.incrementAndGet();
+        if (replaced != null) release(replaced);
+    }
+
+    /**
+     * Called by tile managers when a tile is removed from memory, at most once per tile.
+     * The raster is cleared so the tile holds no memory while it waits in the clock.
+     */
+    void release(final CachedTile tile) {
+        usedCapacity.addAndGet(-tile.weight);
+        tile.raster = null;
+        clockSize.decrementAndGet();
+        final int n = released.incrementAndGet();
+        if (n > PURGE_THRESHOLD && n > clockSize.get() && released.compareAndSet(n, 0)) {
+            clock.removeIf((CachedTile t) -> t.raster == null);
+        }
+    }
+
+    /**
+     * Evict tiles until the used memory goes below capacity. The sweep is bounded to two turns
+     * of the clock, which is enough to find a victim unless tiles are accessed concurrently.
+     */
+    void evict() throws IOException {
+        int remaining = 2 * clockSize.get() + 1;
+        while (usedCapacity.get() > memoryCapacity && remaining-- > 0) {
+            final CachedTile tile = clock.poll();
+            if (tile == null) return;
+            if (tile.raster == null) {
+                //-- released since, already discounted.
+                continue;
+            }
+            if (tile.referenced) {
+                //-- second chance.
+                tile.referenced = false;
+                clock.offer(tile);
+                continue;
+            }
+            boolean done = false;
+            try {
+                done = tile.owner.evict(tile);
+            } finally {
+                if (!done) {
+                    //-- tile is busy or could not be written, give it back to the clock.
+                    clock.offer(tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void add(RenderedImage ri, int tileX, int tileY, Raster raster) {
+        if (!(raster instanceof WritableRaster)) {
+            throw new IllegalArgumentException("raster must be WritableRaster instance");
+        }
+        try {
+            getOrCreateLargeMap(ri).add(tileX, tileY, (WritableRaster) raster);
+            evict();
+        } catch (IOException ex) {
+            throw new RuntimeException("impossible to add raster (write raster on disk)", ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void remove(RenderedImage ri, int tileX, int tileY) {
+        final ConcurrentImageTilesCache lL = getLargeMap(ri);
+        if (lL == null) {
+            throw new IllegalArgumentException("renderedImage don't exist in this "+ConcurrentTileCache.class.getName());
+        }
+        lL.remove(tileX, tileY);
+    }
+
+    /**
+     * {@inheritDoc }.
+     * @throws java.lang.IllegalArgumentException if TileCache is in memoryMode only and the
+     * requested raster is not found on cache.
+     * @throws java.lang.RuntimeException if raster can't be retrieve from cache (nested IOException).
+     */
+    @Override
+    public Raster getTile(RenderedImage ri, int tileX, int tileY) {
+        final ConcurrentImageTilesCache cache = getLargeMap(ri);
+        if (cache == null) {
+            throw new IllegalArgumentException("renderedImage doesn't exist in this "+ConcurrentTileCache.class.getName());
+        }
+        try {
+            final Raster raster = cache.getRaster(tileX, tileY);
+            evict();
+            return raster;
+        } catch (IOException ex) {
+            throw (RuntimeException)(new ImagingOpException(ex.getMessage()).initCause(ex));
+        }
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void removeTiles(RenderedImage ri) {
+        final ConcurrentImageTilesCache lL = tileManagers.remove(new ImageLookup(ri));
+        if (lL != null) {
+            try {
+                lL.removeTiles();
+            } catch (IOException ex) {
+                throw new RuntimeException("Cannot delete cached tiles", ex);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void addTiles(RenderedImage ri, Point[] points, Raster[] rasters, Object o) {
+        if (points.length != rasters.length)
+            throw new IllegalArgumentException("point and raster tables must have same length.");
+
+        final ConcurrentImageTilesCache lL;
+        try {
+            lL = getOrCreateLargeMap(ri);
+        } catch (IOException e) {
+            throw new RuntimeException("There is no cache system for the given image, and we cannot create any.", e);
+        }
+
+        for (int id = 0, l = points.length; id < l; id++) {
+            if (!(rasters[id] instanceof WritableRaster))
+                throw new IllegalArgumentException("raster must be WritableRaster instance");
+            try {
+                lL.add(points[id].x, points[id].y, (WritableRaster) rasters[id]);
+                evict();
+            } catch (IOException ex) {
+                throw new RuntimeException("impossible to add raster (write raster on disk)", ex);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public Raster[] getTiles(RenderedImage ri, Point[] points) {
+        final ConcurrentImageTilesCache lL = getLargeMap(ri);
+        if (lL == null)
+            throw new IllegalArgumentException("renderedImage don't exist in this "+ConcurrentTileCache.class.getName());
+        final int l = points.length;
+        final Raster[] rasters = new Raster[l];
+        for (int id = 0; id < l; id++) {
+            try {
+                rasters[id] = lL.getRaster(points[id].x, points[id].y);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Unreadable tile : "+points[id], ex);
+            }
+        }
+        memoryControl();
+        return rasters;
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void setMemoryCapacity(long l) {
+        this.memoryCapacity = l;
+        memoryControl();
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void memoryControl() {
+        try {
+            evict();
+        } catch (IOException ex) {
+            throw new RuntimeException("impossible to write raster on disk", ex);
+        }
+    }
+
+
+    /*
+     * UNSUPPORTED OPERATIONS
+     */
+
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public Raster[] getTiles(RenderedImage ri) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void setMemoryThreshold(float f) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public float getMemoryThreshold() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void setTileComparator(Comparator cmprtr) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public Comparator getTileComparator() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void flush() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    @Deprecated
+    public void setTileCapacity(int i) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    @Deprecated
+    public int getTileCapacity() {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * {@inheritDoc }.
+     */
+    @Override
+    public void add(RenderedImage ri, int i, int i1, Raster raster, Object o) {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    /**
+     * Weak identity key of an image in {@link #tileManagers}.
+     */
+    private static final class ImageKey extends WeakReference<RenderedImage> {
+        private final int hash;
+
+        ImageKey(final RenderedImage image) {
+            super(image);
+            hash = System.identityHashCode(image);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (other == this) return true;
+            final RenderedImage image = get();
+            if (image == null) return false;
+            if (other instanceof ImageLookup) {
+                return image == ((ImageLookup) other).image;
+            }
+            //-- two keys of the same live image, needed for putIfAbsent to detect concurrent registrations.
+            return other instanceof ImageKey && image == ((ImageKey) other).get();
+        }
+    }
+
+    /**
+     * Short-lived key used to search an image in {@link #tileManagers}. It is only ever compared
+     * to {@link ImageKey}, since {@link ConcurrentHashMap} invokes {@code equals} on the searched key.
+     */
+    private static final class ImageLookup {
+        private final RenderedImage image;
+
+        ImageLookup(final RenderedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(image);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof ImageKey && ((ImageKey) other).get() == image;
+        }
+    }
+}
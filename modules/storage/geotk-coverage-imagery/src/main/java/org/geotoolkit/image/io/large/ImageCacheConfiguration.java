@@ -53,6 +53,13 @@ public final class ImageCacheConfiguration extends Static {
      */
     public static final String KEY_CACHE_SWAP = "geotk.image.cache.swap";
 
+    /**
+     *  The {@linkplain System#getProperties() system properties} key which control
+     *  the compression of tiles swapped on filesystem.
+     *  Valid values : "none", "deflate"
+     */
+    public static final String KEY_CACHE_SWAP_COMPRESSION = "geotk.image.cache.swap.compression";
+
     /**
      * Default memory size used if {@linkplain System#getProperties() system properties} {@linkplain #KEY_CACHE_MEMORY_SIZE}
      * property is not defined.
@@ -161,4 +168,23 @@ public final class ImageCacheConfiguration extends Static {
     public static void setCacheSwapEnable(boolean allowSwap) {
         System.setProperty(KEY_CACHE_SWAP, String.valueOf(allowSwap));
     }
+
+    /**
+     * Check in {@linkplain System#getProperties() system properties} for swap compression configuration.
+     *
+     * @return {@code true} if property value is "deflate", {@code false} if property not found.
+     */
+    public static boolean isCacheSwapCompressed() {
+        return "deflate".equalsIgnoreCase(System.getProperty(KEY_CACHE_SWAP_COMPRESSION));
+    }
+
+    /**
+     * Set swap compression in {@linkplain System#getProperties() system properties}.
+     * It is not assured that LargeCache will use given value if it was already instantiated.
+     *
+     * @param compress {@code true} to deflate tiles swapped on filesystem.
+     */
+    public static void setCacheSwapCompressed(boolean compress) {
+        System.setProperty(KEY_CACHE_SWAP_COMPRESSION, compress ? "deflate" : "none");
+    }
 }
@@ -17,33 +17,29 @@
 package org.geotoolkit.image.io.large;
 
 
-import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
-import javax.media.jai.RasterFactory;
 import java.awt.*;
 import java.awt.image.*;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Logger;
 import java.util.logging.Level;
-import javax.imageio.spi.ImageReaderSpi;
-import javax.imageio.spi.ImageWriterSpi;
-import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.collection.WeakValueHashMap;
 import org.apache.sis.util.logging.Logging;
+import org.geotoolkit.internal.Threads;
 import org.geotoolkit.nio.IOUtilities;
 
 /**
@@ -51,6 +47,10 @@ import org.geotoolkit.nio.IOUtilities;
  * is tile location, and value is the value the tile data. We use a {@link java.util.LinkedHashMap}, so when we need to
  * remove an element, we will take the oldest one.
  *
+ * Disk swap is asynchronous : evicted tiles are queued for writing in background threads, and are still served from
+ * memory until they have been written. When tiles are read from disk in row-major order, the following tiles are
+ * loaded in background before being requested.
+ *
  * @author Rémi Maréchal (Geomatys).
  * @author Alexis Manin (Geomatys).
  * @author Johann Sorel (Geomatys).
@@ -65,20 +65,38 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
     private static final Logger LOGGER = Logging.getLogger("org.geotoolkit.image.io.large");
 
     private static final Path TEMPORARY_PATH = Paths.get(System.getProperty("java.io.tmpdir"));
-    private static final String FORMAT = "geotiff";
-    private static final ImageReaderSpi READER_SPI;
-    private static final ImageWriterSpi WRITER_SPI;
-    static {
-        final Iterator<ImageReader> iteR = ImageIO.getImageReadersByFormatName(FORMAT);
-        READER_SPI = (iteR.hasNext()) ? iteR.next().getOriginatingProvider() : null;
-
-        final Iterator<ImageWriter> iteW = ImageIO.getImageWritersByFormatName(FORMAT);
-        WRITER_SPI = (iteW.hasNext()) ? iteW.next().getOriginatingProvider() : null;
+
+    /**
+     * Maximum number of evicted tiles waiting to be written on disk. When the queue is full,
+     * the evicting thread writes the tile itself, so memory held by queued tiles stays bounded.
+     */
+    private static final int WRITE_QUEUE_SIZE = 64;
+
+    /**
+     * Maximum number of tiles waiting to be read in advance. Additional read-ahead requests are discarded.
+     */
+    private static final int READ_QUEUE_SIZE = 32;
+
+    /**
+     * Number of tiles loaded in advance when a row-major access pattern is detected.
+     */
+    private static final int READ_AHEAD_SIZE = 2;
+
+    private static final ThreadPoolExecutor WRITE_BEHIND = createExecutor("LargeCache write-behind #",
+            WRITE_QUEUE_SIZE, new ThreadPoolExecutor.CallerRunsPolicy());
+    private static final ThreadPoolExecutor READ_AHEAD = createExecutor("LargeCache read-ahead #",
+            READ_QUEUE_SIZE, new ThreadPoolExecutor.DiscardPolicy());
+
+    private static ThreadPoolExecutor createExecutor(final String name, final int queueSize, final RejectedExecutionHandler policy) {
+        final int nbThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(nbThreads, nbThreads, 10L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), Threads.createThreadFactory(name), policy);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
-    private static final Point WPOINT = new Point(0, 0);
 
     private final LargeCache cache;
-    private ColorModel cm;
+    private final RasterSwapFormat format;
     private final int minTileX;
     private final int minTileY;
     private final int numTilesX;
@@ -92,6 +110,16 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
 
     private final boolean isWritableRenderedImage;
 
+    /**
+     * Tiles evicted from memory but not yet written on disk.
+     */
+    private final Map<Point, TileRasterCache> pendingWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Index (row-major) of the last tile read from disk, used to detect sequential accesses.
+     */
+    private volatile long lastRead = -1;
+
     /**
      * Tile by Tile locks.
      */
@@ -152,7 +180,8 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
      * If some of {@link java.awt.image.Raster} weight within list exceed memory capacity, {@link java.awt.image.Raster} are stored
      * on hard disk at appropriate quad tree emplacement in temporary system directory.<br/><br/>
      *
-     * Note : {@link java.awt.image.Raster} are stored in tiff format to avoid onerous, compression decompression, cost during disk writing reading.</p>
+     * Note : {@link java.awt.image.Raster} are stored in a raw binary format (see {@link RasterSwapFormat}) to avoid
+     * image writer costs during disk writing reading.</p>
      *
      * @param ri {@link java.awt.image.RenderedImage} which contain all raster in list.
      * @param memoryCapacity storage capacity in Byte.
@@ -170,7 +199,6 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
                 throw new IllegalArgumentException("With WritableRenderedImage LargeCache must swap.");
         }
         //image owner properties.
-        this.cm            = ri.getColorModel();
         this.numTilesX     = ri.getNumXTiles();
         this.numTilesY     = ri.getNumYTiles();
         this.riMinX        = ri.getMinX();
@@ -182,12 +210,12 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
 
         //quad tree directory architecture.
         if (cache.isEnableSwap()) {
-            ArgumentChecks.ensureNonNull("READER_SPI", READER_SPI);
-            ArgumentChecks.ensureNonNull("WRITER_SPI", WRITER_SPI);
             final Path dirPath = Files.createTempDirectory(TEMPORARY_PATH, "img");
-            this.qTD = new QuadTreeDirectory(dirPath, numTilesX, numTilesY, FORMAT, true);
+            this.qTD    = new QuadTreeDirectory(dirPath, numTilesX, numTilesY, RasterSwapFormat.EXTENSION, true);
+            this.format = new RasterSwapFormat(ImageCacheConfiguration.isCacheSwapCompressed());
         } else {
-            this.qTD = null;
+            this.qTD    = null;
+            this.format = null;
         }
 
         final int datatype = ri.getSampleModel().getDataType();
@@ -225,16 +253,12 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
     }
 
     private void add(Point tileCorner, WritableRaster raster) throws IOException {
-        final long rasterWeight = getRasterWeight(raster);
-        if (rasterWeight > cache.getCacheSizePerImage()) throw new IOException("Raster too large : " + rasterWeight
-                + " bytes, but maximum cache capacity is "+ cache.getCacheSizePerImage() +" bytes");
-
         final ReadWriteLock tileLock = getLock(tileCorner);
         tileLock.writeLock().lock();
         try {
-            synchronized(tiles){
-                tiles.put(tileCorner, new TileRasterCache(tileCorner.x, tileCorner.y, rasterWeight, raster));
-            }
+            //-- new content, a queued write of the previous one is obsolete.
+            pendingWrites.remove(tileCorner);
+            put(tileCorner, raster);
         } finally {
             tileLock.writeLock().unlock();
         }
@@ -242,6 +266,19 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
         checkMap();
     }
 
+    /**
+     * Put raster in memory. Caller must hold the tile write lock, and should call {@link #checkMap()}
+     * once the lock is released.
+     */
+    private void put(Point tileCorner, WritableRaster raster) throws IOException {
+        final long rasterWeight = getRasterWeight(raster);
+        if (rasterWeight > cache.getCacheSizePerImage()) throw new IOException("Raster too large : " + rasterWeight
+                + " bytes, but maximum cache capacity is "+ cache.getCacheSizePerImage() +" bytes");
+        synchronized(tiles){
+            tiles.put(tileCorner, new TileRasterCache(tileCorner.x, tileCorner.y, rasterWeight, raster));
+        }
+    }
+
     /**
      * Remove {@link java.awt.image.Raster} at tileX tileY mosaic coordinates.
      *
@@ -257,6 +294,7 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
             synchronized(tiles){
                 tiles.remove(tileCorner);
             }
+            pendingWrites.remove(tileCorner);
 
             if (qTD != null) {
                 //quad tree
@@ -309,6 +347,8 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
         } else {
 
             //-- lock in writing
+            final WritableRaster loaded;
+            final boolean fromDisk;
             tileLock.writeLock().lock();
             try {
 
@@ -322,30 +362,82 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
                     return lRaster.getRaster();
                 }
 
-                // If not, we must take it from input quad-tree.
-                final Path tileFile = Paths.get(qTD.getPath(tileCorner.x, tileCorner.y));
-                if (Files.exists(tileFile)) {
-                    // TODO : Use a "pool" of readers, instead of creating one each time ?
-                    final ImageReader imgReader = READER_SPI.createReaderInstance();
-                    final BufferedImage buff;
-                    try {
-                        imgReader.setInput(tileFile);
-                        buff = imgReader.read(0);
-                    }catch (Exception ex){
-                        throw ex;
-                    }finally {
-                        imgReader.dispose();
+                //-- tile evicted but not written yet, take it back from the write queue.
+                final TileRasterCache pending = pendingWrites.remove(tileCorner);
+                if (pending != null) {
+                    loaded = (WritableRaster) pending.getRaster();
+                    fromDisk = false;
+                    put(tileCorner, loaded);
+                } else {
+                    // If not, we must take it from input quad-tree.
+                    final Path tileFile = Paths.get(qTD.getPath(tileCorner.x, tileCorner.y));
+                    if (!Files.exists(tileFile)) {
+                        throw new IOException("Tile (" + tileX + ", " + tileY + ") unknown. Cannot get raster.");
                     }
-                    //add in cache list.
-                    final WritableRaster checkedRaster = checkRaster(buff.getRaster(), tileCorner);
-                    add(tileCorner, checkedRaster);
-                    return checkedRaster;
+                    loaded = readRaster(tileFile, tileCorner);
+                    fromDisk = true;
+                    put(tileCorner, loaded);
                 }
             } finally {
                tileLock.writeLock().unlock();
             }
+            checkMap();
+            if (fromDisk) readAhead(tileCorner);
+            return loaded;
+        }
+    }
+
+    /**
+     * Load in background the tiles following given one if tiles are read in row-major order.
+     * A tile is considered as read sequentially if it follows the previous tile read from disk
+     * by at most {@link #READ_AHEAD_SIZE} + 1 tiles, since tiles loaded in advance are not read
+     * from disk anymore when requested.
+     *
+     * @param tileCorner tile which has just been read from disk.
+     */
+    private void readAhead(final Point tileCorner) {
+        final long index    = (long) tileCorner.y * numTilesX + tileCorner.x;
+        final long previous = lastRead;
+        lastRead = index;
+        if (previous < 0 || previous >= index || index - previous > READ_AHEAD_SIZE + 1) return;
+
+        final long max = Math.min((long) numTilesX * numTilesY, index + READ_AHEAD_SIZE + 1);
+        for (long i = index + 1; i < max; i++) {
+            final Point next = new Point((int) (i % numTilesX), (int) (i / numTilesX));
+            READ_AHEAD.execute(new Runnable() {
+                @Override
+                public void run() {
+                    prefetch(next);
+                }
+            });
+        }
+    }
+
+    /**
+     * Load tile from disk if it is not in memory. Nothing is done if another thread is working on the tile.
+     */
+    private void prefetch(final Point tileCorner) {
+        final ReadWriteLock tileLock = getLock(tileCorner);
+        if (!tileLock.writeLock().tryLock()) return;
+        try {
+            synchronized (tiles) {
+                if (tiles.containsKey(tileCorner)) return;
+            }
+            if (pendingWrites.containsKey(tileCorner)) return;
+            final Path tileFile = Paths.get(qTD.getPath(tileCorner.x, tileCorner.y));
+            if (!Files.exists(tileFile)) return;
+            put(tileCorner, readRaster(tileFile, tileCorner));
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.FINE, "Tile read-ahead failed : " + ex.getLocalizedMessage(), ex);
+            return;
+        } finally {
+            tileLock.writeLock().unlock();
+        }
+        try {
+            checkMap();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, ex.getLocalizedMessage(), ex);
         }
-        throw new IOException("Tile (" + tileX + ", " + tileY + ") unknown. Cannot get raster.");
     }
 
     /**
@@ -355,6 +447,7 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
         //rendered image won't be used after this
         synchronized(tiles){
             tiles.clear();
+            pendingWrites.clear();
             if (qTD != null) {
                 qTD.cleanDirectory();
             }
@@ -393,68 +486,43 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
     private void writeRaster(final TileRasterCache lRaster) throws IOException {
         final Path tileFile = Paths.get(qTD.getPath(lRaster.getGridX(), lRaster.getGridY()));
         if (isWritableRenderedImage || !Files.exists(tileFile)) {
-            final BufferedImage toWrite = new BufferedImage(
-                    cm, RasterFactory.createWritableRaster(lRaster.getRaster().getSampleModel(), lRaster.getRaster().getDataBuffer(), WPOINT),
-                    cm.isAlphaPremultiplied(), null);
-            // TODO : Optimize using a "writer pool" instead of creating one each time ?
-            final ImageWriter imgWriter = WRITER_SPI.createWriterInstance();
-            try {
-                imgWriter.setOutput(tileFile);
-                imgWriter.write(toWrite);
-                imgWriter.dispose();
-            } finally {
-                releaseWriter(imgWriter);
-            }
+            format.write(tileFile, lRaster.getRaster());
         }
     }
 
     /**
-     * Release ImageReader and his input.
-     * TODO replace with XImageIO utility methods
-     * @param imageReader
+     * Read {@link java.awt.image.Raster} previously written by {@link #writeRaster(TileRasterCache)}.
+     *
+     * @param tileFile swap file.
+     * @param tileCorner tile location within renderedImage owner.
+     * @return read raster, located at the tile position.
+     * @throws java.io.IOException if impossible to read raster from disk.
      */
-    private void releaseReader(ImageReader imageReader) {
-        if(imageReader != null) {
-            Object writerOutput = imageReader.getInput();
-            if(writerOutput instanceof OutputStream){
-                try {
-                    ((OutputStream)writerOutput).close();
-                } catch (IOException ex) {
-                    LOGGER.log(Level.INFO, ex.getMessage(),ex);
-                }
-            }else if(writerOutput instanceof ImageOutputStream){
-                try {
-                    ((ImageOutputStream)writerOutput).close();
-                } catch (IOException ex) {
-                    LOGGER.log(Level.INFO, ex.getMessage(),ex);
-                }
-            }
-            imageReader.dispose();
-        }
+    private WritableRaster readRaster(final Path tileFile, final Point tileCorner) throws IOException {
+        return format.read(tileFile, new Point(riTileWidth  * tileCorner.x + riMinX, riTileHeight * tileCorner.y + riMinY));
     }
 
     /**
-     * Release ImageWriter and his output.
-     * TODO replace with XImageIO utility methods
-     * @param imgWriter
+     * Write an evicted tile on disk, unless it has been taken back in memory or removed meanwhile.
+     * If the tile cannot be written, it is put back in memory.
      */
-    private void releaseWriter(ImageWriter imgWriter) {
-        if(imgWriter != null) {
-            Object writerOutput = imgWriter.getOutput();
-            if(writerOutput instanceof OutputStream){
-                try {
-                    ((OutputStream)writerOutput).close();
-                } catch (IOException ex) {
-                    LOGGER.log(Level.INFO, ex.getMessage(),ex);
-                }
-            }else if(writerOutput instanceof ImageOutputStream){
-                try {
-                    ((ImageOutputStream)writerOutput).close();
-                } catch (IOException ex) {
-                    LOGGER.log(Level.INFO, ex.getMessage(),ex);
+    private void flushPending(final Point key, final TileRasterCache tr) {
+        final ReadWriteLock rwl = getLock(key);
+        rwl.writeLock().lock();
+        try {
+            if (pendingWrites.get(key) != tr) return;
+            try {
+                writeRaster(tr);
+                pendingWrites.remove(key, tr);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Tile (" + key.x + ", " + key.y + ") cannot be swapped on disk, it is kept in memory.", ex);
+                pendingWrites.remove(key, tr);
+                synchronized (tiles) {
+                    tiles.put(key, tr);
                 }
             }
-            imgWriter.dispose();
+        } finally {
+            rwl.writeLock().unlock();
         }
     }
 
@@ -478,7 +546,8 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
 
     /**
      * <p>Check that cache weight do not exceed memory capacity.<br/>
-     * If memory capacity is exceeded, write as many {@link java.awt.image.Raster} objects needed to not exceed memory capacity anymore.</p>
+     * If memory capacity is exceeded, evict as many {@link java.awt.image.Raster} objects needed to not exceed memory capacity anymore.
+     * Evicted rasters are written on disk asynchronously.</p>
      */
     private void checkMap() throws IOException {
         final long maxCacheSize = cache.getCacheSizePerImage();
@@ -494,23 +563,31 @@ final class ImageTilesCache extends PhantomReference<RenderedImage> {
         int i=0;
         for(long currentCapacity = usedCapacity.get(); currentCapacity>maxCacheSize && i<pts.length; currentCapacity = usedCapacity.get(),i++){
 
-            Point key = pts[i];
+            final Point key = pts[i];
             if(key==null) continue;
 
             final ReadWriteLock rwl = getLock(key);
             if (rwl.writeLock().tryLock()) {
+                final TileRasterCache tr;
                 try {
-                    final TileRasterCache tr;
                     synchronized (tiles) {
                         tr = tiles.remove(key);
                     }
-
                     if (tr != null && swap) {
-                        writeRaster(tr);
+                        pendingWrites.put(key, tr);
                     }
                 } finally {
                     rwl.writeLock().unlock();
                 }
+                //-- write outside of tile lock : if the queue is full, this thread writes the tile itself.
+                if (tr != null && swap) {
+                    WRITE_BEHIND.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            flushPending(key, tr);
+                        }
+                    });
+                }
             }
         }
 
@@ -0,0 +1,363 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary format used to swap tiles on disk. Data buffer banks are dumped as is, with an optional
+ * deflate compression, avoiding the cost of an image writer and of a pixel by pixel copy.
+ *
+ * Swap files are only read back by the instance which wrote them, so the sample models are not
+ * encoded in the files : each instance keeps the distinct sample models it has seen (usually a
+ * single one per image) and files only reference them by index.
+ *
+ * File layout :
+ * <ul>
+ *   <li>Header (never compressed) : magic number (int), format version (byte), compression (byte),
+ *       sample model index (short).</li>
+ *   <li>Body : data type (int), number of banks (int), buffer size (int), bank offsets (int[]),
+ *       then for each bank its length in elements (int) followed by the bank elements, big endian.</li>
+ * </ul>
+ */
+final class RasterSwapFormat {
+
+    /**
+     * File extension of swap files.
+     */
+    static final String EXTENSION = "tile";
+
+    private static final int MAGIC = 0x47545357; // "GTSW"
+    private static final byte VERSION = 1;
+    private static final byte NO_COMPRESSION = 0;
+    private static final byte DEFLATE = 1;
+
+    /**
+     * Size of the buffer used to convert banks to bytes.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final boolean compress;
+
+    /**
+     * Distinct sample models of written rasters, referenced by index in swap files.
+     */
+    private final List<SampleModel> models = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param compress {@code true} to deflate swap files.
+     */
+    RasterSwapFormat(final boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Return index of given sample model, registering it if needed.
+     */
+    private synchronized int indexOf(final SampleModel model) {
+        int index = models.indexOf(model);
+        if (index < 0) {
+            index = models.size();
+            if (index > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct sample models.");
+            }
+            models.add(model);
+        }
+        return index;
+    }
+
+    /**
+     * Write raster data in given file. Existing file is overwritten.
+     *
+     * @param file destination file.
+     * @param raster raster to write.
+     * @throws IOException if an error occurs while writing.
+     */
+    void write(final Path file, Raster raster) throws IOException {
+        if (raster.getParent() != null
+                || raster.getSampleModelTranslateX() != -raster.getMinX()
+                || raster.getSampleModelTranslateY() != -raster.getMinY()) {
+            //-- child raster, only keep the visible part.
+            final WritableRaster copy = raster.createCompatibleWritableRaster(
+                    raster.getMinX(), raster.getMinY(), raster.getWidth(), raster.getHeight());
+            copy.setRect(raster);
+            raster = copy;
+        }
+        final DataBuffer buffer = raster.getDataBuffer();
+        final int modelIndex = indexOf(raster.getSampleModel());
+
+        try (OutputStream raw = Files.newOutputStream(file)) {
+            final DataOutputStream header = new DataOutputStream(raw);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeByte(compress ? DEFLATE : NO_COMPRESSION);
+            header.writeShort(modelIndex);
+
+            final Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            try {
+                final OutputStream body = compress ? new DeflaterOutputStream(raw, deflater, CHUNK_SIZE) : raw;
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(body, CHUNK_SIZE));
+                final int numBanks = buffer.getNumBanks();
+                out.writeInt(buffer.getDataType());
+                out.writeInt(numBanks);
+                out.writeInt(buffer.getSize());
+                for (int b = 0; b < numBanks; b++) {
+                    out.writeInt(buffer.getOffsets()[b]);
+                }
+                for (int b = 0; b < numBanks; b++) {
+                    writeBank(out, buffer, b);
+                }
+                out.flush();
+                if (compress) ((DeflaterOutputStream) body).finish();
+            } finally {
+                if (deflater != null) deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Read raster data previously written by this instance.
+     *
+     * @param file file to read.
+     * @param location upper-left corner of the returned raster.
+     * @return read raster.
+     * @throws IOException if an error occurs while reading, or if the file is not a valid swap file.
+     */
+    WritableRaster read(final Path file, final Point location) throws IOException {
+        try (InputStream raw = Files.newInputStream(file)) {
+            //-- DataInputStream does not buffer, the body can be read from the raw stream afterward.
+            final DataInputStream header = new DataInputStream(raw);
+            if (header.readInt() != MAGIC) throw new IOException("Not a tile swap file : " + file);
+            final byte version = header.readByte();
+            if (version != VERSION) throw new IOException("Unsupported tile swap file version : " + version);
+            final byte compression = header.readByte();
+            final int modelIndex = header.readShort();
+            if (modelIndex < 0 || modelIndex >= models.size()) {
+                throw new IOException("Unknown sample model in tile swap file : " + file);
+            }
+            final SampleModel model = models.get(modelIndex);
+
+            final Inflater inflater = (compression == DEFLATE) ? new Inflater() : null;
+            try {
+                final InputStream body = (inflater != null) ? new InflaterInputStream(raw, inflater, CHUNK_SIZE) : raw;
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(body, CHUNK_SIZE));
+                final int dataType = in.readInt();
+                final int numBanks = in.readInt();
+                final int size     = in.readInt();
+                final int[] offsets = new int[numBanks];
+                for (int b = 0; b < numBanks; b++) {
+                    offsets[b] = in.readInt();
+                }
+                final DataBuffer buffer = readBuffer(in, dataType, numBanks, size, offsets);
+                return Raster.createWritableRaster(model, buffer, location);
+            } finally {
+                if (inflater != null) inflater.end();
+            }
+        }
+    }
+
+    private static void writeBank(final DataOutputStream out, final DataBuffer buffer, final int bank) throws IOException {
+        final ByteBuffer chunk;
+        switch (buffer.getDataType()) {
+            case DataBuffer.TYPE_BYTE : {
+                final byte[] data = ((DataBufferByte) buffer).getData(bank);
+                out.writeInt(data.length);
+                out.write(data);
+                return;
+            }
+            case DataBuffer.TYPE_USHORT : {
+                final short[] data = ((DataBufferUShort) buffer).getData(bank);
+                out.writeInt(data.length);
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                for (int i = 0; i < data.length;) {
+                    final int n = Math.min(data.length - i, CHUNK_SIZE / Short.BYTES);
+                    chunk.clear();
+                    chunk.asShortBuffer().put(data, i, n);
+                    out.write(chunk.array(), 0, n * Short.BYTES);
+                    i += n;
+                }
+                return;
+            }
+            case DataBuffer.TYPE_SHORT : {
+                final short[] data = ((DataBufferShort) buffer).getData(bank);
+                out.writeInt(data.length);
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                for (int i = 0; i < data.length;) {
+                    final int n = Math.min(data.length - i, CHUNK_SIZE / Short.BYTES);
+                    chunk.clear();
+                    chunk.asShortBuffer().put(data, i, n);
+                    out.write(chunk.array(), 0, n * Short.BYTES);
+                    i += n;
+                }
+                return;
+            }
+            case DataBuffer.TYPE_INT : {
+                final int[] data = ((DataBufferInt) buffer).getData(bank);
+                out.writeInt(data.length);
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                for (int i = 0; i < data.length;) {
+                    final int n = Math.min(data.length - i, CHUNK_SIZE / Integer.BYTES);
+                    chunk.clear();
+                    chunk.asIntBuffer().put(data, i, n);
+                    out.write(chunk.array(), 0, n * Integer.BYTES);
+                    i += n;
+                }
+                return;
+            }
+            case DataBuffer.TYPE_FLOAT : {
+                final float[] data = ((DataBufferFloat) buffer).getData(bank);
+                out.writeInt(data.length);
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                for (int i = 0; i < data.length;) {
+                    final int n = Math.min(data.length - i, CHUNK_SIZE / Float.BYTES);
+                    chunk.clear();
+                    chunk.asFloatBuffer().put(data, i, n);
+                    out.write(chunk.array(), 0, n * Float.BYTES);
+                    i += n;
+                }
+                return;
+            }
+            case DataBuffer.TYPE_DOUBLE : {
+                final double[] data = ((DataBufferDouble) buffer).getData(bank);
+                out.writeInt(data.length);
+                chunk = ByteBuffer.allocate(CHUNK_SIZE);
+                for (int i = 0; i < data.length;) {
+                    final int n = Math.min(data.length - i, CHUNK_SIZE / Double.BYTES);
+                    chunk.clear();
+                    chunk.asDoubleBuffer().put(data, i, n);
+                    out.write(chunk.array(), 0, n * Double.BYTES);
+                    i += n;
+                }
+                return;
+            }
+            default : throw new IOException("Unsupported data buffer type : " + buffer.getDataType());
+        }
+    }
+
+    private static DataBuffer readBuffer(final DataInputStream in, final int dataType, final int numBanks,
+            final int size, final int[] offsets) throws IOException
+    {
+        final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE : {
+                final byte[][] banks = new byte[numBanks][];
+                for (int b = 0; b < numBanks; b++) {
+                    banks[b] = new byte[in.readInt()];
+                    in.readFully(banks[b]);
+                }
+                return new DataBufferByte(banks, size, offsets);
+            }
+            case DataBuffer.TYPE_USHORT : {
+                final short[][] banks = new short[numBanks][];
+                for (int b = 0; b < numBanks; b++) {
+                    final short[] data = banks[b] = new short[in.readInt()];
+                    for (int i = 0; i < data.length;) {
+                        final int n = Math.min(data.length - i, CHUNK_SIZE / Short.BYTES);
+                        in.readFully(chunk.array(), 0, n * Short.BYTES);
+                        chunk.clear();
+                        chunk.asShortBuffer().get(data, i, n);
+                        i += n;
+                    }
+                }
+                return new DataBufferUShort(banks, size, offsets);
+            }
+            case DataBuffer.TYPE_SHORT : {
+                final short[][] banks = new short[numBanks][];
+                for (int b = 0; b < numBanks; b++) {
+                    final short[] data = banks[b] = new short[in.readInt()];
+                    for (int i = 0; i < data.length;) {
+                        final int n = Math.min(data.length - i, CHUNK_SIZE / Short.BYTES);
+                        in.readFully(chunk.array(), 0, n * Short.BYTES);
+                        chunk.clear();
+                        chunk.asShortBuffer().get(data, i, n);
+                        i += n;
+                    }
+                }
+                return new DataBufferShort(banks, size, offsets);
+            }
+            case DataBuffer.TYPE_INT : {
+                final int[][] banks = new int[numBanks][];
+                for (int b = 0; b < numBanks; b++) {
+                    final int[] data = banks[b] = new int[in.readInt()];
+                    for (int i = 0; i < data.length;) {
+                        final int n = Math.min(data.length - i, CHUNK_SIZE / Integer.BYTES);
+                        in.readFully(chunk.array(), 0, n * Integer.BYTES);
+                        chunk.clear();
+                        chunk.asIntBuffer().get(data, i, n);
+                        i += n;
+                    }
+                }
+                return new DataBufferInt(banks, size, offsets);
+            }
+            case DataBuffer.TYPE_FLOAT : {
+                final float[][] banks = new float[numBanks][];
+                for (int b = 0; b < numBanks; b++) {
+                    final float[] data = banks[b] = new float[in.readInt()];
+                    for (int i = 0; i < data.length;) {
+                        final int n = Math.min(data.length - i, CHUNK_SIZE / Float.BYTES);
+                        in.readFully(chunk.array(), 0, n * Float.BYTES);
+                        chunk.clear();
+                        chunk.asFloatBuffer().get(data, i, n);
+                        i += n;
+                    }
+                }
+                return new DataBufferFloat(banks, size, offsets);
+            }
+            case DataBuffer.TYPE_DOUBLE : {
+                final double[][] banks = new double[numBanks][];
+                for (int b = 0; b < numBanks; b++) {
+                    final double[] data = banks[b] = new double[in.readInt()];
+                    for (int i = 0; i < data.length;) {
+                        final int n = Math.min(data.length - i, CHUNK_SIZE / Double.BYTES);
+                        in.readFully(chunk.array(), 0, n * Double.BYTES);
+                        chunk.clear();
+                        chunk.asDoubleBuffer().get(data, i, n);
+                        i += n;
+                    }
+                }
+                return new DataBufferDouble(banks, size, offsets);
+            }
+            default : throw new IOException("Unsupported data buffer type : " + dataType);
+        }
+    }
+}
@@ -213,4 +213,34 @@ public class BenchMarkResample {
         System.out.println("stats mercator : "+stats);
 
     }
+
+    /**
+     * Compare sequential and parallel resampling for each interpolation.
+     */
+    @Test
+    @Ignore
+    public void benchParallelTest() throws Exception {
+        final InterpolationCase[] cases = new InterpolationCase[]{InterpolationCase.NEIGHBOR,
+            InterpolationCase.BILINEAR, InterpolationCase.BICUBIC, InterpolationCase.LANCZOS};
+        for (InterpolationCase interpolation : cases) {
+            final Statistics sequential = new Statistics("sequential " + interpolation);
+            final Statistics parallel   = new Statistics("parallel " + interpolation);
+            int n = 0;
+            while (n++ < 20) {
+                Resample resample = new Resample(mercatTransform, target, source,
+                        interpolation, 2, ResampleBorderComportement.EXTRAPOLATION, new double[]{0});
+                long t0 = System.currentTimeMillis();
+                resample.fillImage(false);
+                if (n > 5) sequential.accept(System.currentTimeMillis() - t0);
+
+                resample = new Resample(mercatTransform, target, source,
+                        interpolation, 2, ResampleBorderComportement.EXTRAPOLATION, new double[]{0});
+                t0 = System.currentTimeMillis();
+                resample.fillImageParallel();
+                if (n > 5) parallel.accept(System.currentTimeMillis() - t0);
+            }
+            System.out.println(sequential);
+            System.out.println(parallel);
+        }
+    }
 }
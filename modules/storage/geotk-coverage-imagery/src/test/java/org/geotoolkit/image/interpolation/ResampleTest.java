@@ -454,6 +454,42 @@ public class ResampleTest extends org.geotoolkit.test.TestBase {
         return (t - t0) * (f1 - f0) + f0;
     }
 
+    /**
+     * Test parallel resampling gives the same result than sequential resampling
+     * for each interpolation, with and without fill value.
+     *
+     * @throws TransformException
+     */
+    @Test
+    public void parallelTest() throws TransformException {
+        final ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_GRAY);
+        final ColorModel cm = new ComponentColorModel(cs, new int[]{Double.SIZE}, false, false, Transparency.OPAQUE, DataBuffer.TYPE_DOUBLE);
+        final ImageTypeSpecifier imgTypeSpec = new ImageTypeSpecifier(cm, cm.createCompatibleSampleModel(1, 1));
+        final BufferedImage source = imgTypeSpec.createBufferedImage(40, 40);
+        final java.util.Random random = new java.util.Random(0);
+        final PixelIterator pix = PixelIteratorFactory.createDefaultWriteableIterator(source, source);
+        while (pix.next()) {
+            pix.setSampleDouble(random.nextDouble() * 100);
+        }
+        final java.awt.geom.AffineTransform destToSource = java.awt.geom.AffineTransform.getRotateInstance(0.3, 50, 50);
+        destToSource.scale(0.4, 0.4);
+        final MathTransform mt = new AffineTransform2D(destToSource);
+
+        for (InterpolationCase interpolation : new InterpolationCase[]{InterpolationCase.NEIGHBOR,
+                InterpolationCase.BILINEAR, InterpolationCase.BICUBIC, InterpolationCase.LANCZOS}) {
+            for (double[] fillValue : new double[][]{{-1000}, null}) {
+                setTargetImage(100, 100, DataBuffer.TYPE_DOUBLE, -1);
+                new Resample(mt, targetImage, source, interpolation, 2, ResampleBorderComportement.FILL_VALUE, fillValue).fillImage();
+                final double[] expected = ((DataBufferDouble) targetImage.getTile(0, 0).getDataBuffer()).getData(0).clone();
+
+                setTargetImage(100, 100, DataBuffer.TYPE_DOUBLE, -1);
+                new Resample(mt, targetImage, source, interpolation, 2, ResampleBorderComportement.FILL_VALUE, fillValue).fillImageParallel();
+                final double[] result = ((DataBufferDouble) targetImage.getTile(0, 0).getDataBuffer()).getData(0);
+                assertArrayEquals(interpolation.name(), expected, result, 1E-9);
+            }
+        }
+    }
+
     /**
      * Affect appropriate image for tests.
      *
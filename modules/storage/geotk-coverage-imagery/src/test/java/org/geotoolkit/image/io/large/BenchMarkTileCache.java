@@ -0,0 +1,113 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.media.jai.TileCache;
+import javax.media.jai.TiledImage;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compare {@link LargeCache} and {@link ConcurrentTileCache} tile access throughput
+ * with 1 to 64 reader threads.
+ */
+public class BenchMarkTileCache {
+
+    private static final int TILE_SIZE = 256;
+    private static final int NB_TILES  = 16;
+    private static final int NB_ACCESS_PER_THREAD = 200000;
+    private static final int[] NB_THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private static TiledImage createImage(final TileCache cache) {
+        final SampleModel sm = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, TILE_SIZE, TILE_SIZE, 1, TILE_SIZE, new int[]{0});
+        final TiledImage image = new TiledImage(0, 0, TILE_SIZE * NB_TILES, TILE_SIZE * NB_TILES, 0, 0, sm, null);
+        for (int ty = 0; ty < NB_TILES; ty++) {
+            for (int tx = 0; tx < NB_TILES; tx++) {
+                cache.add(image, tx, ty, Raster.createWritableRaster(sm, new Point(tx * TILE_SIZE, ty * TILE_SIZE)));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @return number of tile access per second.
+     */
+    private static double run(final TileCache cache, final TiledImage image, final int nbThreads) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch end   = new CountDownLatch(nbThreads);
+        final AtomicLong checksum  = new AtomicLong();
+        for (int t = 0; t < nbThreads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long sum = 0;
+                    try {
+                        start.await();
+                        for (int i = 0; i < NB_ACCESS_PER_THREAD; i++) {
+                            sum += cache.getTile(image, random.nextInt(NB_TILES), random.nextInt(NB_TILES)).getMinX();
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        checksum.addAndGet(sum);
+                        end.countDown();
+                    }
+                }
+            }).start();
+        }
+        final long before = System.nanoTime();
+        start.countDown();
+        end.await();
+        final long elapsed = System.nanoTime() - before;
+        return (double) nbThreads * NB_ACCESS_PER_THREAD / (elapsed / 1E9);
+    }
+
+    private static void bench(final String name, final TileCache cache) throws InterruptedException {
+        final TiledImage image = createImage(cache);
+        //-- warm up
+        run(cache, image, 4);
+        for (int nbThreads : NB_THREADS) {
+            System.out.println(name + " : " + nbThreads + " threads : " + (long) run(cache, image, nbThreads) + " tiles/s");
+        }
+        cache.removeTiles(image);
+    }
+
+    @Test
+    @Ignore
+    public void benchLargeCacheTest() throws Exception {
+        ImageCacheConfiguration.setCacheSwapEnable(false);
+        final LargeCache cache = LargeCache.getInstance();
+        cache.setMemoryCapacity(2L * NB_TILES * NB_TILES * TILE_SIZE * TILE_SIZE);
+        bench("LargeCache", cache);
+    }
+
+    @Test
+    @Ignore
+    public void benchConcurrentTileCacheTest() throws Exception {
+        final ConcurrentTileCache cache = new ConcurrentTileCache(2L * NB_TILES * NB_TILES * TILE_SIZE * TILE_SIZE, false);
+        bench("ConcurrentTileCache", cache);
+    }
+}
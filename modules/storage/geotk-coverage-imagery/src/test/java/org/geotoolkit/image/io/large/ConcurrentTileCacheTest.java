@@ -0,0 +1,181 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.media.jai.TiledImage;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link ConcurrentTileCache} memory management, in memory only mode.
+ */
+public class ConcurrentTileCacheTest extends org.geotoolkit.test.TestBase {
+
+    private static final int TILE_SIZE = 64;
+    private static final int NB_TILES  = 4;
+    private static final long TILE_WEIGHT = TILE_SIZE * TILE_SIZE;
+
+    private static TiledImage createImage() {
+        final SampleModel sm = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, TILE_SIZE, TILE_SIZE, 1, TILE_SIZE, new int[]{0});
+        return new TiledImage(0, 0, TILE_SIZE * NB_TILES, TILE_SIZE * NB_TILES, 0, 0, sm, null);
+    }
+
+    private static WritableRaster createTile(final TiledImage image, final int tx, final int ty) {
+        final WritableRaster raster = Raster.createWritableRaster(image.getSampleModel(), new Point(tx * TILE_SIZE, ty * TILE_SIZE));
+        raster.setSample(raster.getMinX(), raster.getMinY(), 0, ty * NB_TILES + tx);
+        return raster;
+    }
+
+    /**
+     * Memory budget must be respected, most recently used tiles must stay in memory.
+     */
+    @Test
+    public void memoryBudgetTest() {
+        final ConcurrentTileCache cache = new ConcurrentTileCache(4 * TILE_WEIGHT, false);
+        final TiledImage image = createImage();
+
+        for (int ty = 0; ty < NB_TILES; ty++) {
+            for (int tx = 0; tx < NB_TILES; tx++) {
+                cache.add(image, tx, ty, createTile(image, tx, ty));
+                assertTrue(cache.getUsedCapacity() <= cache.getMemoryCapacity());
+            }
+        }
+        assertEquals(4 * TILE_WEIGHT, cache.getUsedCapacity());
+
+        //-- last added tile must still be available.
+        final Raster last = cache.getTile(image, NB_TILES - 1, NB_TILES - 1);
+        assertEquals(NB_TILES * NB_TILES - 1, last.getSample(last.getMinX(), last.getMinY(), 0));
+
+        //-- first tile has been evicted, and there is no swap.
+        try {
+            cache.getTile(image, 0, 0);
+            fail("Tile (0, 0) should have been evicted.");
+        } catch (IllegalArgumentException ex) {
+            //-- expected
+        }
+
+        cache.removeTiles(image);
+        assertEquals(0, cache.getUsedCapacity());
+    }
+
+    /**
+     * A tile accessed since its insertion gets a second chance, and is not the first one evicted.
+     */
+    @Test
+    public void secondChanceTest() {
+        final ConcurrentTileCache cache = new ConcurrentTileCache(2 * TILE_WEIGHT, false);
+        final TiledImage image = createImage();
+
+        cache.add(image, 0, 0, createTile(image, 0, 0));
+        cache.add(image, 1, 0, createTile(image, 1, 0));
+        assertNotNull(cache.getTile(image, 0, 0));
+        cache.add(image, 2, 0, createTile(image, 2, 0));
+
+        assertNotNull(cache.getTile(image, 0, 0));
+        assertNotNull(cache.getTile(image, 2, 0));
+        try {
+            cache.getTile(image, 1, 0);
+            fail("Tile (1, 0) should have been evicted.");
+        } catch (IllegalArgumentException ex) {
+            //-- expected
+        }
+    }
+
+    /**
+     * Removed and replaced tiles must not be counted by the eviction hand anymore.
+     */
+    @Test
+    public void removeTest() {
+        final ConcurrentTileCache cache = new ConcurrentTileCache(16 * TILE_WEIGHT, false);
+        final TiledImage image = createImage();
+
+        cache.add(image, 0, 0, createTile(image, 0, 0));
+        cache.add(image, 1, 0, createTile(image, 1, 0));
+        cache.add(image, 1, 0, createTile(image, 1, 0));
+        assertEquals(2, cache.getClockSize());
+        assertEquals(2 * TILE_WEIGHT, cache.getUsedCapacity());
+
+        cache.remove(image, 0, 0);
+        assertEquals(1, cache.getClockSize());
+        assertEquals(TILE_WEIGHT, cache.getUsedCapacity());
+
+        cache.removeTiles(image);
+        assertEquals(0, cache.getClockSize());
+        assertEquals(0, cache.getUsedCapacity());
+    }
+
+    /**
+     * Threads adding tiles of the same image at the same time must share a single tile manager.
+     */
+    @Test
+    public void concurrentRegistrationTest() throws Exception {
+        final int nbThread = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(nbThread);
+        try {
+            for (int run = 0; run < 20; run++) {
+                final ConcurrentTileCache cache = new ConcurrentTileCache(NB_TILES * NB_TILES * TILE_WEIGHT, false);
+                final TiledImage image = createImage();
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < nbThread; t++) {
+                    final int first = t;
+                    futures.add(executor.submit(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            start.await();
+                            for (int i = first; i < NB_TILES * NB_TILES; i += nbThread) {
+                                final int tx = i % NB_TILES;
+                                final int ty = i / NB_TILES;
+                                cache.add(image, tx, ty, createTile(image, tx, ty));
+                                assertNotNull(cache.getTile(image, tx, ty));
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                start.countDown();
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+                assertEquals(1, cache.getImageCount());
+                for (int i = 0; i < NB_TILES * NB_TILES; i++) {
+                    final Raster tile = cache.getTile(image, i % NB_TILES, i / NB_TILES);
+                    assertEquals(i, tile.getSample(tile.getMinX(), tile.getMinY(), 0));
+                }
+                cache.removeTiles(image);
+                assertEquals(0, cache.getImageCount());
+                assertEquals(0, cache.getUsedCapacity());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
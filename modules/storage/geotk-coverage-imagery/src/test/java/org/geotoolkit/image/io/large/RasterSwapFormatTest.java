@@ -0,0 +1,85 @@
+/*
+ *    Geotoolkit.org - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.image.io.large;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link RasterSwapFormat} write / read round trip.
+ */
+public class RasterSwapFormatTest extends org.geotoolkit.test.TestBase {
+
+    private static void roundTrip(final SampleModel sm, final boolean compress) throws Exception {
+        final WritableRaster source = Raster.createWritableRaster(sm, new Point(100, 200));
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                for (int b = 0; b < source.getNumBands(); b++) {
+                    source.setSample(source.getMinX() + x, source.getMinY() + y, b, (x * 7 + y * 3 + b) % 120);
+                }
+            }
+        }
+
+        final RasterSwapFormat format = new RasterSwapFormat(compress);
+        final Path file = Files.createTempFile("swap", "." + RasterSwapFormat.EXTENSION);
+        try {
+            format.write(file, source);
+            final WritableRaster result = format.read(file, new Point(100, 200));
+            assertEquals(source.getBounds(), result.getBounds());
+            assertEquals(source.getSampleModel(), result.getSampleModel());
+            for (int y = 0; y < source.getHeight(); y++) {
+                for (int x = 0; x < source.getWidth(); x++) {
+                    for (int b = 0; b < source.getNumBands(); b++) {
+                        assertEquals(source.getSampleDouble(100 + x, 200 + y, b), result.getSampleDouble(100 + x, 200 + y, b), 0.0);
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void byteInterleavedTest() throws Exception {
+        final SampleModel sm = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, 50, 40, 3, 150, new int[]{0, 1, 2});
+        roundTrip(sm, false);
+        roundTrip(sm, true);
+    }
+
+    @Test
+    public void floatBandedTest() throws Exception {
+        final SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_FLOAT, 50, 40, 2);
+        roundTrip(sm, false);
+        roundTrip(sm, true);
+    }
+
+    @Test
+    public void shortAndDoubleTest() throws Exception {
+        roundTrip(new BandedSampleModel(DataBuffer.TYPE_USHORT, 33, 17, 1), true);
+        roundTrip(new BandedSampleModel(DataBuffer.TYPE_DOUBLE, 33, 17, 2), false);
+    }
+}
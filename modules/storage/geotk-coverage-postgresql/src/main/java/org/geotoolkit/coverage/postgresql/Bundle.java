@@ -167,6 +167,16 @@ public final class Bundle extends IndexedResourceBundle {
          * Check connection is alive before using it
          */
         public static final short validate_connections_remarks = 26;
+
+        /**
+         * Fetch threads
+         */
+        public static final short fetch_threads = 27;
+
+        /**
+         * Number of connections used in parallel to fetch the tiles of a mosaic
+         */
+        public static final short fetch_threads_remarks = 28;
     }
 
     /**
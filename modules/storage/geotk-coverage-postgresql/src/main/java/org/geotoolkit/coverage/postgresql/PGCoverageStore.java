@@ -58,6 +58,7 @@ public class PGCoverageStore extends AbstractCoverageStore implements WritableAg
     private EPSGFactory epsgfactory;
     private DataSource source;
     private int fetchSize;
+    private int fetchThreads = 1;
     private String schema;
 
     public PGCoverageStore(final ParameterValueGroup params, final DataSource source){
@@ -80,6 +81,18 @@ public class PGCoverageStore extends AbstractCoverageStore implements WritableAg
         this.fetchSize = fetchSize;
     }
 
+    /**
+     * @return maximum number of connections used in parallel to fetch the tiles of a mosaic
+     */
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    public void setFetchThreads(int fetchThreads) {
+        ArgumentChecks.ensureStrictlyPositive("fetchThreads", fetchThreads);
+        this.fetchThreads = fetchThreads;
+    }
+
     public void setDatabaseSchema(String schema) {
         this.schema = schema;
     }
@@ -142,6 +142,14 @@ public class PGCoverageStoreFactory extends DataStoreFactory {
             .setRequired(false)
             .create(Integer.class, 1000);
 
+    /** Number of connections used in parallel to fetch the tiles of a mosaic */
+    public static final ParameterDescriptor<Integer> FETCHTHREADS = new ParameterBuilder()
+            .addName("fetch threads")
+            .addName(Bundle.formatInternational(Bundle.Keys.fetch_threads))
+            .setRemarks(Bundle.formatInternational(Bundle.Keys.fetch_threads_remarks))
+            .setRequired(false)
+            .create(Integer.class, 1);
+
     /** Maximum amount of time the pool will wait when trying to grab a new connection **/
     public static final ParameterDescriptor<Integer> MAXWAIT = new ParameterBuilder()
             .addName("Connection timeout")
@@ -154,7 +162,7 @@ public class PGCoverageStoreFactory extends DataStoreFactory {
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR =
             new ParameterBuilder().addName(NAME).addName("PGRasterParameters").createGroup(
                 IDENTIFIER,HOST,PORT,DATABASE,SCHEMA,USER,PASSWORD,
-                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,MAXWAIT);
+                DATASOURCE,MAXCONN,MINCONN,VALIDATECONN,FETCHSIZE,FETCHTHREADS,MAXWAIT);
 
     /**
      * {@inheritDoc }
@@ -195,6 +203,10 @@ public class PGCoverageStoreFactory extends DataStoreFactory {
         if (fetchSize != null && fetchSize > 0) {
             store.setFetchSize(fetchSize);
         }
+        final Integer fetchThreads = (Integer) params.parameter(FETCHTHREADS.getName().toString()).getValue();
+        if (fetchThreads != null && fetchThreads > 0) {
+            store.setFetchThreads(fetchThreads);
+        }
 
         //database schema
         final String schema = (String) params.parameter(SCHEMA.getName().toString()).getValue();
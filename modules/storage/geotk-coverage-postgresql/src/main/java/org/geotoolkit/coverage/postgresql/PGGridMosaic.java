@@ -19,10 +19,26 @@ package org.geotoolkit.coverage.postgresql;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import org.geotoolkit.storage.coverage.AbstractGridMosaic;
 import org.geotoolkit.storage.coverage.Pyramid;
 import org.geotoolkit.storage.coverage.TileReference;
@@ -35,6 +51,37 @@ import org.opengis.geometry.DirectPosition;
  */
 public class PGGridMosaic extends AbstractGridMosaic{
 
+    /**
+     * Number of tiles read with each iteration of the cursor, tiles are large
+     * records, the store fetch size is reduced to this value.
+     */
+    private static final int TILE_FETCH_SIZE = 64;
+
+    /**
+     * Requests are split between several connections only if each connection reads
+     * at least this number of tiles.
+     */
+    private static final int MIN_PARALLEL_TILES = 16;
+
+    /**
+     * Pool running parallel tile queries, shared by all mosaics.
+     */
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors() * 2;
+        EXECUTOR = new ThreadPoolExecutor(nbThread, nbThread, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "PostgreSQL tile reader " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     private final PGCoverageResource ref;
     private final long id;
 
@@ -88,4 +135,152 @@ public class PGGridMosaic extends AbstractGridMosaic{
         return tile;
     }
 
+    /**
+     * Fetch all tiles in one query returning the WKB rasters, the result is read
+     * with a cursor. If the store allows several fetch threads, the rows of tiles
+     * are split in bands, each band is read with its own connection.
+     * Missing tiles are not in the queue.
+     */
+    @Override
+    public BlockingQueue<Object> getTiles(Collection<? extends Point> positions, Map hints) throws DataStoreException {
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(positions.size()+1);
+        final int nbPart = Math.min(ref.getStore().getFetchThreads(), positions.size() / MIN_PARALLEL_TILES);
+
+        if (nbPart <= 1) {
+            try {
+                fetchTiles(positions, queue, new HashSet<Point>());
+            } catch (SQLException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            }
+            queue.offer(END_OF_QUEUE);
+            return queue;
+        }
+
+        final List<List<Point>> parts = splitRows(positions, nbPart);
+        final AtomicInteger remaining = new AtomicInteger(parts.size());
+        for (final List<Point> part : parts) {
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Set<Point> done = new HashSet<>();
+                    try {
+                        fetchTiles(part, queue, done);
+                    } catch (SQLException ex) {
+                        ref.getStore().getLogger().log(Level.WARNING, ex.getMessage(), ex);
+                        //tiles not fetched yet will be downloaded one by one
+                        for (Point p : part) {
+                            if (!done.contains(p)) {
+                                queue.offer(new PGTileReference(PGGridMosaic.this, new Point(p)));
+                            }
+                        }
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            queue.offer(END_OF_QUEUE);
+                        }
+                    }
+                }
+            });
+        }
+        return queue;
+    }
+
+    /**
+     * Read the tiles at the given positions and put them in the queue.
+     * Positions are given as two arrays joined to the tile table.
+     *
+     * @param positions requested tiles, not empty
+     * @param queue queue receiving the tile references
+     * @param done filled with the positions of the tiles put in the queue
+     */
+    private void fetchTiles(Collection<? extends Point> positions, BlockingQueue<Object> queue, Set<Point> done) throws SQLException {
+        if (positions.isEmpty()) return;
+
+        final Integer[] xs = new Integer[positions.size()];
+        final Integer[] ys = new Integer[xs.length];
+        int i = 0;
+        for (Point p : positions) {
+            xs[i] = p.x;
+            ys[i++] = p.y;
+        }
+
+        final PGCoverageStore store = ref.getStore();
+        final StringBuilder query = new StringBuilder();
+        query.append("SELECT t.\"positionX\",t.\"positionY\",st_asbinary(t.\"raster\") FROM ");
+        query.append(store.encodeTableName("Tile")).append(" t");
+        query.append(" JOIN unnest(?,?) AS p(x,y) ON t.\"positionX\"=p.x AND t.\"positionY\"=p.y");
+        query.append(" WHERE t.\"mosaicId\"=?");
+
+        Connection cnx = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        boolean restoreAutoCommit = false;
+        boolean transaction = false;
+        boolean committed = false;
+        try {
+            cnx = store.getDataSource().getConnection();
+            //the driver uses a cursor only outside of auto commit mode
+            if (cnx.getAutoCommit()) {
+                cnx.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            transaction = true;
+            stmt = cnx.prepareStatement(query.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            final int fetchSize = store.getFetchSize();
+            stmt.setFetchSize(fetchSize > 0 ? Math.min(fetchSize, TILE_FETCH_SIZE) : TILE_FETCH_SIZE);
+            stmt.setArray(1, cnx.createArrayOf("int4", xs));
+            stmt.setArray(2, cnx.createArrayOf("int4", ys));
+            stmt.setLong(3, getDatabaseId());
+
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                final Point position = new Point(rs.getInt(1), rs.getInt(2));
+                if (done.add(position)) {
+                    queue.offer(new PGTileReference(this, position, rs.getBytes(3)));
+                }
+            }
+            cnx.commit();
+            committed = true;
+        } finally {
+            if (cnx != null) {
+                try {
+                    if (transaction && !committed) cnx.rollback();
+                    if (restoreAutoCommit) cnx.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    store.getLogger().log(Level.FINE, ex.getMessage(), ex);
+                }
+            }
+            store.closeSafe(cnx, stmt, rs);
+        }
+    }
+
+    /**
+     * Split positions in bands of rows holding about the same number of tiles.
+     */
+    static List<List<Point>> splitRows(Collection<? extends Point> positions, int nbPart) {
+        final SortedMap<Integer,List<Point>> rows = new TreeMap<>();
+        for (Point p : positions) {
+            List<Point> row = rows.get(p.y);
+            if (row == null) {
+                row = new ArrayList<>();
+                rows.put(p.y, row);
+            }
+            row.add(p);
+        }
+
+        final int partSize = (positions.size() + nbPart - 1) / nbPart;
+        final List<List<Point>> parts = new ArrayList<>(nbPart);
+        List<Point> part = new ArrayList<>();
+        for (List<Point> row : rows.values()) {
+            part.addAll(row);
+            if (part.size() >= partSize) {
+                parts.add(part);
+                part = new ArrayList<>();
+            }
+        }
+        if (!part.isEmpty()) {
+            parts.add(part);
+        }
+        return parts;
+    }
+
 }
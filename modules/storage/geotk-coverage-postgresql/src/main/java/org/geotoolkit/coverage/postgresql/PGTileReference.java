@@ -26,7 +26,6 @@ import java.sql.Statement;
 import java.util.logging.Level;
 import javax.imageio.ImageReader;
 import javax.imageio.spi.ImageReaderSpi;
-import net.iharder.Base64;
 import org.geotoolkit.storage.coverage.TileReference;
 import org.geotoolkit.coverage.wkb.WKBRasterImageReader;
 
@@ -47,6 +46,18 @@ public class PGTileReference implements TileReference{
         this.position = position;
     }
 
+    /**
+     * Tile reference with already fetched bytes, the tile is downloaded again
+     * only if the bytes have been garbage collected.
+     *
+     * @param data tile WKB raster bytes
+     */
+    PGTileReference(final PGGridMosaic mosaic, final Point position, final byte[] data) {
+        this.mosaic = mosaic;
+        this.position = position;
+        this.data = new SoftReference<>(data);
+    }
+
     @Override
     public ImageReader getImageReader() throws IOException {
         final ImageReader reader = SPI.createReaderInstance();
@@ -92,7 +103,7 @@ public class PGTileReference implements TileReference{
             final long mosaicId = mosaic.getDatabaseId();
 
             final StringBuilder query = new StringBuilder();
-            query.append("SELECT encode(st_asbinary(\"raster\"),'base64') FROM ");
+            query.append("SELECT st_asbinary(\"raster\") FROM ");
             query.append(store.encodeTableName("Tile"));
             query.append(" WHERE \"mosaicId\"=").append(mosaicId);
             query.append(" AND \"positionX\"=").append(position.x);
@@ -101,13 +112,7 @@ public class PGTileReference implements TileReference{
             rs = stmt.executeQuery(query.toString());
 
             if(rs.next()){
-                byte[] data = rs.getBytes(1);
-                try {
-                    data = Base64.decode(data);
-                } catch (IOException ex) {
-                    throw new SQLException("Failed to uncompressed base64 : "+ex.getMessage(),ex);
-                }
-                return data;
+                return rs.getBytes(1);
             }
 
             throw new SQLException("No tile found for mosaic "+mosaicId +" and position "+position.x+"/"+position.y);
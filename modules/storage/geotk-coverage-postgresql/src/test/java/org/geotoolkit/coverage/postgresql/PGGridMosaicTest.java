@@ -0,0 +1,263 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.postgresql;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.apache.sis.geometry.GeneralDirectPosition;
+import org.apache.sis.storage.DataStoreException;
+import org.geotoolkit.storage.coverage.GridMosaic;
+import org.geotoolkit.util.NamesExt;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test tile fetching of {@link PGGridMosaic} against a data source standing for PostgreSQL,
+ * which answers the tile query from an in-memory table.
+ *
+ * @module
+ */
+public class PGGridMosaicTest extends org.geotoolkit.test.TestBase {
+
+    /**
+     * In-memory tile table and JDBC objects reading it.
+     */
+    private static final class TileTable {
+        final Map<Point,byte[]> tiles = new HashMap<>();
+        final Set<Point> requested = Collections.synchronizedSet(new HashSet<Point>());
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger rollbacks = new AtomicInteger();
+        final AtomicInteger autoCommitRestored = new AtomicInteger();
+        volatile boolean failQuery;
+
+        DataSource dataSource() {
+            return proxy(DataSource.class, (proxy, method, args) -> {
+                if (method.getName().equals("getConnection")) return connection();
+                throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private Connection connection() {
+            final boolean[] autoCommit = {true};
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAutoCommit" : return autoCommit[0];
+                    case "setAutoCommit" : {
+                        autoCommit[0] = (Boolean) args[0];
+                        if (autoCommit[0]) autoCommitRestored.incrementAndGet();
+                        return null;
+                    }
+                    case "createArrayOf" : {
+                        final Object[] elements = (Object[]) args[1];
+                        return proxy(Array.class, (p, m, a) -> {
+                            if (m.getName().equals("getArray")) return elements;
+                            throw new UnsupportedOperationException(m.getName());
+                        });
+                    }
+                    case "prepareStatement" : return statement();
+                    case "commit"   : commits.incrementAndGet(); return null;
+                    case "rollback" : rollbacks.incrementAndGet(); return null;
+                    case "close"    : return null;
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private PreparedStatement statement() {
+            final Object[][] arrays = new Object[2][];
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setArray" : arrays[(Integer) args[0] - 1] = (Object[]) ((Array) args[1]).getArray(); return null;
+                    case "setFetchSize" :
+                    case "setLong"  :
+                    case "close"    : return null;
+                    case "executeQuery" : {
+                        final List<Point> rows = new ArrayList<>();
+                        for (int i = 0; i < arrays[0].length; i++) {
+                            final Point p = new Point((Integer) arrays[0][i], (Integer) arrays[1][i]);
+                            requested.add(p);
+                            if (tiles.containsKey(p)) rows.add(p);
+                        }
+                        if (failQuery) throw new SQLException("Connection lost");
+                        return resultSet(rows);
+                    }
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private ResultSet resultSet(final List<Point> rows) {
+            final int[] cursor = {-1};
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next"     : return ++cursor[0] < rows.size();
+                    case "getInt"   : return ((Integer) args[0] == 1) ? rows.get(cursor[0]).x : rows.get(cursor[0]).y;
+                    case "getBytes" : return tiles.get(rows.get(cursor[0]));
+                    case "close"    : return null;
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(TileTable.class.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+    }
+
+    private static PGGridMosaic createMosaic(final TileTable table, final int fetchThreads) {
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                table.tiles.put(new Point(x, y), new byte[]{(byte) x, (byte) y});
+            }
+        }
+        final PGCoverageStore store = new PGCoverageStore(PGCoverageStoreFactory.PARAMETERS_DESCRIPTOR.createValue(), table.dataSource());
+        store.setFetchThreads(fetchThreads);
+        final PGCoverageResource ref = new PGCoverageResource(store, NamesExt.create("test"), null);
+        return new PGGridMosaic(ref, 1, null, new GeneralDirectPosition(2), new Dimension(10, 10), new Dimension(256, 256), 1);
+    }
+
+    /**
+     * Read the queue until its end, return the tiles by position.
+     */
+    private static Map<Point,PGTileReference> drain(final BlockingQueue<Object> queue) throws InterruptedException {
+        final Map<Point,PGTileReference> tiles = new HashMap<>();
+        while (true) {
+            final Object obj = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull("End of queue not reached.", obj);
+            if (obj == GridMosaic.END_OF_QUEUE) return tiles;
+            final PGTileReference tile = (PGTileReference) obj;
+            assertNull("Tile given twice.", tiles.put(tile.getPosition(), tile));
+        }
+    }
+
+    /**
+     * Rows are not split between parts, parts hold all positions in row order.
+     */
+    @Test
+    public void splitRowsTest() {
+        final List<Point> positions = new ArrayList<>();
+        for (int x = 0; x < 7; x++) {
+            for (int y = 9; y >= 0; y--) {
+                positions.add(new Point(x, y));
+            }
+        }
+        final List<List<Point>> parts = PGGridMosaic.splitRows(positions, 3);
+        assertEquals(3, parts.size());
+
+        final Set<Point> all = new HashSet<>();
+        int lastRow = -1;
+        for (List<Point> part : parts) {
+            for (Point p : part) {
+                assertTrue("rows in order, not split", p.y >= lastRow);
+                lastRow = p.y;
+                assertTrue(all.add(p));
+            }
+        }
+        assertEquals(new HashSet<>(positions), all);
+
+        assertEquals(Arrays.asList(Arrays.asList(new Point(3, 4))),
+                     PGGridMosaic.splitRows(Arrays.asList(new Point(3, 4)), 4));
+    }
+
+    /**
+     * Only the requested positions are asked to the database, missing tiles are not in the queue.
+     */
+    @Test
+    public void exactPositionsTest() throws Exception {
+        final TileTable table = new TileTable();
+        final PGGridMosaic mosaic = createMosaic(table, 1);
+        final Set<Point> positions = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            positions.add(new Point(i, i));
+        }
+        positions.add(new Point(20, 20));
+
+        final Map<Point,PGTileReference> tiles = drain(mosaic.getTiles(positions, null));
+        assertEquals(positions, table.requested);
+        assertEquals(10, tiles.size());
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(new byte[]{(byte) i, (byte) i}, (byte[]) tiles.get(new Point(i, i)).getInput());
+        }
+        assertEquals(1, table.commits.get());
+        assertEquals(0, table.rollbacks.get());
+        assertEquals(1, table.autoCommitRestored.get());
+    }
+
+    /**
+     * A failed query in a parallel part gives tile references downloaded one by one,
+     * the transaction is rolled back and auto commit restored.
+     */
+    @Test
+    public void fallbackTest() throws Exception {
+        final TileTable table = new TileTable();
+        final PGGridMosaic mosaic = createMosaic(table, 2);
+        table.failQuery = true;
+        final Set<Point> positions = new HashSet<>();
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 10; x++) {
+                positions.add(new Point(x, y));
+            }
+        }
+
+        final Map<Point,PGTileReference> tiles = drain(mosaic.getTiles(positions, null));
+        assertEquals(positions, tiles.keySet());
+        assertEquals(positions, table.requested);
+        assertEquals(0, table.commits.get());
+        assertEquals(2, table.rollbacks.get());
+        assertEquals(2, table.autoCommitRestored.get());
+    }
+
+    /**
+     * A failed query in a single part is reported, the transaction is rolled back.
+     */
+    @Test
+    public void singleQueryFailureTest() {
+        final TileTable table = new TileTable();
+        final PGGridMosaic mosaic = createMosaic(table, 1);
+        table.failQuery = true;
+        final Collection<Point> positions = Arrays.asList(new Point(1, 1), new Point(2, 2));
+        try {
+            mosaic.getTiles(positions, null);
+            fail("Query failure not reported.");
+        } catch (DataStoreException ex) {
+            assertTrue(ex.getCause() instanceof SQLException);
+        }
+        assertEquals(1, table.rollbacks.get());
+        assertEquals(1, table.autoCommitRestored.get());
+    }
+}
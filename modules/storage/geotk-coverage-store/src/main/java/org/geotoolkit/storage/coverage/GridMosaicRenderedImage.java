@@ -22,17 +22,41 @@ import javax.imageio.ImageReader;
 import java.awt.*;
 import java.awt.image.*;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.sis.storage.DataStoreException;
 import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.collection.Cache;
 import org.geotoolkit.math.XMath;
+import org.geotoolkit.util.Cancellable;
 
 /**
  * Implementation of RenderedImage using GridMosaic.
  * With this a GridMosaic can be see as a RenderedImage.
+ * <p>
+ * Tiles are kept in a cache shared by all images of the same mosaic.
+ * {@link #getTiles(java.awt.Rectangle) } and the {@code getData} methods read
+ * all tiles of a region concurrently, with at most twice the number of processors
+ * tiles read at the same time by all images.
+ * When prefetch is enabled, tiles around the requested ones are read in background.
+ * </p>
  *
  * @author Thomas Rouby (Geomatys)
  * @author Quentin Boileau (Geomatys)
@@ -44,9 +68,50 @@ public class GridMosaicRenderedImage implements RenderedImage {
     private static final Logger LOGGER = Logging.getLogger("org.geotoolkit.storage.coverage");
 
     /**
-     * A tile cache
+     * Pool reading the tiles, shared by all images.
      */
-    private final Cache<Point,Raster> tileCache = new Cache<>(10, 12, true);
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        final int nbThread = Runtime.getRuntime().availableProcessors() * 2;
+        EXECUTOR = new ThreadPoolExecutor(nbThread, nbThread, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "Mosaic tile reader " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Prefetch is skipped when more tiles than this are waiting to be read.
+     */
+    private static final int MAX_PENDING_PREFETCH = 64;
+
+    /**
+     * Tile caches by mosaic, tiles are stored with their position in the mosaic grid.
+     */
+    private static final Map<GridMosaic,Cache<Point,Raster>> CACHES = new WeakHashMap<>();
+
+    /**
+     * Memory size of the tile cache of each mosaic in kilobytes.
+     */
+    private static volatile long cacheSize = 64 * 1024;
+
+    /**
+     * The tile cache, shared with other images of the same mosaic.
+     */
+    private final Cache<Point,Raster> tileCache;
+
+    /**
+     * Tiles scheduled for prefetch, in mosaic grid coordinates.
+     */
+    private final Set<Point> prefetching = Collections.newSetFromMap(new ConcurrentHashMap<Point,Boolean>());
+
+    private volatile boolean prefetch = false;
 
     /**
      * The original mosaic to read
@@ -91,6 +156,7 @@ public class GridMosaicRenderedImage implements RenderedImage {
         }
         this.mosaic = mosaic;
         this.gridRange = gridRange;
+        this.tileCache = getCache(mosaic);
 
         RenderedImage firstTile = getFirstTile();
         if (firstTile != null) {
@@ -128,6 +194,65 @@ public class GridMosaicRenderedImage implements RenderedImage {
         return firstTile;
     }
 
+    /**
+     * Returns the tile cache of the given mosaic, creating it if needed.
+     */
+    private static Cache<Point,Raster> getCache(final GridMosaic mosaic) {
+        synchronized (CACHES) {
+            Cache<Point,Raster> cache = CACHES.get(mosaic);
+            if (cache == null) {
+                cache = new Cache<Point,Raster>(16, cacheSize, true) {
+                    @Override
+                    protected int cost(final Raster value) {
+                        final DataBuffer buffer = value.getDataBuffer();
+                        final long bytes = (long) buffer.getSize() * buffer.getNumBanks()
+                                * DataBuffer.getDataTypeSize(buffer.getDataType()) / Byte.SIZE;
+                        return (int) Math.max(1, bytes / 1024);
+                    }
+                };
+                CACHES.put(mosaic, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Set the memory size of the tile cache of each mosaic.
+     * Tiles above this size are kept by soft references.
+     * Only the caches of mosaics not used yet are affected.
+     *
+     * @param size cache size in bytes
+     */
+    public static void setTileCacheSize(final long size) {
+        ArgumentChecks.ensurePositive("size", size);
+        cacheSize = size / 1024;
+    }
+
+    /**
+     * @return memory size of the tile cache of each mosaic in bytes
+     */
+    public static long getTileCacheSize() {
+        return cacheSize * 1024;
+    }
+
+    /**
+     * Enable the reading in background of the tiles around the requested ones,
+     * to have them ready when the image is panned.
+     * Disabled by default.
+     *
+     * @param prefetch true to read neighbour tiles
+     */
+    public void setPrefetch(final boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * @return true if neighbour tiles are read in background
+     */
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
     /**
      * Return intern GridMosaic
      * @return GridMosaic
@@ -302,107 +427,218 @@ public class GridMosaicRenderedImage implements RenderedImage {
     public Raster getTile(int tileX, int tileY) {
         tileX += gridRange.x;
         tileY += gridRange.y;
+        final Raster raster = loadTile(tileX, tileY, null);
+        if (prefetch) {
+            prefetch(new Rectangle(tileX, tileY, 1, 1));
+        }
+        return raster;
+    }
 
-        Raster raster;
-        try {
-            raster = this.tileCache.get(new Point(tileX, tileY));
-        } catch (IllegalArgumentException ex) {
-            raster = null;
+    /**
+     * Read concurrently all tiles intersecting the given region.
+     * Tiles are requested in a single call to {@link GridMosaic#getTiles(java.util.Collection, java.util.Map) }.
+     *
+     * @param region area in image pixel coordinates
+     * @return tiles by tile indices in this image, tiles which could not be read are absent
+     */
+    public Map<Point,Raster> getTiles(final Rectangle region) {
+        final Point upperLeft = getPositionOf(region.x, region.y);
+        final Point lowerRight = getPositionOf(region.x + region.width - 1, region.y + region.height - 1);
+        final int minX = Math.max(upperLeft.x, 0);
+        final int minY = Math.max(upperLeft.y, 0);
+        final Rectangle tileRegion = new Rectangle(minX, minY,
+                Math.max(0, Math.min(lowerRight.x + 1, getNumXTiles()) - minX),
+                Math.max(0, Math.min(lowerRight.y + 1, getNumYTiles()) - minY));
+
+        final Map<Point,Raster> tiles = new HashMap<>();
+        final List<Point> toRead = new ArrayList<>();
+        for (int y = tileRegion.y, maxY = y + tileRegion.height; y < maxY; y++) {
+            for (int x = tileRegion.x, maxX = x + tileRegion.width; x < maxX; x++) {
+                final Point position = new Point(x + gridRange.x, y + gridRange.y);
+                final Raster raster = tileCache.peek(position);
+                if (raster != null) {
+                    tiles.put(new Point(x, y), raster);
+                } else {
+                    toRead.add(position);
+                }
+            }
         }
 
-        if (raster == null) {
-            try {
-                DataBuffer buffer = null;
+        if (toRead.size() == 1) {
+            final Point position = toRead.get(0);
+            putTile(tiles, position, loadTile(position.x, position.y, null));
+        } else if (!toRead.isEmpty()) {
+            readTiles(toRead, tiles);
+        }
 
-                if (!mosaic.isMissing(tileX,tileY)) {
-                    final TileReference tile = mosaic.getTile(tileX,tileY, null);
-                    if (tile != null) {
-                        if (tile.getInput() instanceof RenderedImage) {
-                            buffer = ((RenderedImage)tile.getInput()).getData().getDataBuffer();
-                        } else {
-                            final ImageReader reader = tile.getImageReader();
-                            buffer = reader.read(0).getData().getDataBuffer();
-                            reader.dispose();
-                        }
+        if (prefetch && !tileRegion.isEmpty()) {
+            tileRegion.translate(gridRange.x, gridRange.y);
+            prefetch(tileRegion);
+        }
+        return tiles;
+    }
+
+    /**
+     * Read the given tiles concurrently.
+     *
+     * @param positions tiles in mosaic grid coordinates
+     * @param tiles where to store the tiles by tile indices in this image
+     */
+    private void readTiles(final List<Point> positions, final Map<Point,Raster> tiles) {
+        final Map<Point,Future<Raster>> futures = new HashMap<>();
+        final List<Point> available = new ArrayList<>();
+        BlockingQueue<Object> queue = null;
+        try {
+            for (Point position : positions) {
+                if (mosaic.isMissing(position.x, position.y)) {
+                    putTile(tiles, position, loadTile(position.x, position.y, null));
+                } else {
+                    available.add(position);
+                }
+            }
+            if (!available.isEmpty()) {
+                queue = mosaic.getTiles(available, new HashMap());
+                for (Object obj = queue.take(); obj != GridMosaic.END_OF_QUEUE; obj = queue.take()) {
+                    if (obj instanceof TileReference) {
+                        final TileReference tile = (TileReference) obj;
+                        final Point position = tile.getPosition();
+                        futures.put(position, EXECUTOR.submit(() -> loadTile(position.x, position.y, tile)));
                     }
                 }
+            }
+        } catch (InterruptedException ex) {
+            if (queue instanceof Cancellable) {
+                ((Cancellable) queue).cancel();
+            }
+            Thread.currentThread().interrupt();
+            return;
+        } catch (DataStoreException ex) {
+            LOGGER.log(Level.WARNING, ex.getMessage(), ex);
+        }
 
-                if(buffer==null){
-                    //create an empty buffer
-                    buffer = getSampleModel().createDataBuffer();
+        for (Point position : available) {
+            final Future<Raster> future = futures.get(position);
+            Raster raster = null;
+            if (future == null) {
+                //not returned by the mosaic
+                raster = loadTile(position.x, position.y, null);
+            } else {
+                try {
+                    raster = future.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException ex) {
+                    LOGGER.log(Level.WARNING, ex.getMessage(), ex);
                 }
-
-                //create a raster from tile image with tile position offset.
-                LOGGER.log(Level.FINE, "Request tile {0}:{1} ", new Object[]{tileX,tileY});
-                final int rX = tileX*this.getTileWidth();
-                final int rY = tileY*this.getTileHeight();
-
-                raster = Raster.createWritableRaster(getSampleModel(), buffer, new Point(rX, rY));
-
-                this.tileCache.put(new Point(tileX, tileY), raster);
-
-            } catch ( DataStoreException | IOException e) {
-                LOGGER.log(Level.WARNING, e.getMessage(), e);
             }
+            putTile(tiles, position, raster);
         }
-
-        return raster;
     }
 
-    private boolean isTileMissing(int x, int y) throws DataStoreException{
-        return mosaic.isMissing(x+gridRange.x, y+gridRange.y);
+    private void putTile(final Map<Point,Raster> tiles, final Point position, final Raster raster) {
+        if (raster != null) {
+            tiles.put(new Point(position.x - gridRange.x, position.y - gridRange.y), raster);
+        }
     }
 
-    private TileReference getTileReference(int x, int y) throws DataStoreException{
-        return mosaic.getTile(x+gridRange.x,y+gridRange.y,null);
+    /**
+     * Read in background the ring of tiles around the given region.
+     *
+     * @param region tiles in mosaic grid coordinates
+     */
+    private void prefetch(final Rectangle region) {
+        final Rectangle ring = new Rectangle(region.x - 1, region.y - 1, region.width + 2, region.height + 2);
+        final int maxX = ring.x + ring.width;
+        final int maxY = ring.y + ring.height;
+        for (int y = ring.y; y < maxY; y++) {
+            for (int x = ring.x; x < maxX; x++) {
+                if (region.contains(x, y) || !gridRange.contains(x, y)) continue;
+                if (EXECUTOR.getQueue().size() > MAX_PENDING_PREFETCH) return;
+                final Point position = new Point(x, y);
+                if (tileCache.peek(position) != null || !prefetching.add(position)) continue;
+                EXECUTOR.execute(() -> {
+                    try {
+                        loadTile(position.x, position.y, null);
+                    } finally {
+                        prefetching.remove(position);
+                    }
+                });
+            }
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Get a tile from the cache or read it.
+     * Concurrent requests of the same tile wait for a single read.
+     *
+     * @param tileX tile column in the mosaic grid
+     * @param tileY tile row in the mosaic grid
+     * @param tile tile reference if known, null to request it to the mosaic
+     * @return tile, null if it could not be read
      */
-    @Override
-    public Raster getData() {
-        final RenderedImage firstTile = getFirstTile();
-        Raster rasterOut = null;
-        if (firstTile != null) {
-            rasterOut = firstTile.getTile(0, 0).createCompatibleWritableRaster(getWidth(), getHeight());
-
-            // Clear dataBuffer to 0 value for all bank
-            for (int s = 0; s < rasterOut.getDataBuffer().getSize(); s++) {
-                for (int b = 0; b < rasterOut.getDataBuffer().getNumBanks(); b++) {
-                    rasterOut.getDataBuffer().setElem(b, s, 0);
-                }
+    private Raster loadTile(final int tileX, final int tileY, final TileReference tile) {
+        final Point position = new Point(tileX, tileY);
+        Raster raster = tileCache.peek(position);
+        if (raster != null) {
+            return raster;
+        }
+        final Cache.Handler<Raster> handler = tileCache.lock(position);
+        try {
+            raster = handler.peek();
+            if (raster == null) {
+                raster = readTile(tileX, tileY, tile);
             }
+        } finally {
+            handler.putAndUnlock(raster);
+        }
+        return raster;
+    }
 
-            try {
-
-                for (int y = 0; y < this.getNumYTiles(); y++) {
-                    for (int x = 0; x < this.getNumYTiles(); x++) {
-                        if (!isTileMissing(x, y)) {
-                            final TileReference tile = getTileReference(x, y);
-                            final RenderedImage sourceImg;
-
-                            if (tile.getInput() instanceof RenderedImage) {
-                                sourceImg = (RenderedImage) tile.getInput();
-                            } else {
-                                sourceImg = tile.getImageReader().read(tile.getImageIndex());
-                            }
-
-                            final Raster rasterIn = sourceImg.getData();
-
-                            rasterOut.getSampleModel().setDataElements(x * this.getTileWidth(), y * this.getTileHeight(), this.getTileWidth(), this.getTileHeight(),
-                                    rasterIn.getSampleModel().getDataElements(0, 0, this.getTileWidth(), this.getTileHeight(), null, rasterIn.getDataBuffer()),
-                                    rasterOut.getDataBuffer());
+    private Raster readTile(final int tileX, final int tileY, TileReference tile) {
+        try {
+            DataBuffer buffer = null;
 
-                        }
+            if (tile == null && !mosaic.isMissing(tileX,tileY)) {
+                tile = mosaic.getTile(tileX,tileY, null);
+            }
+            if (tile != null) {
+                if (tile.getInput() instanceof RenderedImage) {
+                    buffer = ((RenderedImage)tile.getInput()).getData().getDataBuffer();
+                } else {
+                    final ImageReader reader = tile.getImageReader();
+                    try {
+                        buffer = reader.read(tile.getImageIndex()).getData().getDataBuffer();
+                    } finally {
+                        reader.dispose();
                     }
                 }
+            }
 
-            } catch (Exception ex) {
-                LOGGER.log(Level.WARNING, "", ex);
+            if(buffer==null){
+                //create an empty buffer
+                buffer = getSampleModel().createDataBuffer();
             }
+
+            //create a raster from tile image with tile position offset.
+            LOGGER.log(Level.FINE, "Request tile {0}:{1} ", new Object[]{tileX,tileY});
+            final int rX = tileX*this.getTileWidth();
+            final int rY = tileY*this.getTileHeight();
+
+            return Raster.createWritableRaster(getSampleModel(), buffer, new Point(rX, rY));
+
+        } catch ( DataStoreException | IOException e) {
+            LOGGER.log(Level.WARNING, e.getMessage(), e);
+            return null;
         }
-        return rasterOut;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, getWidth(), getHeight()));
     }
 
     /**
@@ -423,45 +659,31 @@ public class GridMosaicRenderedImage implements RenderedImage {
             }
 
             try {
-                final Point upperLeftPosition = this.getPositionOf(rect.x, rect.y);
-                final Point lowerRightPosition = this.getPositionOf(rect.x + rect.width - 1, rect.y + rect.height - 1);
-
-                for (int y = Math.max(upperLeftPosition.y, 0); y < Math.min(lowerRightPosition.y + 1, this.getNumYTiles()); y++) {
-                    for (int x = Math.max(upperLeftPosition.x, 0); x < Math.min(lowerRightPosition.x + 1, this.getNumXTiles()); x++) {
-                        if (!isTileMissing(x, y)) {
-                            final TileReference tile = getTileReference(x, y);
-                            final Rectangle tileRect = new Rectangle(x * this.getTileWidth(), y * this.getTileHeight(), this.getTileWidth(), this.getTileHeight());
-
-                            final int minX, maxX, minY, maxY;
-                            minX = XMath.clamp(rect.x, tileRect.x, tileRect.x + tileRect.width);
-                            maxX = XMath.clamp(rect.x + rect.width, tileRect.x, tileRect.x + tileRect.width);
-                            minY = XMath.clamp(rect.y, tileRect.y, tileRect.y + tileRect.height);
-                            maxY = XMath.clamp(rect.y + rect.height, tileRect.y, tileRect.y + tileRect.height);
-
-                            final Rectangle rectIn = new Rectangle(minX, minY, maxX - minX, maxY - minY);
-                            rectIn.translate(-tileRect.x, -tileRect.y);
-                            final Rectangle rectOut = new Rectangle(minX, minY, maxX - minX, maxY - minY);
-                            rectOut.translate(-rect.x, -rect.y);
-
-                            if (rectIn.width <= 0 || rectIn.height <= 0 || rectOut.width <= 0 || rectOut.height <= 0) {
-                                continue;
-                            }
-
-                            final RenderedImage sourceImg;
-                            if (tile.getInput() instanceof RenderedImage) {
-                                sourceImg = (RenderedImage) tile.getInput();
-                            } else {
-                                sourceImg = tile.getImageReader().read(tile.getImageIndex());
-                            }
-
-                            final Raster rasterIn = sourceImg.getData();
-
-                            rasterOut.getSampleModel().setDataElements(rectOut.x, rectOut.y, rectOut.width, rectOut.height,
-                                    rasterIn.getSampleModel().getDataElements(rectIn.x, rectIn.y, rectIn.width, rectIn.height, null, rasterIn.getDataBuffer()),
-                                    rasterOut.getDataBuffer());
-
-                        }
+                for (Map.Entry<Point,Raster> entry : getTiles(rect).entrySet()) {
+                    final int x = entry.getKey().x;
+                    final int y = entry.getKey().y;
+                    final Rectangle tileRect = new Rectangle(x * this.getTileWidth(), y * this.getTileHeight(), this.getTileWidth(), this.getTileHeight());
+
+                    final int minX, maxX, minY, maxY;
+                    minX = XMath.clamp(rect.x, tileRect.x, tileRect.x + tileRect.width);
+                    maxX = XMath.clamp(rect.x + rect.width, tileRect.x, tileRect.x + tileRect.width);
+                    minY = XMath.clamp(rect.y, tileRect.y, tileRect.y + tileRect.height);
+                    maxY = XMath.clamp(rect.y + rect.height, tileRect.y, tileRect.y + tileRect.height);
+
+                    final Rectangle rectIn = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+                    rectIn.translate(-tileRect.x, -tileRect.y);
+                    final Rectangle rectOut = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+                    rectOut.translate(-rect.x, -rect.y);
+
+                    if (rectIn.width <= 0 || rectIn.height <= 0 || rectOut.width <= 0 || rectOut.height <= 0) {
+                        continue;
                     }
+
+                    final Raster rasterIn = entry.getValue();
+
+                    rasterOut.getSampleModel().setDataElements(rectOut.x, rectOut.y, rectOut.width, rectOut.height,
+                            rasterIn.getSampleModel().getDataElements(rectIn.x, rectIn.y, rectIn.width, rectIn.height, null, rasterIn.getDataBuffer()),
+                            rasterOut.getDataBuffer());
                 }
 
             } catch (Exception ex) {
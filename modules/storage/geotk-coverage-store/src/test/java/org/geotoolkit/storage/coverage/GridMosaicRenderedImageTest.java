@@ -0,0 +1,114 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.storage.coverage;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import org.apache.sis.geometry.GeneralDirectPosition;
+import org.geotoolkit.coverage.memory.MPGridMosaic;
+import org.geotoolkit.coverage.memory.MPTileReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test concurrent tile reading of {@link GridMosaicRenderedImage}.
+ *
+ * @module
+ */
+public class GridMosaicRenderedImageTest extends org.geotoolkit.test.TestBase {
+
+    private static final int TILE_SIZE = 16;
+
+    /**
+     * 3x3 mosaic, each tile filled with its index + 1, center tile missing.
+     */
+    private static MPGridMosaic createMosaic() {
+        final MPGridMosaic mosaic = new MPGridMosaic(0, null, new GeneralDirectPosition(0, 0),
+                new Dimension(3, 3), new Dimension(TILE_SIZE, TILE_SIZE), 1);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                if (x == 1 && y == 1) continue;
+                final BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+                final WritableRaster raster = img.getRaster();
+                for (int j = 0; j < TILE_SIZE; j++) {
+                    for (int i = 0; i < TILE_SIZE; i++) {
+                        raster.setSample(i, j, 0, y * 3 + x + 1);
+                    }
+                }
+                mosaic.setTile(x, y, new MPTileReference(img, 0, new Point(x, y)));
+            }
+        }
+        return mosaic;
+    }
+
+    @Test
+    public void getTilesTest() {
+        final MPGridMosaic mosaic = createMosaic();
+        final GridMosaicRenderedImage image = new GridMosaicRenderedImage(mosaic);
+
+        final Map<Point,Raster> tiles = image.getTiles(new Rectangle(0, 0, 48, 48));
+        assertEquals(9, tiles.size());
+        for (Map.Entry<Point,Raster> entry : tiles.entrySet()) {
+            final Point p = entry.getKey();
+            final int expected = (p.x == 1 && p.y == 1) ? 0 : p.y * 3 + p.x + 1;
+            final Raster raster = entry.getValue();
+            assertEquals(expected, raster.getSampleModel().getSample(5, 5, 0, raster.getDataBuffer()));
+        }
+
+        //region partly outside the image
+        assertEquals(1, image.getTiles(new Rectangle(-10, -10, 12, 12)).size());
+        assertTrue(image.getTiles(new Rectangle(100, 100, 10, 10)).isEmpty());
+
+        //cache is shared by images of the same mosaic
+        final GridMosaicRenderedImage other = new GridMosaicRenderedImage(mosaic);
+        assertSame(tiles.get(new Point(2, 1)), other.getTile(2, 1));
+    }
+
+    @Test
+    public void getDataTest() {
+        final GridMosaicRenderedImage image = new GridMosaicRenderedImage(createMosaic());
+        final Raster data = image.getData(new Rectangle(8, 8, 32, 32));
+        assertEquals(32, data.getWidth());
+        assertEquals(1, data.getSample(0, 0, 0));
+        assertEquals(2, data.getSample(8, 0, 0));
+        assertEquals(4, data.getSample(0, 8, 0));
+        assertEquals(0, data.getSample(8, 8, 0));
+        assertEquals(9, data.getSample(31, 31, 0));
+
+        final Raster all = image.getData();
+        assertEquals(48, all.getWidth());
+        assertEquals(3, all.getSample(47, 0, 0));
+        assertEquals(7, all.getSample(0, 47, 0));
+    }
+
+    @Test
+    public void prefetchTest() throws Exception {
+        final MPGridMosaic mosaic = createMosaic();
+        final GridMosaicRenderedImage image = new GridMosaicRenderedImage(mosaic, new Rectangle(0, 0, 3, 3));
+        image.setPrefetch(true);
+        assertNotNull(image.getTile(0, 0));
+        //neighbours are read in background, reading them again must give the same tiles
+        final Raster right = image.getTile(1, 0);
+        assertSame(right, new GridMosaicRenderedImage(mosaic).getTile(1, 0));
+    }
+
+}
@@ -68,6 +68,17 @@ public final class Bundle extends IndexedResourceBundle {
          * XML coverage
          */
         public static final short coverageXMLTitle = 6;
+
+        /**
+         * Packed tiles
+         */
+        public static final short coverageXMLPackedTiles = 7;
+
+        /**
+         * True if tiles of new mosaics are stored in a few large files, each one containing a block of tiles.
+         * Otherwise, each tile is stored in its own file.
+         */
+        public static final short coverageXMLPackedTilesRemarks = 8;
     }
 
     /**
@@ -0,0 +1,456 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Encoded tiles of a block of the mosaic grid, stored in a single file.
+ * <p>
+ * Tiles are appended at the end of the data file, a tile written again makes
+ * its previous record dead. The offset and length of each tile are kept in
+ * memory and saved in the index file by {@link #flush() }, when dead records
+ * take more space than live ones the data file is rewritten without them.
+ * </p>
+ * Data file layout :
+ * <ul>
+ *   <li>header : magic, version, block size, generation</li>
+ *   <li>records : tile index in the block, length, encoded tile</li>
+ * </ul>
+ * Index file layout :
+ * <ul>
+ *   <li>header : magic, version, block size, generation, indexed data length, dead bytes</li>
+ *   <li>offset and length of each tile, offset 0 if the tile is not stored</li>
+ * </ul>
+ * Records are self describing, records written after the last flush are found
+ * again by reading the end of the data file. An index of another generation
+ * than the data file is rebuilt from the records.
+ * <p>
+ * Tiles are read with positional reads, any number of threads can read while
+ * another one writes.
+ * </p>
+ * Packs obtained by {@link #open(Path, String, int) } are shared by all mosaics
+ * using the same file, the file is closed when the last of them calls {@link #release() }.
+ *
+ * @module
+ */
+final class TilePack {
+
+    /**
+     * Number of tiles on each side of a block.
+     */
+    static final int BLOCK_SIZE = 64;
+
+    static final String DATA_SUFFIX = ".tiles";
+    static final String INDEX_SUFFIX = ".index";
+
+    /** "GTTP" */
+    private static final int DATA_MAGIC = 0x47545450;
+    /** "GTTI" */
+    private static final int INDEX_MAGIC = 0x47545449;
+    private static final int VERSION = 1;
+    private static final int DATA_HEADER_SIZE = 16;
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 12;
+
+    /**
+     * Dead bytes are not reclaimed under this size.
+     */
+    private static final long MIN_COMPACT_SIZE = 1 << 20;
+
+    /**
+     * Opened packs by data file real path.
+     */
+    private static final Map<Path,TilePack> PACKS = new HashMap<>();
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private final int blockSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+    private int generation;
+    private final long[] offsets;
+    private final int[] lengths;
+    /** Data file size. */
+    private long end;
+    private long deadBytes;
+    private boolean dirty;
+
+    /**
+     * Key in {@link #PACKS} and number of users of this pack, guarded by {@link #PACKS}.
+     */
+    private Path key;
+    private int references;
+
+    /**
+     * Open or create a tile pack.
+     *
+     * @param folder mosaic folder
+     * @param name pack name, without suffix
+     * @param blockSize number of tiles on each side of the block
+     * @throws IOException if the pack can not be created or is not a pack of this block size
+     */
+    TilePack(final Path folder, final String name, final int blockSize) throws IOException {
+        this.dataFile = folder.resolve(name + DATA_SUFFIX);
+        this.indexFile = folder.resolve(name + INDEX_SUFFIX);
+        this.blockSize = blockSize;
+        this.offsets = new long[blockSize * blockSize];
+        this.lengths = new int[blockSize * blockSize];
+
+        channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < DATA_HEADER_SIZE) {
+                writeDataHeader(channel, 0);
+                end = DATA_HEADER_SIZE;
+                dirty = true;
+            } else {
+                final ByteBuffer header = readFully(channel, 0, DATA_HEADER_SIZE);
+                if (header.getInt(0) != DATA_MAGIC || header.getInt(4) != VERSION || header.getInt(8) != blockSize) {
+                    throw new IOException("Unsupported tile pack " + dataFile);
+                }
+                generation = header.getInt(12);
+                end = readIndex();
+                recover();
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the pack stored in the given files, shared with the other users of these files.
+     * Each call must be followed by a call to {@link #release() }.
+     *
+     * @param folder mosaic folder, must exist
+     * @param name pack name, without suffix
+     * @param blockSize number of tiles on each side of the block
+     * @throws IOException if the pack can not be created or is not a pack of this block size
+     */
+    static TilePack open(final Path folder, final String name, final int blockSize) throws IOException {
+        final Path file = folder.toRealPath().resolve(name + DATA_SUFFIX);
+        synchronized (PACKS) {
+            TilePack pack = PACKS.get(file);
+            if (pack == null) {
+                pack = new TilePack(folder, name, blockSize);
+                pack.key = file;
+                PACKS.put(file, pack);
+            } else if (pack.blockSize != blockSize) {
+                throw new IOException("Tile pack " + file + " is already opened with another block size");
+            }
+            pack.references++;
+            return pack;
+        }
+    }
+
+    /**
+     * Release a pack obtained by {@link #open(Path, String, int) }, the file is closed
+     * when no other user remains.
+     */
+    void release() throws IOException {
+        synchronized (PACKS) {
+            if (--references > 0) return;
+            PACKS.remove(key);
+            close();
+        }
+    }
+
+    private void writeDataHeader(final FileChannel channel, final int generation) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE);
+        header.putInt(DATA_MAGIC).putInt(VERSION).putInt(blockSize).putInt(generation).flip();
+        writeFully(channel, header, 0);
+    }
+
+    /**
+     * Load the index file if it matches the data file.
+     *
+     * @return length of the data file covered by the index, records after it are not indexed
+     */
+    private long readIndex() throws IOException {
+        if (!Files.isRegularFile(indexFile)) {
+            return DATA_HEADER_SIZE;
+        }
+        try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            final int size = INDEX_HEADER_SIZE + offsets.length * ENTRY_SIZE;
+            if (index.size() < size) {
+                return DATA_HEADER_SIZE;
+            }
+            final ByteBuffer buffer = readFully(index, 0, size);
+            if (buffer.getInt(0) != INDEX_MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != blockSize || buffer.getInt(12) != generation) {
+                return DATA_HEADER_SIZE;
+            }
+            final long indexed = buffer.getLong(16);
+            if (indexed > channel.size()) {
+                //data file truncated after the index was written
+                return DATA_HEADER_SIZE;
+            }
+            deadBytes = buffer.getLong(24);
+            buffer.position(INDEX_HEADER_SIZE);
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = buffer.getLong();
+                lengths[i] = buffer.getInt();
+            }
+            return indexed;
+        }
+    }
+
+    /**
+     * Index the records after the end of the indexed data.
+     * A partly written record at the end of the file is removed.
+     */
+    private void recover() throws IOException {
+        if (end == DATA_HEADER_SIZE) {
+            Arrays.fill(offsets, 0);
+            Arrays.fill(lengths, 0);
+            deadBytes = 0;
+        }
+        final long size = channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (end + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, end);
+            final int tile = header.getInt(0);
+            final int length = header.getInt(4);
+            if (tile < 0 || tile >= offsets.length || length < 0 || end + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            index(tile, end, length);
+            end += RECORD_HEADER_SIZE + length;
+            dirty = true;
+        }
+        if (end < size) {
+            channel.truncate(end);
+            dirty = true;
+        }
+    }
+
+    private void index(final int tile, final long offset, final int length) {
+        if (offsets[tile] != 0) {
+            deadBytes += RECORD_HEADER_SIZE + lengths[tile];
+        }
+        offsets[tile] = offset;
+        lengths[tile] = length;
+    }
+
+    private int tileIndex(final int col, final int row) {
+        return Math.floorMod(row, blockSize) * blockSize + Math.floorMod(col, blockSize);
+    }
+
+    /**
+     * @param col tile column in the mosaic
+     * @param row tile row in the mosaic
+     * @return true if the tile is stored in this pack
+     */
+    boolean contains(final int col, final int row) {
+        lock.readLock().lock();
+        try {
+            return offsets[tileIndex(col, row)] != 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read an encoded tile.
+     *
+     * @param col tile column in the mosaic
+     * @param row tile row in the mosaic
+     * @return encoded tile, null if the tile is not stored in this pack
+     */
+    byte[] read(final int col, final int row) throws IOException {
+        lock.readLock().lock();
+        try {
+            final int tile = tileIndex(col, row);
+            final long offset = offsets[tile];
+            if (offset == 0) {
+                return null;
+            }
+            final byte[] data = new byte[lengths[tile]];
+            readFully(channel, ByteBuffer.wrap(data), offset + RECORD_HEADER_SIZE);
+            return data;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append an encoded tile, replacing the previous one if any.
+     *
+     * @param col tile column in the mosaic
+     * @param row tile row in the mosaic
+     * @param data encoded tile
+     * @param length number of bytes of the encoded tile
+     */
+    void write(final int col, final int row, final byte[] data, final int length) throws IOException {
+        final int tile = tileIndex(col, row);
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(tile).putInt(length).put(data, 0, length).flip();
+        lock.writeLock().lock();
+        try {
+            writeFully(channel, record, end);
+            index(tile, end, length);
+            end += record.capacity();
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return size of the records of replaced tiles, in bytes
+     */
+    long getDeadBytes() {
+        lock.readLock().lock();
+        try {
+            return deadBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the index and the appended tiles to the storage device, the data
+     * file is compacted first if more than half of it is dead.
+     */
+    void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!dirty) return;
+            if (deadBytes >= MIN_COMPACT_SIZE && deadBytes * 2 > end) {
+                compact();
+            } else {
+                channel.force(false);
+                writeIndex(indexFile, end);
+            }
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the data file without dead records.
+     * The new data file has a new generation, if the process stops before the
+     * new index is written, the index is rebuilt from the records at next opening.
+     */
+    void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            final Path tmp = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+            final int newGeneration = generation + 1;
+            final long[] newOffsets = new long[offsets.length];
+            long position = DATA_HEADER_SIZE;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeDataHeader(out, newGeneration);
+                out.position(DATA_HEADER_SIZE);
+                //tiles in grid order, neighbour tiles are read together
+                for (int i = 0; i < offsets.length; i++) {
+                    if (offsets[i] == 0) continue;
+                    final int size = RECORD_HEADER_SIZE + lengths[i];
+                    long transferred = 0;
+                    while (transferred < size) {
+                        transferred += channel.transferTo(offsets[i] + transferred, size - transferred, out);
+                    }
+                    newOffsets[i] = position;
+                    position += size;
+                }
+                out.force(false);
+            }
+            channel.close();
+            try {
+                Files.move(tmp, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                //the previous data file is still valid if the move failed
+                channel = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            System.arraycopy(newOffsets, 0, offsets, 0, offsets.length);
+            generation = newGeneration;
+            end = position;
+            deadBytes = 0;
+            writeIndex(indexFile, end);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeIndex(final Path file, final long indexed) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + offsets.length * ENTRY_SIZE);
+        buffer.putInt(INDEX_MAGIC).putInt(VERSION).putInt(blockSize).putInt(generation)
+              .putLong(indexed).putLong(deadBytes);
+        for (int i = 0; i < offsets.length; i++) {
+            buffer.putLong(offsets[i]).putInt(lengths[i]);
+        }
+        buffer.flip();
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, buffer, 0);
+            out.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Flush and release the file.
+     */
+    void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!channel.isOpen()) return;
+            flush();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer, position);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, position);
+            if (n < 0) throw new EOFException("Unexpected end of tile pack");
+            position += n;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
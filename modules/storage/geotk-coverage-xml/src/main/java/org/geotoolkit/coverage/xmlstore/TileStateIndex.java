@@ -0,0 +1,308 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import org.apache.sis.util.collection.WeakValueHashMap;
+
+/**
+ * State of the tiles of a mosaic, stored in a memory mapped file in the mosaic folder.
+ * <p>
+ * The grid is divided in square chunks of tiles, a chunk is allocated in the
+ * file when its first tile is written, areas of the mosaic without tiles take
+ * no space. Each tile uses two bits : {@link #EXIST} and {@link #EMPTY}.
+ * </p>
+ * File layout :
+ * <ul>
+ *   <li>header : magic, version, grid width, grid height, chunk size, number of allocated chunks</li>
+ *   <li>directory : one int by chunk, 0 if the chunk is not allocated, slot + 1 otherwise</li>
+ *   <li>chunk slots, starting at the first page after the directory</li>
+ * </ul>
+ * A chunk is initialized before being referenced in the directory, a reader
+ * never sees a chunk with undefined content.
+ * Instances are shared by all mosaics using the same file and are thread safe.
+ * <p>
+ * Other processes may use the same file : the header is created and chunks are
+ * allocated while holding a lock on the header region of the file, and the number
+ * of allocated chunks is always read from the file. Chunks allocated by another
+ * process are mapped when first used. Tile states are shared through the
+ * mapping, {@link #flush() } writes them to the storage device. Tile states are
+ * updated without lock, processes should not write tiles of the same chunk at the same time.
+ * </p>
+ *
+ * @module
+ */
+final class TileStateIndex {
+
+    /**
+     * Name of the index file in the mosaic folder.
+     */
+    static final String FILE_NAME = "tiles.state";
+
+    /**
+     * Tile has been written, in a file or as an empty tile.
+     */
+    static final int EXIST = 1;
+    /**
+     * Tile is empty, there is no tile file.
+     */
+    static final int EMPTY = 2;
+
+    /** "GTSI" */
+    private static final int MAGIC = 0x47545349;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int NB_CHUNK_OFFSET = 20;
+    private static final int PAGE_SIZE = 4096;
+
+    /**
+     * Smallest chunk size in tiles, increased for large grids to keep the directory under
+     * {@link #MAX_DIRECTORY} entries.
+     */
+    private static final int MIN_CHUNK_SIZE = 256;
+    private static final int MAX_DIRECTORY = 1 << 24;
+
+    /**
+     * Chunks are mapped by groups of about this size.
+     */
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    private static final Map<Path,TileStateIndex> INDEXES = new WeakValueHashMap<>(TileStateIndex.class);
+
+    private final Path file;
+    private final int gridWidth;
+    private final int gridHeight;
+    private final int chunkSize;
+    private final int nbChunkX;
+    private final int chunkBytes;
+    private final int chunksPerSegment;
+    private final long dataOffset;
+
+    /** Header and directory. */
+    private final MappedByteBuffer directory;
+    /** Mapped chunk segments, null for segments not used yet by this instance. */
+    private MappedByteBuffer[] segments;
+
+    /**
+     * Open or create an index file, {@link #open(Path, int, int) } should be used instead
+     * to share instances.
+     */
+    TileStateIndex(final Path file, final int gridWidth, final int gridHeight) throws IOException {
+        this.file = file;
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+            final boolean exists = channel.size() >= HEADER_SIZE;
+            int size = MIN_CHUNK_SIZE;
+            if (exists) {
+                final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Unsupported tile state file " + file);
+                }
+                if (header.getInt(8) != gridWidth || header.getInt(12) != gridHeight) {
+                    throw new IOException("Tile state file " + file + " does not match mosaic grid size");
+                }
+                size = header.getInt(16);
+            } else {
+                while ((long) ceilDiv(gridWidth, size) * ceilDiv(gridHeight, size) > MAX_DIRECTORY) {
+                    size *= 2;
+                }
+            }
+            chunkSize = size;
+            nbChunkX = ceilDiv(gridWidth, chunkSize);
+            final int nbChunkY = ceilDiv(gridHeight, chunkSize);
+            chunkBytes = (int) (((long) chunkSize * chunkSize + 3) / 4);
+            chunksPerSegment = Math.max(1, SEGMENT_SIZE / chunkBytes);
+            final long directorySize = HEADER_SIZE + 4L * nbChunkX * nbChunkY;
+            dataOffset = ((directorySize + PAGE_SIZE - 1) / PAGE_SIZE) * PAGE_SIZE;
+
+            directory = channel.map(FileChannel.MapMode.READ_WRITE, 0, directorySize);
+            if (!exists) {
+                directory.putInt(8, gridWidth);
+                directory.putInt(12, gridHeight);
+                directory.putInt(16, chunkSize);
+                directory.putInt(NB_CHUNK_OFFSET, 0);
+                directory.putInt(4, VERSION);
+                //magic last, a partly written header is not recognized
+                directory.putInt(0, MAGIC);
+            }
+
+            final int nbSegment = ceilDiv(directory.getInt(NB_CHUNK_OFFSET), chunksPerSegment);
+            segments = new MappedByteBuffer[Math.max(nbSegment, 4)];
+            for (int i = 0; i < nbSegment; i++) {
+                segments[i] = mapSegment(channel, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the index stored in the given file, creating the file if it does not exist.
+     *
+     * @param file index file
+     * @param gridWidth mosaic grid width
+     * @param gridHeight mosaic grid height
+     * @throws IOException if the file can not be created or is not an index of this grid
+     */
+    static TileStateIndex open(Path file, final int gridWidth, final int gridHeight) throws IOException {
+        file = file.toAbsolutePath().normalize();
+        synchronized (INDEXES) {
+            TileStateIndex index = INDEXES.get(file);
+            if (index == null || index.gridWidth != gridWidth || index.gridHeight != gridHeight) {
+                index = new TileStateIndex(file, gridWidth, gridHeight);
+                INDEXES.put(file, index);
+            }
+            return index;
+        }
+    }
+
+    private static int ceilDiv(final int a, final int b) {
+        return (int) (((long) a + b - 1) / b);
+    }
+
+    private MappedByteBuffer mapSegment(final FileChannel channel, final int segment) throws IOException {
+        final long position = dataOffset + (long) segment * chunksPerSegment * chunkBytes;
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, (long) chunksPerSegment * chunkBytes);
+    }
+
+    /**
+     * Returns the mapped segment of the given chunk slot, mapping it if the slot
+     * has been allocated by another process or is the first of a new segment.
+     */
+    private MappedByteBuffer segment(final int slot) throws IOException {
+        final int segment = slot / chunksPerSegment;
+        if (segment >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(segments.length * 2, segment + 1));
+        }
+        MappedByteBuffer buffer = segments[segment];
+        if (buffer == null) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = mapSegment(channel, segment);
+            }
+            segments[segment] = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * @return true if at least one tile state is stored
+     */
+    synchronized boolean hasTiles() {
+        return directory.getInt(NB_CHUNK_OFFSET) > 0;
+    }
+
+    /**
+     * Returns the state of a tile, a combination of {@link #EXIST} and {@link #EMPTY}.
+     * Tiles outside the grid have no state.
+     *
+     * @throws UncheckedIOException if a chunk allocated by another process can not be mapped
+     */
+    synchronized int getState(final int col, final int row) {
+        if (col < 0 || row < 0 || col >= gridWidth || row >= gridHeight) {
+            return 0;
+        }
+        final int slot = directory.getInt(directoryOffset(col, row)) - 1;
+        if (slot < 0) {
+            return 0;
+        }
+        final int bit = bitIndex(col, row);
+        final MappedByteBuffer segment;
+        try {
+            segment = segment(slot);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        final int b = segment.get(byteOffset(slot, bit));
+        return (b >>> ((bit & 3) * 2)) & 3;
+    }
+
+    /**
+     * Set the state of a tile.
+     *
+     * @param state combination of {@link #EXIST} and {@link #EMPTY}
+     */
+    synchronized void setState(final int col, final int row, final int state) throws IOException {
+        if (col < 0 || row < 0 || col >= gridWidth || row >= gridHeight) {
+            throw new IllegalArgumentException("Tile position is outside the grid : " + col + " " + row);
+        }
+        final int dirOffset = directoryOffset(col, row);
+        int slot = directory.getInt(dirOffset) - 1;
+        if (slot < 0) {
+            if (state == 0) return;
+            slot = allocate(dirOffset);
+        }
+        final int bit = bitIndex(col, row);
+        final MappedByteBuffer segment = segment(slot);
+        final int offset = byteOffset(slot, bit);
+        final int shift = (bit & 3) * 2;
+        final int b = segment.get(offset);
+        segment.put(offset, (byte) ((b & ~(3 << shift)) | ((state & 3) << shift)));
+    }
+
+    /**
+     * Allocate a new chunk slot and reference it in the directory, unless another
+     * process did it meanwhile. New file regions are filled with zeros, the chunk has no tiles.
+     *
+     * @param dirOffset directory entry of the chunk
+     * @return slot of the chunk
+     */
+    private int allocate(final int dirOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock(0, HEADER_SIZE, false)) {
+            final int existing = directory.getInt(dirOffset) - 1;
+            if (existing >= 0) {
+                return existing;
+            }
+            final int slot = directory.getInt(NB_CHUNK_OFFSET);
+            segment(slot);
+            directory.putInt(NB_CHUNK_OFFSET, slot + 1);
+            directory.putInt(dirOffset, slot + 1);
+            return slot;
+        }
+    }
+
+    private int directoryOffset(final int col, final int row) {
+        return HEADER_SIZE + 4 * ((row / chunkSize) * nbChunkX + (col / chunkSize));
+    }
+
+    private int bitIndex(final int col, final int row) {
+        return (row % chunkSize) * chunkSize + (col % chunkSize);
+    }
+
+    private int byteOffset(final int slot, final int bit) {
+        return (slot % chunksPerSegment) * chunkBytes + bit / 4;
+    }
+
+    /**
+     * Write changes to the storage device.
+     */
+    synchronized void flush() {
+        directory.force();
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) segment.force();
+        }
+    }
+}
@@ -330,6 +330,11 @@ public class XMLCoverageResource extends AbstractPyramidalCoverageResource {
         if((save.getAndSet(0b11) & 0b10) == 0){
             //0b10 flag was not set, no thread was currently saving so we must take this role.
             while(updateAndGet(save)!=0){
+                for (XMLPyramid pyramid : getPyramidSet().pyramids()) {
+                    for (XMLMosaic mosaic : pyramid.mosaics()) {
+                        mosaic.flushTileState();
+                    }
+                }
                 //keep saving un 0b01 flag is set to zero
                 try (OutputStream os = Files.newOutputStream(getMainfile(), CREATE, WRITE, TRUNCATE_EXISTING))  {
                     final Marshaller marshaller = POOL.acquireMarshaller();
@@ -779,9 +784,6 @@ public class XMLCoverageResource extends AbstractPyramidalCoverageResource {
         checkOrSetSampleColor(image);
 
         mosaic.createTile(col,row,image);
-        if (!mosaic.cacheTileState && mosaic.tileExist != null) {
-            save();
-        }
     }
 
     /**
@@ -799,9 +801,7 @@ public class XMLCoverageResource extends AbstractPyramidalCoverageResource {
         checkOrSetSampleColor(image);
 
         mosaic.writeTiles(image, area, onlyMissing, monitor);
-        if (!mosaic.cacheTileState && mosaic.tileExist != null) {
-            save();
-        }
+        mosaic.flushTileState();
     }
 
     /**
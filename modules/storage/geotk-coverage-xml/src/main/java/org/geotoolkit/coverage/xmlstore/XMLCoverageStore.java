@@ -60,6 +60,11 @@ public class XMLCoverageStore extends AbstractCoverageStore implements WritableA
 
     final boolean cacheTileState;
 
+    /**
+     * True if tiles of new mosaics are stored in tile packs.
+     */
+    final boolean packedTiles;
+
     @Deprecated
     public XMLCoverageStore(File root) throws URISyntaxException, IOException {
         this(root.toPath(),true);
@@ -92,6 +97,8 @@ public class XMLCoverageStore extends AbstractCoverageStore implements WritableA
         root = Paths.get(rootPath);
         Boolean tmpCacheState = Parameters.castOrWrap(params).getValue(XMLCoverageStoreFactory.CACHE_TILE_STATE);
         cacheTileState = (tmpCacheState == null)? true : tmpCacheState;
+        final Boolean tmpPacked = Parameters.castOrWrap(params).getValue(XMLCoverageStoreFactory.PACKED_TILES);
+        packedTiles = (tmpPacked == null)? false : tmpPacked;
         explore();
     }
 
@@ -220,6 +227,15 @@ public class XMLCoverageStore extends AbstractCoverageStore implements WritableA
 
     @Override
     public void close() {
+        for (Resource resource : resources) {
+            if (resource instanceof XMLCoverageResource) {
+                for (XMLPyramid pyramid : ((XMLCoverageResource) resource).getPyramidSet().pyramids()) {
+                    for (XMLMosaic mosaic : pyramid.mosaics()) {
+                        mosaic.close();
+                    }
+                }
+            }
+        }
     }
 
 }
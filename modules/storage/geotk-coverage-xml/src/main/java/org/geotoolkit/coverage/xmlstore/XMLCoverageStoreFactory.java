@@ -65,9 +65,19 @@ public class XMLCoverageStoreFactory extends DataStoreFactory {
             .setRequired(false)
             .create(Boolean.class, Boolean.FALSE);
 
+    /**
+     * A parameter to specify if tiles of new mosaics are stored in packs of tiles instead of one file by tile.
+     */
+    public static final ParameterDescriptor<Boolean> PACKED_TILES = new ParameterBuilder()
+            .addName("packedTiles")
+            .addName(Bundle.formatInternational(Bundle.Keys.coverageXMLPackedTiles))
+            .setRemarks(Bundle.formatInternational(Bundle.Keys.coverageXMLPackedTilesRemarks))
+            .setRequired(false)
+            .create(Boolean.class, Boolean.FALSE);
+
     public static final ParameterDescriptorGroup PARAMETERS_DESCRIPTOR =
             new ParameterBuilder().addName(NAME).addName("XMLCoverageStoreParameters").createGroup(
-                IDENTIFIER, PATH, CACHE_TILE_STATE);
+                IDENTIFIER, PATH, CACHE_TILE_STATE, PACKED_TILES);
 
     @Override
     public CharSequence getDescription() {
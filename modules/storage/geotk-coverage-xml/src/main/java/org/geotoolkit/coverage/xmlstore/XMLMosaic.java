@@ -42,6 +42,8 @@ import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriter;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
@@ -116,17 +118,30 @@ public class XMLMosaic implements GridMosaic {
     @XmlElement
     int dataPixelHeight;
 
-    // Use getter /setter to bind those two, because we must perform special operation at flush.
+    // Tile states of old descriptors, moved in the tile state index at initialization.
     String existMask;
     String emptyMask;
 
     XMLPyramid pyramid = null;
-    BitSet tileExist;
-    BitSet tileEmpty;
+
+    /**
+     * Tile states, null if tile states are cached or if no tile has been written yet.
+     */
+    TileStateIndex tileState;
 
     @XmlElement
     Boolean cacheTileState;
 
+    /**
+     * True if tiles are stored in {@link TilePack}s of {@link TilePack#BLOCK_SIZE} tiles on each side,
+     * false if each tile is stored in its own file.
+     */
+    @XmlElement
+    Boolean packedTiles;
+
+    /** Opened tile packs, by block position. */
+    private final Map<Long,TilePack> packs = new HashMap<>();
+
     Path folder;
 
     final ReentrantReadWriteLock bitsetLock = new ReentrantReadWriteLock();
@@ -169,54 +184,194 @@ public class XMLMosaic implements GridMosaic {
             }
         }
 
-        bitsetLock.writeLock().lock();
-        try {
-            if (existMask != null && !existMask.isEmpty()) {
+        // Tile storage is chosen at mosaic creation, existing tile files are never moved in packs.
+        if (packedTiles == null) {
+            packedTiles = false;
+            if (isFolderEmpty()) {
                 try {
-                    tileExist = BitSet.valueOf(Base64.decode(existMask));
-                    /*
-                     * Caching tile state can only be determined at pyramid creation, because a switch of behavior after
-                     * that seems a little bit tricky.
-                     */
-                    cacheTileState = false;
-                } catch (IOException ex) {
-                    LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-                    tileExist = new BitSet(gridWidth * gridHeight);
+                    packedTiles = ((XMLCoverageStore) pyramid.getPyramidSet().getRef().getStore()).packedTiles;
+                } catch (Exception e) {
+                    // If we've got a problem retrieving packed tiles parameter, we use one file by tile.
                 }
-            } else {
-                tileExist = cacheTileState ? null : new BitSet(gridWidth * gridHeight);
             }
+        }
 
-            if (emptyMask != null && !emptyMask.isEmpty()) {
-                try {
-                    tileEmpty = BitSet.valueOf(Base64.decode(emptyMask));
-                } catch (IOException ex) {
-                    LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-                    tileEmpty = new BitSet(gridWidth * gridHeight);
-                }
-            } else {
-                tileEmpty = cacheTileState ? null : new BitSet(gridWidth * gridHeight);
+        bitsetLock.writeLock().lock();
+        try {
+            final Path stateFile = getFolder().resolve(TileStateIndex.FILE_NAME);
+            if (Files.isRegularFile(stateFile)) {
+                tileState = TileStateIndex.open(stateFile, gridWidth, gridHeight);
+                cacheTileState = false;
+            } else if (existMask != null && !existMask.isEmpty()) {
+                /*
+                 * Caching tile state can only be determined at pyramid creation, because a switch of behavior after
+                 * that seems a little bit tricky.
+                 */
+                cacheTileState = false;
+                importMasks(stateFile);
             }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Tile state file cannot be read, tiles will be searched on disk.", ex);
+            tileState = null;
+            cacheTileState = true;
         } finally {
+            existMask = null;
+            emptyMask = null;
             bitsetLock.writeLock().unlock();
         }
 
-        /* Here is an handy check, mainly for retro-compatibility purpose. We should only get an empty bit set if the
+        /* Here is an handy check, mainly for retro-compatibility purpose. We should only get no tile state if the
          * mosaic has just been created. So, if the mosaic directory exists and contains at least one file, it means
          * that we've got an old version of pyramid descriptor, or it is corrupted. In such cases, we must cache tile
          * state in order to retrieve existing ones.
          */
-        if (tileExist != null && tileExist.isEmpty() && Files.isDirectory(getFolder())) {
-            try (DirectoryStream dStream = Files.newDirectoryStream(folder)) {
-                if (dStream.iterator().hasNext()) {
-                    cacheTileState = true;
+        if (!cacheTileState && tileState == null && !isFolderEmpty()) {
+            cacheTileState = true;
+        }
+    }
+
+    /**
+     * @return true if the mosaic folder does not exist or contains no file
+     */
+    private boolean isFolderEmpty() {
+        if (!Files.isDirectory(getFolder())) {
+            return true;
+        }
+        try (DirectoryStream dStream = Files.newDirectoryStream(getFolder())) {
+            return !dStream.iterator().hasNext();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Mosaic folder cannot be scanned.", e);
+            return true;
+        }
+    }
+
+    /**
+     * Move the tile states of an old pyramid descriptor in the tile state index.
+     * The descriptor will not contain them anymore on next save.
+     */
+    private void importMasks(final Path stateFile) throws IOException {
+        final BitSet exist = BitSet.valueOf(Base64.decode(existMask));
+        final BitSet empty = (emptyMask != null && !emptyMask.isEmpty())
+                ? BitSet.valueOf(Base64.decode(emptyMask)) : new BitSet();
+        if (exist.isEmpty()) return;
+        checkMosaicFolderExist();
+        tileState = TileStateIndex.open(stateFile, gridWidth, gridHeight);
+        for (int i = exist.nextSetBit(0); i >= 0; i = exist.nextSetBit(i + 1)) {
+            tileState.setState(i % gridWidth, i / gridWidth,
+                    TileStateIndex.EXIST | (empty.get(i) ? TileStateIndex.EMPTY : 0));
+        }
+        tileState.flush();
+    }
+
+    /**
+     * Record the state of a written tile, creating the tile state index if needed.
+     */
+    private void setTileState(final int col, final int row, final boolean empty) throws IOException {
+        bitsetLock.writeLock().lock();
+        try {
+            if (tileState == null) {
+                checkMosaicFolderExist();
+                tileState = TileStateIndex.open(getFolder().resolve(TileStateIndex.FILE_NAME), gridWidth, gridHeight);
+            }
+            tileState.setState(col, row, TileStateIndex.EXIST | (empty ? TileStateIndex.EMPTY : 0));
+        } finally {
+            bitsetLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write the tile states and the tile pack indexes to the storage device.
+     * Tile packs are compacted if they contain too many replaced tiles.
+     */
+    void flushTileState() {
+        bitsetLock.readLock().lock();
+        try {
+            if (tileState != null) {
+                tileState.flush();
+            }
+        } finally {
+            bitsetLock.readLock().unlock();
+        }
+        synchronized (packs) {
+            for (TilePack pack : packs.values()) {
+                try {
+                    pack.flush();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Tile pack cannot be saved.", ex);
                 }
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Mosaic folder cannot be scanned.", e);
             }
         }
     }
 
+    /**
+     * Save and release the opened tile packs.
+     */
+    void close() {
+        synchronized (packs) {
+            for (TilePack pack : packs.values()) {
+                try {
+                    pack.release();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Tile pack cannot be closed.", ex);
+                }
+            }
+            packs.clear();
+        }
+    }
+
+    /**
+     * Returns the pack containing the given tile.
+     *
+     * @param create true to create the pack if it does not exist
+     * @return tile pack, null if the pack does not exist and create is false
+     */
+    private TilePack getPack(final int col, final int row, final boolean create) throws IOException {
+        final int bx = col / TilePack.BLOCK_SIZE;
+        final int by = row / TilePack.BLOCK_SIZE;
+        final Long key = ((long) by << 32) | bx;
+        synchronized (packs) {
+            TilePack pack = packs.get(key);
+            if (pack == null) {
+                final String name = "pack_" + by + "_" + bx;
+                if (create) {
+                    checkMosaicFolderExist();
+                } else if (!Files.isRegularFile(getFolder().resolve(name + TilePack.DATA_SUFFIX))) {
+                    return null;
+                }
+                pack = TilePack.open(getFolder(), name, TilePack.BLOCK_SIZE);
+                packs.put(key, pack);
+            }
+            return pack;
+        }
+    }
+
+    /**
+     * @return true if the tile is stored in its pack
+     */
+    private boolean isPacked(final int col, final int row) throws DataStoreException {
+        checkPosition(col, row);
+        try {
+            final TilePack pack = getPack(col, row, false);
+            return pack != null && pack.contains(col, row);
+        } catch (IOException ex) {
+            throw new DataStoreException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Encode a tile and append it in its pack.
+     */
+    private void writePackedTile(final int col, final int row, final ImageWriter writer, final IIOImage image) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(image);
+        } finally {
+            writer.setOutput(null);
+        }
+        getPack(col, row, true).write(col, row, bytes.toByteArray(), bytes.size());
+    }
+
     private Cache<Point, Boolean> getIsMissingCache() {
         if (isMissingCache == null) {
             synchronized (this) {
@@ -298,10 +453,6 @@ public class XMLMosaic implements GridMosaic {
         return emptyTileEncoded;
     }
 
-    private static String updateCompletionString(BitSet input) throws IOException {
-        return Base64.encodeBytes(input.toByteArray(), Base64.GZIP);
-    }
-
     /**
      * Id equals scale string value
      */
@@ -413,13 +564,13 @@ public class XMLMosaic implements GridMosaic {
     public boolean isMissing(int col, int row) throws PointOutsideCoverageException {
         bitsetLock.readLock().lock();
         try {
-            if (tileExist == null || tileExist.isEmpty()) {
+            if (cacheTileState || tileState == null) {
                 try {
                     final Point key = new Point(col, row);
                     return getIsMissingCache().getOrCreate(key, new Callable<Boolean>() {
                         @Override
                         public Boolean call() throws Exception {
-                            return getTileFile(key.x, key.y) == null;
+                            return packedTiles ? !isPacked(key.x, key.y) : getTileFile(key.x, key.y) == null;
                         }
                     });
                 } catch (PointOutsideCoverageException e) {
@@ -429,13 +580,12 @@ public class XMLMosaic implements GridMosaic {
                     return true;
                 }
             } else {
-                final int index = getTileIndex(col, row);
-                if (index < 0) {
+                if (col < 0 || row < 0 || col >= gridWidth || row >= gridHeight) {
                     LOGGER.log(Level.FINE, "You try to request a tile out of mosaic tile boundary at coordinates : X = "+col+", Y = "+row
                     +"Expected grid boundary : [(0, 0) ; ("+getGridSize().width+","+getGridSize().height+")]");
                     return true;
                 }
-                return !tileExist.get(index);
+                return (tileState.getState(col, row) & TileStateIndex.EXIST) == 0;
             }
         } finally {
             bitsetLock.readLock().unlock();
@@ -445,13 +595,13 @@ public class XMLMosaic implements GridMosaic {
     private boolean isEmpty(int col, int row){
         bitsetLock.readLock().lock();
         try {
-            if (tileEmpty == null || tileEmpty.isEmpty()) {
+            if (cacheTileState || tileState == null) {
                 /* For now, if we keep tile state in cache, we consider empty tiles as non-existing. Because without the
-                 * appropriate bitset, we would need to scan the tile file to know if it's empty.
+                 * appropriate index, we would need to scan the tile file to know if it's empty.
                  */
                 return false;
             } else {
-                return tileEmpty.get(getTileIndex(col, row));
+                return (tileState.getState(col, row) & TileStateIndex.EMPTY) != 0;
             }
         } finally {
             bitsetLock.readLock().unlock();
@@ -469,6 +619,18 @@ public class XMLMosaic implements GridMosaic {
             } catch (IOException ex) {
                 throw new DataStoreException(ex);
             }
+        } else if (packedTiles) {
+            checkPosition(col, row);
+            final byte[] data;
+            try {
+                final TilePack pack = getPack(col, row, false);
+                data = (pack == null) ? null : pack.read(col, row);
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            }
+            tile = new DefaultTileReference(getPyramid().getPyramidSet().getReaderSpi(),
+                    (data == null) ? null : new MemoryCacheImageInputStream(new ByteArrayInputStream(data)),
+                    0, new Point(col, row));
         } else {
             tile = new DefaultTileReference(getPyramid().getPyramidSet().getReaderSpi(),
                     getTileFile(col, row), 0, new Point(col, row));
@@ -616,19 +778,32 @@ public class XMLMosaic implements GridMosaic {
             throw new DataStoreException("Unable to create mosaic folder "+e.getLocalizedMessage(), e);
         }
 
+        checkPosition(col, row);
+
         // No empty tile with cached tile state.
-        if (tileExist != null && isEmpty(image.getData())) {
-            bitsetLock.writeLock().lock();
+        if (!cacheTileState && isEmpty(image.getData())) {
             try {
-                tileExist.set(getTileIndex(col, row), true);
-                tileEmpty.set(getTileIndex(col, row), true);
-            } finally {
-                bitsetLock.writeLock().unlock();
+                setTileState(col, row, true);
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
+            }
+            return;
+        }
+
+        if (packedTiles) {
+            try {
+                writePackedTile(col, row, writer, new IIOImage(image, null, null));
+                if (!cacheTileState) {
+                    setTileState(col, row, false);
+                } else {
+                    getIsMissingCache().put(new Point(col, row), false);
+                }
+            } catch (IOException ex) {
+                throw new DataStoreException(ex.getMessage(), ex);
             }
             return;
         }
 
-        checkPosition(col, row);
         Path tilePath = getTileFile(col, row);
         if (tilePath == null) tilePath = getDefaultTileFile(col, row);
 
@@ -646,15 +821,8 @@ public class XMLMosaic implements GridMosaic {
                 out = ImageIO.createImageOutputStream(tilePath);
             }
             writer.write(image);
-            if (tileExist != null) {
-                final int ti = getTileIndex(col, row);
-                bitsetLock.writeLock().lock();
-                try {
-                    tileExist.set(ti, true);
-                    tileEmpty.set(ti, false);
-                } finally {
-                    bitsetLock.writeLock().unlock();
-                }
+            if (!cacheTileState) {
+                setTileState(col, row, false);
             } else {
                 getIsMissingCache().put(new Point(col, row), false);
             }
@@ -710,13 +878,15 @@ public class XMLMosaic implements GridMosaic {
                     continue;
                 }
 
-                final int tileIndex = getTileIndex(tx, ty);
                 checkPosition(tx, ty);
 
-                Path tilePath = getTileFile(tx, ty);
-                if (tilePath == null) tilePath = getDefaultTileFile(tx, ty);
+                Path tilePath = null;
+                if (!packedTiles) {
+                    tilePath = getTileFile(tx, ty);
+                    if (tilePath == null) tilePath = getDefaultTileFile(tx, ty);
+                }
 
-                Future fut = TILEWRITEREXECUTOR.submit(new TileWriter(tilePath, image, tx, ty, tileIndex, image.getColorModel(), getPyramid().getPyramidSet().getFormatName(), monitor));
+                Future fut = TILEWRITEREXECUTOR.submit(new TileWriter(tilePath, image, tx, ty, image.getColorModel(), getPyramid().getPyramidSet().getFormatName(), monitor));
                 futurs.add(fut);
             }
         }
@@ -752,65 +922,33 @@ public class XMLMosaic implements GridMosaic {
         }
     }
 
-    private int getTileIndex(int col, int row){
-        final int index = row*getGridSize().width + col;
-        return index;
-    }
-
+    /**
+     * For retro-compatibility purpose, tile states are stored in the tile state index.
+     * Return null, because we don't want to write it, just need it at reading.
+     * @return null
+     */
     @XmlElement
     protected String getExistMask() {
-        // Flush only if user did not specify to cache tile states.
-        bitsetLock.readLock().lock();
-        try {
-            if (tileExist == null || cacheTileState) {
-                return null;
-            }
-            return existMask = updateCompletionString(tileExist);
-        } catch (IOException ex) {
-            LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-            return existMask = null;
-        } finally {
-            bitsetLock.readLock().unlock();
-        }
+        return null;
     }
 
     protected void setExistMask(String newValue) {
+        //decoded at initialization if there is no tile state index yet
         existMask = newValue;
-        if (existMask != null && !existMask.isEmpty()) {
-            try {
-                tileExist = BitSet.valueOf(Base64.decode(existMask));
-            } catch (IOException ex) {
-                LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-            }
-        }
     }
 
+    /**
+     * For retro-compatibility purpose, tile states are stored in the tile state index.
+     * Return null, because we don't want to write it, just need it at reading.
+     * @return null
+     */
     @XmlElement
     protected String getEmptyMask() {
-        // Flush only if user did not specify to cache tile states.
-        bitsetLock.readLock().lock();
-        try {
-            if (tileEmpty == null || cacheTileState) {
-                return null;
-            }
-            return emptyMask = updateCompletionString(tileEmpty);
-        } catch (IOException ex) {
-            LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-            return existMask = null;
-        } finally {
-            bitsetLock.readLock().unlock();
-        }
+        return null;
     }
 
     protected void setEmptyMask(String newValue) {
         emptyMask = newValue;
-        if (emptyMask != null && !emptyMask.isEmpty()) {
-            try {
-                tileEmpty = BitSet.valueOf(Base64.decode(emptyMask,Base64.GZIP));
-            } catch (IOException ex) {
-                LOGGER.log(Level.WARNING, ex.getMessage(), ex);
-            }
-        }
     }
 
     /**
@@ -839,23 +977,22 @@ public class XMLMosaic implements GridMosaic {
 
     private class TileWriter implements Runnable{
 
+        /** Tile file, null if tiles are packed. */
         private final Path tilePath;
         private final RenderedImage image;
         private final int idx;
         private final int idy;
-        private final int tileIndex;
         private final ColorModel cm;
         private final String formatName;
         private final Monitor monitor;
 
-        public TileWriter(Path tilePath, RenderedImage image, int idx, int idy, int tileIndex, ColorModel cm, String formatName, Monitor monitor) {
-            ArgumentChecks.ensureNonNull("file", tilePath);
+        public TileWriter(Path tilePath, RenderedImage image, int idx, int idy, ColorModel cm, String formatName, Monitor monitor) {
+            if (!packedTiles) ArgumentChecks.ensureNonNull("file", tilePath);
             ArgumentChecks.ensureNonNull("image", image);
             this.tilePath = tilePath;
             this.image = image;
             this.idx = idx;
             this.idy = idy;
-            this.tileIndex = tileIndex;
             this.cm = cm;
             this.formatName = formatName;
             this.monitor = monitor;
@@ -877,49 +1014,39 @@ public class XMLMosaic implements GridMosaic {
                 Raster raster = image.getTile(offsetX+idx, offsetY+idy);
 
                 //check if image is empty
-                if (tileEmpty != null && (raster == null || isEmpty(raster))) {
-
-                    bitsetLock.writeLock().lock();
-                    try {
-                        tileExist.set(tileIndex, true);
-                        tileEmpty.set(tileIndex, true);
-                    } finally {
-                        bitsetLock.writeLock().unlock();
-                    }
+                if (!cacheTileState && (raster == null || isEmpty(raster))) {
+                    setTileState(idx, idy, true);
                     return;
                 }
 
                 writer = ImageIO.getImageWritersByFormatName(formatName).next();
 
-                final Class[] outTypes = writer.getOriginatingProvider().getOutputTypes();
-                if (ArraysExt.contains(outTypes, Path.class)) {
-                    //writer support files directly, let him handle it
-                    writer.setOutput(tilePath);
+                final IIOImage buffer;
+                if (writer.canWriteRasters()) {
+                    buffer = new IIOImage(raster, null, null);
                 } else {
-                    out = ImageIO.createImageOutputStream(tilePath);
-                    writer.setOutput(out);
+                    //encapsulate image in a buffered image with parent color model
+                    buffer = new IIOImage(new BufferedImage(
+                            cm, (WritableRaster) raster, cm.isAlphaPremultiplied(), null), null, null);
                 }
 
-                final boolean canWriteRaster = writer.canWriteRasters();
                 //write tile
-                if (canWriteRaster) {
-                    final IIOImage buffer = new IIOImage(raster, null, null);
-                    writer.write(buffer);
+                if (packedTiles) {
+                    writePackedTile(idx, idy, writer, buffer);
                 } else {
-                    //encapsulate image in a buffered image with parent color model
-                    final BufferedImage buffer = new BufferedImage(
-                            cm, (WritableRaster) raster, cm.isAlphaPremultiplied(), null);
+                    final Class[] outTypes = writer.getOriginatingProvider().getOutputTypes();
+                    if (ArraysExt.contains(outTypes, Path.class)) {
+                        //writer support files directly, let him handle it
+                        writer.setOutput(tilePath);
+                    } else {
+                        out = ImageIO.createImageOutputStream(tilePath);
+                        writer.setOutput(out);
+                    }
                     writer.write(buffer);
                 }
 
-                if (tileExist != null) {
-                    bitsetLock.writeLock().lock();
-                    try {
-                        tileExist.set(tileIndex, true);
-                        tileEmpty.set(tileIndex, false);
-                    } finally {
-                        bitsetLock.writeLock().unlock();
-                    }
+                if (!cacheTileState) {
+                    setTileState(idx, idy, false);
                 } else {
                     getIsMissingCache().put(new Point(idx, idy), false);
                 }
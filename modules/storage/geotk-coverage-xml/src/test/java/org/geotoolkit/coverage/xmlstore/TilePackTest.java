@@ -0,0 +1,150 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.geotoolkit.nio.IOUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test tile pack files.
+ *
+ * @module
+ */
+public class TilePackTest extends org.geotoolkit.test.TestBase {
+
+    private Path folder;
+
+    @Before
+    public void createFolder() throws IOException {
+        folder = Files.createTempDirectory("tilepack");
+    }
+
+    @After
+    public void cleanup() {
+        IOUtilities.deleteSilently(folder);
+    }
+
+    private static byte[] tile(final int value, final int length) {
+        final byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    @Test
+    public void readWriteTest() throws IOException {
+        TilePack pack = new TilePack(folder, "pack_1_2", 16);
+        assertFalse(pack.contains(32, 16));
+        assertNull(pack.read(32, 16));
+
+        pack.write(32, 16, tile(1, 100), 100);
+        pack.write(47, 31, tile(2, 50), 50);
+        assertTrue(pack.contains(32, 16));
+        assertFalse(pack.contains(33, 16));
+        assertArrayEquals(tile(1, 100), pack.read(32, 16));
+        assertArrayEquals(tile(2, 50), pack.read(47, 31));
+
+        //replaced tile
+        pack.write(32, 16, tile(3, 20), 20);
+        assertArrayEquals(tile(3, 20), pack.read(32, 16));
+        assertEquals(108, pack.getDeadBytes());
+        pack.close();
+
+        pack = new TilePack(folder, "pack_1_2", 16);
+        assertArrayEquals(tile(3, 20), pack.read(32, 16));
+        assertArrayEquals(tile(2, 50), pack.read(47, 31));
+        assertEquals(108, pack.getDeadBytes());
+
+        pack.compact();
+        assertEquals(0, pack.getDeadBytes());
+        assertArrayEquals(tile(3, 20), pack.read(32, 16));
+        assertArrayEquals(tile(2, 50), pack.read(47, 31));
+        pack.close();
+
+        pack = new TilePack(folder, "pack_1_2", 16);
+        assertArrayEquals(tile(3, 20), pack.read(32, 16));
+        assertArrayEquals(tile(2, 50), pack.read(47, 31));
+        pack.close();
+
+        try {
+            new TilePack(folder, "pack_1_2", 32);
+            fail("Block size mismatch not detected");
+        } catch (IOException ex) {
+            //ok
+        }
+    }
+
+    /**
+     * Tiles written after the last flush are found in the data file.
+     */
+    @Test
+    public void recoverTest() throws IOException {
+        final TilePack pack = new TilePack(folder, "pack_0_0", 8);
+        pack.write(1, 1, tile(1, 10), 10);
+        pack.flush();
+        pack.write(2, 2, tile(2, 10), 10);
+        pack.write(1, 1, tile(3, 10), 10);
+
+        //pack not closed, index does not contain the last tiles
+        TilePack other = new TilePack(folder, "pack_0_0", 8);
+        assertArrayEquals(tile(3, 10), other.read(1, 1));
+        assertArrayEquals(tile(2, 10), other.read(2, 2));
+        assertEquals(18, other.getDeadBytes());
+        other.close();
+
+        //index lost
+        Files.delete(folder.resolve("pack_0_0" + TilePack.INDEX_SUFFIX));
+        other = new TilePack(folder, "pack_0_0", 8);
+        assertArrayEquals(tile(3, 10), other.read(1, 1));
+        assertArrayEquals(tile(2, 10), other.read(2, 2));
+        other.close();
+        pack.close();
+    }
+
+    /**
+     * Packs opened on the same file are shared until their last user releases them.
+     */
+    @Test
+    public void sharedPackTest() throws IOException {
+        final Path sub = Files.createDirectory(folder.resolve("sub"));
+        final TilePack pack = TilePack.open(folder, "pack_0_0", 8);
+        final TilePack same = TilePack.open(sub.resolve(".."), "pack_0_0", 8);
+        assertSame(pack, same);
+        try {
+            TilePack.open(folder, "pack_0_0", 16);
+            fail("Pack opened with another block size.");
+        } catch (IOException ex) {
+            //ok
+        }
+
+        pack.write(1, 1, tile(1, 10), 10);
+        pack.release();
+        assertArrayEquals(tile(1, 10), same.read(1, 1));
+        same.release();
+
+        final TilePack other = TilePack.open(folder, "pack_0_0", 8);
+        assertNotSame(pack, other);
+        assertArrayEquals(tile(1, 10), other.read(1, 1));
+        other.release();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.coverage.xmlstore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.geotoolkit.nio.IOUtilities;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test tile state index file.
+ *
+ * @module
+ */
+public class TileStateIndexTest extends org.geotoolkit.test.TestBase {
+
+    private Path folder;
+
+    @Before
+    public void createFolder() throws IOException {
+        folder = Files.createTempDirectory("tilestate");
+    }
+
+    @After
+    public void cleanup() {
+        IOUtilities.deleteSilently(folder);
+    }
+
+    @Test
+    public void stateTest() throws IOException {
+        final Path file = folder.resolve(TileStateIndex.FILE_NAME);
+        final TileStateIndex index = TileStateIndex.open(file, 1000, 600);
+        assertFalse(index.hasTiles());
+        assertEquals(0, index.getState(10, 20));
+
+        index.setState(10, 20, TileStateIndex.EXIST);
+        index.setState(11, 20, TileStateIndex.EXIST | TileStateIndex.EMPTY);
+        index.setState(999, 599, TileStateIndex.EXIST);
+        assertTrue(index.hasTiles());
+        assertEquals(TileStateIndex.EXIST, index.getState(10, 20));
+        assertEquals(TileStateIndex.EXIST | TileStateIndex.EMPTY, index.getState(11, 20));
+        assertEquals(0, index.getState(12, 20));
+        assertEquals(TileStateIndex.EXIST, index.getState(999, 599));
+        assertEquals(0, index.getState(998, 599));
+        //outside the grid
+        assertEquals(0, index.getState(1000, 0));
+        assertEquals(0, index.getState(-1, 0));
+
+        //empty tile replaced by a real one
+        index.setState(11, 20, TileStateIndex.EXIST);
+        assertEquals(TileStateIndex.EXIST, index.getState(11, 20));
+        assertEquals(TileStateIndex.EXIST, index.getState(10, 20));
+        index.flush();
+
+        //same file is shared
+        assertSame(index, TileStateIndex.open(folder.resolve(".").resolve(TileStateIndex.FILE_NAME), 1000, 600));
+
+        //header is written in the file
+        try {
+            TileStateIndex.open(file, 10, 10);
+            fail("Grid size mismatch not detected");
+        } catch (IOException ex) {
+            //ok
+        }
+    }
+
+    /**
+     * Only chunks containing tiles use space in the file.
+     */
+    @Test
+    public void sparseTest() throws IOException {
+        final Path file = folder.resolve(TileStateIndex.FILE_NAME);
+        //level 18 of a world pyramid
+        final int size = 1 << 18;
+        final TileStateIndex index = TileStateIndex.open(file, size, size);
+        index.setState(0, 0, TileStateIndex.EXIST);
+        index.setState(size - 1, size - 1, TileStateIndex.EXIST);
+        index.setState(130000, 70000, TileStateIndex.EXIST | TileStateIndex.EMPTY);
+        assertEquals(TileStateIndex.EXIST, index.getState(0, 0));
+        assertEquals(TileStateIndex.EXIST, index.getState(size - 1, size - 1));
+        assertEquals(TileStateIndex.EXIST | TileStateIndex.EMPTY, index.getState(130000, 70000));
+        assertEquals(0, index.getState(130001, 70000));
+        //directory of 4Mb and one segment of chunks
+        assertTrue(Files.size(file) < 6 * 1024 * 1024);
+    }
+
+    /**
+     * Two instances on the same file, as in two processes, see each other chunks
+     * and do not allocate the same slot.
+     */
+    @Test
+    public void sharedFileTest() throws IOException {
+        final Path file = folder.resolve(TileStateIndex.FILE_NAME);
+        final TileStateIndex first = new TileStateIndex(file, 1000, 600);
+        final TileStateIndex second = new TileStateIndex(file, 1000, 600);
+        assertFalse(second.hasTiles());
+
+        first.setState(10, 20, TileStateIndex.EXIST);
+        assertTrue(second.hasTiles());
+        assertEquals(TileStateIndex.EXIST, second.getState(10, 20));
+
+        //new chunk allocated after the one of the first instance
+        second.setState(900, 500, TileStateIndex.EXIST | TileStateIndex.EMPTY);
+        //chunk allocated by the first instance is reused
+        second.setState(11, 20, TileStateIndex.EXIST);
+        first.setState(901, 500, TileStateIndex.EXIST);
+
+        for (TileStateIndex index : new TileStateIndex[] {first, second}) {
+            assertEquals(TileStateIndex.EXIST, index.getState(10, 20));
+            assertEquals(TileStateIndex.EXIST, index.getState(11, 20));
+            assertEquals(TileStateIndex.EXIST | TileStateIndex.EMPTY, index.getState(900, 500));
+            assertEquals(TileStateIndex.EXIST, index.getState(901, 500));
+            assertEquals(0, index.getState(10, 21));
+        }
+    }
+
+}
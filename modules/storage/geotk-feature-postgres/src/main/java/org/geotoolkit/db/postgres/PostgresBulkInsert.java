@@ -0,0 +1,429 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db.postgres;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import org.apache.sis.internal.feature.AttributeConvention;
+import org.apache.sis.storage.DataStoreException;
+import org.geotoolkit.db.DefaultJDBCFeatureStore;
+import org.geotoolkit.db.dialect.SQLQueryBuilder;
+import org.geotoolkit.db.reverse.ColumnMetaModel;
+import org.geotoolkit.db.reverse.PrimaryKey;
+import org.geotoolkit.feature.FeatureExt;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.AttributeType;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureType;
+import org.opengis.feature.PropertyType;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Insert features with a {@code COPY ... FROM STDIN (FORMAT binary)} command.
+ * Rows are encoded while they are streamed to the server, geometries are
+ * written as EWKB.
+ *
+ * @see <a href="https://www.postgresql.org/docs/current/static/sql-copy.html">COPY binary format</a>
+ */
+final class PostgresBulkInsert {
+
+    private static final byte[] SIGNATURE = {'P','G','C','O','P','Y','\n',(byte)0xFF,'\r','\n',0};
+
+    /** 2000-01-01T00:00:00Z, origin of postgresql dates. */
+    private static final long PG_EPOCH = 946684800000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private static final BigInteger NBASE = BigInteger.valueOf(10000);
+    private static final int NUMERIC_NEG = 0x4000;
+    private static final int NUMERIC_NAN = 0xC000;
+
+    private final PostgresDialect dialect;
+
+    /** EWKB writers for 2 and 3 dimensions geometries. */
+    private final WKBWriter wkb2D = new WKBWriter(2, true);
+    private final WKBWriter wkb3D = new WKBWriter(3, true);
+
+    PostgresBulkInsert(final PostgresDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    /**
+     * Copy features in the table of the given type.
+     *
+     * @return false if the table can not be filled with a binary copy.
+     */
+    boolean insert(final FeatureType featureType, final Collection<? extends Feature> features,
+            final Connection cx) throws SQLException, DataStoreException {
+        if (!cx.isWrapperFor(PGConnection.class)) {
+            return false;
+        }
+        final DefaultJDBCFeatureStore store = dialect.getFeaturestore();
+        final PrimaryKey key = store.getDatabaseModel().getPrimaryKey(featureType.getName().toString());
+
+        final List<AttributeType> columns = new ArrayList<>();
+        final StringBuilder names = new StringBuilder();
+        properties:
+        for (PropertyType property : featureType.getProperties(true)) {
+            if (AttributeConvention.contains(property.getName())) continue;
+            //relations must be decomposed and inserted in several tables
+            if (!(property instanceof AttributeType)) return false;
+            final String name = property.getName().tip().toString();
+            for (ColumnMetaModel column : key.getColumns()) {
+                if (column.getName().equals(name)) {
+                    //generated by the database, other keys need a value per row
+                    if (column.getType() == ColumnMetaModel.Type.AUTO) continue properties;
+                    return false;
+                }
+            }
+            columns.add((AttributeType) property);
+            if (names.length() > 0) names.append(',');
+            dialect.encodeColumnName(names, name);
+        }
+        if (columns.isEmpty()) {
+            return false;
+        }
+
+        final StringBuilder table = new StringBuilder();
+        dialect.encodeSchemaAndTableName(table, store.getDatabaseSchema(), featureType.getName().tip().toString());
+
+        //native types of the columns
+        final int nbColumn = columns.size();
+        final String[] pgTypes = new String[nbColumn];
+        try (Statement st = cx.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + names + " FROM " + table + " LIMIT 0")) {
+            final ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 0; i < nbColumn; i++) {
+                pgTypes[i] = normalize(meta.getColumnTypeName(i + 1));
+                if (!isSupported(pgTypes[i], columns.get(i).getValueClass())) {
+                    return false;
+                }
+            }
+        }
+
+        final boolean emptyAsNull = ((Comparable) dialect.getVersion(null).getMajor()).compareTo((Comparable) Integer.valueOf(2)) < 0;
+        final String sql = "COPY " + table + " (" + names + ") FROM STDIN (FORMAT binary)";
+        store.getLogger().fine(sql);
+        final CopyIn copy = cx.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CopyOutputStream(copy), 65536));
+            out.write(SIGNATURE);
+            out.writeInt(0);    //flags
+            out.writeInt(0);    //header extension length
+
+            for (Feature feature : features) {
+                if (feature.getType() != featureType) {
+                    final Feature candidate = featureType.newInstance();
+                    FeatureExt.copy(feature, candidate, false);
+                    feature = candidate;
+                }
+                out.writeShort(nbColumn);
+                for (int i = 0; i < nbColumn; i++) {
+                    final AttributeType column = columns.get(i);
+                    writeValue(out, pgTypes[i], column, feature.getPropertyValue(column.getName().toString()), emptyAsNull);
+                }
+            }
+            out.writeShort(-1);
+            out.flush();
+            copy.endCopy();
+        } catch (IOException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            throw new DataStoreException(ex.getMessage(), ex);
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serial types are reported with their own names by the driver.
+     */
+    private static String normalize(final String pgType) {
+        switch (pgType) {
+            case "smallserial" : return "int2";
+            case "serial" :      return "int4";
+            case "bigserial" :   return "int8";
+            default :            return pgType;
+        }
+    }
+
+    static boolean isSupported(final String pgType, final Class<?> binding) {
+        switch (pgType) {
+            case "bool" :
+                return Boolean.class.isAssignableFrom(binding);
+            case "int2" :
+            case "int4" :
+            case "int8" :
+            case "float4" :
+            case "float8" :
+            case "numeric" :
+                return Number.class.isAssignableFrom(binding);
+            case "text" :
+            case "varchar" :
+            case "bpchar" :
+            case "name" :
+                return true;
+            case "bytea" :
+                return byte[].class.equals(binding);
+            case "date" :
+            case "timestamp" :
+            case "timestamptz" :
+                return Date.class.isAssignableFrom(binding);
+            case "uuid" :
+                return UUID.class.equals(binding) || String.class.equals(binding);
+            case "geometry" :
+                return Geometry.class.isAssignableFrom(binding);
+            default :
+                return false;
+        }
+    }
+
+    /**
+     * Write a field : its length in bytes, -1 for null, followed by its
+     * binary representation.
+     */
+    void writeValue(final DataOutputStream out, final String pgType, final AttributeType column,
+            final Object value, final boolean emptyAsNull) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        switch (pgType) {
+            case "bool" :
+                out.writeInt(1);
+                out.writeByte((Boolean) value ? 1 : 0);
+                break;
+            case "int2" :
+                out.writeInt(2);
+                out.writeShort(((Number) value).shortValue());
+                break;
+            case "int4" :
+                out.writeInt(4);
+                out.writeInt(((Number) value).intValue());
+                break;
+            case "int8" :
+                out.writeInt(8);
+                out.writeLong(((Number) value).longValue());
+                break;
+            case "float4" :
+                out.writeInt(4);
+                out.writeFloat(((Number) value).floatValue());
+                break;
+            case "float8" :
+                out.writeInt(8);
+                out.writeDouble(((Number) value).doubleValue());
+                break;
+            case "numeric" :
+                writeNumeric(out, (Number) value);
+                break;
+            case "bytea" :
+                writeBytes(out, (byte[]) value);
+                break;
+            case "date" : {
+                final long millis = ((Date) value).getTime();
+                out.writeInt(4);
+                out.writeInt((int) Math.floorDiv(millis + TimeZone.getDefault().getOffset(millis) - PG_EPOCH, MILLIS_PER_DAY));
+                break;
+            }
+            case "timestamp" : {
+                //without time zone : local time
+                final long millis = ((Date) value).getTime();
+                out.writeInt(8);
+                out.writeLong(micros(value, millis + TimeZone.getDefault().getOffset(millis)));
+                break;
+            }
+            case "timestamptz" :
+                out.writeInt(8);
+                out.writeLong(micros(value, ((Date) value).getTime()));
+                break;
+            case "uuid" : {
+                final UUID uuid = (value instanceof UUID) ? (UUID) value : UUID.fromString(value.toString());
+                out.writeInt(16);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+                break;
+            }
+            case "geometry" :
+                writeGeometry(out, column, (Geometry) value, emptyAsNull);
+                break;
+            default :
+                //text types
+                writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+                break;
+        }
+    }
+
+    private static long micros(final Object value, final long millis) {
+        long micros = (millis - PG_EPOCH) * 1000;
+        if (value instanceof Timestamp) {
+            //milliseconds are also in the nanos
+            micros += (((Timestamp) value).getNanos() % 1000000) / 1000;
+        }
+        return micros;
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Write a geometry as EWKB, the same conversions as
+     * {@link PostgresDialect#encodeGeometryValue(java.lang.StringBuilder, org.locationtech.jts.geom.Geometry, int) }
+     * are applied.
+     */
+    private void writeGeometry(final DataOutputStream out, final AttributeType column, Geometry geom,
+            final boolean emptyAsNull) throws IOException {
+        //empty points have no WKB representation
+        if (geom.isEmpty() && (emptyAsNull || geom instanceof Point)) {
+            out.writeInt(-1);
+            return;
+        }
+        final int srid = SQLQueryBuilder.getGeometrySRID(geom, column);
+        if (geom instanceof LinearRing) {
+            //postgis does not handle linear rings, convert to just a line string
+            geom = geom.getFactory().createLineString(((LinearRing) geom).getCoordinateSequence());
+            geom.setSRID(Math.max(srid, 0));
+        } else if (geom.getSRID() != Math.max(srid, 0)) {
+            //do not modify the caller geometry
+            geom = (Geometry) geom.clone();
+            geom.setSRID(Math.max(srid, 0));
+        }
+        writeBytes(out, (hasZ(geom) ? wkb3D : wkb2D).write(geom));
+    }
+
+    private static boolean hasZ(final Geometry geom) {
+        final boolean[] z = new boolean[1];
+        geom.apply(new CoordinateFilter() {
+            @Override
+            public void filter(Coordinate coord) {
+                z[0] |= !Double.isNaN(coord.z);
+            }
+        });
+        return z[0];
+    }
+
+    /**
+     * Write a number in postgresql numeric format : a sequence of base 10000
+     * digits with the weight of the first one, the sign and the display scale.
+     */
+    private void writeNumeric(final DataOutputStream out, final Number value) throws IOException {
+        if ((value instanceof Double || value instanceof Float) && Double.isNaN(value.doubleValue())) {
+            out.writeInt(8);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(NUMERIC_NAN);
+            out.writeShort(0);
+            return;
+        }
+        BigDecimal decimal;
+        if (value instanceof BigDecimal) {
+            decimal = (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            decimal = new BigDecimal((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            decimal = BigDecimal.valueOf(value.doubleValue());
+        } else {
+            decimal = BigDecimal.valueOf(value.longValue());
+        }
+        final int sign = decimal.signum() < 0 ? NUMERIC_NEG : 0;
+        decimal = decimal.abs();
+        int scale = decimal.scale();
+        BigInteger unscaled = decimal.unscaledValue();
+        if (scale < 0) {
+            unscaled = unscaled.multiply(BigInteger.TEN.pow(-scale));
+            scale = 0;
+        }
+        //align the fraction on base 10000 digits
+        final int pad = (4 - scale % 4) % 4;
+        unscaled = unscaled.multiply(BigInteger.TEN.pow(pad));
+        final int fractionDigits = (scale + pad) / 4;
+
+        //least significant digit first
+        final List<Short> digits = new ArrayList<>();
+        while (unscaled.signum() > 0) {
+            final BigInteger[] qr = unscaled.divideAndRemainder(NBASE);
+            digits.add(qr[1].shortValue());
+            unscaled = qr[0];
+        }
+        int start = 0;
+        while (start < digits.size() && digits.get(start) == 0) start++;
+        final int count = digits.size() - start;
+        final int weight = (count == 0) ? 0 : digits.size() - fractionDigits - 1;
+
+        out.writeInt(8 + 2 * count);
+        out.writeShort(count);
+        out.writeShort(weight);
+        out.writeShort(sign);
+        out.writeShort(scale);
+        for (int i = digits.size() - 1; i >= start; i--) {
+            out.writeShort(digits.get(i));
+        }
+    }
+
+    /**
+     * Send bytes to the copy command.
+     */
+    private static final class CopyOutputStream extends OutputStream {
+
+        private final CopyIn copy;
+
+        CopyOutputStream(final CopyIn copy) {
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                copy.writeToCopy(b, off, len);
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+}
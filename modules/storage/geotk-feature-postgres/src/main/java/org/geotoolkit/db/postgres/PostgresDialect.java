@@ -38,6 +38,7 @@ import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -123,6 +124,7 @@ import org.apache.sis.referencing.cs.AxesConvention;
 import org.apache.sis.referencing.factory.IdentifiedObjectFinder;
 import org.apache.sis.util.Classes;
 import org.opengis.feature.AttributeType;
+import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureType;
 import org.opengis.feature.Operation;
 import org.opengis.feature.PropertyType;
@@ -884,6 +886,15 @@ final class PostgresDialect extends AbstractSQLDialect{
         return null;
     }
 
+    /**
+     * Features are streamed with a binary COPY command.
+     */
+    @Override
+    public boolean insertBulk(final FeatureType featureType, final Collection<? extends Feature> features,
+            final Connection cx) throws SQLException, DataStoreException {
+        return new PostgresBulkInsert(this).insert(featureType, features, cx);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // METHODS TO READ FROM RESULTSET //////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////
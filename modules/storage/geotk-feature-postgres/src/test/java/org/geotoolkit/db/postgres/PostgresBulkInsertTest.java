@@ -0,0 +1,283 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.db.postgres;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.UUID;
+import org.apache.sis.feature.builder.FeatureTypeBuilder;
+import org.geotoolkit.db.JDBCFeatureStore;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.AttributeType;
+import org.opengis.feature.FeatureType;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the binary encoding of values written by {@link PostgresBulkInsert} in
+ * {@code COPY} commands. No database is needed.
+ *
+ * @module
+ */
+public class PostgresBulkInsertTest extends org.geotoolkit.test.TestBase {
+
+    /** 2000-01-01T00:00:00Z in milliseconds. */
+    private static final long PG_EPOCH = 946684800000L;
+
+    private static final int WKB_POINT = 1;
+    private static final int WKB_LINESTRING = 2;
+    private static final int EWKB_Z = 0x80000000;
+    private static final int EWKB_SRID = 0x20000000;
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    /**
+     * Encode a value and return a stream on its field content, after checking the
+     * field length matches the number of bytes written.
+     *
+     * @return stream on the value bytes, or null if the value was encoded as null.
+     */
+    private static DataInputStream encode(final String pgType, final AttributeType column, final Object value,
+            final boolean emptyAsNull) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            new PostgresBulkInsert(null).writeValue(out, pgType, column, value, emptyAsNull);
+        }
+        final byte[] bytes = buffer.toByteArray();
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        final int length = in.readInt();
+        if (length == -1) {
+            assertEquals("null field has no content", 4, bytes.length);
+            return null;
+        }
+        assertEquals("field length", bytes.length - 4, length);
+        return in;
+    }
+
+    private static DataInputStream encode(final String pgType, final Object value) throws IOException {
+        return encode(pgType, null, value, false);
+    }
+
+    /**
+     * Geometry column of a table, with the native SRID if not null.
+     */
+    private static AttributeType geometryColumn(final Integer srid) {
+        final FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName("table");
+        if (srid != null) {
+            ftb.addAttribute(Geometry.class).setName("geom")
+               .addCharacteristic(JDBCFeatureStore.JDBC_PROPERTY_SRID).setDefaultValue(srid);
+        } else {
+            ftb.addAttribute(Geometry.class).setName("geom");
+        }
+        final FeatureType type = ftb.build();
+        return (AttributeType) type.getProperty("geom");
+    }
+
+    @Test
+    public void nullTest() throws IOException {
+        for (String type : new String[]{"bool", "int4", "numeric", "text", "timestamp", "geometry"}) {
+            assertNull(type, encode(type, null));
+        }
+    }
+
+    @Test
+    public void booleanTest() throws IOException {
+        assertEquals(1, encode("bool", Boolean.TRUE).readByte());
+        assertEquals(0, encode("bool", Boolean.FALSE).readByte());
+    }
+
+    @Test
+    public void integerTest() throws IOException {
+        assertEquals(-12, encode("int2", (short) -12).readShort());
+        assertEquals(123456, encode("int4", 123456).readInt());
+        assertEquals(Long.MAX_VALUE, encode("int8", Long.MAX_VALUE).readLong());
+        //other number types are converted to the column type
+        assertEquals(42, encode("int4", 42L).readInt());
+        assertEquals(7, encode("int8", 7).readLong());
+    }
+
+    @Test
+    public void floatTest() throws IOException {
+        assertEquals(1.5f, encode("float4", 1.5f).readFloat(), 0f);
+        assertEquals(-0.1, encode("float8", -0.1).readDouble(), 0.0);
+        assertTrue(Double.isNaN(encode("float8", Double.NaN).readDouble()));
+        assertEquals(3f, encode("float4", 3).readFloat(), 0f);
+    }
+
+    /**
+     * Check a numeric : count of base 10000 digits, weight of the first digit,
+     * sign, display scale and digits.
+     */
+    private static void assertNumeric(final Number value, final int weight, final int sign, final int scale,
+            final int... digits) throws IOException {
+        final DataInputStream in = encode("numeric", value);
+        assertEquals(value + " digit count", digits.length, in.readShort());
+        assertEquals(value + " weight", weight, in.readShort());
+        assertEquals(value + " sign", sign, in.readShort() & 0xFFFF);
+        assertEquals(value + " scale", scale, in.readShort());
+        for (int digit : digits) {
+            assertEquals(value + " digit", digit, in.readShort());
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void numericTest() throws IOException {
+        assertNumeric(0, 0, 0, 0);
+        assertNumeric(new BigDecimal("123.45"), 0, 0, 2, 123, 4500);
+        //trailing zero digits are not written
+        assertNumeric(-10000L, 1, 0x4000, 0, 1);
+        assertNumeric(0.001, -1, 0, 3, 10);
+        assertNumeric(new BigInteger("123456789012345678901234567890"), 7, 0, 0,
+                12, 3456, 7890, 1234, 5678, 9012, 3456, 7890);
+        assertNumeric(new BigDecimal("1E+5"), 1, 0, 0, 10);
+        assertNumeric(Double.NaN, 0, 0xC000, 0);
+    }
+
+    @Test
+    public void textTest() throws IOException {
+        for (String type : new String[]{"text", "varchar", "bpchar", "name"}) {
+            final DataInputStream in = encode(type, "été");
+            final byte[] bytes = new byte[in.available()];
+            in.readFully(bytes);
+            assertArrayEquals(type, "été".getBytes(StandardCharsets.UTF_8), bytes);
+        }
+        //other values are written with their string representation
+        final DataInputStream in = encode("text", 12);
+        assertEquals('1', in.read());
+        assertEquals('2', in.read());
+    }
+
+    @Test
+    public void byteaTest() throws IOException {
+        final DataInputStream in = encode("bytea", new byte[]{1, -2, 3});
+        final byte[] bytes = new byte[in.available()];
+        in.readFully(bytes);
+        assertArrayEquals(new byte[]{1, -2, 3}, bytes);
+    }
+
+    /**
+     * Dates and timestamps without time zone are written in the local time,
+     * timestamps with time zone in UTC.
+     */
+    @Test
+    public void dateTest() throws IOException {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2000, Calendar.JANUARY, 2);
+        assertEquals(1, encode("date", calendar.getTime()).readInt());
+        calendar.set(1999, Calendar.DECEMBER, 31);
+        assertEquals(-1, encode("date", calendar.getTime()).readInt());
+
+        calendar.set(2000, Calendar.JANUARY, 1, 0, 0, 1);
+        final Timestamp timestamp = new Timestamp(calendar.getTimeInMillis());
+        timestamp.setNanos(500123000);
+        assertEquals(1500123, encode("timestamp", timestamp).readLong());
+
+        assertEquals(2000000, encode("timestamptz", new Date(PG_EPOCH + 2000)).readLong());
+        assertEquals(-1000, encode("timestamptz", new Date(PG_EPOCH - 1)).readLong());
+    }
+
+    @Test
+    public void uuidTest() throws IOException {
+        final UUID uuid = UUID.fromString("123e4567-e89b-12d3-a456-426655440000");
+        for (Object value : new Object[]{uuid, uuid.toString()}) {
+            final DataInputStream in = encode("uuid", value);
+            assertEquals(uuid.getMostSignificantBits(), in.readLong());
+            assertEquals(uuid.getLeastSignificantBits(), in.readLong());
+        }
+    }
+
+    /**
+     * Geometries are written as big endian EWKB, with the column SRID if known,
+     * otherwise the geometry SRID.
+     */
+    @Test
+    public void geometryTest() throws IOException {
+        final Point point = factory.createPoint(new Coordinate(1, 2));
+        point.setSRID(4326);
+        DataInputStream in = encode("geometry", geometryColumn(null), point, false);
+        assertEquals(0, in.readByte());
+        assertEquals(WKB_POINT | EWKB_SRID, in.readInt());
+        assertEquals(4326, in.readInt());
+        assertEquals(1, in.readDouble(), 0);
+        assertEquals(2, in.readDouble(), 0);
+        assertEquals(0, in.available());
+
+        //3D, SRID of the column
+        final Point point3D = factory.createPoint(new Coordinate(1, 2, 3));
+        in = encode("geometry", geometryColumn(2154), point3D, false);
+        assertEquals(0, in.readByte());
+        assertEquals(WKB_POINT | EWKB_Z | EWKB_SRID, in.readInt());
+        assertEquals(2154, in.readInt());
+        assertEquals(1, in.readDouble(), 0);
+        assertEquals(2, in.readDouble(), 0);
+        assertEquals(3, in.readDouble(), 0);
+        assertEquals(0, in.available());
+        assertEquals("caller geometry modified", 0, point3D.getSRID());
+
+        //linear rings are written as line strings
+        final LinearRing ring = factory.createLinearRing(new Coordinate[]{
+            new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 0)});
+        in = encode("geometry", geometryColumn(4326), ring, false);
+        assertEquals(0, in.readByte());
+        assertEquals(WKB_LINESTRING | EWKB_SRID, in.readInt());
+        assertEquals(4326, in.readInt());
+        assertEquals(4, in.readInt());
+    }
+
+    /**
+     * Empty points have no WKB representation, other empty geometries are
+     * written unless the PostGIS version does not support them.
+     */
+    @Test
+    public void emptyGeometryTest() throws IOException {
+        final AttributeType column = geometryColumn(4326);
+        assertNull(encode("geometry", column, factory.createPoint((Coordinate) null), false));
+        assertNull(encode("geometry", column, factory.createPolygon((LinearRing) null), true));
+        assertNotNull(encode("geometry", column, factory.createPolygon((LinearRing) null), false));
+    }
+
+    @Test
+    public void supportedTypesTest() {
+        assertTrue(PostgresBulkInsert.isSupported("int4", Integer.class));
+        assertTrue(PostgresBulkInsert.isSupported("numeric", Double.class));
+        assertTrue(PostgresBulkInsert.isSupported("text", Object.class));
+        assertTrue(PostgresBulkInsert.isSupported("uuid", String.class));
+        assertTrue(PostgresBulkInsert.isSupported("timestamptz", Timestamp.class));
+        assertTrue(PostgresBulkInsert.isSupported("geometry", Point.class));
+        assertFalse(PostgresBulkInsert.isSupported("int4", String.class));
+        assertFalse(PostgresBulkInsert.isSupported("bytea", String.class));
+        assertFalse(PostgresBulkInsert.isSupported("hstore", Object.class));
+        assertFalse(PostgresBulkInsert.isSupported("geography", Point.class));
+    }
+}
@@ -31,7 +31,7 @@ import org.opengis.feature.FeatureType;
 public class DefaultFeatureIDReader implements FeatureIDReader {
 
     private final String base;
-    private final AtomicLong inc = new AtomicLong();
+    private final AtomicLong inc;
 
     /**
      * This constructor will use the local part of the type as a
@@ -47,8 +47,18 @@ public class DefaultFeatureIDReader implements FeatureIDReader {
      * @param base string use as start element of the generated ids
      */
     public DefaultFeatureIDReader(final String base) {
+        this(base, 0);
+    }
+
+    /**
+     * @param base string use as start element of the generated ids
+     * @param skipped number of ids already generated by a previous reader,
+     *        first returned id is {@code skipped + 1}
+     */
+    public DefaultFeatureIDReader(final String base, final long skipped) {
         ensureNonNull("base string", base);
         this.base = base + ".";
+        this.inc = new AtomicLong(skipped);
     }
 
     /**
@@ -70,10 +70,26 @@ public class ShapefileAttributeReader {
             final AttributeType[] atts, final boolean read3D, final boolean memoryMapped,
             final double[] resample, final boolean readDBF, final Charset charset,
             final double[] estimateRes) throws IOException, DataStoreException {
+        this(locker, atts, read3D, memoryMapped, resample, readDBF, charset, estimateRes, 0, -1);
+    }
+
+    /**
+     * Create the shapefile attribute reader for a range of records, only the
+     * shx entries of this range are loaded.
+     *
+     * @param firstRecord - index of the first record of the range
+     * @param endRecord - index after the last record of the range, -1 for all records
+     * @see #ShapefileAttributeReader(AccessManager, AttributeType[], boolean, boolean, double[], boolean, Charset, double[])
+     */
+    public ShapefileAttributeReader(final AccessManager locker,
+            final AttributeType[] atts, final boolean read3D, final boolean memoryMapped,
+            final double[] resample, final boolean readDBF, final Charset charset,
+            final double[] estimateRes, final int firstRecord, final int endRecord)
+            throws IOException, DataStoreException {
         ArgumentChecks.ensureNonNull("locker", locker);
         this.locker = locker;
         this.metaData = atts;
-        this.shp = locker.getSHPReader(true, memoryMapped, read3D, resample);
+        this.shp = locker.getSHPReader(true, memoryMapped, read3D, resample, firstRecord, endRecord);
         this.dbf = locker.getDBFReader(memoryMapped, charset);
         if(estimateRes != null){
             this.estimateRes = true;
@@ -185,6 +201,25 @@ public class ShapefileAttributeReader {
         nextDbf();
     }
 
+    /**
+     * Move the reader before the record with the given index, next call to
+     * {@link #next()} reads this record.
+     *
+     * @param index record index, from 0 to the record count - 1.
+     * @throws IOException if shx file is not available or on read error.
+     */
+    public void moveTo(final int index) throws IOException {
+        try {
+            shp.goToRecord(index);
+        } catch (UnsupportedOperationException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        if (dbf != null) {
+            //dbf record numbers start at 1
+            dbf.goTo(index + 1);
+        }
+    }
+
     protected void nextShape() throws IOException {
         record = shp.nextRecord();
     }
@@ -0,0 +1,206 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import org.apache.sis.storage.DataStoreException;
+import org.geotoolkit.data.FeatureReader;
+import org.geotoolkit.data.FeatureStoreRuntimeException;
+import org.geotoolkit.data.FeatureStreams;
+import org.geotoolkit.data.query.Query;
+import org.opengis.feature.Feature;
+
+/**
+ * Spliterator over shapefile features, splitting the file in ranges of records.<br>
+ * <br>
+ * Record locations are given by the shx file, so each range is read by its own
+ * readers, with their own channels, starting directly at the first record of the range.
+ * Filter, properties and reprojection of the query are processed in each range,
+ * which makes them run in parallel when the spliterator is used by a parallel stream.<br>
+ * <br>
+ * Shapefile read locks must be released by the thread which acquired them, so a reader
+ * is always opened, read and closed in the same call : {@link #forEachRemaining(Consumer)}
+ * reads the whole range with a single reader, {@link #tryAdvance(Consumer)} reads records
+ * by batches. Each reader loads only the shx entries of the records it reads.
+ * Queries which can not be split keep a single reader, opened on creation and released
+ * by {@link #close()}.
+ *
+ * @module
+ * @see ShapefileFeatureStore#spliterator(org.apache.sis.storage.Query)
+ */
+public final class ShapefileFeatureSpliterator implements Spliterator<Feature>, AutoCloseable {
+
+    /**
+     * Number of records read by each reader opening.
+     * Ranges smaller than two batches are not split.
+     */
+    static final int BATCH_SIZE = 1024;
+
+    private final ShapefileFeatureStore store;
+
+    /**
+     * Query processed by the readers, only per feature parameters if this spliterator can be split.
+     */
+    private final Query query;
+    private final boolean read3D;
+    private final double[] resample;
+
+    /**
+     * Reader of all features when this spliterator can not be split, {@code null} otherwise.
+     */
+    private final FeatureReader reader;
+
+    /**
+     * Record range [current, end) remaining to read.
+     */
+    private int current;
+    private int end;
+
+    /**
+     * Features of last batch not yet returned.
+     */
+    private final Queue<Feature> pending = new ArrayDeque<>();
+
+    /**
+     * Create a spliterator which can not be split, reading all features of the query.
+     */
+    ShapefileFeatureSpliterator(final ShapefileFeatureStore store, final Query query) throws DataStoreException {
+        this.store    = store;
+        this.query    = query;
+        this.read3D   = true;
+        this.resample = null;
+        this.reader   = store.getFeatureReader(query);
+    }
+
+    /**
+     * Create a spliterator over a range of records.
+     *
+     * @param query per feature query parameters : filter, properties and reprojection.
+     * @param start first record index.
+     * @param end record index after the last one, record count for the whole file.
+     */
+    ShapefileFeatureSpliterator(final ShapefileFeatureStore store, final Query query,
+            final boolean read3D, final double[] resample, final int start, final int end) {
+        this.store    = store;
+        this.query    = query;
+        this.read3D   = read3D;
+        this.resample = resample;
+        this.reader   = null;
+        this.current  = start;
+        this.end      = end;
+    }
+
+    /**
+     * Read features of records [current, current+count) and give them to the action.
+     */
+    private void read(final int count, final Consumer<? super Feature> action) {
+        try (FeatureReader records = store.getRecordsReader(current, current + count, read3D, resample);
+             FeatureReader features = FeatureStreams.subset(FeatureStreams.limit(records, count), query)) {
+            while (features.hasNext()) {
+                action.accept(features.next());
+            }
+        } catch (DataStoreException ex) {
+            throw new FeatureStoreRuntimeException(ex);
+        }
+        current += count;
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public boolean tryAdvance(final Consumer<? super Feature> action) {
+        if (reader != null) {
+            if (!reader.hasNext()) return false;
+            action.accept(reader.next());
+            return true;
+        }
+        while (pending.isEmpty()) {
+            if (current >= end) return false;
+            read(Math.min(BATCH_SIZE, end - current), pending::add);
+        }
+        action.accept(pending.poll());
+        return true;
+    }
+
+    /**
+     * Read all remaining records with a single reader.
+     */
+    @Override
+    public void forEachRemaining(final Consumer<? super Feature> action) {
+        if (reader != null) {
+            while (reader.hasNext()) {
+                action.accept(reader.next());
+            }
+            return;
+        }
+        while (!pending.isEmpty()) {
+            action.accept(pending.poll());
+        }
+        if (current < end) {
+            read(end - current, action);
+        }
+    }
+
+    /**
+     * Split the first half of remaining records, if
+     * range is big enough and no feature is waiting.
+     */
+    @Override
+    public Spliterator<Feature> trySplit() {
+        if (reader != null || !pending.isEmpty()) return null;
+        final int size = end - current;
+        if (size < 2 * BATCH_SIZE) return null;
+        final int mid = current + size / 2;
+        final ShapefileFeatureSpliterator prefix = new ShapefileFeatureSpliterator(
+                store, query, read3D, resample, current, mid);
+        current = mid;
+        return prefix;
+    }
+
+    /**
+     * Number of remaining records, features may be less if query has a filter or if records are deleted.
+     */
+    @Override
+    public long estimateSize() {
+        if (reader != null) return Long.MAX_VALUE;
+        return (end - current) + pending.size();
+    }
+
+    /**
+     * {@inheritDoc }
+     */
+    @Override
+    public int characteristics() {
+        //-- not sized : record count read from shx includes deleted records, which are skipped.
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Release the reader of a spliterator which can not be split.
+     * Must be called by the thread which created this spliterator.
+     */
+    @Override
+    public void close() {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+}
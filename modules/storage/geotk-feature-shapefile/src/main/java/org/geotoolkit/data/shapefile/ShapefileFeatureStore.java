@@ -35,6 +35,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.logging.Level;
 import org.apache.sis.feature.builder.AttributeRole;
 import org.apache.sis.feature.builder.AttributeTypeBuilder;
@@ -73,7 +75,9 @@ import org.geotoolkit.data.shapefile.shp.ShapeType;
 import org.geotoolkit.data.shapefile.shp.ShapefileHeader;
 import org.geotoolkit.data.shapefile.shp.ShapefileReader;
 import org.geotoolkit.data.shapefile.shp.ShapefileWriter;
+import org.geotoolkit.data.shapefile.shx.ShxReader;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.FeatureExt;
 import org.geotoolkit.geometry.jts.JTSEnvelope2D;
 import org.geotoolkit.io.wkt.PrjFiles;
@@ -88,6 +92,7 @@ import org.opengis.feature.PropertyNotFoundException;
 import org.opengis.feature.PropertyType;
 import org.opengis.filter.Filter;
 import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.sort.SortBy;
 import org.opengis.geometry.Envelope;
 import org.opengis.parameter.ParameterValueGroup;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -297,12 +302,52 @@ public class ShapefileFeatureStore extends AbstractFeatureStore implements Resou
 
     @Override
     protected FeatureSet create(GenericName resourceName) throws DataStoreException {
-        return new DefaultFeatureResource(this, resourceName) {
-            @Override
-            public Envelope getEnvelope() throws DataStoreException {
-                return getHeaderEnvelope();
+        return new ShapefileFeatureResource(QueryBuilder.all(resourceName), true);
+    }
+
+    /**
+     * Feature resource streaming features with a {@link ShapefileFeatureSpliterator}.
+     */
+    private final class ShapefileFeatureResource extends DefaultFeatureResource {
+
+        private final org.geotoolkit.data.query.Query query;
+
+        /**
+         * Whether this resource contains all features, in which case envelope is read from header.
+         */
+        private final boolean all;
+
+        private ShapefileFeatureResource(final org.geotoolkit.data.query.Query query, final boolean all) throws DataStoreException {
+            super(ShapefileFeatureStore.this, query);
+            this.query = query;
+            this.all = all;
+        }
+
+        @Override
+        public Envelope getEnvelope() throws DataStoreException {
+            return all ? getHeaderEnvelope() : super.getEnvelope();
+        }
+
+        @Override
+        public FeatureSet subset(final org.geotoolkit.data.query.Query query) throws DataStoreException {
+            if (query == null) return this;
+            return new ShapefileFeatureResource(QueryUtilities.subQuery(this.query, query), false);
+        }
+
+        /**
+         * Features are read in parallel with a {@link ShapefileFeatureSpliterator} if requested
+         * by argument or by {@link HintsPending#FEATURE_PARALLEL} query hint. Otherwise they are
+         * read by the store feature reader, which uses the spatial index when there is one.
+         */
+        @Override
+        public Stream<Feature> features(final boolean parallel) throws DataStoreException {
+            final boolean hint = Boolean.TRUE.equals(query.getHints().get(HintsPending.FEATURE_PARALLEL));
+            if (!parallel && !hint) {
+                return super.features(false);
             }
-        };
+            final ShapefileFeatureSpliterator spliterator = spliterator(query);
+            return StreamSupport.stream(spliterator, true).onClose(spliterator::close);
+        }
     }
 
     /**
@@ -344,6 +389,89 @@ public class ShapefileFeatureStore extends AbstractFeatureStore implements Resou
         return FeatureStreams.subset(reader, qb.buildQuery());
     }
 
+    /**
+     * Create a spliterator over the features matching given query.
+     * <p>
+     * When the shx file is available the spliterator can be split in ranges of records,
+     * each range being read with its own channels. Filter, properties and reprojection
+     * are then processed by each range. Queries with sort, start index or maximum
+     * number of features are not splittable and are read as with {@link #getFeatureReader(org.apache.sis.storage.Query)}.
+     * </p>
+     * Returned spliterator must be closed when no longer used, by the thread which created it.
+     *
+     * @param query features to read.
+     * @return spliterator over features, never null.
+     * @throws DataStoreException if query is not supported or if files can not be read.
+     */
+    public ShapefileFeatureSpliterator spliterator(final Query query) throws DataStoreException {
+        if (!(query instanceof org.geotoolkit.data.query.Query)) throw new UnsupportedQueryException();
+        final org.geotoolkit.data.query.Query gquery = (org.geotoolkit.data.query.Query) query;
+
+        final SortBy[] sortBy = gquery.getSortBy();
+        final boolean global = (sortBy != null && sortBy.length > 0)
+                || gquery.getStartIndex() > 0 || gquery.getMaxFeatures() != null;
+
+        int count = -1;
+        if (!global && shpFiles.isWritable()) {
+            //local files only, split readers need random access.
+            //shx is a 100 bytes header followed by 8 bytes per record.
+            final Path shx = shpFiles.getPath(SHX);
+            if (shx != null && Files.isRegularFile(shx)) {
+                try {
+                    count = (int) ((Files.size(shx) - 100) / 8);
+                } catch (IOException ex) {
+                    throw new DataStoreException(ex);
+                }
+            }
+        }
+
+        if (count < 0) {
+            return new ShapefileFeatureSpliterator(this, gquery);
+        }
+
+        //check if we must read the 3d values
+        final CoordinateReferenceSystem reproject = gquery.getCoordinateSystemReproject();
+        final boolean read3D = (reproject==null || CRS.getVerticalComponent(reproject, true) != null);
+
+        //per feature query parameters, processed in each split
+        final QueryBuilder qb = new QueryBuilder(gquery.getTypeName());
+        qb.setProperties(gquery.getPropertyNames());
+        qb.setFilter(gquery.getFilter());
+        qb.setHints(gquery.getHints());
+        qb.setCRS(reproject);
+        return new ShapefileFeatureSpliterator(this, qb.buildQuery(), read3D, gquery.getResolution(), 0, count);
+    }
+
+    /**
+     * Create a reader of all features starting at given record.
+     * Used by {@link ShapefileFeatureSpliterator}, each call opens its own channels.
+     * Only the shx entries of the given range are loaded, entries after it are read on demand.
+     *
+     * @param firstRecord index of first record to read, from 0.
+     * @param endRecord index after the last record which will be read.
+     * @param read3D - for shp reader, read 3d coordinate or not.
+     * @param resample - for shp reader, decimate coordinates while reading
+     * @return reader starting at given record.
+     * @throws DataStoreException If we fails reading underlyig data.
+     */
+    protected FeatureReader getRecordsReader(final int firstRecord, final int endRecord, final boolean read3D,
+            final double[] resample) throws DataStoreException {
+        final FeatureType baseType = getFeatureType();
+        final ShapefileAttributeReader attReader = getAttributesReader(true, read3D, resample, firstRecord, endRecord);
+        try {
+            attReader.moveTo(firstRecord);
+        } catch (IOException ex) {
+            try {
+                attReader.close();
+            } catch (IOException e) {
+                ex.addSuppressed(e);
+            }
+            throw new DataStoreException(ex);
+        }
+        final FeatureIDReader idReader = new DefaultFeatureIDReader(baseType.getName().tip().toString(), firstRecord);
+        return ShapefileFeatureReader.create(attReader, idReader, baseType, null);
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -636,6 +764,24 @@ public class ShapefileFeatureStore extends AbstractFeatureStore implements Resou
      */
     protected ShapefileAttributeReader getAttributesReader(final boolean readDbf,
             final boolean read3D, final double[] resample) throws DataStoreException {
+        return getAttributesReader(readDbf, read3D, resample, 0, -1);
+    }
+
+    /**
+     * Returns the attribute reader, loading only the shx entries of given record range
+     * when memory mapping is not used.
+     *
+     * @param readDbf - if true, the dbf fill will be opened and read
+     * @param read3D - for shp reader, read 3d coordinate or not.
+     * @param resample - for shp reader, decimate coordinates while reading
+     * @param firstRecord - index of first record which will be read.
+     * @param endRecord - index after the last record which will be read, -1 for all records.
+     * @return A reader for reading of data attributes.
+     * @throws DataStoreException If we fails reading underlyig data.
+     */
+    protected ShapefileAttributeReader getAttributesReader(final boolean readDbf,
+            final boolean read3D, final double[] resample, final int firstRecord, final int endRecord)
+            throws DataStoreException {
 
         final AccessManager locker = shpFiles.createLocker();
         final FeatureType schema = getFeatureType();
@@ -652,7 +798,7 @@ public class ShapefileFeatureStore extends AbstractFeatureStore implements Resou
         }
         try {
             return new ShapefileAttributeReader(locker, descs, read3D,
-                    useMemoryMappedBuffer,resample, readDbf, dbfCharset,null);
+                    useMemoryMappedBuffer,resample, readDbf, dbfCharset,null, firstRecord, endRecord);
         } catch (IOException ex) {
             throw new DataStoreException(ex);
         }
@@ -61,7 +61,23 @@ public class IndexedShapefileAttributeReader <T extends Iterator<ShpData>> exten
             final double[] resample, final boolean readDBF, final Charset charset,
             final double[] estimateRes, final CloseableCollection<ShpData> col, final T goodRecs)
             throws IOException, DataStoreException {
-        super(locker,atts,read3D,memoryMapped,resample,readDBF,charset,estimateRes);
+        this(locker,atts,read3D,memoryMapped,resample,readDBF,charset,estimateRes,col,goodRecs,0,-1);
+    }
+
+    /**
+     * Create the shape reader, loading only the shx entries of given record range.
+     * Other parameters are the same as the constructor above.
+     *
+     * @param firstRecord index of first record which will be read.
+     * @param endRecord index after the last record which will be read, -1 for all records.
+     */
+    public IndexedShapefileAttributeReader(final AccessManager locker,
+            final AttributeType[] atts, final boolean read3D, final boolean memoryMapped,
+            final double[] resample, final boolean readDBF, final Charset charset,
+            final double[] estimateRes, final CloseableCollection<ShpData> col, final T goodRecs,
+            final int firstRecord, final int endRecord)
+            throws IOException, DataStoreException {
+        super(locker,atts,read3D,memoryMapped,resample,readDBF,charset,estimateRes,firstRecord,endRecord);
         this.goodRecs = goodRecs;
         this.closeableCollection = col;
         this.recno = 0;
@@ -105,6 +121,19 @@ public class IndexedShapefileAttributeReader <T extends Iterator<ShpData>> exten
         moveToNextDbf();
     }
 
+    /**
+     * {@inheritDoc }
+     * Only allowed when this reader is not restricted to a set of records.
+     */
+    @Override
+    public void moveTo(final int index) throws IOException {
+        if (this.goodRecs != null) {
+            throw new IllegalStateException("Reader is restricted to a set of records.");
+        }
+        super.moveTo(index);
+        this.recno = index;
+    }
+
     protected void moveToNextShape() throws IOException{
         if (!hasNextInternal()){
             throw new IndexOutOfBoundsException("No more features in reader");
@@ -306,6 +306,37 @@ public class IndexedShapefileFeatureStore extends ShapefileFeatureStore {
         return ShapefileFeatureReader.create(r, fidReader, featureType, hints);
     }
 
+    /**
+     * {@inheritDoc }
+     * Feature identifiers are the same as in readers created by {@link #getFeatureReader(org.apache.sis.storage.Query)}.
+     */
+    @Override
+    protected FeatureReader getRecordsReader(final int firstRecord, final int endRecord, final boolean read3D,
+            final double[] resample) throws DataStoreException {
+        final FeatureType baseType = getFeatureType();
+        final AttributeType[] atts = getAttributes(baseType, false).toArray(new AttributeType[0]);
+        final IndexedShapefileAttributeReader reader;
+        try {
+            reader = new IndexedShapefileAttributeReader(shpFiles.createLocker(), atts,
+                    read3D, useMemoryMappedBuffer, resample, true, dbfCharset, null, null, null,
+                    firstRecord, endRecord);
+        } catch (IOException ex) {
+            throw new DataStoreException(ex);
+        }
+        try {
+            reader.moveTo(firstRecord);
+            return createFeatureReader(reader, baseType, null);
+        } catch (IOException | MismatchedFeatureException | DataStoreException ex) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                ex.addSuppressed(e);
+            }
+            if (ex instanceof DataStoreException) throw (DataStoreException) ex;
+            throw new DataStoreException(ex);
+        }
+    }
+
     private IndexedShapefileAttributeReader getAttributesReader(final List<? extends AttributeType> properties,
             final Filter filter, final boolean read3D, final double[] resample) throws DataStoreException{
 
@@ -129,6 +129,16 @@ public final class AccessManager {
 
     public ShapefileReader getSHPReader(final boolean strict, final boolean memoryMapped,
             final boolean read3D, final double[] resample) throws IOException, DataStoreException{
+        return getSHPReader(strict, memoryMapped, read3D, resample, 0, -1);
+    }
+
+    /**
+     * Create a shp reader loading only the shx entries of records [firstRecord, endRecord[.
+     * An end of -1 loads all entries.
+     */
+    public ShapefileReader getSHPReader(final boolean strict, final boolean memoryMapped,
+            final boolean read3D, final double[] resample, final int firstRecord, final int endRecord)
+            throws IOException, DataStoreException{
 
         final URI shpUrl = files.getURI(ShpFileType.SHP);
         final ReadableByteChannel shpChannel = toClosingChannel(files.getReadChannel(shpUrl),false);
@@ -142,7 +152,7 @@ public final class AccessManager {
         }
 
         final ShapefileReader shpReader = new ShapefileReader(
-                shpChannel,shxChannel,strict,memoryMapped,read3D,resample);
+                shpChannel,shxChannel,strict,memoryMapped,read3D,resample,firstRecord,endRecord);
         readEntries.add(new AccessEntry(ShpFileType.SHP, shpUrl, shpReader));
         readEntries.add(new AccessEntry(ShpFileType.SHX, shxUrl, shpReader));
         return shpReader;
@@ -0,0 +1,149 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package org.geotoolkit.data.shapefile.shp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A 2D coordinate sequence view over a read-only (memory mapped) shapefile buffer.
+ * Coordinates are decoded on demand from the little endian [x1,y1, ... xN, yN] block
+ * of the record, no copy is made until the sequence is modified.
+ *
+ * @module
+ */
+final class MappedCoordinateSequence2D implements CoordinateSequence {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int size;
+
+    /**
+     * Copy of coordinates, created on first modification.
+     */
+    private double[] coordinates;
+
+    /**
+     * @param buffer read-only buffer containing the coordinates, not modified.
+     * @param offset position in buffer of the first x ordinate.
+     * @param size number of coordinates.
+     */
+    MappedCoordinateSequence2D(final ByteBuffer buffer, final int offset, final int size) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.offset = offset;
+        this.size   = size;
+    }
+
+    @Override
+    public int getDimension() {
+        return 2;
+    }
+
+    @Override
+    public Coordinate getCoordinate(final int index) {
+        return new Coordinate(getX(index), getY(index), Coordinate.NULL_ORDINATE);
+    }
+
+    @Override
+    public Coordinate getCoordinateCopy(final int i) {
+        return getCoordinate(i);
+    }
+
+    @Override
+    public void getCoordinate(final int index, final Coordinate coord) {
+        coord.x = getX(index);
+        coord.y = getY(index);
+    }
+
+    @Override
+    public double getX(final int index) {
+        return getOrdinate(index, 0);
+    }
+
+    @Override
+    public double getY(final int index) {
+        return getOrdinate(index, 1);
+    }
+
+    @Override
+    public double getOrdinate(final int index, final int ordinate) {
+        if (coordinates != null) {
+            return coordinates[index*2 + ordinate];
+        }
+        return buffer.getDouble(offset + (index*2 + ordinate)*8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void setOrdinate(final int index, final int ordinate, final double value) {
+        if (coordinates == null) {
+            coordinates = toArray();
+        }
+        coordinates[index*2 + ordinate] = value;
+    }
+
+    /**
+     * Read all coordinates in a new array.
+     */
+    private double[] toArray() {
+        final double[] array = new double[size*2];
+        if (coordinates != null) {
+            System.arraycopy(coordinates, 0, array, 0, array.length);
+        } else {
+            final ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            view.position(offset);
+            view.asDoubleBuffer().get(array);
+        }
+        return array;
+    }
+
+    @Override
+    public Coordinate[] toCoordinateArray() {
+        final Coordinate[] array = new Coordinate[size];
+        for(int i=0;i<size;i++){
+            array[i] = getCoordinate(i);
+        }
+        return array;
+    }
+
+    @Override
+    public Envelope expandEnvelope(final Envelope envlp) {
+        for(int i=0;i<size;i++){
+            envlp.expandToInclude(getX(i), getY(i));
+        }
+        return envlp;
+    }
+
+    @Override
+    public CoordinateSequence clone(){
+        return copy();
+    }
+
+    @Override
+    public CoordinateSequence copy() {
+        return new ShapeCoordinateSequence2D(toArray());
+    }
+
+}
@@ -39,9 +39,16 @@ import org.apache.sis.storage.DataStoreException;
  */
 public class MultiLineHandler extends AbstractShapeHandler {
 
+    /**
+     * Whether the buffers given to {@link #read(ByteBuffer, ShapeType)} map the
+     * whole file and are never reused by the reader.
+     */
+    private final boolean mapped;
+
     /** Create a MultiLineHandler for ShapeType.ARC */
     public MultiLineHandler(final boolean read3D) {
         super(ShapeType.ARC,read3D);
+        this.mapped = false;
     }
 
     /**
@@ -52,7 +59,21 @@ public class MultiLineHandler extends AbstractShapeHandler {
      * @throws DataStoreException If the ShapeType is not correct (see constructor).
      */
     public MultiLineHandler(final ShapeType type,final boolean read3D) throws DataStoreException {
+        this(type, read3D, false);
+    }
+
+    /**
+     * Create a MultiLineHandler for one of: <br>
+     * ShapeType.ARC,ShapeType.ARCM,ShapeType.ARCZ
+     *
+     * @param type The ShapeType to use.
+     * @param mapped true if the read buffers are memory mapped files, 2D lines
+     *        are then created as views over them instead of copies.
+     * @throws DataStoreException If the ShapeType is not correct (see constructor).
+     */
+    public MultiLineHandler(final ShapeType type, final boolean read3D, final boolean mapped) throws DataStoreException {
         super(type,read3D);
+        this.mapped = mapped;
         if ((type != ShapeType.ARC) && (type != ShapeType.ARCM) && (type != ShapeType.ARCZ)) {
             throw new DataStoreException("MultiLineHandler constructor - expected type to be 3, 13 or 23");
         }
@@ -117,6 +138,10 @@ public class MultiLineHandler extends AbstractShapeHandler {
             partOffsets[i] = buffer.getInt();
         }
 
+        if (dimensions == 2 && mapped) {
+            return readMapped(buffer, partOffsets, numPoints);
+        }
+
         // read the first two coordinates and start building the coordinate sequences
         final double[][] lines = new double[numParts][0];
         //use a double buffer to increase bulk reading
@@ -184,6 +209,35 @@ public class MultiLineHandler extends AbstractShapeHandler {
         return GEOMETRY_FACTORY.createMultiLineString(lineCharSequences);
     }
 
+    /**
+     * Create 2D line strings as views over a memory mapped buffer.
+     * Such buffer is never reused by the reader, so coordinates can be
+     * decoded lazily instead of being copied.
+     *
+     * @param buffer memory mapped buffer, positioned on the first point.
+     */
+    private Object readMapped(final ByteBuffer buffer, final int[] partOffsets, final int numPoints) {
+        final int start = buffer.position();
+        final int numParts = partOffsets.length;
+        final LineString[] lines = new LineString[numParts];
+        for (int part = 0; part < numParts; part++) {
+            final int finish = (part == numParts - 1) ? numPoints : partOffsets[part + 1];
+            final int length = finish - partOffsets[part];
+            final int position = start + partOffsets[part] * 16;
+            final CoordinateSequence cs;
+            if (length == 1) {
+                //only one point for a line, JTS do not like that, so we make two points at same place.
+                final double x = buffer.getDouble(position);
+                final double y = buffer.getDouble(position + 8);
+                cs = new ShapeCoordinateSequence2D(new double[]{x, y, x, y});
+            } else {
+                cs = new MappedCoordinateSequence2D(buffer, position, length);
+            }
+            lines[part] = GEOMETRY_FACTORY.createLineString(cs);
+        }
+        return GEOMETRY_FACTORY.createMultiLineString(lines);
+    }
+
 
 
 //    @Override
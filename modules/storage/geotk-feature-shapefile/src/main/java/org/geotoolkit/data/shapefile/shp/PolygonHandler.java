@@ -17,7 +17,6 @@
  */
 package org.geotoolkit.data.shapefile.shp;
 
-import java.nio.DoubleBuffer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -50,12 +49,28 @@ public class PolygonHandler extends AbstractShapeHandler {
     protected final List<LinearRing> shells = new ArrayList<LinearRing>();
     protected final List<LinearRing> holes = new ArrayList<LinearRing>();
 
+    /**
+     * Whether the buffers given to {@link #read(ByteBuffer, ShapeType)} map the
+     * whole file and are never reused by the reader.
+     */
+    private final boolean mapped;
+
     public PolygonHandler(final boolean read3D) {
         super(ShapeType.POLYGON,read3D);
+        this.mapped = false;
     }
 
     public PolygonHandler(final ShapeType type, final boolean read3D) throws DataStoreException {
+        this(type, read3D, false);
+    }
+
+    /**
+     * @param mapped true if the read buffers are memory mapped files, 2D rings
+     *        are then created as views over them instead of copies.
+     */
+    public PolygonHandler(final ShapeType type, final boolean read3D, final boolean mapped) throws DataStoreException {
         super(type,read3D);
+        this.mapped = mapped;
         if ((type != ShapeType.POLYGON) && (type != ShapeType.POLYGONM)
                 && (type != ShapeType.POLYGONZ)) {
             throw new DataStoreException(
@@ -160,13 +175,21 @@ public class PolygonHandler extends AbstractShapeHandler {
             partOffsets[i] = buffer.getInt();
         }
 
-        final DoubleBuffer dbuffer = buffer.asDoubleBuffer();
         final int dimensions = (read3D && shapeType == ShapeType.POLYGONZ)? 3:2;
-
-        //read everything in one round : +2 for minZ/maxZ
-        final double[] coords = new double[numPoints*dimensions + ((dimensions==2)?0:2)];
         final int xySize = numPoints*2;
-        dbuffer.get(coords);
+
+        //a memory mapped file is never reused by the reader :
+        //2D rings can be views over it instead of copies.
+        final int start = buffer.position();
+        final boolean view = dimensions == 2 && mapped;
+        final double[] coords;
+        if (view) {
+            coords = null;
+        } else {
+            //read everything in one round : +2 for minZ/maxZ
+            coords = new double[numPoints*dimensions + ((dimensions==2)?0:2)];
+            buffer.asDoubleBuffer().get(coords);
+        }
 
         int coordIndex = 0;
         for (int part = 0; part < numParts; part++) {
@@ -186,20 +209,40 @@ public class PolygonHandler extends AbstractShapeHandler {
                 continue;
             }
 
-            final Coordinate[] points = new Coordinate[length];
-            for (int i = 0; i < length; i++) {
-                if(dimensions==2){
-                    points[i] = new Coordinate(coords[coordIndex*2],coords[coordIndex*2+1]);
-                }else{
-                    points[i] = new Coordinate(coords[coordIndex*2],coords[coordIndex*2+1],coords[xySize+coordIndex+2]);
+            final Coordinate[] points;
+            CoordinateSequence cs = null;
+            if (view) {
+                cs = new MappedCoordinateSequence2D(buffer, start + coordIndex*16, length);
+                coordIndex += length;
+                if (length > 0 && cs.getX(0) == cs.getX(length-1) && cs.getY(0) == cs.getY(length-1)) {
+                    points = null;
+                } else {
+                    points = cs.toCoordinateArray();
+                }
+            } else {
+                points = new Coordinate[length];
+                for (int i = 0; i < length; i++) {
+                    if(dimensions==2){
+                        points[i] = new Coordinate(coords[coordIndex*2],coords[coordIndex*2+1]);
+                    }else{
+                        points[i] = new Coordinate(coords[coordIndex*2],coords[coordIndex*2+1],coords[xySize+coordIndex+2]);
+                    }
+                    coordIndex++;
                 }
-                coordIndex++;
             }
 
-            JTS.ensureClosed(points);
-
-            final LinearRing ring = GEOMETRY_FACTORY.createLinearRing(points);
-            if (CGAlgorithms.isCCW(points)) {
+            final LinearRing ring;
+            final boolean ccw;
+            if (points == null) {
+                //closed ring view, no copy needed
+                ring = GEOMETRY_FACTORY.createLinearRing(cs);
+                ccw = isCCW(cs);
+            } else {
+                JTS.ensureClosed(points);
+                ring = GEOMETRY_FACTORY.createLinearRing(points);
+                ccw = CGAlgorithms.isCCW(points);
+            }
+            if (ccw) {
                 // counter-clockwise
                 holes.add(ring);
             } else {
@@ -323,6 +366,57 @@ public class PolygonHandler extends AbstractShapeHandler {
 //        }
 //    }
 
+    /**
+     * Same algorithm as {@link CGAlgorithms#isCCW(Coordinate[])}, working on a closed
+     * coordinate sequence to avoid creating a Coordinate array.
+     */
+    private static boolean isCCW(final CoordinateSequence ring) {
+        final int nPts = ring.size() - 1;
+        if (nPts < 3) {
+            throw new IllegalArgumentException("Ring has fewer than 4 points, so orientation cannot be determined");
+        }
+        // find highest point
+        int hiIndex = 0;
+        double hiY = ring.getY(0);
+        for (int i = 1; i <= nPts; i++) {
+            final double y = ring.getY(i);
+            if (y > hiY) {
+                hiY = y;
+                hiIndex = i;
+            }
+        }
+        final double hiX = ring.getX(hiIndex);
+
+        // find distinct point before and after highest point
+        int iPrev = hiIndex;
+        do {
+            iPrev = iPrev - 1;
+            if (iPrev < 0) iPrev = nPts;
+        } while (ring.getX(iPrev) == hiX && ring.getY(iPrev) == hiY && iPrev != hiIndex);
+
+        int iNext = hiIndex;
+        do {
+            iNext = (iNext + 1) % nPts;
+        } while (ring.getX(iNext) == hiX && ring.getY(iNext) == hiY && iNext != hiIndex);
+
+        final Coordinate prev = ring.getCoordinate(iPrev);
+        final Coordinate hiPt = ring.getCoordinate(hiIndex);
+        final Coordinate next = ring.getCoordinate(iNext);
+
+        // this will catch all cases where there are not 3 distinct points,
+        // including the case where the input array has fewer than 4 elements
+        if (prev.equals2D(hiPt) || next.equals2D(hiPt) || prev.equals2D(next)) {
+            return false;
+        }
+
+        final int disc = CGAlgorithms.computeOrientation(prev, hiPt, next);
+        if (disc == 0) {
+            // collinear points, use x order
+            return prev.x > next.x;
+        }
+        return disc > 0;
+    }
+
     /**
      * @param shells
      * @param holes
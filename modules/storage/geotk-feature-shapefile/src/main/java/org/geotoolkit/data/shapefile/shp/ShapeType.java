@@ -175,6 +175,16 @@ public enum ShapeType {
     }
 
     public ShapeHandler getShapeHandler(final boolean read3D, final double[] res) throws DataStoreException {
+        return getShapeHandler(read3D, res, false);
+    }
+
+    /**
+     * @param res decimation resolution, or null to read geometries at full resolution.
+     * @param mapped true if the handler will read from a memory mapped file,
+     *        which allows geometries to be views over the buffer.
+     * @return The correct handler for this ShapeType. Returns a new one.
+     */
+    public ShapeHandler getShapeHandler(final boolean read3D, final double[] res, final boolean mapped) throws DataStoreException {
         switch (id) {
             case 0:
                 return new NullHandler(read3D);
@@ -185,12 +195,12 @@ public enum ShapeType {
             case 3:
             case 13:
             case 23:
-                return (res == null) ? new MultiLineHandler(this,read3D) :
+                return (res == null) ? new MultiLineHandler(this,read3D,mapped) :
                                        new DecimateMultiLineHandler(this,read3D,res);
             case 5:
             case 15:
             case 25:
-                return (res == null) ? new PolygonHandler(this,read3D) :
+                return (res == null) ? new PolygonHandler(this,read3D,mapped) :
                                        new DecimatePolygonHandler(this,read3D,res);
             case 8:
             case 18:
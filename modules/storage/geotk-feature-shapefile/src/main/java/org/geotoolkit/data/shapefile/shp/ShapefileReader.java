@@ -143,19 +143,33 @@ public final class ShapefileReader implements Closeable{
     public ShapefileReader(final ReadableByteChannel shpChannel, final ReadableByteChannel shxChannel,
             final boolean strict,final boolean useMemoryMapped, final boolean read3D,
             final double[] resample) throws IOException, DataStoreException {
+        this(shpChannel, shxChannel, strict, useMemoryMapped, read3D, resample, 0, -1);
+    }
+
+    /**
+     * Creates a new instance of ShapeFile which mostly reads a range of records.
+     * Only the shx entries of this range are loaded, see {@link ShxReader}.
+     *
+     * @param firstRecord index of the first record of the range.
+     * @param endRecord index after the last record of the range, or -1 for all records.
+     */
+    public ShapefileReader(final ReadableByteChannel shpChannel, final ReadableByteChannel shxChannel,
+            final boolean strict,final boolean useMemoryMapped, final boolean read3D,
+            final double[] resample, final int firstRecord, final int endRecord)
+            throws IOException, DataStoreException {
         this.channel = shpChannel;
         this.randomAccessEnabled = channel instanceof FileChannel;
 
         header = readHeader(channel, strict);
 
         if(shxChannel != null){
-            shxReader = new ShxReader(shxChannel, true);
+            shxReader = new ShxReader(shxChannel, useMemoryMapped, firstRecord, endRecord);
         }else{
             currentShape = UNKNOWN;
         }
 
         fileShapeType = header.getShapeType();
-        handler = fileShapeType.getShapeHandler(read3D,resample);
+        handler = fileShapeType.getShapeHandler(read3D, resample, channel instanceof FileChannel && useMemoryMapped);
 
         if (handler == null) {
             throw new IOException("Unsuported shape type:" + fileShapeType);
@@ -546,24 +560,7 @@ public final class ShapefileReader implements Closeable{
     public void goTo(final int offset) throws IOException, UnsupportedOperationException {
         disableShxUsage();
         if (randomAccessEnabled) {
-            if (useMemoryMappedBuffer) {
-                buffer.position(offset);
-            } else {
-                /*
-                 * Check to see if requested offset is already loaded; ensure
-                 * that record header is in the buffer
-                 */
-                if (currentOffset <= offset && currentOffset + buffer.limit() >= offset + 8) {
-                    buffer.position(toBufferOffset(offset));
-                } else {
-                    final FileChannel fc = (FileChannel)channel;
-                    fc.position(offset);
-                    currentOffset = offset;
-                    buffer.position(0);
-                    fill(buffer, fc);
-                    buffer.position(0);
-                }
-            }
+            load(offset);
 
             final int oldRecordOffset = record.end;
             record.end = offset;
@@ -578,6 +575,31 @@ public final class ShapefileReader implements Closeable{
         }
     }
 
+    /**
+     * Ensure the record header at given file offset is available in the buffer,
+     * and move buffer position to it.
+     */
+    private void load(final int offset) throws IOException {
+        if (useMemoryMappedBuffer) {
+            buffer.position(offset);
+        } else {
+            /*
+             * Check to see if requested offset is already loaded; ensure
+             * that record header is in the buffer
+             */
+            if (currentOffset <= offset && currentOffset + buffer.limit() >= offset + 8) {
+                buffer.position(toBufferOffset(offset));
+            } else {
+                final FileChannel fc = (FileChannel)channel;
+                fc.position(offset);
+                currentOffset = offset;
+                buffer.position(0);
+                fill(buffer, fc);
+                buffer.position(0);
+            }
+        }
+    }
+
     /**
      * Returns the shape at the specified byte distance from the beginning of
      * the file. Mind that:
@@ -631,6 +653,54 @@ public final class ShapefileReader implements Closeable{
         throw new UnsupportedOperationException("Random Access not enabled");
     }
 
+    /**
+     * Returns the record with the given number, using the shx file to find its location.
+     * Unlike {@link #recordAt(int)}, the shx file stays in use : calls to {@link #hasNext()}
+     * and {@link #nextRecord()} continue with the following records.
+     * When the reader uses memory mapped buffers this is a direct access, no data is read
+     * from the channel.
+     *
+     * @param index record index, from 0 to the shx record count - 1.
+     * @return The record at given index.
+     * @throws IOException thrown in a read error occurs
+     * @throws UnsupportedOperationException thrown if not a random access file
+     *         or if the shx file is not used.
+     */
+    public Record recordByNumber(final int index) throws IOException, UnsupportedOperationException {
+        goToRecord(index);
+        return nextRecord();
+    }
+
+    /**
+     * Moves the reader before the record with the given number, using the shx file to find
+     * its location. Next call to {@link #nextRecord()} returns this record, and following
+     * calls the next ones.
+     *
+     * @param index record index, from 0 to the shx record count - 1.
+     * @throws IOException thrown in a read error occurs
+     * @throws UnsupportedOperationException thrown if not a random access file
+     *         or if the shx file is not used.
+     */
+    public void goToRecord(final int index) throws IOException, UnsupportedOperationException {
+        if (!randomAccessEnabled) {
+            throw new UnsupportedOperationException("Random Access not enabled");
+        }
+        if (shxReader == null) {
+            throw new UnsupportedOperationException("Access by record number requires the shx file");
+        }
+        if (index < 0 || index >= shxReader.getRecordCount()) {
+            throw new IndexOutOfBoundsException("Record index " + index + " out of range [0.."
+                    + shxReader.getRecordCount() + "[");
+        }
+        final int offset = shxReader.getOffsetInBytes(index);
+        load(offset);
+        // record headers in big endian, the declared number is checked by hasNext
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        record.number = buffer.getInt(buffer.position()) - 1;
+        record.end = offset;
+        currentShape = index;
+    }
+
     /**
      * Converts file offset to buffer offset
      *
@@ -17,6 +17,7 @@
  */
 package org.geotoolkit.data.shapefile.shx;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -44,23 +45,26 @@ import org.geotoolkit.data.dbf.Closeable;
  */
 public final class ShxReader implements Closeable{
 
-    private static final int RECS_IN_BUFFER = 2000;
-
      /**
      * Stores the creation stack trace if assertion are enable.
      */
     protected Throwable creationStack;
     private final FileChannel channel;
+    /**
+     * Read-only mapped file content, or {@code null} if records are loaded in {@link #content}.
+     * Record values are read with absolute methods, so concurrent reads do not interfere.
+     */
     private final ByteBuffer buffer;
-    private final boolean useMemoryMappedBuffer;
     private final ShapefileHeader header;
 
-    private int channelOffset;
-    private int lastIndex = -1;
-    private int recOffset;
-    private int recLen;
     private int[] content;
 
+    /**
+     * Index of the first record in {@link #content}. When only a range of records is loaded,
+     * other records are read from {@link #channel}.
+     */
+    private int first;
+
     private volatile boolean closed = false;
 
     /**
@@ -71,11 +75,25 @@ public final class ShxReader implements Closeable{
      */
     public ShxReader(final ReadableByteChannel shxChannel, final boolean useMemoryMappedBuffer)
             throws IOException {
+        this(shxChannel, useMemoryMappedBuffer, 0, -1);
+    }
+
+    /**
+     * Load a range of records of the index file from the given channel.
+     * When the channel is a file channel and is not memory mapped, only records of the
+     * range are loaded, other records are read from the channel when requested.
+     *
+     * @param shxChannel The channel to read from.
+     * @param firstRecord index of the first record to load.
+     * @param endRecord index after the last record to load, or -1 for all records.
+     * @throws IOException If an error occurs.
+     */
+    public ShxReader(final ReadableByteChannel shxChannel, final boolean useMemoryMappedBuffer,
+            final int firstRecord, final int endRecord) throws IOException {
 
         // init the tracer if we need to debug a connection leak
         assert (creationStack = new IllegalStateException().fillInStackTrace()) != null;
 
-        this.useMemoryMappedBuffer = useMemoryMappedBuffer;
         final ReadableByteChannel byteChannel = shxChannel;
 
         try {
@@ -83,28 +101,23 @@ public final class ShxReader implements Closeable{
 
             //windows do not handle memory mapped buffer correctly
             //the buffer is released by the GC very late, which causes some file locks to remain.
-//            if (byteChannel instanceof FileChannel) {
-//
-//                this.channel = (FileChannel) byteChannel;
-//                if (useMemoryMappedBuffer) {
-//                    LOGGER.finest("Memory mapping file...");
-//                    this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY,
-//                            0, this.channel.size());
-//
-//                    this.channelOffset = 0;
-//                } else {
-//                    LOGGER.finest("Reading from file...");
-//                    this.buffer = ByteBuffer.allocateDirect(8 * RECS_IN_BUFFER);
-//                    this.channelOffset = 0;
-//                }
-//
-//            } else {
+            //mapping is only done when explicitly requested.
+            if (useMemoryMappedBuffer && byteChannel instanceof FileChannel) {
+                LOGGER.finest("Memory mapping shx...");
+                this.channel = (FileChannel) byteChannel;
+                this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+            } else if (endRecord >= 0 && byteChannel instanceof FileChannel) {
+                this.channel = (FileChannel) byteChannel;
+                this.buffer = null;
+                LOGGER.finest("Loading shx range...");
+                readRecords(this.channel, firstRecord, Math.min(endRecord, getRecordCount()));
+            } else {
                 this.channel = null;
                 this.buffer = null;
                 LOGGER.finest("Loading all shx...");
                 readRecords(byteChannel);
                 byteChannel.close();
-//            }
+            }
         } catch (Throwable e) {
             if (byteChannel != null) {
                 byteChannel.close();
@@ -152,26 +165,41 @@ public final class ShxReader implements Closeable{
         ints.get(content);
     }
 
-    private void readRecord(final int index) throws IOException {
+    /**
+     * Load records [firstRecord, endRecord[ with positional reads.
+     */
+    private void readRecords(final FileChannel channel, final int firstRecord, final int endRecord) throws IOException {
         check();
-        final int pos = 100 + index * 8;
-        if (!useMemoryMappedBuffer) {
-            if (pos - channelOffset < 0
-                    || channelOffset + buffer.limit() <= pos
-                    || lastIndex == -1) {
-                LOGGER.finest("Filling buffer...");
-                channelOffset = pos;
-                channel.position(pos);
-                buffer.clear();
-                channel.read(buffer);
-                buffer.flip();
-            }
+        first = Math.max(0, Math.min(firstRecord, endRecord));
+        final ByteBuffer buffer = ByteBuffer.allocate((endRecord - first) * 8);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        long position = 100 + first * 8L;
+        while (buffer.remaining() > 0) {
+            final int n = channel.read(buffer, position);
+            if (n < 0) throw new EOFException("Premature end of shx file");
+            position += n;
         }
+        buffer.flip();
+        content = new int[buffer.remaining() / 4];
+        buffer.asIntBuffer().get(content);
+    }
 
-        buffer.position(pos - channelOffset);
-        recOffset = buffer.getInt();
-        recLen    = buffer.getInt();
-        lastIndex = index;
+    /**
+     * Read an integer of a record which is not loaded.
+     */
+    private int readInt(final long position) throws IOException {
+        check();
+        if (channel == null) {
+            throw new IndexOutOfBoundsException("Record at position " + position + " is not in the shx file.");
+        }
+        final ByteBuffer value = ByteBuffer.allocate(4);
+        value.order(ByteOrder.BIG_ENDIAN);
+        while (value.remaining() > 0) {
+            if (channel.read(value, position + value.position()) < 0) {
+                throw new EOFException("Premature end of shx file");
+            }
+        }
+        return value.getInt(0);
     }
 
     @Override
@@ -225,14 +253,15 @@ public final class ShxReader implements Closeable{
      */
     public int getOffset(final int index) throws IOException {
 
-        if (this.channel != null) {
-            if (this.lastIndex != index) {
-                this.readRecord(index);
-            }
-            return this.recOffset;
-        } else {
-            return content[2 * index];
+        if (this.buffer != null) {
+            check();
+            return this.buffer.getInt(100 + index * 8);
         }
+        final int i = 2 * (index - first);
+        if (i >= 0 && i < content.length) {
+            return content[i];
+        }
+        return readInt(100 + index * 8L);
     }
 
     /**
@@ -255,14 +284,15 @@ public final class ShxReader implements Closeable{
      */
     public int getContentLength(final int index) throws IOException {
 
-        if (this.channel != null) {
-            if (this.lastIndex != index) {
-                this.readRecord(index);
-            }
-            return this.recLen;
-        } else {
-            return content[2 * index + 1];
+        if (this.buffer != null) {
+            check();
+            return this.buffer.getInt(104 + index * 8);
+        }
+        final int i = 2 * (index - first) + 1;
+        if (i > 0 && i < content.length) {
+            return content[i];
         }
+        return readInt(104 + index * 8L);
     }
 
 }
@@ -0,0 +1,152 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.shapefile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.apache.sis.feature.builder.AttributeRole;
+import org.apache.sis.feature.builder.FeatureTypeBuilder;
+import org.apache.sis.internal.feature.AttributeConvention;
+import org.apache.sis.referencing.CommonCRS;
+import org.geotoolkit.data.FeatureReader;
+import org.geotoolkit.data.query.QueryBuilder;
+import org.geotoolkit.data.shapefile.indexed.IndexedShapefileFeatureStore;
+import org.geotoolkit.factory.FactoryFinder;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test {@link ShapefileFeatureSpliterator} and parallel feature streams.
+ *
+ * @module
+ */
+public class ShapefileFeatureSpliteratorTest extends AbstractTestCaseSupport {
+
+    private static final int NB_FEATURES = 5000;
+
+    private File createShapefile() throws Exception {
+        final FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName("points");
+        ftb.addAttribute(Point.class).setName("geom").setCRS(CommonCRS.WGS84.normalizedGeographic()).addRole(AttributeRole.DEFAULT_GEOMETRY);
+        ftb.addAttribute(Integer.class).setName("num");
+        final FeatureType type = ftb.build();
+
+        final File file = getTempFile();
+        final ShapefileFeatureStore store = new ShapefileFeatureStore(file.toURI());
+        store.createFeatureType(type);
+        final GeometryFactory gf = new GeometryFactory();
+        final List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < NB_FEATURES; i++) {
+            final Feature feature = type.newInstance();
+            feature.setPropertyValue("geom", gf.createPoint(new Coordinate(i % 360 - 180, i % 180 - 90)));
+            feature.setPropertyValue("num", i);
+            features.add(feature);
+        }
+        store.addFeatures(store.getName().toString(), features);
+        store.close();
+        return file;
+    }
+
+    private static List<String> readIds(final ShapefileFeatureStore store) throws Exception {
+        final List<String> ids = new ArrayList<>();
+        try (FeatureReader reader = store.getFeatureReader(QueryBuilder.all(store.getName()))) {
+            while (reader.hasNext()) {
+                ids.add(String.valueOf(reader.next().getPropertyValue(AttributeConvention.IDENTIFIER_PROPERTY.toString())));
+            }
+        }
+        return ids;
+    }
+
+    private static void checkStore(final ShapefileFeatureStore store) throws Exception {
+        final List<String> expectedIds = readIds(store);
+        assertEquals(NB_FEATURES, expectedIds.size());
+
+        // split ranges should read same features as sequential reader, in same order.
+        try (ShapefileFeatureSpliterator spliterator = store.spliterator(QueryBuilder.all(store.getName()))) {
+            assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+            assertEquals(NB_FEATURES, spliterator.estimateSize());
+            final Stream<Feature> stream = StreamSupport.stream(spliterator, true);
+            final List<Feature> features = stream.collect(Collectors.toList());
+            assertEquals(NB_FEATURES, features.size());
+            for (int i = 0; i < NB_FEATURES; i++) {
+                final Feature feature = features.get(i);
+                assertEquals(i, ((Number) feature.getPropertyValue("num")).intValue());
+                assertEquals(expectedIds.get(i), feature.getPropertyValue(AttributeConvention.IDENTIFIER_PROPERTY.toString()));
+            }
+        }
+
+        // filter is processed in each range.
+        final FilterFactory2 ff = (FilterFactory2) FactoryFinder.getFilterFactory(null);
+        final Filter filter = ff.greaterOrEqual(ff.property("num"), ff.literal(NB_FEATURES - 1500));
+        final QueryBuilder qb = new QueryBuilder(store.getName().toString());
+        qb.setFilter(filter);
+        try (ShapefileFeatureSpliterator spliterator = store.spliterator(qb.buildQuery())) {
+            final int[] nums = StreamSupport.stream(spliterator, true)
+                    .mapToInt((Feature f) -> ((Number) f.getPropertyValue("num")).intValue()).toArray();
+            assertEquals(1500, nums.length);
+            for (int i = 0; i < nums.length; i++) {
+                assertEquals(NB_FEATURES - 1500 + i, nums[i]);
+            }
+        }
+
+        // a short-circuit stops before reading all ranges.
+        try (ShapefileFeatureSpliterator spliterator = store.spliterator(QueryBuilder.all(store.getName()))) {
+            assertTrue(StreamSupport.stream(spliterator, true).anyMatch((Feature f) -> f.getPropertyValue("num").equals(10)));
+        }
+
+        // sort can not be processed by ranges.
+        qb.reset();
+        qb.setTypeName(store.getName());
+        qb.setSortBy(new SortBy[]{ff.sort("num", SortOrder.DESCENDING)});
+        try (ShapefileFeatureSpliterator spliterator = store.spliterator(qb.buildQuery())) {
+            assertNull(spliterator.trySplit());
+            final Feature first = StreamSupport.stream(spliterator, true).findFirst().get();
+            assertEquals(NB_FEATURES - 1, ((Number) first.getPropertyValue("num")).intValue());
+        }
+    }
+
+    @Test
+    public void testSpliterator() throws Exception {
+        final File file = createShapefile();
+        final ShapefileFeatureStore store = new ShapefileFeatureStore(file.toURI());
+        checkStore(store);
+        store.close();
+    }
+
+    @Test
+    public void testIndexedSpliterator() throws Exception {
+        final File file = createShapefile();
+        final IndexedShapefileFeatureStore store = new IndexedShapefileFeatureStore(file.toURI());
+        checkStore(store);
+        store.close();
+    }
+}
@@ -22,6 +22,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.geotoolkit.ShapeTestData;
 import org.geotoolkit.data.session.Session;
@@ -230,6 +231,61 @@ public class ShapefileTest extends AbstractTestCaseSupport {
         }
     }
 
+    /**
+     * Geometries read from memory mapped files must be the same as copied ones,
+     * and records must be reachable by their number.
+     */
+    @Test
+    public void testMemoryMappedRecordByNumber() throws Exception {
+        copyShapefiles(STATEPOP);
+        final URL url = TestData.url(AbstractTestCaseSupport.class, STATEPOP);
+        final List<Geometry> expected = new ArrayList<>();
+        ShapefileReader reader = new ShpFiles(url).createLocker().getSHPReader(false, false, true, null);
+        try {
+            while (reader.hasNext()) {
+                expected.add((Geometry) reader.nextRecord().shape());
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(49, expected.size());
+
+        reader = new ShpFiles(url).createLocker().getSHPReader(false, true, true, null);
+        try {
+            int i = 0;
+            while (reader.hasNext()) {
+                final Geometry geom = (Geometry) reader.nextRecord().shape();
+                assertTrue(expected.get(i).equalsExact(geom));
+                assertEquals(expected.get(i).getEnvelopeInternal(), geom.getEnvelopeInternal());
+                i++;
+            }
+            assertEquals(expected.size(), i);
+
+            // random access, then sequential reading should continue after the record.
+            for (i = expected.size() - 1; i >= 0; i -= 3) {
+                assertTrue(expected.get(i).equalsExact((Geometry) reader.recordByNumber(i).shape()));
+            }
+            reader.recordByNumber(40);
+            for (i = 41; i < expected.size(); i++) {
+                assertTrue(reader.hasNext());
+                assertTrue(expected.get(i).equalsExact((Geometry) reader.nextRecord().shape()));
+            }
+            assertFalse(reader.hasNext());
+        } finally {
+            reader.close();
+        }
+
+        // same access without memory mapping.
+        reader = new ShpFiles(url).createLocker().getSHPReader(false, false, true, null);
+        try {
+            for (int i = 0; i < expected.size(); i += 5) {
+                assertTrue(expected.get(i).equalsExact((Geometry) reader.recordByNumber(i).shape()));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
     protected void loadShapes(final String resource, final int expected) throws Exception {
         final URL url = ShapeTestData.url(resource);
         final ShpFiles shpFiles = new ShpFiles(url);
@@ -253,7 +309,7 @@ public class ShapefileTest extends AbstractTestCaseSupport {
         final URL url = ShapeTestData.url(resource);
         final ShpFiles shpFiles = new ShpFiles(url);
         final AccessManager locker = shpFiles.createLocker();
-        final ShapefileReader reader = locker.getSHPReader(false, false, true, null);
+        final ShapefileReader reader = locker.getSHPReader(false, true, true, null);
         int cnt = 0;
         try {
             while (reader.hasNext()) {
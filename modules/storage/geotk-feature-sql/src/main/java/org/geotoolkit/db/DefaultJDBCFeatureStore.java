@@ -23,6 +23,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +53,7 @@ import org.geotoolkit.db.reverse.*;
 import org.geotoolkit.db.session.JDBCSession;
 import org.geotoolkit.factory.FactoryFinder;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.feature.FeatureExt;
 import org.geotoolkit.feature.FeatureTypeExt;
 import org.geotoolkit.feature.ReprojectMapper;
@@ -96,6 +98,10 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
     protected static final QueryCapabilities DEFAULT_CAPABILITIES = new DefaultQueryCapabilities(false, false,
             new String[]{org.geotoolkit.data.query.Query.GEOTK_QOM, CUSTOM_SQL});
 
+    /** Default values of the {@link #INSERT_BATCH_SIZE} and {@link #BULK_INSERT_SIZE} hints. */
+    static final int DEFAULT_INSERT_BATCH_SIZE = 1000;
+    static final int DEFAULT_BULK_INSERT_SIZE = 10000;
+
     protected final GeometryFactory geometryFactory = new GeometryFactory();
     protected final FilterFactory filterFactory = FactoryFinder.getFilterFactory(null);
 
@@ -1020,7 +1026,6 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
                 }
 
                 return nextKeyValues[0];
-            //st.executeBatch();
             } catch (SQLException ex) {
                 throw new DataStoreException("Failed to intert features : "+ex.getMessage()+"\nSQL Query :"+sql, ex);
             } finally {
@@ -1119,6 +1124,57 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
     // other utils /////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Insert features with the dialect bulk loading mechanism.
+     * Bulk loading does not return generated ids, it is used only if they are
+     * not requested or if the table has no primary key, in which case features
+     * have no identifier, as when they are inserted with the feature writer.
+     *
+     * @return false if features must be inserted with the feature writer
+     */
+    private boolean insertBulk(final String typeName, final Collection<? extends Feature> newFeatures,
+            Connection cnx, final Hints hints) throws DataStoreException {
+        final boolean updateId = hints == null || !Boolean.FALSE.equals(hints.get(HintsPending.UPDATE_ID_ON_INSERT));
+        if (!isWritable(typeName) || (updateId && !dbmodel.getPrimaryKey(typeName).isNull())) {
+            return false;
+        }
+        final FeatureType baseType = getFeatureType(typeName);
+
+        //we gave him the connection, he must not release it
+        final boolean release = (cnx == null);
+        try {
+            if (release) {
+                cnx = getDataSource().getConnection();
+            }
+            if (!getDialect().insertBulk(baseType, newFeatures, cnx)) {
+                return false;
+            }
+            if (cnx.getAutoCommit()) {
+                fireFeaturesAdded(baseType.getName(), null);
+            }
+            return true;
+        } catch (SQLException ex) {
+            throw new DataStoreException("Failed to insert features : "+ex.getMessage(), ex);
+        } finally {
+            if (release) {
+                JDBCFeatureStoreUtilities.closeSafe(getLogger(), cnx);
+            }
+        }
+    }
+
+    /**
+     * Commit the transaction of a feature writer and notify listeners.
+     */
+    void commitInsert(final FeatureType featureType, final Connection cx) throws SQLException {
+        cx.commit();
+        fireFeaturesAdded(featureType.getName(), null);
+    }
+
+    static int intHint(final Hints hints, final Object key, final int defaultValue) {
+        final Object value = (hints != null) ? hints.get(key) : null;
+        return (value instanceof Number) ? ((Number) value).intValue() : defaultValue;
+    }
+
     /**
      * Convinient method to handle adding features operation by using the
      * FeatureWriter.
@@ -1127,11 +1183,17 @@ public class DefaultJDBCFeatureStore extends JDBCFeatureStore{
      * @param newFeatures
      * @param cnx
      * @param hints
-     * @return list of ids of the features added.
+     * @return list of ids of the features added, empty if they were inserted with the
+     *         dialect bulk loading mechanism (see {@link #BULK_INSERT_SIZE}).
      * @throws DataStoreException
      */
     protected List<FeatureId> handleAddWithFeatureWriter(final String groupName, final Collection<? extends Feature> newFeatures,
             Connection cnx, final Hints hints) throws DataStoreException{
+        if (newFeatures.size() >= intHint(hints, BULK_INSERT_SIZE, DEFAULT_BULK_INSERT_SIZE)
+                && insertBulk(groupName, newFeatures, cnx, hints)) {
+            //ids were not requested, or features of a table without primary key have none
+            return Collections.emptyList();
+        }
         try(final FeatureWriter writer = getFeatureWriterInternal(groupName, Filter.EXCLUDE, EditMode.INSERT, cnx, hints)){
             return FeatureStoreUtilities.write(writer, newFeatures);
         }catch(FeatureStoreRuntimeException | IOException ex){
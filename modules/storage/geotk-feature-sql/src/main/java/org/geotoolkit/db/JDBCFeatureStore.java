@@ -36,6 +36,31 @@ public abstract class JDBCFeatureStore extends AbstractFeatureStore{
 
     public static final RenderingHints.Key RESAMPLING = new org.geotoolkit.factory.Hints.Key(Object.class);
 
+    /**
+     * Number of features sent to the database in one statement when feature
+     * ids are not updated on insert (see {@link org.geotoolkit.factory.HintsPending#UPDATE_ID_ON_INSERT}).
+     * Value is an Integer, default is 1000.
+     */
+    public static final RenderingHints.Key INSERT_BATCH_SIZE = new org.geotoolkit.factory.Hints.Key(Integer.class);
+
+    /**
+     * Number of inserted features after which the transaction is committed.
+     * Only used when the feature writer owns its connection, connections given
+     * by the caller are left in their transaction state.
+     * Value is an Integer, default is 0 : each statement is committed.
+     */
+    public static final RenderingHints.Key INSERT_COMMIT_SIZE = new org.geotoolkit.factory.Hints.Key(Integer.class);
+
+    /**
+     * Minimum number of features added at once for the database bulk loading
+     * mechanism to be used, if the dialect has one. Bulk loading does not
+     * return feature ids, it is used only if ids are not updated on insert
+     * or if the table has no primary key. The list of ids returned by
+     * {@code addFeatures} is then empty.
+     * Value is an Integer, default is 10000.
+     */
+    public static final RenderingHints.Key BULK_INSERT_SIZE = new org.geotoolkit.factory.Hints.Key(Integer.class);
+
     /**
      * Query language supported : SQL.
      */
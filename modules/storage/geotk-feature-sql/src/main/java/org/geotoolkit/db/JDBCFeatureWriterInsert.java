@@ -21,6 +21,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.logging.Level;
 
 import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.data.FeatureStoreRuntimeException;
@@ -38,8 +39,17 @@ import org.opengis.feature.FeatureType;
 public class JDBCFeatureWriterInsert extends JDBCFeatureReader implements FeatureWriter {
 
     private boolean batchInsert;
+    private int batchSize;
     private Collection<Feature> toAdd;
 
+    /**
+     * Number of features after which the transaction is committed, only when
+     * this writer owns the connection and switched it out of auto-commit mode.
+     */
+    private int commitSize;
+    private boolean commitInternally;
+    private int uncommitted;
+
     //private String id;
     private Feature last;
 
@@ -55,14 +65,23 @@ public class JDBCFeatureWriterInsert extends JDBCFeatureReader implements Featur
         init();
     }
 
-    private void init(){
+    private void init() throws SQLException {
         last = type.newInstance();
         if(hints != null){
             batchInsert = Boolean.FALSE.equals(hints.get(HintsPending.UPDATE_ID_ON_INSERT));
         }else{
             batchInsert = Boolean.FALSE;
         }
-        toAdd = (batchInsert) ? new ArrayList<Feature>() : null;
+        batchSize = Math.max(1, DefaultJDBCFeatureStore.intHint(hints, JDBCFeatureStore.INSERT_BATCH_SIZE,
+                DefaultJDBCFeatureStore.DEFAULT_INSERT_BATCH_SIZE));
+        toAdd = (batchInsert) ? new ArrayList<Feature>(batchSize) : null;
+
+        //a connection given by the caller is part of its transaction, leave it as is
+        commitSize = DefaultJDBCFeatureStore.intHint(hints, JDBCFeatureStore.INSERT_COMMIT_SIZE, 0);
+        if(commitSize > 0 && release && cx.getAutoCommit()){
+            cx.setAutoCommit(false);
+            commitInternally = true;
+        }
     }
 
     @Override
@@ -84,45 +103,67 @@ public class JDBCFeatureWriterInsert extends JDBCFeatureReader implements Featur
     @Override
     public void write() throws FeatureStoreRuntimeException {
 
-        if(batchInsert){
-            toAdd.add(last);
-            last = type.newInstance();
-            if(toAdd.size() > 1000){
-                try {
-                    store.insert(toAdd, type, cx);
-                } catch (DataStoreException e) {
-                    throw new FeatureStoreRuntimeException(e);
+        try {
+            if(batchInsert){
+                toAdd.add(last);
+                last = type.newInstance();
+                if(toAdd.size() >= batchSize){
+                    flush();
                 }
-                toAdd.clear();
-            }
-        }else{
-            try {
+            }else{
                 store.insert(last, type, cx);
+                uncommitted++;
                 //the featurestore sets as userData, grab it and update the fid
                 //TODO
 //                final String id = (String) last.getUserData().get("fid");
 //                if (id != null) {
 //                    last.setIdentifier(new DefaultFeatureId(id));
 //                }
-            } catch (DataStoreException e) {
-                throw new FeatureStoreRuntimeException(e);
             }
+            if(commitInternally && uncommitted >= commitSize){
+                store.commitInsert(type, cx);
+                uncommitted = 0;
+            }
+        } catch (DataStoreException | SQLException e) {
+            throw new FeatureStoreRuntimeException(e);
         }
     }
 
+    /**
+     * Insert the buffered features.
+     */
+    private void flush() throws DataStoreException {
+        store.insert(toAdd, type, cx);
+        uncommitted += toAdd.size();
+        toAdd.clear();
+    }
+
     @Override
     public void close() throws FeatureStoreRuntimeException {
 
-        if(batchInsert && !toAdd.isEmpty()){
-            try {
+        try {
+            if(batchInsert && !toAdd.isEmpty()){
                 //do the insert
-                store.insert(toAdd, type, cx);
-            } catch (DataStoreException e) {
-                throw new FeatureStoreRuntimeException(e);
+                flush();
+            }
+            if(commitInternally && uncommitted > 0){
+                store.commitInsert(type, cx);
+                uncommitted = 0;
+            }
+        } catch (DataStoreException | SQLException e) {
+            throw new FeatureStoreRuntimeException(e);
+        } finally {
+            if(commitInternally){
+                commitInternally = false;
+                try {
+                    //features not committed yet are discarded
+                    if(uncommitted > 0) cx.rollback();
+                    cx.setAutoCommit(true);
+                } catch (SQLException ex) {
+                    store.getLogger().log(Level.WARNING, ex.getMessage(), ex);
+                }
             }
-            toAdd.clear();
+            super.close();
         }
-
-        super.close();
     }
 }
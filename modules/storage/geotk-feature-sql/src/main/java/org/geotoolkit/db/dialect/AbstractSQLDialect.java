@@ -18,10 +18,13 @@ package org.geotoolkit.db.dialect;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
+import org.apache.sis.storage.DataStoreException;
 import org.geotoolkit.feature.SingleAttributeTypeBuilder;
 import org.geotoolkit.filter.capability.DefaultFilterCapabilities;
 import org.geotoolkit.filter.visitor.CapabilitiesFilterSplitter;
 import org.opengis.feature.AttributeType;
+import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureType;
 import org.opengis.filter.Filter;
 
@@ -94,6 +97,15 @@ public abstract class AbstractSQLDialect implements SQLDialect {
     public void encodePostCreateTable(StringBuilder sql, String tableName) {
     }
 
+    /**
+     * Default implementation has no bulk loading.
+     */
+    @Override
+    public boolean insertBulk(FeatureType featureType, Collection<? extends Feature> features, Connection cx)
+            throws SQLException, DataStoreException {
+        return false;
+    }
+
     @Override
     public void decodeColumnType(final SingleAttributeTypeBuilder atb, final Connection cx,
             final String typeName, final int datatype, final String schemaName,
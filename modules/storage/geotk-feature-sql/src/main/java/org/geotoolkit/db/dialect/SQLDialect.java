@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Map;
 import org.geotoolkit.feature.SingleAttributeTypeBuilder;
 import org.apache.sis.storage.DataStoreException;
@@ -30,6 +31,7 @@ import org.geotoolkit.db.reverse.ColumnMetaModel;
 import org.geotoolkit.factory.Hints;
 import org.opengis.coverage.Coverage;
 import org.opengis.feature.AttributeType;
+import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureType;
 import org.opengis.filter.Filter;
 import org.opengis.filter.capability.FilterCapabilities;
@@ -130,6 +132,20 @@ public interface SQLDialect {
 
     Object nextValue(ColumnMetaModel column, Connection cx) throws SQLException, DataStoreException;
 
+    /**
+     * Insert features with the bulk loading mechanism of the database.
+     * Features are not modified, generated values such as primary keys are
+     * not reported.
+     *
+     * @param featureType type of the table where features are inserted
+     * @param features features to insert
+     * @param cx connection to use
+     * @return false if bulk loading is not supported for this table,
+     *         features must then be inserted with SQL statements
+     */
+    boolean insertBulk(FeatureType featureType, Collection<? extends Feature> features, Connection cx)
+            throws SQLException, DataStoreException;
+
 
     ////////////////////////////////////////////////////////////////////////////
     // METHODS TO READ FROM RESULTSET //////////////////////////////////////////
@@ -0,0 +1,516 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.internal.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.geotoolkit.data.FeatureStoreRuntimeException;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.AttributeType;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureAssociationRole;
+import org.opengis.feature.FeatureType;
+import org.opengis.feature.PropertyType;
+
+/**
+ * Temporary files holding runs of features for external sorts and joins.
+ * <p>
+ * Features are written in a compact binary form : common values are written
+ * as primitives, geometries as WKB and other serializable values with java
+ * serialization. Feature types, geometry factories, geometry user datas and
+ * values which can not be serialized are not written but kept in memory, files
+ * can only be read back by the instance which created them. Such values are
+ * counted each time they are written and released once read back as many
+ * times, only values of runs not read yet are kept.
+ * </p>
+ * <p>
+ * Lists and other collections are read back as {@link ArrayList}, sets as
+ * {@link LinkedHashSet} or as {@link TreeSet} with the same comparator.
+ * </p>
+ * Instances are not thread safe.
+ *
+ * @module
+ */
+final class FeatureRunFiles implements Closeable {
+
+    private static final byte NULL       = 0;
+    private static final byte STRING     = 1;
+    private static final byte INTEGER    = 2;
+    private static final byte LONG       = 3;
+    private static final byte DOUBLE     = 4;
+    private static final byte FLOAT      = 5;
+    private static final byte SHORT      = 6;
+    private static final byte BYTE       = 7;
+    private static final byte TRUE       = 8;
+    private static final byte FALSE      = 9;
+    private static final byte DATE       = 10;
+    private static final byte GEOMETRY   = 11;
+    private static final byte FEATURE    = 12;
+    private static final byte COLLECTION = 13;
+    private static final byte SERIALIZED = 14;
+    private static final byte REFERENCE  = 15;
+    private static final byte SET        = 16;
+    private static final byte SORTED_SET = 17;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<FeatureType> types = new ArrayList<>();
+    private final List<String[]> typeProperties = new ArrayList<>();
+    private final Map<FeatureType,Integer> typeIds = new IdentityHashMap<>();
+    private final Map<Integer,Reference> references = new HashMap<>();
+    private final Map<Object,Reference> referenceIds = new IdentityHashMap<>();
+    private int nextReference;
+    private final Map<GeometryFactory,WKBReader> wkbReaders = new IdentityHashMap<>();
+    private final WKBWriter wkbWriter2D = new WKBWriter(2, true);
+    private final WKBWriter wkbWriter3D = new WKBWriter(3, true);
+    private final List<Run> runs = new ArrayList<>();
+
+    /**
+     * Write the given features in a new temporary file.
+     *
+     * @param features features to write, in the order they will be read back
+     * @return written run
+     * @throws IOException if writing the temporary file failed
+     */
+    Run write(final Iterator<Feature> features) throws IOException {
+        final Writer writer = newWriter();
+        try {
+            while (features.hasNext()) {
+                writer.add(features.next());
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.run;
+    }
+
+    /**
+     * Create a new temporary file, features are appended to it until the
+     * writer is closed.
+     *
+     * @return writer on a new run
+     * @throws IOException if creating the temporary file failed
+     */
+    Writer newWriter() throws IOException {
+        final Path path = Files.createTempFile("geotk-features", ".tmp");
+        final Run run = new Run(path);
+        runs.add(run);
+        return new Writer(run);
+    }
+
+    private void writeFeature(final DataOutputStream out, final Feature feature) throws IOException {
+        final FeatureType type = feature.getType();
+        Integer id = typeIds.get(type);
+        if (id == null) {
+            final List<String> names = new ArrayList<>();
+            for (PropertyType pt : type.getProperties(true)) {
+                //operations are computed from the other properties
+                if (pt instanceof AttributeType || pt instanceof FeatureAssociationRole) {
+                    names.add(pt.getName().toString());
+                }
+            }
+            id = types.size();
+            types.add(type);
+            typeProperties.add(names.toArray(new String[names.size()]));
+            typeIds.put(type, id);
+        }
+        out.writeInt(id);
+        for (String name : typeProperties.get(id)) {
+            writeValue(out, feature.getPropertyValue(name));
+        }
+    }
+
+    private Feature readFeature(final DataInputStream in) throws IOException {
+        final int id = in.readInt();
+        final Feature feature = types.get(id).newInstance();
+        for (String name : typeProperties.get(id)) {
+            final Object value = readValue(in);
+            if (value != null) {
+                feature.setPropertyValue(name, value);
+            }
+        }
+        return feature;
+    }
+
+    private void writeValue(final DataOutputStream out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value.getClass() == Date.class) {
+            //subclasses such as sql dates are serialized to preserve their type
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Geometry) {
+            writeGeometry(out, (Geometry) value);
+        } else if (value instanceof Feature) {
+            out.writeByte(FEATURE);
+            writeFeature(out, (Feature) value);
+        } else if (value instanceof Collection) {
+            final Collection<?> col = (Collection<?>) value;
+            if (value instanceof SortedSet) {
+                final Comparator<?> comparator = ((SortedSet<?>) value).comparator();
+                out.writeByte(SORTED_SET);
+                out.writeInt(comparator == null ? -1 : reference(comparator));
+            } else {
+                out.writeByte(value instanceof Set ? SET : COLLECTION);
+            }
+            out.writeInt(col.size());
+            for (Object v : col) {
+                writeValue(out, v);
+            }
+        } else if (value instanceof Serializable) {
+            writeSerialized(out, value);
+        } else {
+            out.writeByte(REFERENCE);
+            out.writeInt(reference(value));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readValue(final DataInputStream in) throws IOException {
+        final byte tag = in.readByte();
+        switch (tag) {
+            case NULL    : return null;
+            case STRING  : return new String(readBytes(in), StandardCharsets.UTF_8);
+            case INTEGER : return in.readInt();
+            case LONG    : return in.readLong();
+            case DOUBLE  : return in.readDouble();
+            case FLOAT   : return in.readFloat();
+            case SHORT   : return in.readShort();
+            case BYTE    : return in.readByte();
+            case TRUE    : return Boolean.TRUE;
+            case FALSE   : return Boolean.FALSE;
+            case DATE    : return new Date(in.readLong());
+            case GEOMETRY: return readGeometry(in);
+            case FEATURE : return readFeature(in);
+            case COLLECTION :
+            case SET :
+            case SORTED_SET : {
+                final Collection<Object> col;
+                final int size;
+                if (tag == SORTED_SET) {
+                    final int comparator = in.readInt();
+                    col = new TreeSet<>(comparator < 0 ? null : (Comparator<Object>) dereference(comparator));
+                    size = in.readInt();
+                } else {
+                    size = in.readInt();
+                    col = (tag == SET) ? new LinkedHashSet<>((int) (size / 0.75f) + 1) : new ArrayList<>(size);
+                }
+                for (int i = 0; i < size; i++) {
+                    col.add(readValue(in));
+                }
+                return col;
+            }
+            case SERIALIZED : {
+                try (ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                    return oin.readObject();
+                } catch (ClassNotFoundException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+            case REFERENCE : return dereference(in.readInt());
+            default : throw new IOException("Unexpected value tag " + tag);
+        }
+    }
+
+    private void writeGeometry(final DataOutputStream out, final Geometry geometry) throws IOException {
+        final byte[] wkb;
+        try {
+            wkb = (hasZ(geometry) ? wkbWriter3D : wkbWriter2D).write(geometry);
+        } catch (IllegalArgumentException ex) {
+            //geometry can not be expressed in WKB, empty points for example
+            writeSerialized(out, geometry);
+            return;
+        }
+        final Object userData = geometry.getUserData();
+        out.writeByte(GEOMETRY);
+        //WKB has no linear ring type
+        out.writeBoolean(geometry instanceof LinearRing);
+        out.writeInt(reference(geometry.getFactory()));
+        out.writeInt(userData == null ? -1 : reference(userData));
+        out.writeInt(wkb.length);
+        out.write(wkb);
+    }
+
+    private Geometry readGeometry(final DataInputStream in) throws IOException {
+        final boolean ring = in.readBoolean();
+        final GeometryFactory factory = (GeometryFactory) dereference(in.readInt());
+        final int userData = in.readInt();
+        final byte[] wkb = readBytes(in);
+
+        WKBReader reader = wkbReaders.get(factory);
+        if (reader == null) {
+            reader = new WKBReader(factory);
+            wkbReaders.put(factory, reader);
+        }
+        Geometry geometry;
+        try {
+            geometry = reader.read(wkb);
+        } catch (ParseException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        if (ring && geometry instanceof LineString) {
+            final int srid = geometry.getSRID();
+            geometry = factory.createLinearRing(((LineString) geometry).getCoordinateSequence());
+            geometry.setSRID(srid);
+        }
+        if (userData >= 0) {
+            geometry.setUserData(dereference(userData));
+        }
+        return geometry;
+    }
+
+    private void writeSerialized(final DataOutputStream out, final Object value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oout = new ObjectOutputStream(bytes)) {
+            oout.writeObject(value);
+        }
+        out.writeByte(SERIALIZED);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Keep a value in memory until it is read back.
+     *
+     * @return identifier of the value in the written data
+     */
+    private int reference(final Object value) {
+        Reference ref = referenceIds.get(value);
+        if (ref == null) {
+            ref = new Reference(value, nextReference++);
+            references.put(ref.id, ref);
+            referenceIds.put(value, ref);
+        }
+        ref.count++;
+        return ref.id;
+    }
+
+    /**
+     * Get a value kept in memory, released once it has been read as many times as written.
+     */
+    private Object dereference(final int id) throws IOException {
+        final Reference ref = references.get(id);
+        if (ref == null) {
+            throw new IOException("Unknown value reference " + id);
+        }
+        if (--ref.count == 0) {
+            references.remove(id);
+            referenceIds.remove(ref.value);
+        }
+        return ref.value;
+    }
+
+    private static boolean hasZ(final Geometry geometry) {
+        final boolean[] z = new boolean[1];
+        geometry.apply(new CoordinateFilter() {
+            @Override
+            public void filter(Coordinate coord) {
+                z[0] |= !Double.isNaN(coord.z);
+            }
+        });
+        return z[0];
+    }
+
+    /**
+     * Delete all temporary files.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Run run : runs) {
+            try {
+                run.delete();
+            } catch (IOException ex) {
+                if (error == null) error = ex;
+                else error.addSuppressed(ex);
+            }
+        }
+        runs.clear();
+        references.clear();
+        referenceIds.clear();
+        if (error != null) throw error;
+    }
+
+    /**
+     * A value kept in memory, with the number of times it is written in runs not read yet.
+     */
+    private static final class Reference {
+
+        private final Object value;
+        private final int id;
+        private int count;
+
+        private Reference(final Object value, final int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+
+    /**
+     * Appends features to a temporary file.
+     */
+    final class Writer implements Closeable {
+
+        private final Run run;
+        private final DataOutputStream out;
+
+        private Writer(final Run run) throws IOException {
+            this.run = run;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run.path), BUFFER_SIZE));
+        }
+
+        void add(final Feature feature) throws IOException {
+            writeFeature(out, feature);
+            run.size++;
+        }
+
+        /**
+         * @return the run being written, it can be read once this writer is closed
+         */
+        Run run() {
+            return run;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * A temporary file of features.
+     */
+    final class Run implements Iterator<Feature> {
+
+        private final Path path;
+        private int size;
+        private int read;
+        private DataInputStream in;
+
+        private Run(final Path path) {
+            this.path = path;
+        }
+
+        /**
+         * @return number of features in the file
+         */
+        int size() {
+            return size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < size;
+        }
+
+        @Override
+        public Feature next() {
+            if (read >= size) {
+                throw new NoSuchElementException("No more elements.");
+            }
+            try {
+                if (in == null) {
+                    in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+                }
+                final Feature feature = readFeature(in);
+                if (++read == size) {
+                    //release the file as soon as possible
+                    runs.remove(this);
+                    delete();
+                }
+                return feature;
+            } catch (IOException ex) {
+                throw new FeatureStoreRuntimeException(ex);
+            }
+        }
+
+        private void delete() throws IOException {
+            try {
+                if (in != null) in.close();
+            } finally {
+                in = null;
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+}
@@ -31,6 +31,7 @@ import org.geotoolkit.data.FeatureStreams;
 import org.geotoolkit.data.query.Query;
 import org.geotoolkit.data.session.Session;
 import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
 import org.geotoolkit.geometry.jts.transform.GeometryScaleTransformer;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureType;
@@ -63,13 +64,6 @@ public class GenericQueryFeatureIterator {
         //          otherwise the result will be illogic.
 
 
-        //wrap sort by ---------------------------------------------------------
-        //This can be really expensive, and force the us to read the full iterator.
-        //that may cause out of memory errors.
-        if(sorts != null && sorts.length != 0){
-            reader = FeatureStreams.sort(reader, sorts);
-        }
-
         //wrap filter ----------------------------------------------------------
         //we must keep the filter first since it impacts the start index and max feature
         if(filter != null && filter != Filter.INCLUDE){
@@ -83,6 +77,24 @@ public class GenericQueryFeatureIterator {
             }
         }
 
+        //wrap sort by ---------------------------------------------------------
+        //This can be really expensive, and force the us to read the full iterator.
+        //filtering before sorting gives the same result with less features to sort.
+        //when only the first features are requested they are the only ones kept.
+        if(sorts != null && sorts.length != 0){
+            int limit = Integer.MAX_VALUE;
+            if(max != null){
+                final long first = (start != null && start > 0) ? start : 0;
+                limit = (int) Math.min(Integer.MAX_VALUE, Math.max(1, first + max));
+            }
+            int bufferSize = GenericSortByFeatureIterator.DEFAULT_BUFFER_SIZE;
+            final Object hint = (hints != null) ? hints.get(HintsPending.FEATURE_SORT_BUFFER) : null;
+            if(hint instanceof Integer && (Integer) hint > 0){
+                bufferSize = (Integer) hint;
+            }
+            reader = GenericSortByFeatureIterator.wrap(reader, sorts, limit, bufferSize);
+        }
+
         //wrap start index -----------------------------------------------------
         if(start != null && start > 0){
             reader = FeatureStreams.skip(reader, start);
@@ -17,11 +17,15 @@
 
 package org.geotoolkit.internal.data;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import org.geotoolkit.feature.FeatureExt;
 import org.geotoolkit.data.FeatureCollection;
 import org.geotoolkit.data.FeatureIterator;
@@ -29,6 +33,7 @@ import org.geotoolkit.data.FeatureReader;
 import org.geotoolkit.data.FeatureStoreRuntimeException;
 import org.geotoolkit.data.query.SortByComparator;
 import org.geotoolkit.factory.Hints;
+import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.Classes;
 import org.geotoolkit.data.memory.WrapFeatureCollection;
 import org.opengis.feature.Feature;
@@ -37,43 +42,123 @@ import org.opengis.filter.sort.SortBy;
 
 /**
  * Basic support for a  FeatureIterator that will sort features using the given sort by
- * orders. This may be very consuming in memory since this implementation must iterate
- * over all features and store them in memory in the right order.
- *
- * Don't use this class in you now that your iterator holds a great amount of features,
- * otherwise it may cause an Out Of Memory Exception.
+ * orders. This implementation must iterate over all features before returning the first one.
+ * <p>
+ * Features are sorted in memory up to a buffer size, bigger inputs are sorted
+ * by parts written in temporary files which are merged while iterating.
+ * When only the first features are needed, a limit can be given : only this
+ * number of features is kept in memory, the others are dropped while reading.
+ * </p>
  *
  * @author Johann Sorel (Geomatys)
  * @module
  */
 public class GenericSortByFeatureIterator<R extends FeatureIterator> implements FeatureIterator {
 
+    /**
+     * Default maximum number of features kept in memory.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 100000;
+
+    /**
+     * Maximum number of temporary files merged at once.
+     */
+    private static final int MERGE_FACTOR = 64;
+
     protected final R iterator;
     private final Comparator<Feature> comparator;
-    protected List<Feature> ordered = null;
-    protected int index = 0;
+    private final int limit;
+    private final int bufferSize;
+    private FeatureRunFiles runFiles;
+    private Iterator<Feature> ordered = null;
 
     /**
      * Creates a new instance of GenericSortByFeatureIterator
      *
      * @param iterator FeatureReader to sort
      * @param orders sorting orders
+     * @param limit maximum number of features to return
+     * @param bufferSize maximum number of features kept in memory
      */
-    private GenericSortByFeatureIterator(final R iterator, final SortBy[] orders) {
+    private GenericSortByFeatureIterator(final R iterator, final SortBy[] orders, final int limit, final int bufferSize) {
+        ArgumentChecks.ensureStrictlyPositive("limit", limit);
+        ArgumentChecks.ensureStrictlyPositive("bufferSize", bufferSize);
         this.iterator = iterator;
         this.comparator = new SortByComparator(orders);
+        this.limit = limit;
+        this.bufferSize = bufferSize;
     }
 
     private synchronized void sort() throws FeatureStoreRuntimeException{
         if(ordered != null) return;
 
-        ordered = new ArrayList<>();
+        if(limit <= bufferSize){
+            ordered = sortFirsts();
+            return;
+        }
+
+        final List<Feature> buffer = new ArrayList<>();
+        List<Iterator<Feature>> runs = new ArrayList<>();
+        try{
+            while(iterator.hasNext()){
+                buffer.add(FeatureExt.copy(iterator.next()));
+                if(buffer.size() >= bufferSize){
+                    Collections.sort(buffer,comparator);
+                    if(runFiles == null) runFiles = new FeatureRunFiles();
+                    runs.add(runFiles.write(buffer.iterator()));
+                    buffer.clear();
+                }
+            }
+            Collections.sort(buffer,comparator);
 
+            //reduce the number of files opened at the same time, merging consecutive
+            //runs level by level so each feature is rewritten once per level.
+            while(runs.size() > MERGE_FACTOR){
+                final List<Iterator<Feature>> merged = new ArrayList<>();
+                for(int i=0, n=runs.size(); i<n; i+=MERGE_FACTOR){
+                    final List<Iterator<Feature>> group = runs.subList(i, Math.min(i + MERGE_FACTOR, n));
+                    merged.add(group.size() == 1 ? group.get(0) : runFiles.write(new MergeIterator(new ArrayList<>(group))));
+                }
+                runs = merged;
+            }
+        }catch(IOException ex){
+            throw new FeatureStoreRuntimeException(ex);
+        }
+
+        if(runs.isEmpty()){
+            ordered = buffer.iterator();
+        }else{
+            runs.add(buffer.iterator());
+            ordered = new MergeIterator(runs);
+        }
+    }
+
+    /**
+     * Keep only the first features in a bounded heap.
+     */
+    private Iterator<Feature> sortFirsts(){
+        //heap top is the last retained feature, the most recent one on equality
+        final PriorityQueue<Ranked> heap = new PriorityQueue<>(Math.min(limit, 1024), (Ranked r1, Ranked r2) -> {
+            final int c = comparator.compare(r2.feature, r1.feature);
+            return c != 0 ? c : Long.compare(r2.rank, r1.rank);
+        });
+
+        long rank = 0;
         while(iterator.hasNext()){
-            ordered.add(FeatureExt.copy(iterator.next()));
+            final Feature candidate = iterator.next();
+            if(heap.size() >= limit){
+                //on equality the feature already retained comes first
+                if(comparator.compare(candidate, heap.peek().feature) >= 0) continue;
+                heap.poll();
+            }
+            heap.add(new Ranked(FeatureExt.copy(candidate), rank++));
         }
 
-        Collections.sort(ordered,comparator);
+        final Feature[] array = new Feature[heap.size()];
+        for(int i=array.length-1; i>=0; i--){
+            array[i] = heap.poll().feature;
+        }
+        return Arrays.asList(array).iterator();
     }
 
     /**
@@ -82,13 +167,10 @@ public class GenericSortByFeatureIterator<R extends FeatureIterator> implements
     @Override
     public Feature next() throws FeatureStoreRuntimeException {
         sort();
-        try{
-            Feature c = ordered.get(index);
-            index++;
-            return c;
-        }catch(IndexOutOfBoundsException ex){
+        if(!ordered.hasNext()){
             throw new NoSuchElementException("No more elements.");
         }
+        return ordered.next();
     }
 
     /**
@@ -96,7 +178,17 @@ public class GenericSortByFeatureIterator<R extends FeatureIterator> implements
      */
     @Override
     public void close() throws FeatureStoreRuntimeException {
-        iterator.close();
+        try{
+            iterator.close();
+        }finally{
+            if(runFiles != null){
+                try{
+                    runFiles.close();
+                }catch(IOException ex){
+                    throw new FeatureStoreRuntimeException(ex);
+                }
+            }
+        }
     }
 
     /**
@@ -105,7 +197,7 @@ public class GenericSortByFeatureIterator<R extends FeatureIterator> implements
     @Override
     public boolean hasNext() throws FeatureStoreRuntimeException {
         sort();
-        return index < ordered.size();
+        return ordered.hasNext();
     }
 
     /**
@@ -135,8 +227,9 @@ public class GenericSortByFeatureIterator<R extends FeatureIterator> implements
      */
     private static final class GenericSortByFeatureReader extends GenericSortByFeatureIterator<FeatureReader> implements FeatureReader{
 
-        private GenericSortByFeatureReader(final FeatureReader reader,final SortBy[] orders){
-            super(reader,orders);
+        private GenericSortByFeatureReader(final FeatureReader reader,final SortBy[] orders,
+                final int limit, final int bufferSize){
+            super(reader,orders,limit,bufferSize);
         }
 
         @Override
@@ -146,6 +239,61 @@ public class GenericSortByFeatureIterator<R extends FeatureIterator> implements
 
     }
 
+    /**
+     * Feature with its reading order.
+     */
+    private static final class Ranked {
+
+        private final Feature feature;
+        private final long rank;
+
+        private Ranked(final Feature feature, final long rank) {
+            this.feature = feature;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * Merge sorted iterators, on equality features of the first iterators come first.
+     */
+    private final class MergeIterator implements Iterator<Feature> {
+
+        private final PriorityQueue<Ranked> heads;
+        private final List<Iterator<Feature>> sources;
+
+        private MergeIterator(final List<Iterator<Feature>> sources) {
+            this.sources = sources;
+            this.heads = new PriorityQueue<>(sources.size(), (Ranked r1, Ranked r2) -> {
+                final int c = comparator.compare(r1.feature, r2.feature);
+                return c != 0 ? c : Long.compare(r1.rank, r2.rank);
+            });
+            for(int i=0,n=sources.size(); i<n; i++){
+                final Iterator<Feature> source = sources.get(i);
+                if(source.hasNext()){
+                    heads.add(new Ranked(source.next(), i));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Feature next() {
+            final Ranked head = heads.poll();
+            if(head == null){
+                throw new NoSuchElementException("No more elements.");
+            }
+            final Iterator<Feature> source = sources.get((int) head.rank);
+            if(source.hasNext()){
+                heads.add(new Ranked(source.next(), head.rank));
+            }
+            return head.feature;
+        }
+    }
+
     private static final class GenericSortByFeatureCollection extends WrapFeatureCollection{
 
         private final SortBy[] order;
@@ -171,7 +319,22 @@ public class GenericSortByFeatureIterator<R extends FeatureIterator> implements
      * Wrap a FeatureReader will a sort by order.
      */
     public static FeatureReader wrap(final FeatureReader reader, final SortBy[] orders){
-        return new GenericSortByFeatureReader(reader, orders);
+        return wrap(reader, orders, Integer.MAX_VALUE, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Wrap a FeatureReader will a sort by order.
+     *
+     * @param reader reader to sort
+     * @param orders sorting orders
+     * @param limit maximum number of features returned, features after this
+     *        limit are dropped without being kept in memory
+     * @param bufferSize maximum number of features kept in memory, beyond this
+     *        number features are sorted in temporary files
+     * @return sorted reader
+     */
+    public static FeatureReader wrap(final FeatureReader reader, final SortBy[] orders, final int limit, final int bufferSize){
+        return new GenericSortByFeatureReader(reader, orders, limit, bufferSize);
     }
 
     /**
@@ -181,7 +344,7 @@ public class GenericSortByFeatureIterator<R extends FeatureIterator> implements
         if(reader instanceof FeatureReader){
             return wrap((FeatureReader)reader,orders);
         }else{
-            return new GenericSortByFeatureIterator(reader, orders);
+            return new GenericSortByFeatureIterator(reader, orders, Integer.MAX_VALUE, DEFAULT_BUFFER_SIZE);
         }
     }
 
@@ -16,8 +16,18 @@
  */
 package org.geotoolkit.internal.data;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.stream.Stream;
@@ -34,16 +44,27 @@ import org.apache.sis.storage.Query;
 import org.apache.sis.storage.UnsupportedQueryException;
 import org.apache.sis.storage.event.ChangeEvent;
 import org.apache.sis.storage.event.ChangeListener;
+import org.apache.sis.util.ArgumentChecks;
 import org.apache.sis.util.iso.SimpleInternationalString;
+import org.geotoolkit.data.DefaultFeatureResource;
 import org.geotoolkit.data.FeatureStoreRuntimeException;
 import org.geotoolkit.data.query.QueryBuilder;
 import org.geotoolkit.data.query.QueryFeatureSet;
 import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
+import org.geotoolkit.feature.FeatureExt;
+import org.opengis.feature.AttributeType;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureType;
+import org.opengis.feature.PropertyNotFoundException;
+import org.opengis.feature.PropertyType;
+import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory;
 import org.opengis.filter.PropertyIsEqualTo;
 import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.opengis.geometry.Envelope;
 import org.opengis.metadata.Metadata;
 import org.opengis.util.GenericName;
@@ -80,6 +101,51 @@ public class JoinFeatureSet implements FeatureSet {
         RIGHT_OUTER
     }
 
+    /**
+     * Algorithm used to find the matching features.
+     */
+    public enum Strategy {
+        /**
+         * Pick the strategy from the join condition and the feature sets.
+         * {@link #HASH} is used when both join properties have the same value class,
+         * unless matching features can be found by identifier in a store.
+         * {@link #NESTED_LOOP} is used otherwise, since it is the only strategy
+         * comparing values of different types with the condition itself.
+         */
+        AUTO,
+
+        /**
+         * Query the matching features with an equality filter for each feature
+         * of the preserved side. Efficient when the other side resolves
+         * filters with an index, a full scan per feature otherwise.
+         */
+        NESTED_LOOP,
+
+        /**
+         * Read the non preserved side once in a hash table, then read the
+         * preserved side looking up the table. When the table exceeds the
+         * buffer size, both sides are partitioned by hash in temporary files
+         * and partitions are joined one after the other.
+         * Numbers are compared by value, other values must be of the same class
+         * to match : a string does not match the number it represents.
+         */
+        HASH,
+
+        /**
+         * Read both sides sorted on the join properties and merge them.
+         * Efficient when the feature sets are already sorted or can sort
+         * themselves, features are sorted in temporary files otherwise.
+         * Values are compared as with {@link #HASH}.
+         * Case insensitive conditions are joined with {@link #HASH}.
+         */
+        SORT_MERGE
+    }
+
+    /**
+     * Number of partitions used when a hash join does not fit in memory.
+     */
+    private static final int NB_PARTITIONS = 64;
+
     private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
 
     private final FeatureSet left;
@@ -88,17 +154,33 @@ public class JoinFeatureSet implements FeatureSet {
     private String rightAlias;
     private final Type joinType;
     private final PropertyIsEqualTo condition;
+    private final Strategy strategy;
+    private final int bufferSize;
 
     //cache
     private FeatureType type = null;
 
     public JoinFeatureSet(FeatureSet left, String leftAlias, FeatureSet right, String rightAlias, Type joinType, PropertyIsEqualTo condition) {
+        this(left, leftAlias, right, rightAlias, joinType, condition, Strategy.AUTO, GenericSortByFeatureIterator.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param strategy join algorithm
+     * @param bufferSize maximum number of features kept in memory by the
+     *        hash and sort-merge strategies
+     */
+    public JoinFeatureSet(FeatureSet left, String leftAlias, FeatureSet right, String rightAlias, Type joinType,
+            PropertyIsEqualTo condition, Strategy strategy, int bufferSize) {
+        ArgumentChecks.ensureNonNull("strategy", strategy);
+        ArgumentChecks.ensureStrictlyPositive("bufferSize", bufferSize);
         this.left = left;
         this.right = right;
         this.leftAlias = leftAlias;
         this.rightAlias = rightAlias;
         this.joinType = joinType;
         this.condition = condition;
+        this.strategy = strategy;
+        this.bufferSize = bufferSize;
     }
 
     @Override
@@ -128,6 +210,15 @@ public class JoinFeatureSet implements FeatureSet {
         return joinType;
     }
 
+    /**
+     * Gets the join strategy.
+     *
+     * @return requested strategy, may be {@link Strategy#AUTO}
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
     /**
      * Gets the left feature source.
      *
@@ -202,12 +293,17 @@ public class JoinFeatureSet implements FeatureSet {
     @Override
     public Stream<Feature> features(boolean parallel) throws DataStoreException {
         final JoinIterator ite;
-        switch (joinType) {
-            case INNER :       ite = new JoinInnerRowIterator(); break;
-            case LEFT_OUTER :  ite = new JoinOuterRowIterator(true); break;
-            case RIGHT_OUTER : ite = new JoinOuterRowIterator(false); break;
-            default:
-                throw new IllegalArgumentException("Unknown Join type : " + joinType);
+        switch (plan()) {
+            case HASH :       ite = new HashJoinIterator(); break;
+            case SORT_MERGE : ite = new MergeJoinIterator(); break;
+            default :
+                switch (joinType) {
+                    case INNER :       ite = new JoinInnerRowIterator(); break;
+                    case LEFT_OUTER :  ite = new JoinOuterRowIterator(true); break;
+                    case RIGHT_OUTER : ite = new JoinOuterRowIterator(false); break;
+                    default:
+                        throw new IllegalArgumentException("Unknown Join type : " + joinType);
+                }
         }
         final Stream<Feature> stream = StreamSupport.stream(
             Spliterators.spliteratorUnknownSize(ite, Spliterator.ORDERED),
@@ -216,6 +312,121 @@ public class JoinFeatureSet implements FeatureSet {
         return stream;
     }
 
+    /**
+     * Resolve the {@link Strategy#AUTO} strategy.
+     * Looking up features by identifier is left to the store when filters are
+     * given to it. Hash keys do not convert values like the condition does,
+     * so a hash join is used only when both properties have the same value class.
+     * <p>
+     * A case insensitive condition is never merged : feature sets sort strings
+     * case sensitively, which is not the order of the lower cased join keys.
+     * </p>
+     */
+    private Strategy plan() throws DataStoreException {
+        if (strategy == Strategy.SORT_MERGE && !condition.isMatchingCase()) return Strategy.HASH;
+        if (strategy != Strategy.AUTO) return strategy;
+
+        final PropertyName lookupProperty;
+        final FeatureSet lookup;
+        if (joinType == Type.RIGHT_OUTER) {
+            lookupProperty = (PropertyName) condition.getExpression1();
+            lookup = left;
+        } else {
+            lookupProperty = (PropertyName) condition.getExpression2();
+            lookup = right;
+        }
+        if (isIdentifier(lookupProperty) && delegatesFilters(lookup)) {
+            return Strategy.NESTED_LOOP;
+        }
+        final Class<?> leftClass  = valueClass(left,  (PropertyName) condition.getExpression1());
+        final Class<?> rightClass = valueClass(right, (PropertyName) condition.getExpression2());
+        if (leftClass != null && leftClass != Object.class && leftClass == rightClass) {
+            return Strategy.HASH;
+        }
+        return Strategy.NESTED_LOOP;
+    }
+
+    /**
+     * Whether filters on the given feature set are given to its feature store instead of
+     * being evaluated on all features in memory. Stores do not tell whether they have an
+     * index, identifier filters are assumed to be resolved efficiently, most stores
+     * looking up feature identifiers directly.
+     */
+    private static boolean delegatesFilters(final FeatureSet set) {
+        return set instanceof DefaultFeatureResource;
+    }
+
+    /**
+     * Value class of a join property, through operations such as links.
+     *
+     * @return value class, or null if the property is unknown.
+     */
+    private static Class<?> valueClass(final FeatureSet set, final PropertyName property) throws DataStoreException {
+        final PropertyType type;
+        try {
+            type = set.getType().getProperty(property.getPropertyName());
+        } catch (PropertyNotFoundException ex) {
+            return null;
+        }
+        final AttributeType<?> att = FeatureExt.castOrUnwrap(type).orElse(null);
+        return (att != null) ? att.getValueClass() : null;
+    }
+
+    private static boolean isIdentifier(final PropertyName property) {
+        return AttributeConvention.IDENTIFIER_PROPERTY.toString().equals(property.getPropertyName());
+    }
+
+    /**
+     * Create the filter used to look up features matching the given value.
+     * Identifier filters are used on identifier properties since most stores
+     * resolve them with an index.
+     */
+    private Filter lookupFilter(final PropertyName property, final Object value) {
+        if (value != null && isIdentifier(property)) {
+            return FF.id(Collections.singleton(FF.featureId(value.toString())));
+        }
+        return FF.equal(property, FF.literal(value), condition.isMatchingCase(), condition.getMatchAction());
+    }
+
+    /**
+     * Normalize a join property value so that values considered equal by the
+     * join condition are equal java objects.
+     *
+     * @return normalized value, null if the value can not match anything
+     */
+    private Object key(Object value) {
+        if (value instanceof Collection) {
+            //same approximation as the sort by comparator
+            final Collection<?> col = (Collection<?>) value;
+            value = col.isEmpty() ? null : col.iterator().next();
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Number) {
+            final double d = ((Number) value).doubleValue();
+            return (d == (long) d) ? (Object) (long) d : (Object) d;
+        } else if (value instanceof CharSequence) {
+            final String str = value.toString();
+            return condition.isMatchingCase() ? str : str.toLowerCase(Locale.ROOT);
+        }
+        return value;
+    }
+
+    /**
+     * Compare normalized keys, both keys must be non null.
+     */
+    private static int compareKeys(final Object k1, final Object k2) {
+        if (k1 instanceof Number && k2 instanceof Number) {
+            if (k1 instanceof Long && k2 instanceof Long) {
+                return Long.compare((Long) k1, (Long) k2);
+            }
+            return Double.compare(((Number) k1).doubleValue(), ((Number) k2).doubleValue());
+        } else if (k1 instanceof Comparable && k1.getClass().isInstance(k2)) {
+            return ((Comparable) k1).compareTo(k2);
+        }
+        return k1.toString().compareTo(k2.toString());
+    }
+
     /**
      * Agregate all feature from selectors to a single complex feature.
      *
@@ -327,7 +538,7 @@ public class JoinFeatureSet implements FeatureSet {
                 if (rightIterator == null) {
                     final QueryBuilder qb = new QueryBuilder();
                     qb.setTypeName(right.getType().getName());
-                    qb.setFilter(FF.equals(rightProperty, FF.literal(leftValue)));
+                    qb.setFilter(lookupFilter(rightProperty, leftValue));
                     final Query rightQuery = qb.buildQuery();
                     rightStream = right.subset(rightQuery).features(false);
                     rightIterator = rightStream.iterator();
@@ -440,12 +651,12 @@ public class JoinFeatureSet implements FeatureSet {
                     final QueryBuilder qb = new QueryBuilder();
                     if (leftJoint) {
                         qb.setTypeName(right.getType().getName());
-                        qb.setFilter(FF.equals(rightProperty, FF.literal(primeValue)));
+                        qb.setFilter(lookupFilter(rightProperty, primeValue));
                         secondStream = right.subset(qb.buildQuery()).features(false);
                         secondIterator = secondStream.iterator();
                     } else {
                         qb.setTypeName(left.getType().getName());
-                        qb.setFilter(FF.equals(leftProperty, FF.literal(primeValue)));
+                        qb.setFilter(lookupFilter(leftProperty, primeValue));
                         secondStream = left.subset(qb.buildQuery()).features(false);
                         secondIterator = secondStream.iterator();
                     }
@@ -482,6 +693,305 @@ public class JoinFeatureSet implements FeatureSet {
 
     }
 
+    /**
+     * Iterate with a hash table built on the non preserved side.
+     * The left side is preserved for inner joins.
+     */
+    private class HashJoinIterator implements JoinIterator {
+
+        private final boolean probeLeft;
+        private final PropertyName probeProperty;
+        private final PropertyName buildProperty;
+        private final ArrayDeque<Feature> pending = new ArrayDeque<>();
+        private Map<Object,List<Feature>> table;
+        private Stream<Feature> probeStream;
+        private Iterator<Feature> probeIterator;
+
+        //used only when the hash table does not fit in memory
+        private FeatureRunFiles files;
+        private FeatureRunFiles.Run[] buildParts;
+        private FeatureRunFiles.Run[] probeParts;
+        private int partition = -1;
+
+        HashJoinIterator() {
+            probeLeft = joinType != Type.RIGHT_OUTER;
+            final PropertyName leftProperty = (PropertyName) condition.getExpression1();
+            final PropertyName rightProperty = (PropertyName) condition.getExpression2();
+            probeProperty = probeLeft ? leftProperty : rightProperty;
+            buildProperty = probeLeft ? rightProperty : leftProperty;
+        }
+
+        @Override
+        public Feature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements.");
+            }
+            return pending.poll();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                searchNext();
+            } catch (DataStoreException | IOException ex) {
+                throw new FeatureStoreRuntimeException(ex);
+            }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (probeStream != null) probeStream.close();
+            } finally {
+                if (files != null) {
+                    try {
+                        files.close();
+                    } catch (IOException ex) {
+                        throw new FeatureStoreRuntimeException(ex);
+                    }
+                }
+            }
+        }
+
+        private void searchNext() throws DataStoreException, IOException {
+            if (table == null) build();
+
+            while (pending.isEmpty()) {
+                if (probeIterator != null && probeIterator.hasNext()) {
+                    probe(probeIterator.next());
+                } else if (probeParts != null && partition + 1 < NB_PARTITIONS) {
+                    //load the next partition
+                    partition++;
+                    table.clear();
+                    final FeatureRunFiles.Run part = buildParts[partition];
+                    while (part.hasNext()) {
+                        final Feature feature = part.next();
+                        add(key(buildProperty.evaluate(feature)), feature);
+                    }
+                    probeIterator = probeParts[partition];
+                } else {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Read the build side, partition both sides if it exceeds the buffer size.
+         */
+        private void build() throws DataStoreException, IOException {
+            table = new HashMap<>();
+            FeatureRunFiles.Writer[] writers = null;
+            int count = 0;
+            try (Stream<Feature> stream = (probeLeft ? right : left).features(false)) {
+                final Iterator<Feature> ite = stream.iterator();
+                while (ite.hasNext()) {
+                    final Feature feature = ite.next();
+                    final Object key = key(buildProperty.evaluate(feature));
+                    //null values never match
+                    if (key == null) continue;
+
+                    if (writers != null) {
+                        writers[partition(key)].add(feature);
+                    } else if (++count > bufferSize) {
+                        files = new FeatureRunFiles();
+                        writers = newWriters();
+                        for (List<Feature> features : table.values()) {
+                            for (Feature f : features) {
+                                writers[partition(key(buildProperty.evaluate(f)))].add(f);
+                            }
+                        }
+                        table.clear();
+                        writers[partition(key)].add(feature);
+                    } else {
+                        add(key, feature);
+                    }
+                }
+            } finally {
+                buildParts = close(writers);
+            }
+
+            probeStream = (probeLeft ? left : right).features(false);
+            if (buildParts == null) {
+                probeIterator = probeStream.iterator();
+            } else {
+                //partition the probe side
+                writers = newWriters();
+                try {
+                    final Iterator<Feature> ite = probeStream.iterator();
+                    while (ite.hasNext()) {
+                        final Feature feature = ite.next();
+                        writers[partition(key(probeProperty.evaluate(feature)))].add(feature);
+                    }
+                } finally {
+                    probeParts = close(writers);
+                    probeStream.close();
+                    probeStream = null;
+                }
+            }
+        }
+
+        private void add(final Object key, final Feature feature) {
+            List<Feature> features = table.get(key);
+            if (features == null) {
+                features = new ArrayList<>(1);
+                table.put(key, features);
+            }
+            features.add(feature);
+        }
+
+        private void probe(final Feature feature) throws DataStoreException {
+            final Object key = key(probeProperty.evaluate(feature));
+            final List<Feature> matches = (key == null) ? null : table.get(key);
+            if (matches != null) {
+                for (Feature match : matches) {
+                    pending.add(probeLeft ? toFeature(feature, match) : toFeature(match, feature));
+                }
+            } else if (joinType != Type.INNER) {
+                pending.add(probeLeft ? toFeature(feature, null) : toFeature(null, feature));
+            }
+        }
+
+        private int partition(final Object key) {
+            if (key == null) return 0;
+            final int h = key.hashCode();
+            return Math.floorMod(h ^ (h >>> 16), NB_PARTITIONS);
+        }
+
+        private FeatureRunFiles.Writer[] newWriters() throws IOException {
+            final FeatureRunFiles.Writer[] writers = new FeatureRunFiles.Writer[NB_PARTITIONS];
+            for (int i = 0; i < NB_PARTITIONS; i++) {
+                writers[i] = files.newWriter();
+            }
+            return writers;
+        }
+
+        private FeatureRunFiles.Run[] close(final FeatureRunFiles.Writer[] writers) throws IOException {
+            if (writers == null) return null;
+            final FeatureRunFiles.Run[] parts = new FeatureRunFiles.Run[writers.length];
+            for (int i = 0; i < writers.length; i++) {
+                writers[i].close();
+                parts[i] = writers[i].run();
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * Iterate on both sides sorted on the join properties.
+     * The left side is preserved for inner joins.
+     */
+    private class MergeJoinIterator implements JoinIterator {
+
+        private final boolean primeLeft;
+        private final PropertyName primeProperty;
+        private final PropertyName secondProperty;
+        private final Stream<Feature> primeStream;
+        private final Iterator<Feature> primeIterator;
+        private final Stream<Feature> secondStream;
+        private final Iterator<Feature> secondIterator;
+        private final ArrayDeque<Feature> pending = new ArrayDeque<>();
+
+        //features of the second side with the same key
+        private final List<Feature> group = new ArrayList<>();
+        private Object groupKey;
+        private Feature secondFeature;
+        private Object secondKey;
+
+        MergeJoinIterator() throws DataStoreException {
+            primeLeft = joinType != Type.RIGHT_OUTER;
+            final PropertyName leftProperty = (PropertyName) condition.getExpression1();
+            final PropertyName rightProperty = (PropertyName) condition.getExpression2();
+            primeProperty = primeLeft ? leftProperty : rightProperty;
+            secondProperty = primeLeft ? rightProperty : leftProperty;
+            primeStream = sorted(primeLeft ? left : right, primeProperty);
+            primeIterator = primeStream.iterator();
+            Stream<Feature> stream = null;
+            try {
+                stream = sorted(primeLeft ? right : left, secondProperty);
+            } finally {
+                if (stream == null) primeStream.close();
+            }
+            secondStream = stream;
+            secondIterator = secondStream.iterator();
+            advance();
+        }
+
+        private Stream<Feature> sorted(final FeatureSet set, final PropertyName property) throws DataStoreException {
+            final QueryBuilder qb = new QueryBuilder();
+            qb.setTypeName(set.getType().getName());
+            qb.setSortBy(new SortBy[]{FF.sort(property.getPropertyName(), SortOrder.ASCENDING)});
+            qb.setHints(new Hints(HintsPending.FEATURE_SORT_BUFFER, bufferSize));
+            return set.subset(qb.buildQuery()).features(false);
+        }
+
+        private void advance() {
+            if (secondIterator.hasNext()) {
+                secondFeature = secondIterator.next();
+                secondKey = key(secondProperty.evaluate(secondFeature));
+            } else {
+                secondFeature = null;
+                secondKey = null;
+            }
+        }
+
+        @Override
+        public Feature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements.");
+            }
+            return pending.poll();
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                searchNext();
+            } catch (DataStoreException ex) {
+                throw new FeatureStoreRuntimeException(ex);
+            }
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public void close() {
+            try {
+                primeStream.close();
+            } finally {
+                secondStream.close();
+            }
+        }
+
+        private void searchNext() throws DataStoreException {
+            while (pending.isEmpty() && primeIterator.hasNext()) {
+                final Feature prime = primeIterator.next();
+                final Object key = key(primeProperty.evaluate(prime));
+
+                if (key != null && (groupKey == null || compareKeys(groupKey, key) != 0)) {
+                    group.clear();
+                    groupKey = null;
+                    //skip second features without match, null values never match
+                    while (secondFeature != null && (secondKey == null || compareKeys(secondKey, key) < 0)) {
+                        advance();
+                    }
+                    while (secondFeature != null && secondKey != null && compareKeys(secondKey, key) == 0) {
+                        group.add(secondFeature);
+                        advance();
+                    }
+                    if (!group.isEmpty()) groupKey = key;
+                }
+
+                if (key != null && groupKey != null) {
+                    for (Feature second : group) {
+                        pending.add(primeLeft ? toFeature(prime, second) : toFeature(second, prime));
+                    }
+                } else if (joinType != Type.INNER) {
+                    pending.add(primeLeft ? toFeature(prime, null) : toFeature(null, prime));
+                }
+            }
+        }
+    }
+
     @Override
     public <T extends ChangeEvent> void addListener(ChangeListener<? super T> listener, Class<T> eventType) {
     }
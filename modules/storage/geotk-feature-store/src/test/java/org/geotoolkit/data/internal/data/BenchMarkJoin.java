@@ -0,0 +1,122 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.internal.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.apache.sis.feature.builder.FeatureTypeBuilder;
+import org.apache.sis.internal.feature.AttributeConvention;
+import org.apache.sis.storage.FeatureSet;
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.internal.data.ArrayFeatureSet;
+import org.geotoolkit.internal.data.JoinFeatureSet;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureType;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.PropertyIsEqualTo;
+
+/**
+ * Compare the time needed by each {@link JoinFeatureSet.Strategy} to join
+ * a layer with an attribute table.
+ * The nested loop strategy scans the table for each layer feature since
+ * in memory feature sets have no index, sizes are kept small enough for it
+ * to finish.
+ */
+public class BenchMarkJoin {
+
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
+    private static final String ATT_ID = AttributeConvention.IDENTIFIER_PROPERTY.toString();
+    private static final int NB_LAYER = 50000;
+    private static final int NB_TABLE = 5000;
+
+    private final FeatureSet layer;
+    private final FeatureSet table;
+
+    public BenchMarkJoin() {
+        final Random rand = new Random(42);
+
+        FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName("layer");
+        ftb.addAttribute(String.class).setName(AttributeConvention.IDENTIFIER_PROPERTY);
+        ftb.addAttribute(Integer.class).setName("code");
+        final FeatureType layerType = ftb.build();
+        final List<Feature> layerFeatures = new ArrayList<>(NB_LAYER);
+        for (int i = 0; i < NB_LAYER; i++) {
+            final Feature f = layerType.newInstance();
+            f.setPropertyValue(ATT_ID, "l" + i);
+            f.setPropertyValue("code", rand.nextInt(NB_TABLE * 2));
+            layerFeatures.add(f);
+        }
+        layer = new ArrayFeatureSet(layerType, layerFeatures, null);
+
+        ftb = new FeatureTypeBuilder();
+        ftb.setName("table");
+        ftb.addAttribute(String.class).setName(AttributeConvention.IDENTIFIER_PROPERTY);
+        ftb.addAttribute(Integer.class).setName("key");
+        ftb.addAttribute(String.class).setName("label");
+        final FeatureType tableType = ftb.build();
+        final List<Feature> tableFeatures = new ArrayList<>(NB_TABLE);
+        for (int i = 0; i < NB_TABLE; i++) {
+            final Feature f = tableType.newInstance();
+            f.setPropertyValue(ATT_ID, "t" + i);
+            f.setPropertyValue("key", i);
+            f.setPropertyValue("label", "label" + i);
+            tableFeatures.add(f);
+        }
+        table = new ArrayFeatureSet(tableType, tableFeatures, null);
+    }
+
+    private void run(final JoinFeatureSet.Strategy strategy, final int bufferSize) throws Exception {
+        final PropertyIsEqualTo condition = FF.equals(FF.property("code"), FF.property("key"));
+        for (JoinFeatureSet.Type type : new JoinFeatureSet.Type[]{JoinFeatureSet.Type.INNER, JoinFeatureSet.Type.LEFT_OUTER}) {
+            final JoinFeatureSet join = new JoinFeatureSet(layer, "l", table, "t", type, condition, strategy, bufferSize);
+            final long start = System.nanoTime();
+            final long count;
+            try (Stream<Feature> stream = join.features(false)) {
+                count = stream.count();
+            }
+            System.out.println(strategy + " " + type + " buffer " + bufferSize + " : "
+                    + (System.nanoTime() - start) / 1000000 + " ms (" + count + " features)");
+        }
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkNestedLoop() throws Exception {
+        run(JoinFeatureSet.Strategy.NESTED_LOOP, NB_TABLE);
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkHash() throws Exception {
+        run(JoinFeatureSet.Strategy.HASH, NB_TABLE);
+        //partitioned in temporary files
+        run(JoinFeatureSet.Strategy.HASH, NB_TABLE / 10);
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkSortMerge() throws Exception {
+        run(JoinFeatureSet.Strategy.SORT_MERGE, NB_LAYER);
+        //sorted in temporary files
+        run(JoinFeatureSet.Strategy.SORT_MERGE, NB_LAYER / 10);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *    Geotoolkit - An Open Source Java GIS Toolkit
+ *    http://www.geotoolkit.org
+ *
+ *    (C) 2016, Geomatys
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotoolkit.data.internal.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.sis.feature.builder.AttributeRole;
+import org.apache.sis.feature.builder.FeatureTypeBuilder;
+import org.apache.sis.referencing.CommonCRS;
+import org.geotoolkit.data.FeatureReader;
+import org.geotoolkit.data.FeatureStreams;
+import org.geotoolkit.data.query.Query;
+import org.geotoolkit.data.query.QueryBuilder;
+import org.geotoolkit.factory.FactoryFinder;
+import org.geotoolkit.factory.Hints;
+import org.geotoolkit.factory.HintsPending;
+import org.geotoolkit.internal.data.GenericQueryFeatureIterator;
+import org.geotoolkit.internal.data.GenericSortByFeatureIterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureType;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Test sorting features in memory and in temporary files.
+ */
+public class GenericSortByFeatureIteratorTest {
+
+    private static final FilterFactory FF = FactoryFinder.getFilterFactory(null);
+    private static final GeometryFactory GF = new GeometryFactory();
+    private static final CoordinateReferenceSystem CRS = CommonCRS.WGS84.normalizedGeographic();
+    private static final SortBy[] SORTS = new SortBy[]{FF.sort("value", SortOrder.ASCENDING)};
+
+    private final FeatureType type;
+    private final List<Feature> features = new ArrayList<>();
+    private final List<Feature> expected;
+
+    public GenericSortByFeatureIteratorTest() {
+        final FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName("test");
+        ftb.addAttribute(String.class).setName("id").addRole(AttributeRole.IDENTIFIER_COMPONENT);
+        ftb.addAttribute(Integer.class).setName("value");
+        ftb.addAttribute(Date.class).setName("date");
+        ftb.addAttribute(Point.class).setName("geom").setCRS(CRS).addRole(AttributeRole.DEFAULT_GEOMETRY);
+        type = ftb.build();
+
+        for (int i = 0; i < 1000; i++) {
+            final Point point = GF.createPoint(new Coordinate(i, -i));
+            point.setUserData(CRS);
+            final Feature feature = type.newInstance();
+            feature.setPropertyValue("id", "f" + i);
+            //many duplicated values to check the sort is stable
+            feature.setPropertyValue("value", (i * 7919) % 100);
+            feature.setPropertyValue("date", new Date(i * 1000L));
+            feature.setPropertyValue("geom", point);
+            features.add(feature);
+        }
+
+        expected = new ArrayList<>(features);
+        Collections.sort(expected, (Feature f1, Feature f2) -> Integer.compare(
+                (Integer) f1.getPropertyValue("value"), (Integer) f2.getPropertyValue("value")));
+    }
+
+    private FeatureReader source() {
+        return FeatureStreams.asReader(features.iterator(), type);
+    }
+
+    private static void assertOrder(final List<Feature> expected, final FeatureReader reader) {
+        try {
+            for (Feature exp : expected) {
+                assertTrue(reader.hasNext());
+                final Feature feature = reader.next();
+                assertEquals(exp.getPropertyValue("id"), feature.getPropertyValue("id"));
+                assertEquals(exp.getPropertyValue("value"), feature.getPropertyValue("value"));
+                assertEquals(exp.getPropertyValue("date"), feature.getPropertyValue("date"));
+                final Point point = (Point) feature.getPropertyValue("geom");
+                assertTrue(point.equalsExact((Point) exp.getPropertyValue("geom")));
+                assertSame(CRS, point.getUserData());
+            }
+            assertFalse(reader.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testSortInMemory() {
+        assertOrder(expected, GenericSortByFeatureIterator.wrap(source(), SORTS));
+    }
+
+    /**
+     * 100 temporary files are created, more than can be merged at once.
+     */
+    @Test
+    public void testSortInFiles() {
+        assertOrder(expected, GenericSortByFeatureIterator.wrap(source(), SORTS, Integer.MAX_VALUE, 10));
+    }
+
+    /**
+     * Collections written in temporary files must keep their type.
+     */
+    @Test
+    public void testCollectionsInFiles() {
+        final FeatureTypeBuilder ftb = new FeatureTypeBuilder();
+        ftb.setName("collections");
+        ftb.addAttribute(Integer.class).setName("value");
+        ftb.addAttribute(Set.class).setName("set");
+        ftb.addAttribute(Set.class).setName("sorted");
+        ftb.addAttribute(List.class).setName("list");
+        final FeatureType colType = ftb.build();
+
+        final List<Feature> source = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final Feature feature = colType.newInstance();
+            feature.setPropertyValue("value", 100 - i);
+            feature.setPropertyValue("set", new HashSet<>(Arrays.asList("a" + i, "b" + i)));
+            final TreeSet<String> sorted = new TreeSet<>(Collections.reverseOrder());
+            sorted.addAll(Arrays.asList("a" + i, "b" + i));
+            feature.setPropertyValue("sorted", sorted);
+            feature.setPropertyValue("list", Arrays.asList(i, i));
+            source.add(feature);
+        }
+
+        final FeatureReader reader = GenericSortByFeatureIterator.wrap(
+                FeatureStreams.asReader(source.iterator(), colType), SORTS, Integer.MAX_VALUE, 10);
+        try {
+            for (int i = 99; i >= 0; i--) {
+                final Feature feature = reader.next();
+                assertEquals(100 - i, feature.getPropertyValue("value"));
+                final Object set = feature.getPropertyValue("set");
+                assertTrue(set instanceof Set);
+                assertEquals(new HashSet<>(Arrays.asList("a" + i, "b" + i)), set);
+                final Object sorted = feature.getPropertyValue("sorted");
+                assertTrue(sorted instanceof TreeSet);
+                assertEquals(Arrays.asList("b" + i, "a" + i), new ArrayList<>((TreeSet<?>) sorted));
+                assertEquals(Arrays.asList(i, i), feature.getPropertyValue("list"));
+            }
+            assertFalse(reader.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testSortFirsts() {
+        assertOrder(expected.subList(0, 25), GenericSortByFeatureIterator.wrap(source(), SORTS, 25, 100));
+    }
+
+    @Test
+    public void testQueryPage() throws Exception {
+        final QueryBuilder qb = new QueryBuilder("test");
+        qb.setSortBy(SORTS);
+        qb.setStartIndex(40);
+        qb.setMaxFeatures(30);
+        qb.setFilter(FF.less(FF.property("value"), FF.literal(50)));
+        final Query query = qb.buildQuery();
+
+        final List<Feature> page = new ArrayList<>();
+        for (Feature feature : expected) {
+            if ((Integer) feature.getPropertyValue("value") < 50) page.add(feature);
+        }
+        assertOrder(page.subList(40, 70), GenericQueryFeatureIterator.wrap(source(), query));
+
+        //same start with features sorted in files
+        qb.setMaxFeatures(null);
+        qb.setHints(new Hints(HintsPending.FEATURE_SORT_BUFFER, 10));
+        final FeatureReader reader = GenericQueryFeatureIterator.wrap(source(), qb.buildQuery());
+        try {
+            for (Feature exp : page.subList(40, page.size())) {
+                assertEquals(exp.getPropertyValue("id"), reader.next().getPropertyValue("id"));
+            }
+            assertFalse(reader.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
+}
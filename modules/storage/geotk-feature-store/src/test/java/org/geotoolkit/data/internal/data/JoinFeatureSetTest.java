@@ -17,8 +17,12 @@
 package org.geotoolkit.data.internal.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.apache.sis.feature.builder.FeatureTypeBuilder;
 import org.apache.sis.internal.feature.AttributeConvention;
@@ -36,6 +40,7 @@ import org.junit.Test;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureType;
 import org.opengis.filter.FilterFactory;
+import org.opengis.filter.MatchAction;
 import org.opengis.filter.PropertyIsEqualTo;
 import org.opengis.util.GenericName;
 
@@ -370,5 +375,90 @@ public class JoinFeatureSetTest {
         }
     }
 
+    /**
+     * Test all join strategies return the same features,
+     * with a buffer small enough to use temporary files.
+     */
+    @Test
+    public void testJoinStrategies() throws Exception{
+        final PropertyIsEqualTo condition = FF.equals(FF.property("att2"), FF.property("att3"));
+
+        for (JoinFeatureSet.Type type : JoinFeatureSet.Type.values()) {
+            final Set<String> expected = ids(new JoinFeatureSet(featureSet1, "s1", featureSet2, "s2", type, condition,
+                    JoinFeatureSet.Strategy.NESTED_LOOP, 100));
+            assertEquals(type == JoinFeatureSet.Type.INNER ? 4 : 6, expected.size());
+
+            for (JoinFeatureSet.Strategy strategy : JoinFeatureSet.Strategy.values()) {
+                for (int bufferSize : new int[]{1, 100}) {
+                    final FeatureSet col = new JoinFeatureSet(featureSet1, "s1", featureSet2, "s2", type, condition,
+                            strategy, bufferSize);
+                    assertEquals(type + " " + strategy + " " + bufferSize, expected, ids(col));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test all join strategies on mixed case strings, whose case sensitive
+     * order differs from the order of the lower cased values.
+     */
+    @Test
+    public void testCaseInsensitiveJoin() throws Exception{
+        final FeatureSet left  = names("Left",  "Bob", "alice", "Carol", "dave");
+        final FeatureSet right = names("Right", "ALICE", "bob", "carol", "Eve");
+
+        for (boolean matchCase : new boolean[]{true, false}) {
+            final PropertyIsEqualTo condition = FF.equal(FF.property("name"), FF.property("name"), matchCase, MatchAction.ANY);
+            for (JoinFeatureSet.Strategy strategy : JoinFeatureSet.Strategy.values()) {
+                for (int bufferSize : new int[]{1, 100}) {
+                    final FeatureSet col = new JoinFeatureSet(left, "l", right, "r", JoinFeatureSet.Type.INNER, condition,
+                            strategy, bufferSize);
+                    final Set<String> expected = matchCase ? new HashSet<String>()
+                            : new HashSet<>(Arrays.asList("Left-Bob Right-bob", "Left-alice Right-ALICE", "Left-Carol Right-carol"));
+                    assertEquals(matchCase + " " + strategy + " " + bufferSize, expected, ids(col));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test the default strategy joins values of different types as the condition does.
+     */
+    @Test
+    public void testAutoJoinConvertsValues() throws Exception{
+        final FeatureSet left  = values("Left",  String.class,  "5", "7");
+        final FeatureSet right = values("Right", Integer.class, 5, 6);
+        final PropertyIsEqualTo condition = FF.equals(FF.property("name"), FF.property("name"));
+        final FeatureSet col = new JoinFeatureSet(left, "l", right, "r", JoinFeatureSet.Type.INNER, condition);
+        assertEquals(Collections.singleton("Left-5 Right-5"), ids(col));
+    }
+
+    private static FeatureSet names(final String typeName, final String... names) {
+        return values(typeName, String.class, (Object[]) names);
+    }
+
+    private static FeatureSet values(final String typeName, final Class<?> valueClass, final Object... values) {
+        final FeatureTypeBuilder builder = new FeatureTypeBuilder();
+        builder.setName(typeName);
+        builder.addAttribute(String.class).setName(AttributeConvention.IDENTIFIER_PROPERTY);
+        builder.addAttribute(valueClass).setName("name");
+        final FeatureType type = builder.build();
+        final List<Feature> features = new ArrayList<>();
+        for (Object value : values) {
+            final Feature feature = type.newInstance();
+            feature.setPropertyValue(ATT_ID, typeName + "-" + value);
+            feature.setPropertyValue("name", value);
+            features.add(feature);
+        }
+        return new ArrayFeatureSet(type, features, null);
+    }
+
+    private static Set<String> ids(FeatureSet col) throws Exception {
+        final Set<String> ids = new HashSet<>();
+        try (Stream<Feature> stream = col.features(false)) {
+            stream.forEach((Feature f) -> assertTrue(ids.add(FeatureExt.getId(f).getID())));
+        }
+        return ids;
+    }
 
 }
@@ -92,6 +92,24 @@ public final class HintsPending extends Hints {
      */
     public static final Key FEATURE_HIDE_ID_PROPERTY = new Key(Boolean.class);
 
+    /**
+     * Request features of a query to be read in parallel when they are obtained
+     * as a stream. Featurestores which can split their data in independent parts
+     * read each part with its own resources, the others ignore this hint.
+     *
+     * Default value is false.
+     */
+    public static final Key FEATURE_PARALLEL = new Key(Boolean.class);
+
+    /**
+     * Maximum number of features kept in memory when the features of a query
+     * must be sorted in memory. Beyond this number, sorted parts are written
+     * in temporary files and merged when iterating.
+     *
+     * Default value is 100 000.
+     */
+    public static final Key FEATURE_SORT_BUFFER = new Key(Integer.class);
+
     /**
      * Used to identify a PropertyDescriptor if he is part of the FeatureID.
      */